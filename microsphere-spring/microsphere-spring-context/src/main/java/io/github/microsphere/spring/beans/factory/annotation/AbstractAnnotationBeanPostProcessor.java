@@ -28,6 +28,7 @@ import org.springframework.beans.factory.BeanFactoryAware;
 import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.AutowiredAnnotationBeanPostProcessor;
 import org.springframework.beans.factory.annotation.InjectionMetadata;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.BeanPostProcessor;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.beans.factory.config.InstantiationAwareBeanPostProcessorAdapter;
@@ -38,6 +39,7 @@ import org.springframework.core.Ordered;
 import org.springframework.core.PriorityOrdered;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.env.Environment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.util.Assert;
 import org.springframework.util.ClassUtils;
 import org.springframework.util.ReflectionUtils;
@@ -45,22 +47,37 @@ import org.springframework.util.StringUtils;
 
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.AnnotatedElement;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import static io.github.microsphere.spring.util.AnnotationUtils.getAnnotationAttributes;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
+import static java.util.Collections.unmodifiableCollection;
 import static java.util.Collections.unmodifiableMap;
+import static java.util.concurrent.Executors.newFixedThreadPool;
 import static org.springframework.aop.support.AopUtils.getTargetClass;
 import static org.springframework.core.BridgeMethodResolver.findBridgedMethod;
 import static org.springframework.core.BridgeMethodResolver.isVisibilityBridgeMethodPair;
@@ -79,6 +96,11 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
     private final static int CACHE_SIZE = Integer.getInteger("", 32);
 
+    /**
+     * The type of injector : <code>(bean, injectedObject)void</code>
+     */
+    private static final MethodType INJECTOR_TYPE = methodType(void.class, Object.class, Object.class);
+
     private final Log logger = LogFactory.getLog(getClass());
 
     private final Class<? extends Annotation>[] annotationTypes;
@@ -86,7 +108,17 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
     private final ConcurrentMap<String, AnnotatedInjectionMetadata> injectionMetadataCache =
             new ConcurrentHashMap<String, AnnotatedInjectionMetadata>(CACHE_SIZE);
 
-    private final ConcurrentMap<String, Object> injectedObjectsCache = new ConcurrentHashMap<String, Object>(CACHE_SIZE);
+    private final ConcurrentMap<Object, Object> injectedObjectsCache = new ConcurrentHashMap<Object, Object>(CACHE_SIZE);
+
+    /**
+     * The annotated elements found by the reflective scan per class, which are shared by all bean names of the same
+     * class, the {@link InjectionMetadata} per bean name only binds them to its bean definition.
+     * <p>
+     * The elements are owned by this processor rather than the classes, because they refer to this processor (and its
+     * {@link BeanFactory}) when they are injected, thus they're released with this processor or on {@link #destroy()}.
+     */
+    private final ConcurrentMap<Class<?>, AnnotatedInjectionElements> injectionElementsCache =
+            new ConcurrentHashMap<Class<?>, AnnotatedInjectionElements>(CACHE_SIZE);
 
     private ConfigurableListableBeanFactory beanFactory;
 
@@ -132,6 +164,21 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
      */
     private boolean tryMergedAnnotation = true;
 
+    /**
+     * The number of threads to precompute the injection metadata of the registered bean definitions in parallel,
+     * the precomputation is disabled if it's not positive
+     */
+    private int precomputationThreads;
+
+    private final AtomicBoolean precomputed = new AtomicBoolean();
+
+    /**
+     * whether to reuse the cache key of injected-object per injection element and bean name, rather than rebuilding it
+     * on every injection, it's disabled by default, since {@link #buildInjectedObjectCacheKey} may depend on the state
+     * of bean instance
+     */
+    private boolean reuseInjectedObjectCacheKeys;
+
     /**
      * @param annotationTypes the multiple types of {@link Annotation annotations}
      */
@@ -140,6 +187,80 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
         this.annotationTypes = annotationTypes;
     }
 
+    /**
+     * Resolve the injector of {@link Field} once, whose type is <code>(Object, Object)void</code>
+     *
+     * @param field the injected {@link Field}
+     * @return <code>null</code> if the {@link Field} can't be resolved, the reflection will be used
+     */
+    private MethodHandle resolveInjector(Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            // The setter of final field is not allowed on Java 8, even if it is accessible
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(field);
+            return lookup().unreflectSetter(field).asType(INJECTOR_TYPE);
+        } catch (Throwable e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("The injector of field[" + field + "] can't be resolved, the reflection will be used", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Resolve the injector of {@link Method} once, whose type is <code>(Object, Object)void</code>
+     *
+     * @param method the injected {@link Method}
+     * @return <code>null</code> if the {@link Method} can't be resolved, the reflection will be used
+     */
+    private MethodHandle resolveInjector(Method method) {
+        if (method.getParameterTypes().length != 1) {
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return lookup().unreflect(method).asFixedArity().asType(INJECTOR_TYPE);
+        } catch (Throwable e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("The injector of method[" + method + "] can't be resolved, the reflection will be used", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Inject the object by the resolved injector with the same exceptions as the reflection, rather than the raw ones
+     * thrown by {@link MethodHandle#invokeExact(Object...)} :
+     * <ul>
+     * <li>{@link IllegalArgumentException} : the injected object can't be assigned to the type of member, instead of
+     * {@link ClassCastException} or {@link NullPointerException}</li>
+     * <li>{@link InvocationTargetException} : wraps the exception thrown by the injected method, instead of
+     * propagating it</li>
+     * </ul>
+     *
+     * @param injector       the injector whose type is <code>(Object, Object)void</code>
+     * @param member         the injected {@link Field} or {@link Method}
+     * @param type           the type of {@link Field} or the parameter of {@link Method}
+     * @param bean           the bean to be injected
+     * @param injectedObject the injected object
+     * @throws IllegalArgumentException  if the injected object can't be assigned to the type
+     * @throws InvocationTargetException if the injected method throws an exception
+     */
+    private static void invokeInjector(MethodHandle injector, Member member, Class<?> type, Object bean,
+                                       Object injectedObject) throws IllegalArgumentException, InvocationTargetException {
+        if (!ClassUtils.isAssignableValue(type, injectedObject)) {
+            throw new IllegalArgumentException("The injected object[" + injectedObject + "] can't be assigned to the type["
+                    + type.getName() + "] of " + member);
+        }
+        try {
+            injector.invokeExact(bean, injectedObject);
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
     private static <T> Collection<T> combine(Collection<? extends T>... elements) {
         List<T> allElements = new ArrayList<T>();
         for (Collection<? extends T> e : elements) {
@@ -285,10 +406,26 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
                 classValuesAsString, nestedAnnotationsAsMap, ignoreDefaultValue, tryMergedAnnotation);
     }
 
-    private AnnotatedInjectionMetadata buildAnnotatedMetadata(final Class<?> beanClass) {
+    private AnnotatedInjectionElements buildAnnotatedInjectionElements(final Class<?> beanClass) {
         Collection<AnnotatedFieldElement> fieldElements = findFieldAnnotationMetadata(beanClass);
         Collection<AnnotatedMethodElement> methodElements = findAnnotatedMethodMetadata(beanClass);
-        return new AnnotatedInjectionMetadata(beanClass, fieldElements, methodElements);
+        return new AnnotatedInjectionElements(fieldElements, methodElements);
+    }
+
+    private AnnotatedInjectionElements getAnnotatedInjectionElements(Class<?> beanClass) {
+        AnnotatedInjectionElements elements = injectionElementsCache.get(beanClass);
+        if (elements == null) {
+            elements = buildAnnotatedInjectionElements(beanClass);
+            AnnotatedInjectionElements existedElements = injectionElementsCache.putIfAbsent(beanClass, elements);
+            if (existedElements != null) {
+                elements = existedElements;
+            }
+        }
+        return elements;
+    }
+
+    private AnnotatedInjectionMetadata buildAnnotatedMetadata(final Class<?> beanClass) {
+        return new AnnotatedInjectionMetadata(beanClass, getAnnotatedInjectionElements(beanClass));
     }
 
     private InjectionMetadata findInjectionMetadata(String beanName, Class<?> clazz, PropertyValues pvs) {
@@ -318,12 +455,103 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
     @Override
     public void postProcessMergedBeanDefinition(RootBeanDefinition beanDefinition, Class<?> beanType, String beanName) {
+        if (precomputationThreads > 0 && precomputed.compareAndSet(false, true)) {
+            precomputeInjectionElements();
+        }
         if (beanType != null) {
             InjectionMetadata metadata = findInjectionMetadata(beanName, beanType, null);
             metadata.checkConfigMembers(beanDefinition);
         }
     }
 
+    /**
+     * Precompute the injection elements of the classes of all registered bean definitions on a bounded pool before
+     * the first bean is processed, thus the instantiation phase only reads the cached results.
+     */
+    private void precomputeInjectionElements() {
+
+        Set<Object> beanClasses = resolveBeanClasses();
+
+        if (beanClasses.isEmpty()) {
+            return;
+        }
+
+        int threads = Math.min(precomputationThreads, beanClasses.size());
+
+        List<Callable<Object>> tasks = new ArrayList<Callable<Object>>(beanClasses.size());
+
+        for (final Object beanClass : beanClasses) {
+            tasks.add(new Callable<Object>() {
+                @Override
+                public Object call() throws Exception {
+                    Class<?> resolvedClass = beanClass instanceof Class ? (Class<?>) beanClass :
+                            ClassUtils.forName((String) beanClass, getClassLoader());
+                    return getAnnotatedInjectionElements(resolvedClass);
+                }
+            });
+        }
+
+        long startTime = System.currentTimeMillis();
+
+        ExecutorService executorService = newFixedThreadPool(threads,
+                new CustomizableThreadFactory(getClass().getSimpleName() + "-Precomputation-"));
+
+        try {
+            for (Future<Object> future : executorService.invokeAll(tasks)) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    // The failure will be raised again when the bean is processed
+                    if (logger.isDebugEnabled()) {
+                        logger.debug("The injection metadata can't be precomputed", e.getCause());
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        if (logger.isInfoEnabled()) {
+            logger.info("The injection metadata of " + beanClasses.size() + " classes has been precomputed by "
+                    + threads + " threads in " + (System.currentTimeMillis() - startTime) + " ms");
+        }
+    }
+
+    /**
+     * Resolve the classes (or their names) of the registered bean definitions, the types of beans created by the
+     * factory methods are resolved without the initialization of any bean.
+     *
+     * @return non-null {@link Set} of {@link Class} or {@link String class name}
+     */
+    private Set<Object> resolveBeanClasses() {
+        ConfigurableListableBeanFactory beanFactory = getBeanFactory();
+        Set<Object> beanClasses = new LinkedHashSet<Object>();
+        for (String beanName : beanFactory.getBeanDefinitionNames()) {
+            try {
+                BeanDefinition beanDefinition = beanFactory.getMergedBeanDefinition(beanName);
+                if (beanDefinition.isAbstract()) {
+                    continue;
+                }
+                String beanClassName = beanDefinition.getBeanClassName();
+                if (beanDefinition.getFactoryMethodName() == null && beanClassName != null) {
+                    beanClasses.add(beanClassName);
+                } else {
+                    Class<?> beanType = beanFactory.getType(beanName, false);
+                    if (beanType != null) {
+                        beanClasses.add(beanType);
+                    }
+                }
+            } catch (Throwable e) {
+                if (logger.isDebugEnabled()) {
+                    logger.debug("The class of bean[name : '" + beanName + "'] can't be resolved", e);
+                }
+            }
+        }
+        return beanClasses;
+    }
+
     @Override
     public int getOrder() {
         return order;
@@ -348,6 +576,7 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
         injectionMetadataCache.clear();
         injectedObjectsCache.clear();
+        injectionElementsCache.clear();
 
         if (logger.isInfoEnabled()) {
             logger.info(getClass() + " was destroying!");
@@ -400,7 +629,7 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
     protected Object getInjectedObject(AnnotationAttributes attributes, Object bean, String beanName, Class<?> injectedType,
                                        InjectionMetadata.InjectedElement injectedElement) throws Exception {
 
-        String cacheKey = buildInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+        Object cacheKey = getInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
 
         Object injectedObject = injectedObjectsCache.get(cacheKey);
 
@@ -414,6 +643,54 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
     }
 
+    /**
+     * Get the cache key of injected-object, which is built by {@link #buildInjectedObjectCacheKey} on every injection
+     * by default. If {@link #setReuseInjectedObjectCacheKeys(boolean) the reuse of cache keys} is enabled, the key
+     * built for the last bean name of the injection element is reused by the later injections of the same bean name,
+     * e.g. the prototype beans or the refreshes.
+     *
+     * @param attributes      {@link AnnotationAttributes the annotation attributes}
+     * @param bean            Current bean that will be injected
+     * @param beanName        Current bean name that will be injected
+     * @param injectedType    the type of injected-object
+     * @param injectedElement {@link InjectionMetadata.InjectedElement}
+     * @return non-null cache key, which must implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+     * @see #buildInjectedObjectCacheKey
+     */
+    protected Object getInjectedObjectCacheKey(AnnotationAttributes attributes, Object bean, String beanName, Class<?> injectedType,
+                                               InjectionMetadata.InjectedElement injectedElement) {
+
+        if (!reuseInjectedObjectCacheKeys || beanName == null) {
+            return buildInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+        }
+
+        InjectedObjectCacheKey cachedKey = null;
+
+        if (injectedElement instanceof AnnotatedFieldElement) {
+            cachedKey = ((AnnotatedFieldElement) injectedElement).injectedObjectCacheKey;
+        } else if (injectedElement instanceof AnnotatedMethodElement) {
+            cachedKey = ((AnnotatedMethodElement) injectedElement).injectedObjectCacheKey;
+        } else {
+            return buildInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+        }
+
+        if (cachedKey != null && beanName.equals(cachedKey.beanName)) {
+            return cachedKey.key;
+        }
+
+        String cacheKey = buildInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+        // Only the key of the last bean name is held, which is bounded per injection element
+        cachedKey = new InjectedObjectCacheKey(beanName, cacheKey);
+
+        if (injectedElement instanceof AnnotatedFieldElement) {
+            ((AnnotatedFieldElement) injectedElement).injectedObjectCacheKey = cachedKey;
+        } else {
+            ((AnnotatedMethodElement) injectedElement).injectedObjectCacheKey = cachedKey;
+        }
+
+        return cacheKey;
+    }
+
     /**
      * Subclass must implement this method to get injected-object. The context objects could help this method if
      * necessary :
@@ -435,8 +712,10 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
                                                 InjectionMetadata.InjectedElement injectedElement) throws Exception;
 
     /**
-     * Build a cache key for injected-object. The context objects could help this method if
-     * necessary :
+     * Build a cache key for injected-object, which is invoked on every injection by default. If
+     * {@link #setReuseInjectedObjectCacheKeys(boolean) the reuse of cache keys} is enabled, the built key is reused by
+     * the later injections of the same injection element and bean name, thus it must not depend on the state of bean
+     * instance. The context objects could help this method if necessary :
      * <ul>
      * <li>{@link #getBeanFactory() BeanFactory}</li>
      * <li>{@link #getClassLoader() ClassLoader}</li>
@@ -543,6 +822,45 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
         this.tryMergedAnnotation = tryMergedAnnotation;
     }
 
+    /**
+     * @param precomputationThreads the number of threads to precompute the injection metadata of the registered bean
+     *                              definitions in parallel before the first bean is processed, the precomputation is
+     *                              disabled if it's not positive (by default)
+     */
+    public void setPrecomputationThreads(int precomputationThreads) {
+        this.precomputationThreads = precomputationThreads;
+    }
+
+    /**
+     * @param reuseInjectedObjectCacheKeys whether to reuse the cache key of injected-object per injection element and
+     *                                     bean name, which must be enabled only if
+     *                                     {@link #buildInjectedObjectCacheKey} doesn't depend on the state of bean
+     *                                     instance, e.g. the keys are rendered from the annotation attributes and the
+     *                                     injected type, it's disabled by default
+     */
+    public void setReuseInjectedObjectCacheKeys(boolean reuseInjectedObjectCacheKeys) {
+        this.reuseInjectedObjectCacheKeys = reuseInjectedObjectCacheKeys;
+    }
+
+    /**
+     * The immutable {@link Annotation annotated} elements of a class
+     */
+    private class AnnotatedInjectionElements {
+
+        private final Collection<AnnotatedFieldElement> fieldElements;
+
+        private final Collection<AnnotatedMethodElement> methodElements;
+
+        private final Collection<InjectionMetadata.InjectedElement> elements;
+
+        private AnnotatedInjectionElements(Collection<AnnotatedFieldElement> fieldElements,
+                                           Collection<AnnotatedMethodElement> methodElements) {
+            this.fieldElements = unmodifiableCollection(fieldElements);
+            this.methodElements = unmodifiableCollection(methodElements);
+            this.elements = unmodifiableCollection(AbstractAnnotationBeanPostProcessor.<InjectionMetadata.InjectedElement>combine(fieldElements, methodElements));
+        }
+    }
+
     /**
      * {@link Annotation Annotated} {@link InjectionMetadata} implementation
      */
@@ -552,11 +870,10 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
         private final Collection<AnnotatedMethodElement> methodElements;
 
-        public AnnotatedInjectionMetadata(Class<?> targetClass, Collection<AnnotatedFieldElement> fieldElements,
-                                          Collection<AnnotatedMethodElement> methodElements) {
-            super(targetClass, combine(fieldElements, methodElements));
-            this.fieldElements = fieldElements;
-            this.methodElements = methodElements;
+        public AnnotatedInjectionMetadata(Class<?> targetClass, AnnotatedInjectionElements elements) {
+            super(targetClass, elements.elements);
+            this.fieldElements = elements.fieldElements;
+            this.methodElements = elements.methodElements;
         }
 
         public Collection<AnnotatedFieldElement> getFieldElements() {
@@ -575,13 +892,18 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
         private final Method method;
 
+        private final MethodHandle injector;
+
         private final AnnotationAttributes attributes;
 
         private volatile Object object;
 
+        private volatile InjectedObjectCacheKey injectedObjectCacheKey;
+
         protected AnnotatedMethodElement(Method method, PropertyDescriptor pd, AnnotationAttributes attributes) {
             super(method, pd);
             this.method = method;
+            this.injector = resolveInjector(method);
             this.attributes = attributes;
         }
 
@@ -592,9 +914,12 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
             Object injectedObject = getInjectedObject(attributes, bean, beanName, injectedType, this);
 
-            ReflectionUtils.makeAccessible(method);
-
-            method.invoke(bean, injectedObject);
+            if (injector != null) {
+                invokeInjector(injector, method, method.getParameterTypes()[0], bean, injectedObject);
+            } else {
+                ReflectionUtils.makeAccessible(method);
+                method.invoke(bean, injectedObject);
+            }
 
         }
 
@@ -607,13 +932,18 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
         private final Field field;
 
+        private final MethodHandle injector;
+
         private final AnnotationAttributes attributes;
 
         private volatile Object bean;
 
+        private volatile InjectedObjectCacheKey injectedObjectCacheKey;
+
         protected AnnotatedFieldElement(Field field, AnnotationAttributes attributes) {
             super(field, null);
             this.field = field;
+            this.injector = resolveInjector(field);
             this.attributes = attributes;
         }
 
@@ -624,9 +954,12 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
 
             Object injectedObject = getInjectedObject(attributes, bean, beanName, injectedType, this);
 
-            ReflectionUtils.makeAccessible(field);
-
-            field.set(bean, injectedObject);
+            if (injector != null) {
+                invokeInjector(injector, field, field.getType(), bean, injectedObject);
+            } else {
+                ReflectionUtils.makeAccessible(field);
+                field.set(bean, injectedObject);
+            }
 
         }
 
@@ -639,4 +972,19 @@ public abstract class AbstractAnnotationBeanPostProcessor extends
             }
         }
     }
+
+    /**
+     * The cache key of injected-object built for the bean name
+     */
+    private static class InjectedObjectCacheKey {
+
+        private final String beanName;
+
+        private final String key;
+
+        private InjectedObjectCacheKey(String beanName, String key) {
+            this.beanName = beanName;
+            this.key = key;
+        }
+    }
 }
@@ -43,7 +43,11 @@ import org.springframework.util.StringUtils;
 
 import java.beans.PropertyDescriptor;
 import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
@@ -57,6 +61,8 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 
 import static io.github.microsphere.spring.util.ClassUtils.resolveGenericType;
+import static java.lang.invoke.MethodHandles.lookup;
+import static java.lang.invoke.MethodType.methodType;
 import static org.springframework.core.BridgeMethodResolver.findBridgedMethod;
 import static org.springframework.core.BridgeMethodResolver.isVisibilityBridgeMethodPair;
 import static org.springframework.core.annotation.AnnotationUtils.findAnnotation;
@@ -78,6 +84,11 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
     private final static int CACHE_SIZE = Integer.getInteger("", 32);
 
+    /**
+     * The type of injector : <code>(bean, injectedObject)void</code>
+     */
+    private static final MethodType INJECTOR_TYPE = methodType(void.class, Object.class, Object.class);
+
     private final Log logger = LogFactory.getLog(getClass());
 
     private final Class<A> annotationType;
@@ -85,7 +96,7 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
     private final ConcurrentMap<String, AnnotatedInjectionMetadata> injectionMetadataCache =
             new ConcurrentHashMap<String, AnnotatedInjectionMetadata>(CACHE_SIZE);
 
-    private final ConcurrentMap<String, Object> injectedObjectsCache = new ConcurrentHashMap<String, Object>(CACHE_SIZE);
+    private final ConcurrentMap<Object, Object> injectedObjectsCache = new ConcurrentHashMap<Object, Object>(CACHE_SIZE);
 
     private ConfigurableListableBeanFactory beanFactory;
 
@@ -95,10 +106,91 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
     private int order = Ordered.LOWEST_PRECEDENCE;
 
+    /**
+     * whether to reuse the cache key of injected-object per injection element and bean name, rather than rebuilding it
+     * on every injection, it's disabled by default, since {@link #buildInjectedObjectCacheKey} may depend on the state
+     * of bean instance
+     */
+    private boolean reuseInjectedObjectCacheKeys;
+
     public AnnotationInjectedBeanPostProcessor() {
         this.annotationType = resolveGenericType(getClass());
     }
 
+    /**
+     * Resolve the injector of {@link Field} once, whose type is <code>(Object, Object)void</code>
+     *
+     * @param field the injected {@link Field}
+     * @return <code>null</code> if the {@link Field} can't be resolved, the reflection will be used
+     */
+    private MethodHandle resolveInjector(Field field) {
+        if (Modifier.isFinal(field.getModifiers())) {
+            // The setter of final field is not allowed on Java 8, even if it is accessible
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(field);
+            return lookup().unreflectSetter(field).asType(INJECTOR_TYPE);
+        } catch (Throwable e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("The injector of field[" + field + "] can't be resolved, the reflection will be used", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Resolve the injector of {@link Method} once, whose type is <code>(Object, Object)void</code>
+     *
+     * @param method the injected {@link Method}
+     * @return <code>null</code> if the {@link Method} can't be resolved, the reflection will be used
+     */
+    private MethodHandle resolveInjector(Method method) {
+        if (method.getParameterTypes().length != 1) {
+            return null;
+        }
+        try {
+            ReflectionUtils.makeAccessible(method);
+            return lookup().unreflect(method).asFixedArity().asType(INJECTOR_TYPE);
+        } catch (Throwable e) {
+            if (logger.isDebugEnabled()) {
+                logger.debug("The injector of method[" + method + "] can't be resolved, the reflection will be used", e);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Inject the object by the resolved injector with the same exceptions as the reflection, rather than the raw ones
+     * thrown by {@link MethodHandle#invokeExact(Object...)} :
+     * <ul>
+     * <li>{@link IllegalArgumentException} : the injected object can't be assigned to the type of member, instead of
+     * {@link ClassCastException} or {@link NullPointerException}</li>
+     * <li>{@link InvocationTargetException} : wraps the exception thrown by the injected method, instead of
+     * propagating it</li>
+     * </ul>
+     *
+     * @param injector       the injector whose type is <code>(Object, Object)void</code>
+     * @param member         the injected {@link Field} or {@link Method}
+     * @param type           the type of {@link Field} or the parameter of {@link Method}
+     * @param bean           the bean to be injected
+     * @param injectedObject the injected object
+     * @throws IllegalArgumentException  if the injected object can't be assigned to the type
+     * @throws InvocationTargetException if the injected method throws an exception
+     */
+    private static void invokeInjector(MethodHandle injector, Member member, Class<?> type, Object bean,
+                                       Object injectedObject) throws IllegalArgumentException, InvocationTargetException {
+        if (!ClassUtils.isAssignableValue(type, injectedObject)) {
+            throw new IllegalArgumentException("The injected object[" + injectedObject + "] can't be assigned to the type["
+                    + type.getName() + "] of " + member);
+        }
+        try {
+            injector.invokeExact(bean, injectedObject);
+        } catch (Throwable e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
     private static <T> Collection<T> combine(Collection<? extends T>... elements) {
         List<T> allElements = new ArrayList<T>();
         for (Collection<? extends T> e : elements) {
@@ -269,6 +361,17 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
         this.order = order;
     }
 
+    /**
+     * @param reuseInjectedObjectCacheKeys whether to reuse the cache key of injected-object per injection element and
+     *                                     bean name, which must be enabled only if
+     *                                     {@link #buildInjectedObjectCacheKey} doesn't depend on the state of bean
+     *                                     instance, e.g. the keys are rendered from the annotation attributes and the
+     *                                     injected type, it's disabled by default
+     */
+    public void setReuseInjectedObjectCacheKeys(boolean reuseInjectedObjectCacheKeys) {
+        this.reuseInjectedObjectCacheKeys = reuseInjectedObjectCacheKeys;
+    }
+
     @Override
     public void destroy() throws Exception {
 
@@ -335,7 +438,7 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
     protected Object getInjectedObject(A annotation, Object bean, String beanName, Class<?> injectedType,
                                        InjectionMetadata.InjectedElement injectedElement) throws Exception {
 
-        String cacheKey = buildInjectedObjectCacheKey(annotation, bean, beanName, injectedType, injectedElement);
+        Object cacheKey = getInjectedObjectCacheKey(annotation, bean, beanName, injectedType, injectedElement);
 
         Object injectedObject = injectedObjectsCache.get(cacheKey);
 
@@ -349,6 +452,54 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
     }
 
+    /**
+     * Get the cache key of injected-object, which is built by {@link #buildInjectedObjectCacheKey} on every injection
+     * by default. If {@link #setReuseInjectedObjectCacheKeys(boolean) the reuse of cache keys} is enabled, the key
+     * built for the last bean name of the injection element is reused by the later injections of the same bean name,
+     * e.g. the prototype beans or the refreshes.
+     *
+     * @param annotation      {@link A annotation}
+     * @param bean            Current bean that will be injected
+     * @param beanName        Current bean name that will be injected
+     * @param injectedType    the type of injected-object
+     * @param injectedElement {@link InjectionMetadata.InjectedElement}
+     * @return non-null cache key, which must implement {@link Object#equals(Object)} and {@link Object#hashCode()}
+     * @see #buildInjectedObjectCacheKey
+     */
+    protected Object getInjectedObjectCacheKey(A annotation, Object bean, String beanName, Class<?> injectedType,
+                                               InjectionMetadata.InjectedElement injectedElement) {
+
+        if (!reuseInjectedObjectCacheKeys || beanName == null) {
+            return buildInjectedObjectCacheKey(annotation, bean, beanName, injectedType, injectedElement);
+        }
+
+        InjectedObjectCacheKey cachedKey = null;
+
+        if (injectedElement instanceof AnnotatedFieldElement) {
+            cachedKey = ((AnnotatedFieldElement) injectedElement).injectedObjectCacheKey;
+        } else if (injectedElement instanceof AnnotatedMethodElement) {
+            cachedKey = ((AnnotatedMethodElement) injectedElement).injectedObjectCacheKey;
+        } else {
+            return buildInjectedObjectCacheKey(annotation, bean, beanName, injectedType, injectedElement);
+        }
+
+        if (cachedKey != null && beanName.equals(cachedKey.beanName)) {
+            return cachedKey.key;
+        }
+
+        String cacheKey = buildInjectedObjectCacheKey(annotation, bean, beanName, injectedType, injectedElement);
+        // Only the key of the last bean name is held, which is bounded per injection element
+        cachedKey = new InjectedObjectCacheKey(beanName, cacheKey);
+
+        if (injectedElement instanceof AnnotatedFieldElement) {
+            ((AnnotatedFieldElement) injectedElement).injectedObjectCacheKey = cachedKey;
+        } else {
+            ((AnnotatedMethodElement) injectedElement).injectedObjectCacheKey = cachedKey;
+        }
+
+        return cacheKey;
+    }
+
     /**
      * Subclass must implement this method to get injected-object. The context objects could help this method if
      * necessary :
@@ -370,8 +521,10 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
                                                 InjectionMetadata.InjectedElement injectedElement) throws Exception;
 
     /**
-     * Build a cache key for injected-object. The context objects could help this method if
-     * necessary :
+     * Build a cache key for injected-object, which is invoked on every injection by default. If
+     * {@link #setReuseInjectedObjectCacheKeys(boolean) the reuse of cache keys} is enabled, the built key is reused by
+     * the later injections of the same injection element and bean name, thus it must not depend on the state of bean
+     * instance. The context objects could help this method if necessary :
      * <ul>
      * <li>{@link #getBeanFactory() BeanFactory}</li>
      * <li>{@link #getClassLoader() ClassLoader}</li>
@@ -473,13 +626,18 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
         private final Method method;
 
+        private final MethodHandle injector;
+
         private final A annotation;
 
         private volatile Object object;
 
+        private volatile InjectedObjectCacheKey injectedObjectCacheKey;
+
         protected AnnotatedMethodElement(Method method, PropertyDescriptor pd, A annotation) {
             super(method, pd);
             this.method = method;
+            this.injector = resolveInjector(method);
             this.annotation = annotation;
         }
 
@@ -490,9 +648,12 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
             Object injectedObject = getInjectedObject(annotation, bean, beanName, injectedType, this);
 
-            ReflectionUtils.makeAccessible(method);
-
-            method.invoke(bean, injectedObject);
+            if (injector != null) {
+                invokeInjector(injector, method, method.getParameterTypes()[0], bean, injectedObject);
+            } else {
+                ReflectionUtils.makeAccessible(method);
+                method.invoke(bean, injectedObject);
+            }
 
         }
 
@@ -505,13 +666,18 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
         private final Field field;
 
+        private final MethodHandle injector;
+
         private final A annotation;
 
         private volatile Object bean;
 
+        private volatile InjectedObjectCacheKey injectedObjectCacheKey;
+
         protected AnnotatedFieldElement(Field field, A annotation) {
             super(field, null);
             this.field = field;
+            this.injector = resolveInjector(field);
             this.annotation = annotation;
         }
 
@@ -522,11 +688,29 @@ public abstract class AnnotationInjectedBeanPostProcessor<A extends Annotation>
 
             Object injectedObject = getInjectedObject(annotation, bean, beanName, injectedType, this);
 
-            ReflectionUtils.makeAccessible(field);
-
-            field.set(bean, injectedObject);
+            if (injector != null) {
+                invokeInjector(injector, field, field.getType(), bean, injectedObject);
+            } else {
+                ReflectionUtils.makeAccessible(field);
+                field.set(bean, injectedObject);
+            }
 
         }
 
     }
+
+    /**
+     * The cache key of injected-object built for the bean name
+     */
+    private static class InjectedObjectCacheKey {
+
+        private final String beanName;
+
+        private final String key;
+
+        private InjectedObjectCacheKey(String beanName, String key) {
+            this.beanName = beanName;
+            this.key = key;
+        }
+    }
 }
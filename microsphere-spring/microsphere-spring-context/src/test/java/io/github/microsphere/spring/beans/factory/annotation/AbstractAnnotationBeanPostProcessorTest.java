@@ -20,16 +20,31 @@ import io.github.microsphere.spring.util.User;
 import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.springframework.beans.factory.BeanCreationException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.InjectionMetadata;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.config.BeanDefinition;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Scope;
 import org.springframework.core.Ordered;
 import org.springframework.core.annotation.AnnotationAttributes;
 import org.springframework.core.env.Environment;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 /**
  * {@link AbstractAnnotationBeanPostProcessor} Test
@@ -93,6 +108,181 @@ public class AbstractAnnotationBeanPostProcessorTest {
         Assert.assertEquals(parent.user, genericChild.getS());
     }
 
+    @Test
+    public void testInjectedObjectCacheKeysBuiltOnEveryInjection() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(PrototypeConfiguration.class, CacheKeysRecordingBeanPostProcessor.class);
+        context.refresh();
+        try {
+            for (int i = 0; i < 3; i++) {
+                context.getBean(AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent.class);
+            }
+
+            CacheKeysRecordingBeanPostProcessor recordingProcessor = context.getBean(CacheKeysRecordingBeanPostProcessor.class);
+            // The reuse of cache keys is disabled by default
+            Assert.assertEquals(6, recordingProcessor.cacheKeys.size());
+            Assert.assertEquals(6, recordingProcessor.builtCacheKeys);
+            Assert.assertEquals(1, recordingProcessor.getInjectedObjects().size());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testInjectedObjectCacheKeysReusedByPrototypeBeans() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(PrototypeConfiguration.class, CacheKeysReusingBeanPostProcessor.class);
+        context.refresh();
+        try {
+            for (int i = 0; i < 3; i++) {
+                AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent prototypeParent =
+                        context.getBean(AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent.class);
+                Assert.assertEquals(context.getBean(User.class), prototypeParent.parentUser);
+                Assert.assertEquals(context.getBean(User.class), prototypeParent.user);
+            }
+
+            CacheKeysRecordingBeanPostProcessor recordingProcessor = context.getBean(CacheKeysReusingBeanPostProcessor.class);
+            // The field and the method are injected 3 times, but their keys are built only once
+            Assert.assertEquals(6, recordingProcessor.cacheKeys.size());
+            Assert.assertEquals(2, recordingProcessor.builtCacheKeys);
+            for (int i = 2; i < recordingProcessor.cacheKeys.size(); i++) {
+                Assert.assertSame(recordingProcessor.cacheKeys.get(i % 2), recordingProcessor.cacheKeys.get(i));
+            }
+            // The equal keys of different elements share the same injected-object
+            Assert.assertEquals(recordingProcessor.cacheKeys.get(0), recordingProcessor.cacheKeys.get(1));
+            Assert.assertEquals(recordingProcessor.cacheKeys.get(0).hashCode(), recordingProcessor.cacheKeys.get(1).hashCode());
+            Assert.assertEquals(1, recordingProcessor.getInjectedObjects().size());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testInjectionElementsSharedByBeanNames() throws Exception {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(SameClassConfiguration.class, ScanCountingBeanPostProcessor.class);
+        context.refresh();
+        try {
+            Class<?> beanClass = AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent.class;
+            User user = context.getBean(User.class);
+            Assert.assertEquals(user, ((AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent) context.getBean("parent1")).parentUser);
+            Assert.assertEquals(user, ((AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent) context.getBean("parent2")).parentUser);
+
+            ScanCountingBeanPostProcessor countingProcessor = context.getBean(ScanCountingBeanPostProcessor.class);
+            // The class is scanned only once
+            Field field = beanClass.getDeclaredField("parentUser");
+            Assert.assertEquals(1, countingProcessor.scannedFields.size());
+            Assert.assertEquals(field, countingProcessor.scannedFields.get(0));
+
+            // but each bean name has its own metadata and checked members
+            Map<String, InjectionMetadata> injectionMetadataCache = (Map<String, InjectionMetadata>)
+                    ReflectionTestUtils.getField(countingProcessor, "injectionMetadataCache");
+            Assert.assertNotNull(injectionMetadataCache.get("parent1"));
+            Assert.assertNotNull(injectionMetadataCache.get("parent2"));
+            Assert.assertNotSame(injectionMetadataCache.get("parent1"), injectionMetadataCache.get("parent2"));
+            for (String beanName : new String[]{"parent1", "parent2"}) {
+                RootBeanDefinition beanDefinition = (RootBeanDefinition) context.getBeanFactory().getMergedBeanDefinition(beanName);
+                Assert.assertTrue(beanName, beanDefinition.isExternallyManagedConfigMember(field));
+            }
+
+            Map<Class<?>, Object> injectionElementsCache = (Map<Class<?>, Object>)
+                    ReflectionTestUtils.getField(countingProcessor, "injectionElementsCache");
+            Assert.assertEquals(1, injectionElementsCache.size());
+            Assert.assertTrue(injectionElementsCache.containsKey(beanClass));
+
+            countingProcessor.destroy();
+
+            Assert.assertTrue(injectionElementsCache.isEmpty());
+            Assert.assertTrue(injectionMetadataCache.isEmpty());
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testInjectorsResolved() {
+        for (InjectionMetadata.InjectedElement element : processor.getInjectedFieldObjectsMap().keySet()) {
+            Assert.assertNotNull(element.getMember().toString(), getInjector(element));
+        }
+        for (InjectionMetadata.InjectedElement element : processor.getInjectedMethodObjectsMap().keySet()) {
+            Assert.assertNotNull(element.getMember().toString(), getInjector(element));
+        }
+    }
+
+    @Test
+    public void testFinalFieldInjectedByReflection() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(PrototypeConfiguration.class, FinalUserHolder.class, ReferencedAnnotationInjectedBeanPostProcessor.class);
+        context.refresh();
+        try {
+            Assert.assertEquals(context.getBean(User.class), context.getBean(FinalUserHolder.class).user);
+            AbstractAnnotationBeanPostProcessor reflectionProcessor = context.getBean(AbstractAnnotationBeanPostProcessor.class);
+            int finalFieldElements = 0;
+            for (InjectionMetadata.InjectedElement element : reflectionProcessor.getInjectedFieldObjectsMap().keySet()) {
+                if (FinalUserHolder.class.equals(element.getMember().getDeclaringClass())) {
+                    Assert.assertNull(getInjector(element));
+                    finalFieldElements++;
+                }
+            }
+            Assert.assertEquals(1, finalFieldElements);
+        } finally {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testResolveInjectorOfMethod() throws Exception {
+        Assert.assertNotNull(resolveInjector(InjectorMethods.class.getDeclaredMethod("setUser", User.class)));
+        // Not the single-argument method
+        Assert.assertNull(resolveInjector(InjectorMethods.class.getDeclaredMethod("setUsers", User.class, User.class)));
+        // The handle can't be adapted to the type of injector
+        Assert.assertNull(resolveInjector(InjectorMethods.class.getDeclaredMethod("setStaticUser", User.class)));
+    }
+
+    @Test
+    public void testResolveInjectorOfField() throws Exception {
+        Assert.assertNotNull(resolveInjector(InjectorFields.class.getDeclaredField("user")));
+        Assert.assertNull(resolveInjector(InjectorFields.class.getDeclaredField("finalUser")));
+        // The handle can't be adapted to the type of injector
+        Assert.assertNull(resolveInjector(InjectorFields.class.getDeclaredField("staticUser")));
+    }
+
+    @Test
+    public void testInjectorMismatchedType() {
+        Throwable cause = refreshForFailure(PrototypeConfiguration.class, InjectorFields.class,
+                MismatchedAnnotationInjectedBeanPostProcessor.class);
+        Assert.assertTrue(String.valueOf(cause), cause instanceof IllegalArgumentException);
+    }
+
+    @Test
+    public void testInjectorTargetException() {
+        Throwable cause = refreshForFailure(PrototypeConfiguration.class, ThrowingUserHolder.class,
+                ReferencedAnnotationInjectedBeanPostProcessor.class);
+        Assert.assertTrue(String.valueOf(cause), cause instanceof InvocationTargetException);
+        Assert.assertTrue(((InvocationTargetException) cause).getTargetException() instanceof IllegalStateException);
+    }
+
+    private static MethodHandle getInjector(InjectionMetadata.InjectedElement element) {
+        return (MethodHandle) ReflectionTestUtils.getField(element, "injector");
+    }
+
+    private MethodHandle resolveInjector(Object member) {
+        return ReflectionTestUtils.invokeMethod(processor, "resolveInjector", member);
+    }
+
+    private static Throwable refreshForFailure(Class<?>... componentClasses) {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        context.register(componentClasses);
+        try {
+            context.refresh();
+        } catch (BeanCreationException e) {
+            return e.getCause();
+        } finally {
+            context.close();
+        }
+        throw new AssertionError("The injection should be failed");
+    }
+
     public static class ReferencedAnnotationInjectedBeanPostProcessor extends AbstractAnnotationBeanPostProcessor {
 
         public ReferencedAnnotationInjectedBeanPostProcessor() {
@@ -112,6 +302,137 @@ public class AbstractAnnotationBeanPostProcessorTest {
         }
     }
 
+    static class SameClassConfiguration {
+
+        @Bean
+        public User user() {
+            User user = new User();
+            user.setName("mercyblitz");
+            user.setAge(32);
+            return user;
+        }
+
+        @Bean
+        public AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent parent1() {
+            return new AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent();
+        }
+
+        @Bean
+        public AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent parent2() {
+            return new AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent();
+        }
+    }
+
+    static class ScanCountingBeanPostProcessor extends ReferencedAnnotationInjectedBeanPostProcessor {
+
+        private final List<Field> scannedFields = new ArrayList<Field>();
+
+        @Override
+        protected AnnotationAttributes doGetAnnotationAttributes(AnnotatedElement annotatedElement,
+                                                                 Class<? extends Annotation> annotationType) {
+            AnnotationAttributes attributes = super.doGetAnnotationAttributes(annotatedElement, annotationType);
+            if (attributes != null && annotatedElement instanceof Field) {
+                scannedFields.add((Field) annotatedElement);
+            }
+            return attributes;
+        }
+    }
+
+    static class PrototypeConfiguration {
+
+        @Bean
+        public User user() {
+            User user = new User();
+            user.setName("mercyblitz");
+            user.setAge(32);
+            return user;
+        }
+
+        @Bean
+        @Scope(BeanDefinition.SCOPE_PROTOTYPE)
+        public AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent parent() {
+            return new AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent();
+        }
+    }
+
+    static class CacheKeysRecordingBeanPostProcessor extends ReferencedAnnotationInjectedBeanPostProcessor {
+
+        private final List<Object> cacheKeys = new ArrayList<Object>();
+
+        private int builtCacheKeys;
+
+        @Override
+        protected Object getInjectedObjectCacheKey(AnnotationAttributes attributes, Object bean, String beanName,
+                                                   Class<?> injectedType, InjectionMetadata.InjectedElement injectedElement) {
+            Object cacheKey = super.getInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+            cacheKeys.add(cacheKey);
+            return cacheKey;
+        }
+
+        @Override
+        protected String buildInjectedObjectCacheKey(AnnotationAttributes attributes, Object bean, String beanName,
+                                                     Class<?> injectedType, InjectionMetadata.InjectedElement injectedElement) {
+            builtCacheKeys++;
+            return super.buildInjectedObjectCacheKey(attributes, bean, beanName, injectedType, injectedElement);
+        }
+    }
+
+    static class CacheKeysReusingBeanPostProcessor extends CacheKeysRecordingBeanPostProcessor {
+
+        CacheKeysReusingBeanPostProcessor() {
+            setReuseInjectedObjectCacheKeys(true);
+        }
+    }
+
+    static class FinalUserHolder {
+
+        @AnnotationInjectedBeanPostProcessorTest.Referenced
+        final User user;
+
+        FinalUserHolder() {
+            this.user = null;
+        }
+    }
+
+    static class ThrowingUserHolder {
+
+        @AnnotationInjectedBeanPostProcessorTest.Referenced
+        public void setUser(User user) {
+            throw new IllegalStateException("Failed to set " + user);
+        }
+    }
+
+    static class InjectorFields {
+
+        @AnnotationInjectedBeanPostProcessorTest.Referenced
+        User user;
+
+        final User finalUser = null;
+
+        static User staticUser;
+    }
+
+    static class InjectorMethods {
+
+        public void setUser(User user) {
+        }
+
+        public void setUsers(User user, User anotherUser) {
+        }
+
+        public static void setStaticUser(User user) {
+        }
+    }
+
+    static class MismatchedAnnotationInjectedBeanPostProcessor extends ReferencedAnnotationInjectedBeanPostProcessor {
+
+        @Override
+        protected Object doGetInjectedBean(AnnotationAttributes attributes, Object bean, String beanName,
+                                           Class<?> injectedType, InjectionMetadata.InjectedElement injectedElement) {
+            return "Not a " + injectedType.getName();
+        }
+    }
+
     public static class GenericConfiguration {
 
 
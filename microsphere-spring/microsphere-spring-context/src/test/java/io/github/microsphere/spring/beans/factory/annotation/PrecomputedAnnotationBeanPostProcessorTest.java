@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.beans.factory.annotation;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+import org.springframework.core.annotation.AnnotationAttributes;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit4.SpringJUnit4ClassRunner;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AnnotatedElement;
+import java.lang.reflect.Member;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.newSetFromMap;
+
+/**
+ * {@link AbstractAnnotationBeanPostProcessor} Test with the precomputation of injection metadata
+ *
+ * @see AbstractAnnotationBeanPostProcessor#setPrecomputationThreads(int)
+ */
+@RunWith(SpringJUnit4ClassRunner.class)
+@ContextConfiguration(classes = {
+        AnnotationInjectedBeanPostProcessorTest.TestConfiguration.class,
+        PrecomputedAnnotationBeanPostProcessorTest.PrecomputedAnnotationInjectedBeanPostProcessor.class,
+        AbstractAnnotationBeanPostProcessorTest.GenericConfiguration.class,
+})
+public class PrecomputedAnnotationBeanPostProcessorTest {
+
+    @Autowired
+    @Qualifier("parent")
+    private AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent parent;
+
+    @Autowired
+    @Qualifier("child")
+    private AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Child child;
+
+    @Autowired
+    private AnnotationInjectedBeanPostProcessorTest.TestConfiguration.UserHolder userHolder;
+
+    @Autowired
+    private AbstractAnnotationBeanPostProcessor processor;
+
+    @Autowired
+    private AbstractAnnotationBeanPostProcessorTest.GenericConfiguration.GenericChild genericChild;
+
+    @Test
+    public void testInjectedObjects() {
+        Assert.assertEquals(1, processor.getInjectedObjects().size());
+        Assert.assertTrue(processor.getInjectedObjects().contains(parent.parentUser));
+        Assert.assertEquals(3, processor.getInjectedFieldObjectsMap().size());
+        Assert.assertEquals(1, processor.getInjectedMethodObjectsMap().size());
+    }
+
+    @Test
+    public void testPrecomputedBeforeFirstBeanProcessed() {
+        PrecomputedAnnotationInjectedBeanPostProcessor precomputedProcessor =
+                (PrecomputedAnnotationInjectedBeanPostProcessor) processor;
+        // All annotated classes had been introspected when the first bean definition was processed
+        Assert.assertTrue(precomputedProcessor.introspectedClassesOnFirstBean.containsAll(asList(
+                AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Parent.class,
+                AnnotationInjectedBeanPostProcessorTest.TestConfiguration.Child.class,
+                AnnotationInjectedBeanPostProcessorTest.TestConfiguration.UserHolder.class,
+                AbstractAnnotationBeanPostProcessorTest.GenericConfiguration.GenericParent.class)));
+        // by the pool threads rather than the thread creating the beans
+        Assert.assertFalse(precomputedProcessor.introspectingThreadNames.isEmpty());
+        for (String threadName : precomputedProcessor.introspectingThreadNames) {
+            Assert.assertTrue(threadName, threadName.startsWith(
+                    PrecomputedAnnotationInjectedBeanPostProcessor.class.getSimpleName() + "-Precomputation-"));
+        }
+    }
+
+    @Test
+    public void testReferencedUser() {
+        Assert.assertEquals("mercyblitz", parent.user.getName());
+        Assert.assertEquals(32, parent.user.getAge());
+        Assert.assertEquals(parent.user, parent.parentUser);
+        Assert.assertEquals(parent.user, child.childUser);
+        Assert.assertEquals(parent.user, userHolder.user);
+        Assert.assertEquals(parent.user, genericChild.getS());
+    }
+
+    public static class PrecomputedAnnotationInjectedBeanPostProcessor extends
+            AbstractAnnotationBeanPostProcessorTest.ReferencedAnnotationInjectedBeanPostProcessor {
+
+        private final Set<Class<?>> introspectedClasses = newSetFromMap(new ConcurrentHashMap<Class<?>, Boolean>());
+
+        private final Set<String> introspectingThreadNames = newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+        private volatile Set<Class<?>> introspectedClassesOnFirstBean;
+
+        public PrecomputedAnnotationInjectedBeanPostProcessor() {
+            setPrecomputationThreads(2);
+        }
+
+        @Override
+        protected AnnotationAttributes doGetAnnotationAttributes(AnnotatedElement annotatedElement,
+                                                                 Class<? extends Annotation> annotationType) {
+            AnnotationAttributes attributes = super.doGetAnnotationAttributes(annotatedElement, annotationType);
+            if (attributes != null) {
+                introspectedClasses.add(((Member) annotatedElement).getDeclaringClass());
+                introspectingThreadNames.add(Thread.currentThread().getName());
+            }
+            return attributes;
+        }
+
+        @Override
+        public void postProcessMergedBeanDefinition(RootBeanDefinition beanDefinition, Class<?> beanType, String beanName) {
+            super.postProcessMergedBeanDefinition(beanDefinition, beanType, beanName);
+            if (introspectedClassesOnFirstBean == null) {
+                introspectedClassesOnFirstBean = new HashSet<Class<?>>(introspectedClasses);
+            }
+        }
+    }
+}
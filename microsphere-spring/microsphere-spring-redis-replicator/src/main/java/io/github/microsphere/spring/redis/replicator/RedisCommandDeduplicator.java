@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import io.github.microsphere.spring.redis.replicator.util.SequenceWindow;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.lang.Nullable;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The deduplicator of the replicated Redis commands keyed by (source, sequence), which guards the non-idempotent
+ * commands (e.g. "INCR", "LPUSH", "HINCRBY") against the redelivery and the retries of producer.
+ * <p>
+ * Each source has a compact {@link SequenceWindow sliding-window bitmap} in memory, thus the duplicates are evaluated at
+ * the cost of a few bytes per source rather than a lookup per key. The source must be the scope that its sequences are
+ * monotonic in, e.g. the source id with the topic partition.
+ * <p>
+ * The {@link SequenceWindow#getWatermark() watermarks} are optionally checkpointed into a Redis hash, which are restored
+ * when the sources are seen at the first time, thus the duplicates after the restart are dropped as well. Each watermark is
+ * stored with the time of its checkpoint, the ones of the sources that are not checkpointed within the time to live are
+ * pruned, since the expiration of the hash is renewed by any active source.
+ * <p>
+ * The instance is thread-safe.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see SequenceWindow
+ * @since 1.0.0
+ */
+public class RedisCommandDeduplicator {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCommandDeduplicator.class);
+
+    /**
+     * The separator between the watermark and the time of checkpoint in the value of hash
+     */
+    private static final char CHECKPOINT_TIME_SEPARATOR = ':';
+
+    /**
+     * The script deletes the fields of hash whose checkpoint time is earlier than ARGV[1], the legacy values without
+     * the time are regarded as stale, KEYS[1] : the key of hash, returns the count of the deleted fields
+     */
+    private static final byte[] PRUNE_SCRIPT = ("local entries = redis.call('HGETALL', KEYS[1]) " +
+            "local pruned = 0 " +
+            "for i = 1, #entries, 2 do " +
+            "local time = tonumber(string.match(entries[i + 1], ':(%d+)$')) " +
+            "if time == nil or time < tonumber(ARGV[1]) then " +
+            "redis.call('HDEL', KEYS[1], entries[i]) pruned = pruned + 1 end " +
+            "end " +
+            "return pruned").getBytes(UTF_8);
+
+    private final int windowSize;
+
+    private final long idleTimeout;
+
+    @Nullable
+    private final RedisConnectionFactory checkpointConnectionFactory;
+
+    private final byte[] checkpointKey;
+
+    private final long checkpointTimeToLive;
+
+    private final ConcurrentMap<String, SourceWindow> sourceWindows = new ConcurrentHashMap<>();
+
+    private volatile long lastPruneTime = System.currentTimeMillis();
+
+    /**
+     * The windows without the checkpoint
+     *
+     * @param windowSize  the size of window per source
+     * @param idleTimeout the timeout in milliseconds that the window of the idle source is evicted
+     */
+    public RedisCommandDeduplicator(int windowSize, long idleTimeout) {
+        this(windowSize, idleTimeout, null, null, 0);
+    }
+
+    /**
+     * @param windowSize                  the size of window per source
+     * @param idleTimeout                 the timeout in milliseconds that the window of the idle source is evicted
+     * @param checkpointConnectionFactory the raw {@link RedisConnectionFactory} of the checkpoint, <code>null</code>
+     *                                    if disabled
+     * @param checkpointKey               the key of Redis hash of the checkpoint
+     * @param checkpointTimeToLive        the time to live in milliseconds of the checkpoint, which is renewed
+     *                                    on each checkpoint
+     */
+    public RedisCommandDeduplicator(int windowSize, long idleTimeout, @Nullable RedisConnectionFactory checkpointConnectionFactory,
+                                    @Nullable String checkpointKey, long checkpointTimeToLive) {
+        this.windowSize = windowSize;
+        this.idleTimeout = idleTimeout;
+        this.checkpointConnectionFactory = checkpointConnectionFactory;
+        this.checkpointKey = checkpointKey == null ? null : checkpointKey.getBytes(UTF_8);
+        this.checkpointTimeToLive = checkpointTimeToLive;
+    }
+
+    /**
+     * Whether the sequence of source was applied or not, which does not change the window
+     *
+     * @param source   the source
+     * @param sequence the sequence, <code>-1</code> if unassigned
+     * @return <code>true</code> if duplicate, <code>false</code> if the source or the sequence is unknown
+     */
+    public boolean isDuplicate(@Nullable String source, long sequence) {
+        if (source == null || sequence < 0) {
+            return false;
+        }
+        return getSourceWindow(source).window.contains(sequence);
+    }
+
+    /**
+     * Mark the sequence of source applied
+     *
+     * @param source   the source
+     * @param sequence the sequence, <code>-1</code> if unassigned
+     */
+    public void markApplied(@Nullable String source, long sequence) {
+        if (source == null || sequence < 0) {
+            return;
+        }
+        SourceWindow sourceWindow = getSourceWindow(source);
+        sourceWindow.window.mark(sequence);
+        sourceWindow.lastAccessTime = System.currentTimeMillis();
+        sourceWindow.dirty = true;
+    }
+
+    private SourceWindow getSourceWindow(String source) {
+        SourceWindow sourceWindow = sourceWindows.get(source);
+        if (sourceWindow == null) {
+            sourceWindow = sourceWindows.computeIfAbsent(source, this::createSourceWindow);
+        }
+        return sourceWindow;
+    }
+
+    private SourceWindow createSourceWindow(String source) {
+        long watermark = restoreWatermark(source);
+        return new SourceWindow(new SequenceWindow(windowSize, watermark));
+    }
+
+    private long restoreWatermark(String source) {
+        if (checkpointConnectionFactory == null) {
+            return -1;
+        }
+        try (RedisConnection connection = checkpointConnectionFactory.getConnection()) {
+            byte[] value = connection.hGet(checkpointKey, source.getBytes(UTF_8));
+            long watermark = value == null ? -1 : parseWatermark(new String(value, UTF_8));
+            logger.debug("The watermark of source['{}'] is restored : {}", source, watermark);
+            return watermark;
+        } catch (Throwable e) {
+            logger.warn("Failed to restore the watermark of source['{}'], the duplicates before the restart may be applied", source, e);
+            return -1;
+        }
+    }
+
+    /**
+     * Checkpoint the watermarks of the changed sources into Redis if enabled, and evict the windows of idle sources,
+     * the watermarks of the sources that are not checkpointed within the time to live are pruned once per the idle timeout
+     * at most
+     */
+    public void checkpoint() {
+        Map<byte[], byte[]> watermarks = new HashMap<>();
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, SourceWindow>> iterator = sourceWindows.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, SourceWindow> entry = iterator.next();
+            SourceWindow sourceWindow = entry.getValue();
+            if (sourceWindow.dirty) {
+                sourceWindow.dirty = false;
+                long watermark = sourceWindow.window.getWatermark();
+                if (watermark > -1) {
+                    watermarks.put(entry.getKey().getBytes(UTF_8), formatWatermark(watermark, now).getBytes(UTF_8));
+                }
+            } else if (now - sourceWindow.lastAccessTime > idleTimeout) {
+                iterator.remove();
+                logger.debug("The window of idle source['{}'] is evicted", entry.getKey());
+            }
+        }
+        if (checkpointConnectionFactory == null) {
+            return;
+        }
+        if (!watermarks.isEmpty()) {
+            try (RedisConnection connection = checkpointConnectionFactory.getConnection()) {
+                connection.hMSet(checkpointKey, watermarks);
+                connection.pExpire(checkpointKey, checkpointTimeToLive);
+                logger.debug("The watermarks of sources are checkpointed, size : {}", watermarks.size());
+            } catch (Throwable e) {
+                logger.warn("Failed to checkpoint the watermarks of sources, size : {}", watermarks.size(), e);
+            }
+        }
+        if (now - lastPruneTime >= Math.min(idleTimeout, checkpointTimeToLive)) {
+            lastPruneTime = now;
+            pruneWatermarks(now - checkpointTimeToLive);
+        }
+    }
+
+    /**
+     * Prune the watermarks of the sources that are checkpointed before the time
+     *
+     * @param checkpointTime the time of checkpoint
+     */
+    private void pruneWatermarks(long checkpointTime) {
+        try (RedisConnection connection = checkpointConnectionFactory.getConnection()) {
+            Long pruned = connection.eval(PRUNE_SCRIPT, ReturnType.INTEGER, 1, checkpointKey,
+                    String.valueOf(checkpointTime).getBytes(UTF_8));
+            logger.debug("The stale watermarks of sources are pruned, size : {}", pruned);
+        } catch (Throwable e) {
+            logger.warn("Failed to prune the stale watermarks of sources", e);
+        }
+    }
+
+    /**
+     * @param watermark      the watermark
+     * @param checkpointTime the time of checkpoint
+     * @return the value of hash, e.g. "100:1700000000000"
+     */
+    static String formatWatermark(long watermark, long checkpointTime) {
+        return String.valueOf(watermark) + CHECKPOINT_TIME_SEPARATOR + checkpointTime;
+    }
+
+    /**
+     * @param value the value of hash, which may be the legacy watermark without the time of checkpoint
+     * @return the watermark
+     */
+    static long parseWatermark(String value) {
+        int index = value.indexOf(CHECKPOINT_TIME_SEPARATOR);
+        return Long.parseLong(index < 0 ? value : value.substring(0, index));
+    }
+
+    /**
+     * @return the count of the sources in memory
+     */
+    public int getSourceCount() {
+        return sourceWindows.size();
+    }
+
+    private static class SourceWindow {
+
+        private final SequenceWindow window;
+
+        private volatile long lastAccessTime = System.currentTimeMillis();
+
+        private volatile boolean dirty;
+
+        private SourceWindow(SequenceWindow window) {
+            this.window = window;
+        }
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import io.github.microsphere.spring.redis.metadata.RedisMetadataRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.lang.Nullable;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+
+import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findMethodIndex;
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * The invokers of Redis command methods, each {@link Method} is resolved once into a {@link MethodHandle} bound to the
+ * command object of {@link RedisConnection} (e.g. {@link RedisConnection#stringCommands()}) and adapted to a spreader
+ * of the arguments, the type of invoker is <code>(RedisConnection, Object[])Object</code>.
+ * <p>
+ * The invokers are cached in an array indexed by the {@link RedisMetadataRepository#findMethodIndex(Method) method index},
+ * thus the reflective access checks are removed from the apply loop. The methods that can't be resolved are cached as
+ * well, thus they are resolved and logged only once.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisCommandReplicator
+ * @since 1.0.0
+ */
+public abstract class RedisCommandInvokers {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCommandInvokers.class);
+
+    static final MethodType INVOKER_TYPE = methodType(Object.class, RedisConnection.class, Object[].class);
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+    private static final Object lock = new Object();
+
+    /**
+     * The placeholder of the methods that can't be resolved, which is never invoked
+     */
+    private static final MethodHandle UNRESOLVED_INVOKER = MethodHandles.identity(Object.class);
+
+    /**
+     * The invokers indexed by the method index, which grows on demand and is published as a whole
+     */
+    private static volatile MethodHandle[] invokers = new MethodHandle[0];
+
+    /**
+     * Get the invoker of Redis command method
+     *
+     * @param method the Redis command method
+     * @return <code>null</code> if the method has no index or can't be resolved
+     */
+    @Nullable
+    public static MethodHandle getInvoker(Method method) {
+        Short methodIndex = findMethodIndex(method);
+        if (methodIndex == null) {
+            return null;
+        }
+        int index = methodIndex;
+        MethodHandle[] invokers = RedisCommandInvokers.invokers;
+        MethodHandle invoker = index < invokers.length ? invokers[index] : null;
+        if (invoker == null) {
+            invoker = resolveInvoker(index, method);
+        }
+        return invoker == UNRESOLVED_INVOKER ? null : invoker;
+    }
+
+    /**
+     * Invoke the Redis command method
+     *
+     * @param redisConnection {@link RedisConnection}
+     * @param invoker         the invoker from {@link #getInvoker(Method)}
+     * @param args            the arguments
+     * @return the result of command
+     * @throws Throwable the failure of command
+     */
+    public static Object invoke(RedisConnection redisConnection, MethodHandle invoker, Object[] args) throws Throwable {
+        return (Object) invoker.invokeExact(redisConnection, args);
+    }
+
+    private static MethodHandle resolveInvoker(int index, Method method) {
+        synchronized (lock) {
+            MethodHandle[] invokers = RedisCommandInvokers.invokers;
+            MethodHandle invoker = index < invokers.length ? invokers[index] : null;
+            if (invoker != null) {
+                return invoker;
+            }
+            try {
+                invoker = createInvoker(method);
+                logger.debug("The invoker of Redis command method[{}] is resolved, index : {}", method, index);
+            } catch (Throwable e) {
+                logger.warn("The invoker of Redis command method[{}] can't be resolved, the reflection will be used", method, e);
+                invoker = UNRESOLVED_INVOKER;
+            }
+            MethodHandle[] newInvokers = index < invokers.length ? invokers.clone() : Arrays.copyOf(invokers, index + 1);
+            newInvokers[index] = invoker;
+            RedisCommandInvokers.invokers = newInvokers;
+            return invoker;
+        }
+    }
+
+    static MethodHandle createInvoker(Method method) throws IllegalAccessException {
+        MethodHandle handle = lookup.unreflect(method).asFixedArity();
+        Method bindingMethod = findBindingMethod(method.getDeclaringClass());
+        if (bindingMethod == null) {
+            // The method is declared by RedisConnection or its super interfaces
+            handle = handle.asType(handle.type().changeParameterType(0, RedisConnection.class));
+        } else {
+            handle = MethodHandles.filterArguments(handle, 0, lookup.unreflect(bindingMethod));
+        }
+        return handle.asSpreader(Object[].class, method.getParameterCount()).asType(INVOKER_TYPE);
+    }
+
+    /**
+     * Find the method of {@link RedisConnection} binding the command object, e.g. {@link RedisConnection#keyCommands()}
+     *
+     * @param redisCommandInterface the interface of Redis commands
+     * @return <code>null</code> if not found
+     */
+    private static Method findBindingMethod(Class<?> redisCommandInterface) {
+        for (Method method : RedisConnection.class.getMethods()) {
+            if (method.getParameterCount() == 0 && redisCommandInterface.equals(method.getReturnType())) {
+                return method;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.lang.Nullable;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * The applier of the replicated records from a transport (e.g. Kafka), which applies them at least once :
+ * <ul>
+ *     <li>The records originated from the local cluster and the duplicates are dropped</li>
+ *     <li>The commands that are not applied are retried with the backoff, and then split into the single records if they
+ *     still fail, the poison records are passed to {@link #onFailed(Object, Throwable)}</li>
+ *     <li>The applied commands are never replayed in place, if they are unknown (e.g. "EXEC" fails), the records are
+ *     passed to {@link #onFailed(Object, Throwable)} unless the failure is transient</li>
+ * </ul>
+ * The failure will be thrown, thus the records are not acknowledged and will be redelivered, if it's transient (e.g. the
+ * Redis connection is lost), or the deadline is exceeded. The redelivered records that are applied are dropped by the
+ * {@link RedisCommandDeduplicator deduplicator} if enabled.
+ * <p>
+ * The commands are applied by {@link RedisCommandReplicator#replicate(List)} directly rather than the events, thus they
+ * are never acknowledged unless applied, the records are redelivered if the {@link RedisCommandReplicator} is absent.
+ * The {@link RedisCommandReplicatedEvent events} are {@link RedisCommandReplicatedEvent#markApplied() marked applied} and
+ * then published to the {@link ApplicationEventPublisher} if present, thus the listeners are notified once they are
+ * applied.
+ * <p>
+ * The instance is thread-safe.
+ *
+ * @param <R> the type of record
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisCommandReplicator
+ * @see RedisCommandReplicationException
+ * @see RedisCommandDeduplicator
+ * @since 1.0.0
+ */
+public abstract class RedisCommandReplicationApplier<R> {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCommandReplicationApplier.class);
+
+    @Nullable
+    private final RedisCommandReplicator redisCommandReplicator;
+
+    private final BackOff retryBackOff;
+
+    private final int retryMaxRetries;
+
+    @Nullable
+    private final RedisCommandDeduplicator deduplicator;
+
+    private final long deduplicatorCheckpointInterval;
+
+    @Nullable
+    private final ApplicationEventPublisher applicationEventPublisher;
+
+    private volatile long lastDeduplicatorCheckpointTime;
+
+    /**
+     * @param redisCommandReplicator         the {@link RedisCommandReplicator}, <code>null</code> if absent
+     * @param retryBackOff                   the backoff of retries
+     * @param retryMaxRetries                the max retries
+     * @param deduplicator                   the deduplicator, <code>null</code> if disabled
+     * @param deduplicatorCheckpointInterval the interval in milliseconds of the deduplicator's checkpoints
+     */
+    protected RedisCommandReplicationApplier(@Nullable RedisCommandReplicator redisCommandReplicator, BackOff retryBackOff,
+                                             int retryMaxRetries, @Nullable RedisCommandDeduplicator deduplicator,
+                                             long deduplicatorCheckpointInterval) {
+        this(redisCommandReplicator, retryBackOff, retryMaxRetries, deduplicator, deduplicatorCheckpointInterval, null);
+    }
+
+    /**
+     * @param redisCommandReplicator         the {@link RedisCommandReplicator}, <code>null</code> if absent
+     * @param retryBackOff                   the backoff of retries
+     * @param retryMaxRetries                the max retries
+     * @param deduplicator                   the deduplicator, <code>null</code> if disabled
+     * @param deduplicatorCheckpointInterval the interval in milliseconds of the deduplicator's checkpoints
+     * @param applicationEventPublisher      the publisher of the applied events, <code>null</code> if they are not published
+     */
+    protected RedisCommandReplicationApplier(@Nullable RedisCommandReplicator redisCommandReplicator, BackOff retryBackOff,
+                                             int retryMaxRetries, @Nullable RedisCommandDeduplicator deduplicator,
+                                             long deduplicatorCheckpointInterval, @Nullable ApplicationEventPublisher applicationEventPublisher) {
+        this.redisCommandReplicator = redisCommandReplicator;
+        this.retryBackOff = retryBackOff;
+        this.retryMaxRetries = retryMaxRetries;
+        this.deduplicator = deduplicator;
+        this.deduplicatorCheckpointInterval = deduplicatorCheckpointInterval;
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    /**
+     * Apply the records without the deadline
+     *
+     * @param data the records in order
+     * @throws RuntimeException if the failure is transient
+     */
+    public void apply(List<R> data) throws RuntimeException {
+        apply(data, Long.MAX_VALUE);
+    }
+
+    /**
+     * Apply the records
+     *
+     * @param data     the records in order
+     * @param deadline the deadline in milliseconds of applying the records including the retries
+     * @throws RuntimeException if the failure is transient, the deadline is exceeded or the {@link RedisCommandReplicator}
+     *                          is absent
+     */
+    public void apply(List<R> data, long deadline) throws RuntimeException {
+        int size = data.size();
+        List<R> records = new ArrayList<>(size);
+        List<RedisCommandReplicatedEvent> events = new ArrayList<>(size);
+        Set<String> batchSequences = null;
+        for (int i = 0; i < size; i++) {
+            R record = data.get(i);
+            if (isLocallyOriginated(record)) {
+                logger.debug("[Redis-Replicator-C-S] The Redis Replicator record originated from the local cluster is dropped : {}", describe(record));
+                continue;
+            }
+            String source = getDeduplicationSource(record);
+            if (source != null) {
+                long sequence = getSequence(record);
+                if (batchSequences == null) {
+                    batchSequences = new HashSet<>();
+                }
+                // The duplicates are evaluated against both the applied sequences and the ones in this batch
+                if (deduplicator.isDuplicate(source, sequence) || (sequence > -1 && !batchSequences.add(source + '#' + sequence))) {
+                    logger.debug("[Redis-Replicator-C-S] The duplicate Redis Replicator record is dropped : {}, sequence: {}", describe(record), sequence);
+                    continue;
+                }
+            }
+            try {
+                events.add(createEvent(record));
+                records.add(record);
+            } catch (Throwable e) {
+                logger.warn("[Redis-Replicator-C-F] fails to process a Redis Replicator record : {}", describe(record), e);
+                onFailed(record, e);
+            }
+        }
+
+        if (events.isEmpty()) {
+            return;
+        }
+
+        if (redisCommandReplicator == null) {
+            throw new IllegalStateException("The RedisCommandReplicator is absent, the Redis Replicator events can't be applied, they will be redelivered");
+        }
+
+        Throwable failure = applyWithRetry(records, events, deadline);
+        if (failure == null) {
+            return;
+        }
+
+        logger.warn("[Redis-Replicator-C-F] fails to apply the batch of Redis Replicator events, the unapplied ones will be applied one by one, size: {}", events.size(), failure);
+        for (int i = 0, eventsSize = events.size(); i < eventsSize; i++) {
+            R record = records.get(i);
+            failure = applyWithRetry(new ArrayList<>(singletonList(record)), new ArrayList<>(singletonList(events.get(i))), deadline);
+            if (failure != null) {
+                onFailed(record, failure);
+            }
+        }
+    }
+
+    /**
+     * Apply the events with the retry backoff, the applied ones are recorded and removed from the lists, thus only the
+     * unapplied ones are retried.
+     *
+     * @param records  the records of events, only the unapplied ones are retained after the return
+     * @param events   the events, only the unapplied ones are retained after the return
+     * @param deadline the deadline of retries
+     * @return the last failure if the retries are exhausted, or <code>null</code> if applied or passed to
+     * {@link #onFailed(Object, Throwable)}
+     * @throws RuntimeException if the failure is transient, or the deadline is exceeded
+     */
+    private Throwable applyWithRetry(List<R> records, List<RedisCommandReplicatedEvent> events, long deadline) {
+        BackOffExecution backOffExecution = retryBackOff.start();
+        int retries = 0;
+        while (true) {
+            try {
+                redisCommandReplicator.replicate(events);
+                recordApplied(records, events);
+                return null;
+            } catch (RuntimeException e) {
+                if (!retainUnapplied(records, events, e)) {
+                    handleUnknownOutcome(records, e);
+                    return null;
+                }
+                if (retries++ >= retryMaxRetries) {
+                    if (isTransientFailure(e)) {
+                        throw e;
+                    }
+                    return e;
+                }
+                long interval = backOffExecution.nextBackOff();
+                if (interval == BackOffExecution.STOP || System.currentTimeMillis() + interval > deadline) {
+                    throw new IllegalStateException("The deadline of applying the Redis Replicator events is exceeded, they will be redelivered", e);
+                }
+                logger.debug("[Redis-Replicator-C-F] fails to apply the Redis Replicator events, size: {}, it will be retried in {} ms", events.size(), interval, e);
+                sleep(interval);
+            }
+        }
+    }
+
+    /**
+     * Record the applied events and retain the unapplied ones
+     *
+     * @param records the records of events
+     * @param events  the events
+     * @param failure the failure of applying
+     * @return <code>false</code> if the applied events are unknown, they must not be replayed in place
+     */
+    private boolean retainUnapplied(List<R> records, List<RedisCommandReplicatedEvent> events, RuntimeException failure) {
+        if (!(failure instanceof RedisCommandReplicationException) || !((RedisCommandReplicationException) failure).isOutcomeKnown()) {
+            return false;
+        }
+        RedisCommandReplicationException replicationException = (RedisCommandReplicationException) failure;
+        if (replicationException.getAppliedCount() < 1) {
+            return true;
+        }
+        long appliedTime = System.currentTimeMillis();
+        int retained = 0;
+        for (int i = 0, size = events.size(); i < size; i++) {
+            R record = records.get(i);
+            RedisCommandReplicatedEvent event = events.get(i);
+            if (replicationException.isApplied(i)) {
+                recordApplied(record, event, appliedTime);
+            } else {
+                records.set(retained, record);
+                events.set(retained++, event);
+            }
+        }
+        records.subList(retained, records.size()).clear();
+        events.subList(retained, events.size()).clear();
+        return true;
+    }
+
+    /**
+     * The records whose events may have been applied are passed to {@link #onFailed(Object, Throwable)} rather than
+     * replayed, unless the failure is transient, then they will be redelivered.
+     *
+     * @param records the records
+     * @param failure the failure of applying
+     */
+    private void handleUnknownOutcome(List<R> records, RuntimeException failure) {
+        if (isTransientFailure(failure)) {
+            logger.warn("[Redis-Replicator-C-F] The applied Redis Replicator events are unknown, size: {}, they will be redelivered", records.size());
+            throw failure;
+        }
+        logger.warn("[Redis-Replicator-C-F] The applied Redis Replicator events are unknown, size: {}, they are not replayed", records.size(), failure);
+        for (int i = 0, size = records.size(); i < size; i++) {
+            onFailed(records.get(i), failure);
+        }
+    }
+
+    private void recordApplied(List<R> records, List<RedisCommandReplicatedEvent> events) {
+        long appliedTime = System.currentTimeMillis();
+        for (int i = 0, size = events.size(); i < size; i++) {
+            recordApplied(records.get(i), events.get(i), appliedTime);
+        }
+    }
+
+    private void recordApplied(R record, RedisCommandReplicatedEvent event, long appliedTime) {
+        String source = getDeduplicationSource(record);
+        if (source != null) {
+            deduplicator.markApplied(source, event.getSourceEvent().getSequence());
+        }
+        onApplied(record, event, appliedTime);
+        publishAppliedEvent(record, event);
+    }
+
+    /**
+     * Publish the applied event, the failures of the listeners are logged rather than thrown, otherwise, the applied
+     * event would be retried
+     *
+     * @param record the record
+     * @param event  the applied event
+     */
+    private void publishAppliedEvent(R record, RedisCommandReplicatedEvent event) {
+        ApplicationEventPublisher applicationEventPublisher = this.applicationEventPublisher;
+        if (applicationEventPublisher == null) {
+            return;
+        }
+        event.markApplied();
+        try {
+            applicationEventPublisher.publishEvent(event);
+        } catch (Throwable e) {
+            logger.warn("[Redis-Replicator-C-F] fails to publish the applied Redis Replicator event : {}", describe(record), e);
+        }
+    }
+
+    /**
+     * Get the source of deduplication, which is the scope that the sequences are monotonic in
+     *
+     * @param record the record
+     * @return <code>null</code> if the deduplication is disabled or the source id is absent
+     */
+    @Nullable
+    private String getDeduplicationSource(R record) {
+        if (deduplicator == null) {
+            return null;
+        }
+        String sourceId = getSourceId(record);
+        if (sourceId == null) {
+            return null;
+        }
+        return sourceId + '@' + getSequenceScope(record);
+    }
+
+    /**
+     * Checkpoint the deduplicator if the interval elapses
+     */
+    public void checkpointDeduplicator() {
+        RedisCommandDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastDeduplicatorCheckpointTime >= deduplicatorCheckpointInterval) {
+            lastDeduplicatorCheckpointTime = now;
+            deduplicator.checkpoint();
+        }
+    }
+
+    /**
+     * Whether the failure is transient (e.g. the Redis connection is lost) or not
+     *
+     * @param failure the failure
+     * @return <code>true</code> if transient
+     */
+    public static boolean isTransientFailure(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            if (cause instanceof DataAccessResourceFailureException || cause instanceof TransientDataAccessException || cause instanceof IOException) {
+                return true;
+            }
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+        return false;
+    }
+
+    private static void sleep(long interval) {
+        try {
+            Thread.sleep(interval);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The thread is interrupted while retrying to apply the Redis Replicator events", e);
+        }
+    }
+
+    /**
+     * @param record the record
+     * @return <code>true</code> if the record is originated from the local cluster
+     */
+    protected abstract boolean isLocallyOriginated(R record);
+
+    /**
+     * @param record the record
+     * @return the id of source, <code>null</code> if absent
+     */
+    @Nullable
+    protected abstract String getSourceId(R record);
+
+    /**
+     * @param record the record
+     * @return the sequence at source, <code>-1</code> if absent
+     */
+    protected abstract long getSequence(R record);
+
+    /**
+     * @param record the record
+     * @return the scope that the sequences of source are monotonic in, e.g. the partition
+     */
+    protected abstract String getSequenceScope(R record);
+
+    /**
+     * Create the {@link RedisCommandReplicatedEvent} of the record
+     *
+     * @param record the record
+     * @return non-null
+     */
+    protected abstract RedisCommandReplicatedEvent createEvent(R record);
+
+    /**
+     * Callback after the event of record is applied
+     *
+     * @param record      the record
+     * @param event       the applied event
+     * @param appliedTime the time in milliseconds when the event was applied
+     */
+    protected void onApplied(R record, RedisCommandReplicatedEvent event, long appliedTime) {
+    }
+
+    /**
+     * Callback if the record is poison or its outcome is unknown, it's never applied again
+     *
+     * @param record  the record
+     * @param failure the failure
+     */
+    protected abstract void onFailed(R record, Throwable failure);
+
+    /**
+     * @param record the record
+     * @return the description of record in the logs
+     */
+    protected abstract String describe(R record);
+}
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import org.springframework.lang.Nullable;
+
+import java.util.BitSet;
+
+/**
+ * The failure of applying a batch of the replicated Redis commands, which tells the commands that are not applied, thus
+ * the caller replays only them rather than the whole batch, otherwise the non-idempotent commands (e.g. "INCR",
+ * "LPUSH") that are applied before the failure will be applied twice.
+ * <p>
+ * The outcome is unknown if the replies are lost (e.g. the connection is broken while the pipeline is being closed,
+ * or "EXEC" fails), then any command of the batch may have been applied.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisCommandReplicator#replicate(java.util.List)
+ * @since 1.0.0
+ */
+public class RedisCommandReplicationException extends RuntimeException {
+
+    private final int size;
+
+    @Nullable
+    private final BitSet unappliedIndexes;
+
+    /**
+     * @param message          the message
+     * @param cause            the cause
+     * @param size             the size of batch
+     * @param unappliedIndexes the indexes of the commands that are not applied, <code>null</code> if unknown
+     */
+    public RedisCommandReplicationException(String message, Throwable cause, int size, @Nullable BitSet unappliedIndexes) {
+        super(message, cause);
+        this.size = size;
+        this.unappliedIndexes = unappliedIndexes;
+    }
+
+    /**
+     * @return the size of batch
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return <code>true</code> if the commands that are applied are known
+     */
+    public boolean isOutcomeKnown() {
+        return unappliedIndexes != null;
+    }
+
+    /**
+     * @param index the index of command in the batch
+     * @return <code>true</code> if the command is known to be applied
+     */
+    public boolean isApplied(int index) {
+        return unappliedIndexes != null && !unappliedIndexes.get(index);
+    }
+
+    /**
+     * @return the count of the commands that are known to be applied
+     */
+    public int getAppliedCount() {
+        return unappliedIndexes == null ? 0 : size - unappliedIndexes.cardinality();
+    }
+}
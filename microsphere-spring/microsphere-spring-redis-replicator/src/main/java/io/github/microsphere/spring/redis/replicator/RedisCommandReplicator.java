@@ -1,42 +1,88 @@
 package io.github.microsphere.spring.redis.replicator;
 
 import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedBatchEvent;
 import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.context.ApplicationListener;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.event.SmartApplicationListener;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.lang.Nullable;
 import org.springframework.util.ReflectionUtils;
 
+import java.lang.invoke.MethodHandle;
 import java.lang.reflect.Method;
+import java.lang.reflect.UndeclaredThrowableException;
+import java.util.BitSet;
+import java.util.List;
 import java.util.function.Function;
 
 import static io.github.microsphere.spring.redis.beans.Wrapper.tryUnwrap;
 import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findWriteCommandMethod;
 import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.getRedisCommandBindingFunction;
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.getInvoker;
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.invoke;
 
 
 /**
  * Redis Command Replicator
+ * <p>
+ * The {@link RedisCommandReplicatedBatchEvent batch} is applied by one {@link RedisConnection} in a pipeline,
+ * or in a transaction ("MULTI" / "EXEC") if {@link RedisReplicatorConfiguration#isConsumerTransactional() configured},
+ * and the connection is always released after the batch. If the batch fails, a {@link RedisCommandReplicationException}
+ * tells the commands that are not applied by the per-command results of the pipeline, thus the caller replays only them.
+ * The pipeline omits the replies of the succeeded status commands (e.g. "RENAME"), which are declared to return
+ * <code>void</code>, thus the results are matched to the commands by their {@link CommandReplies replies}.
+ * <p>
+ * The commands are invoked by the cached {@link RedisCommandInvokers invokers} rather than the reflection.
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy<a/>
  * @since 1.0.0
  */
-public class RedisCommandReplicator implements ApplicationListener<RedisCommandReplicatedEvent> {
+public class RedisCommandReplicator implements SmartApplicationListener {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisCommandReplicator.class);
 
     public static final String BEAN_NAME = "redisCommandReplicator";
 
+    /**
+     * The max count of the states matching the results of pipeline to the commands
+     */
+    private static final long MAX_MATCHING_STATES = 1 << 20;
+
     private final RedisConnectionFactory redisConnectionFactory;
 
-    public RedisCommandReplicator(RedisConnectionFactory redisConnectionFactory) {
+    private final RedisReplicatorConfiguration redisReplicatorConfiguration;
+
+    public RedisCommandReplicator(RedisConnectionFactory redisConnectionFactory, RedisReplicatorConfiguration redisReplicatorConfiguration) {
         this.redisConnectionFactory = tryUnwrap(redisConnectionFactory, RedisConnectionFactory.class);
+        this.redisReplicatorConfiguration = redisReplicatorConfiguration;
+    }
+
+    @Override
+    public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+        return RedisCommandReplicatedEvent.class.isAssignableFrom(eventType) ||
+                RedisCommandReplicatedBatchEvent.class.isAssignableFrom(eventType);
     }
 
     @Override
-    public void onApplicationEvent(RedisCommandReplicatedEvent event) {
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof RedisCommandReplicatedBatchEvent) {
+            onRedisCommandReplicatedBatchEvent((RedisCommandReplicatedBatchEvent) event);
+        } else if (event instanceof RedisCommandReplicatedEvent) {
+            onRedisCommandReplicatedEvent((RedisCommandReplicatedEvent) event);
+        }
+    }
+
+    private void onRedisCommandReplicatedEvent(RedisCommandReplicatedEvent event) {
+        if (event.isApplied()) {
+            // The event is published by the consumer after it's applied
+            return;
+        }
         try {
             handleRedisCommandEvent(event);
         } catch (Throwable e) {
@@ -44,21 +90,277 @@ public class RedisCommandReplicator implements ApplicationListener<RedisCommandR
         }
     }
 
+    /**
+     * The failure of batch is rethrown to the publisher, which is responsible for the retry and the acknowledgement
+     *
+     * @param event {@link RedisCommandReplicatedBatchEvent}
+     */
+    private void onRedisCommandReplicatedBatchEvent(RedisCommandReplicatedBatchEvent event) {
+        List<RedisCommandReplicatedEvent> events = event.getEvents();
+        try {
+            replicate(events);
+        } catch (RuntimeException e) {
+            logger.error("[Redis-Replicator-Event] Failed to process the batch of Redis command events, size : {}", events.size(), e);
+            throw e;
+        }
+    }
+
     private void handleRedisCommandEvent(RedisCommandReplicatedEvent event) throws Throwable {
+        RedisConnection redisConnection = getRedisConnection();
+        try {
+            applyRedisCommandEvent(redisConnection, event);
+        } finally {
+            redisConnection.close();
+        }
+    }
+
+    /**
+     * Apply the {@link RedisCommandReplicatedEvent RedisCommandReplicatedEvents} in order by one {@link RedisConnection}
+     *
+     * @param events the {@link RedisCommandReplicatedEvent RedisCommandReplicatedEvents}
+     * @throws RedisCommandReplicationException if any command fails
+     */
+    public void replicate(List<RedisCommandReplicatedEvent> events) throws RedisCommandReplicationException {
+        int size = events.size();
+        if (size < 1) {
+            return;
+        }
+        boolean transactional = redisReplicatorConfiguration.isConsumerTransactional();
+        RedisConnection redisConnection;
+        try {
+            redisConnection = getRedisConnection();
+        } catch (RuntimeException e) {
+            throw new RedisCommandReplicationException("The Redis connection can't be acquired", e, size, unappliedIndexes(0, size));
+        }
+        try {
+            replicate(redisConnection, events, transactional);
+        } finally {
+            redisConnection.close();
+        }
+    }
+
+    private void replicate(RedisConnection redisConnection, List<RedisCommandReplicatedEvent> events, boolean transactional) {
+        int size = events.size();
+        // The count of the commands that are sent
+        int sent = 0;
+        CommandReplies replies = new CommandReplies(size);
+        try {
+            if (transactional) {
+                redisConnection.multi();
+            } else {
+                redisConnection.openPipeline();
+            }
+            for (; sent < size; sent++) {
+                Method method = applyRedisCommandEvent(redisConnection, events.get(sent));
+                if (method != null) {
+                    replies.add(sent, isStatusCommand(method));
+                }
+            }
+        } catch (RuntimeException e) {
+            throw abort(redisConnection, transactional, size, sent, replies, e);
+        }
+        try {
+            if (transactional) {
+                redisConnection.exec();
+            } else {
+                redisConnection.closePipeline();
+            }
+        } catch (RuntimeException e) {
+            // "EXEC" may have been executed before the failure, the replies of the pipeline tell the failed commands
+            BitSet unappliedIndexes = transactional ? null : getUnappliedIndexes(new BitSet(size), e, replies, size);
+            throw new RedisCommandReplicationException("The batch of Redis commands failed", e, size, unappliedIndexes);
+        }
+        logger.debug("[Redis-Replicator-Event] The batch of Redis command events has been applied, size : {} , transactional : {}", size, transactional);
+    }
+
+    /**
+     * Abort the batch after the command at the index failed to be sent, the following ones are never sent
+     */
+    private RedisCommandReplicationException abort(RedisConnection redisConnection, boolean transactional, int size, int sent,
+                                                   CommandReplies replies, RuntimeException failure) {
+        String message = "The Redis command[index : " + sent + "] of batch failed to be sent";
+        if (transactional) {
+            try {
+                if (redisConnection.isQueueing()) {
+                    redisConnection.discard();
+                }
+            } catch (Throwable e) {
+                logger.debug("[Redis-Replicator-Event] Failed to discard the batch of Redis command events", e);
+            }
+            // Nothing is applied without "EXEC"
+            return new RedisCommandReplicationException(message, failure, size, unappliedIndexes(0, size));
+        }
+        BitSet unappliedIndexes = unappliedIndexes(sent, size);
+        if (redisConnection.isPipelined()) {
+            List<Object> results;
+            try {
+                results = redisConnection.closePipeline();
+            } catch (RuntimeException e) {
+                logger.debug("[Redis-Replicator-Event] Failed to close the pipeline of the batch", e);
+                return new RedisCommandReplicationException(message, failure, size, getUnappliedIndexes(unappliedIndexes, e, replies, sent));
+            }
+            unappliedIndexes = getUnappliedIndexes(unappliedIndexes, results, replies, sent);
+        }
+        return new RedisCommandReplicationException(message, failure, size, unappliedIndexes);
+    }
+
+    private static BitSet unappliedIndexes(int fromIndex, int toIndex) {
+        BitSet unappliedIndexes = new BitSet(toIndex);
+        unappliedIndexes.set(fromIndex, toIndex);
+        return unappliedIndexes;
+    }
+
+    private static BitSet getUnappliedIndexes(BitSet unappliedIndexes, RuntimeException failure, CommandReplies replies, int sent) {
+        if (failure instanceof RedisPipelineException) {
+            return getUnappliedIndexes(unappliedIndexes, ((RedisPipelineException) failure).getPipelineResult(), replies, sent);
+        }
+        // The pipeline is broken, any command may have been applied
+        return null;
+    }
+
+    /**
+     * The failed command is never applied, since Redis executes a command entirely or not at all.
+     * <p>
+     * The results are matched to the commands in order : each replied command has its result, and each status command
+     * has a result only if it failed. If some status commands failed, the only matching that the failed ones have the
+     * exceptions as their results is searched, thus the indexes are unknown if the matching is ambiguous.
+     *
+     * @param unappliedIndexes the indexes of the commands that are not applied
+     * @param results          the results of pipeline, a failed command has an exception as its result
+     * @param replies          the replies of the commands that are sent
+     * @param sent             the count of the commands that are sent
+     * @return <code>null</code> if the results can't be matched to the commands
+     */
+    @Nullable
+    static BitSet getUnappliedIndexes(BitSet unappliedIndexes, @Nullable List<Object> results, CommandReplies replies, int sent) {
+        if (results == null) {
+            return null;
+        }
+        BitSet repliedIndexes = replies.repliedIndexes;
+        BitSet statusIndexes = replies.statusIndexes;
+        // The count of the failed status commands, whose exceptions are in the results
+        int failedStatus = results.size() - repliedIndexes.get(0, sent).cardinality();
+        if (failedStatus < 0 || failedStatus > statusIndexes.get(0, sent).cardinality()
+                || (long) (sent + 1) * (failedStatus + 1) > MAX_MATCHING_STATES) {
+            return null;
+        }
+        // The index of result of the command is the count of the preceding replied commands and failed status commands
+        int[] repliedBefore = new int[sent + 1];
+        for (int i = 0; i < sent; i++) {
+            repliedBefore[i + 1] = repliedBefore[i] + (repliedIndexes.get(i) ? 1 : 0);
+        }
+        // matchings[i][f] : the count (at most 2) of matchings of the commands from i if f status commands failed before i
+        byte[][] matchings = new byte[sent + 1][failedStatus + 1];
+        matchings[sent][failedStatus] = 1;
+        for (int i = sent - 1; i >= 0; i--) {
+            for (int f = 0; f <= failedStatus; f++) {
+                int count = matchings[i + 1][f];
+                if (statusIndexes.get(i) && f < failedStatus && results.get(repliedBefore[i] + f) instanceof Throwable) {
+                    count += matchings[i + 1][f + 1];
+                }
+                matchings[i][f] = (byte) Math.min(count, 2);
+            }
+        }
+        if (matchings[0][0] != 1) {
+            return null;
+        }
+        for (int i = 0, f = 0; i < sent; i++) {
+            if (repliedIndexes.get(i)) {
+                if (results.get(repliedBefore[i] + f) instanceof Throwable) {
+                    unappliedIndexes.set(i);
+                }
+            } else if (statusIndexes.get(i) && matchings[i + 1][f] == 0) {
+                unappliedIndexes.set(i);
+                f++;
+            }
+        }
+        return unappliedIndexes;
+    }
+
+    /**
+     * The status command (e.g. "RENAME") is declared to return <code>void</code>, whose reply is omitted by the pipeline
+     * unless it fails
+     *
+     * @param method the Redis command method
+     * @return <code>true</code> if the method is a status command
+     */
+    static boolean isStatusCommand(Method method) {
+        return void.class.equals(method.getReturnType());
+    }
+
+    /**
+     * @return the Redis command method if the command is sent, or <code>null</code> if the event is not a write command
+     */
+    @Nullable
+    private Method applyRedisCommandEvent(RedisConnection redisConnection, RedisCommandReplicatedEvent event) {
         RedisCommandEvent redisCommandEvent = event.getSourceEvent();
         Method method = findWriteCommandMethod(redisCommandEvent);
         if (method != null) {
-            String interfaceNme = redisCommandEvent.getInterfaceName();
-            RedisConnection redisConnection = getRedisConnection();
             Object[] args = redisCommandEvent.getArgs();
-            Function<RedisConnection, Object> bindingFunction = getRedisCommandBindingFunction(interfaceNme);
-            Object redisCommandObject = bindingFunction.apply(redisConnection);
-            // TODO: Native method implementation
-            ReflectionUtils.invokeMethod(method, redisCommandObject, args);
+            MethodHandle invoker = getInvoker(method);
+            if (invoker == null) {
+                invokeReflectively(redisConnection, redisCommandEvent, method, args);
+            } else {
+                invokeRedisCommand(redisConnection, invoker, args);
+            }
         }
+        return method;
+    }
+
+    private void invokeRedisCommand(RedisConnection redisConnection, MethodHandle invoker, Object[] args) {
+        try {
+            invoke(redisConnection, invoker, args);
+        } catch (RuntimeException | Error e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new UndeclaredThrowableException(e);
+        }
+    }
+
+    private void invokeReflectively(RedisConnection redisConnection, RedisCommandEvent redisCommandEvent, Method method, Object[] args) {
+        String interfaceNme = redisCommandEvent.getInterfaceName();
+        Function<RedisConnection, Object> bindingFunction = getRedisCommandBindingFunction(interfaceNme);
+        Object redisCommandObject = bindingFunction.apply(redisConnection);
+        ReflectionUtils.invokeMethod(method, redisCommandObject, args);
     }
 
     private RedisConnection getRedisConnection() {
         return redisConnectionFactory.getConnection();
     }
+
+    /**
+     * @return the raw {@link RedisConnectionFactory} whose commands are not intercepted, thus never replicated
+     */
+    public RedisConnectionFactory getRedisConnectionFactory() {
+        return redisConnectionFactory;
+    }
+
+    /**
+     * The replies of the commands that are sent in a pipeline, the commands that are not sent have no reply
+     */
+    static class CommandReplies {
+
+        /**
+         * The indexes of the commands that always have the replies
+         */
+        private final BitSet repliedIndexes;
+
+        /**
+         * The indexes of the status commands that have the replies only if they fail
+         */
+        private final BitSet statusIndexes;
+
+        CommandReplies(int size) {
+            this.repliedIndexes = new BitSet(size);
+            this.statusIndexes = new BitSet(size);
+        }
+
+        void add(int index, boolean status) {
+            if (status) {
+                statusIndexes.set(index);
+            } else {
+                repliedIndexes.set(index);
+            }
+        }
+    }
 }
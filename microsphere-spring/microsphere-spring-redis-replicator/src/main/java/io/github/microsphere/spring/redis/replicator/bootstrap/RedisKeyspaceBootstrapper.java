@@ -0,0 +1,374 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.bootstrap;
+
+import io.github.microsphere.spring.redis.replicator.util.RateLimiter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisClusterConnection;
+import org.springframework.data.redis.connection.RedisClusterNode;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisPipelineException;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static io.github.microsphere.spring.redis.beans.Wrapper.tryUnwrap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The bootstrapper copies the keyspace of the source Redis into the target Redis :
+ * <ul>
+ *     <li>The keys are iterated by "SCAN", the master nodes of Redis cluster are scanned in parallel</li>
+ *     <li>The batches of keys are dumped from the source by "DUMP" / "PTTL" and restored into the target by "RESTORE"
+ *     in pipelines by the workers in parallel</li>
+ *     <li>The keys are copied at the limited rate, thus the source is not overwhelmed</li>
+ * </ul>
+ * The keys with the prefix {@link #INTERNAL_KEY_PREFIX} are used by Redis Replicator itself, which are never copied.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisReplicatorBootstrapper
+ * @since 1.0.0
+ */
+public class RedisKeyspaceBootstrapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisKeyspaceBootstrapper.class);
+
+    public static final String INTERNAL_KEY_PREFIX = "redis-replicator:";
+
+    private static final byte[] INTERNAL_KEY_PREFIX_BYTES = INTERNAL_KEY_PREFIX.getBytes(UTF_8);
+
+    /**
+     * The "PTTL" of the absent key
+     */
+    private static final long ABSENT_TTL = -2;
+
+    private final RedisConnectionFactory sourceConnectionFactory;
+
+    private final RedisConnectionFactory targetConnectionFactory;
+
+    private final ScanOptions scanOptions;
+
+    private final int batchSize;
+
+    private final int workers;
+
+    private final RateLimiter rateLimiter;
+
+    private final boolean replace;
+
+    private final AtomicLong scannedCount = new AtomicLong();
+
+    private final AtomicLong restoredCount = new AtomicLong();
+
+    private final AtomicLong skippedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * @param sourceConnectionFactory the {@link RedisConnectionFactory} of the source Redis
+     * @param targetConnectionFactory the {@link RedisConnectionFactory} of the target Redis, it will be unwrapped if intercepted
+     * @param match                   the pattern of keys, all keys are copied if <code>null</code>
+     * @param scanCount               the "COUNT" hint of "SCAN"
+     * @param batchSize               the count of keys copied by a pipeline
+     * @param workers                 the number of workers copying the batches
+     * @param rateLimit               the max count of keys copied per second, non-positive if unlimited
+     * @param replace                 whether the existing keys of the target are replaced or not
+     */
+    public RedisKeyspaceBootstrapper(RedisConnectionFactory sourceConnectionFactory, RedisConnectionFactory targetConnectionFactory,
+                                     @Nullable String match, int scanCount, int batchSize, int workers, int rateLimit, boolean replace) {
+        this.sourceConnectionFactory = tryUnwrap(sourceConnectionFactory, RedisConnectionFactory.class);
+        this.targetConnectionFactory = tryUnwrap(targetConnectionFactory, RedisConnectionFactory.class);
+        ScanOptions.ScanOptionsBuilder scanOptionsBuilder = ScanOptions.scanOptions().count(scanCount);
+        if (match != null) {
+            scanOptionsBuilder.match(match);
+        }
+        this.scanOptions = scanOptionsBuilder.build();
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.rateLimiter = new RateLimiter(rateLimit);
+        this.replace = replace;
+    }
+
+    /**
+     * Copy the keyspace of the source into the target, the method blocks until all keys are copied
+     *
+     * @throws InterruptedException  if the thread is interrupted
+     * @throws IllegalStateException if any key fails to be copied
+     */
+    public void bootstrap() throws InterruptedException, IllegalStateException {
+        long startTime = System.currentTimeMillis();
+        ExecutorService workerExecutor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("Redis-Replicator-Bootstrap-Worker-"));
+        // The scanners are blocked if the workers fall behind
+        Semaphore inflightBatches = new Semaphore(workers * 2);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        try {
+            List<RedisClusterNode> masterNodes = getMasterNodes();
+            if (masterNodes == null) {
+                try (RedisConnection connection = sourceConnectionFactory.getConnection()) {
+                    scan(connection.scan(scanOptions), workerExecutor, inflightBatches, failure);
+                }
+            } else {
+                scanInParallel(masterNodes, workerExecutor, inflightBatches, failure);
+            }
+        } finally {
+            workerExecutor.shutdown();
+            workerExecutor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        }
+        logger.info("The keyspace bootstrap is completed in {} ms, scanned : {}, restored : {}, skipped : {}, failed : {}",
+                System.currentTimeMillis() - startTime, getScannedCount(), getRestoredCount(), getSkippedCount(), getFailedCount());
+        if (failure.get() != null) {
+            throw new IllegalStateException("The keyspace bootstrap fails to copy " + getFailedCount() + " keys", failure.get());
+        }
+    }
+
+    /**
+     * @return the master nodes of Redis cluster, or <code>null</code> if the source is not a cluster
+     */
+    @Nullable
+    private List<RedisClusterNode> getMasterNodes() {
+        try (RedisConnection connection = sourceConnectionFactory.getConnection()) {
+            if (!(connection instanceof RedisClusterConnection)) {
+                return null;
+            }
+            List<RedisClusterNode> masterNodes = new ArrayList<>();
+            for (RedisClusterNode node : ((RedisClusterConnection) connection).clusterGetNodes()) {
+                if (node.isMaster()) {
+                    masterNodes.add(node);
+                }
+            }
+            return masterNodes;
+        }
+    }
+
+    private void scanInParallel(List<RedisClusterNode> masterNodes, ExecutorService workerExecutor, Semaphore inflightBatches,
+                                AtomicReference<Throwable> failure) throws InterruptedException {
+        int size = masterNodes.size();
+        ExecutorService scanExecutor = Executors.newFixedThreadPool(size, new CustomizableThreadFactory("Redis-Replicator-Bootstrap-Scanner-"));
+        try {
+            List<Future<?>> futures = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                RedisClusterNode node = masterNodes.get(i);
+                futures.add(scanExecutor.submit(() -> {
+                    try (RedisClusterConnection connection = sourceConnectionFactory.getClusterConnection()) {
+                        scan(connection.scan(node, scanOptions), workerExecutor, inflightBatches, failure);
+                    }
+                    return null;
+                }));
+            }
+            for (int i = 0; i < size; i++) {
+                try {
+                    futures.get(i).get();
+                } catch (ExecutionException e) {
+                    throw new IllegalStateException("The keyspace bootstrap fails to scan the node : " + masterNodes.get(i), e.getCause());
+                }
+            }
+        } finally {
+            scanExecutor.shutdownNow();
+        }
+    }
+
+    private void scan(Cursor<byte[]> cursor, ExecutorService workerExecutor, Semaphore inflightBatches,
+                      AtomicReference<Throwable> failure) throws InterruptedException {
+        try {
+            List<byte[]> keys = new ArrayList<>(batchSize);
+            while (cursor.hasNext()) {
+                byte[] key = cursor.next();
+                scannedCount.incrementAndGet();
+                if (isInternalKey(key)) {
+                    skippedCount.incrementAndGet();
+                    continue;
+                }
+                keys.add(key);
+                if (keys.size() >= batchSize) {
+                    submit(keys, workerExecutor, inflightBatches, failure);
+                    keys = new ArrayList<>(batchSize);
+                }
+            }
+            if (!keys.isEmpty()) {
+                submit(keys, workerExecutor, inflightBatches, failure);
+            }
+        } finally {
+            try {
+                cursor.close();
+            } catch (IOException e) {
+                logger.warn("The cursor of keyspace bootstrap can't be closed", e);
+            }
+        }
+    }
+
+    private void submit(List<byte[]> keys, ExecutorService workerExecutor, Semaphore inflightBatches,
+                        AtomicReference<Throwable> failure) throws InterruptedException {
+        rateLimiter.acquire(keys.size());
+        inflightBatches.acquire();
+        workerExecutor.execute(() -> {
+            try {
+                copy(keys);
+            } catch (Throwable e) {
+                logger.error("The keyspace bootstrap fails to copy the batch of keys, size : {}", keys.size(), e);
+                failedCount.addAndGet(keys.size());
+                failure.compareAndSet(null, e);
+            } finally {
+                inflightBatches.release();
+            }
+        });
+    }
+
+    void copy(List<byte[]> keys) {
+        List<Object> dumps = dump(keys);
+        int size = keys.size();
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            boolean pipelined = isPipelineSupported(connection);
+            if (pipelined) {
+                connection.openPipeline();
+            }
+            int restored = 0;
+            for (int i = 0; i < size; i++) {
+                byte[] value = (byte[]) dumps.get(i * 2);
+                Long ttl = (Long) dumps.get(i * 2 + 1);
+                if (value == null || ttl == null || ttl == ABSENT_TTL) {
+                    // The key was deleted or expired after scanning
+                    skippedCount.incrementAndGet();
+                    continue;
+                }
+                connection.restore(keys.get(i), ttl < 0 ? 0 : ttl, value, replace);
+                restored++;
+            }
+            if (pipelined) {
+                closePipeline(connection, restored);
+            } else {
+                restoredCount.addAndGet(restored);
+            }
+        }
+    }
+
+    private void closePipeline(RedisConnection connection, int restored) {
+        try {
+            connection.closePipeline();
+            restoredCount.addAndGet(restored);
+        } catch (RedisPipelineException e) {
+            List<Object> results = e.getResults();
+            int failed = 0;
+            for (int i = 0, size = results.size(); i < size; i++) {
+                Object result = results.get(i);
+                if (result instanceof Throwable) {
+                    if (isBusyKey((Throwable) result)) {
+                        // The existing key is not replaced
+                        skippedCount.incrementAndGet();
+                    } else {
+                        failed++;
+                    }
+                } else {
+                    restoredCount.incrementAndGet();
+                }
+            }
+            if (failed > 0) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Dump the keys from the source
+     *
+     * @param keys the keys
+     * @return the values of "DUMP" and "PTTL" of the keys in turn
+     */
+    private List<Object> dump(List<byte[]> keys) {
+        int size = keys.size();
+        try (RedisConnection connection = sourceConnectionFactory.getConnection()) {
+            if (isPipelineSupported(connection)) {
+                connection.openPipeline();
+                for (int i = 0; i < size; i++) {
+                    byte[] key = keys.get(i);
+                    connection.dump(key);
+                    connection.pTtl(key);
+                }
+                return connection.closePipeline();
+            }
+            List<Object> dumps = new ArrayList<>(size * 2);
+            for (int i = 0; i < size; i++) {
+                byte[] key = keys.get(i);
+                dumps.add(connection.dump(key));
+                dumps.add(connection.pTtl(key));
+            }
+            return dumps;
+        }
+    }
+
+    /**
+     * The pipeline is not supported by the connection of Redis cluster
+     */
+    private static boolean isPipelineSupported(RedisConnection connection) {
+        return !(connection instanceof RedisClusterConnection);
+    }
+
+    private static boolean isBusyKey(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            String message = cause.getMessage();
+            if (message != null && message.contains("BUSYKEY")) {
+                return true;
+            }
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+        return false;
+    }
+
+    static boolean isInternalKey(byte[] key) {
+        int length = INTERNAL_KEY_PREFIX_BYTES.length;
+        if (key.length < length) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (key[i] != INTERNAL_KEY_PREFIX_BYTES[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public long getScannedCount() {
+        return scannedCount.get();
+    }
+
+    public long getRestoredCount() {
+        return restoredCount.get();
+    }
+
+    public long getSkippedCount() {
+        return skippedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+}
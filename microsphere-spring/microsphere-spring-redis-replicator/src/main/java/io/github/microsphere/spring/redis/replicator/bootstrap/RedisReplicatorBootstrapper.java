@@ -0,0 +1,308 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.bootstrap;
+
+import io.github.microsphere.spring.redis.replicator.RedisCommandReplicator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.lang.Nullable;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_BATCH_SIZE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_KEY_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_MATCH_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_RATE_LIMIT_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_REPLACE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_SCAN_COUNT_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_SOURCE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_BOOTSTRAP_WORKERS_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_BATCH_SIZE;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_ENABLED;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_KEY_PREFIX;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_RATE_LIMIT;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_REPLACE;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_SCAN_COUNT;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_BOOTSTRAP_WORKERS;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The bootstrapper of the domains never bootstrapped, the replica that joins late (or whose position is reset) only
+ * sees the commands after the current position, thus the domains are bootstrapped before consuming :
+ * <ol>
+ *     <li>The current positions of domains are recorded by the {@link PositionRecorder}</li>
+ *     <li>The keyspace of the source is copied by {@link RedisKeyspaceBootstrapper}</li>
+ *     <li>The domains are marked as bootstrapped in the target Redis, and then the consumer catches up from the
+ *     recorded positions</li>
+ * </ol>
+ * The commands between the recorded positions and the copy are applied again, which are idempotent for the
+ * overwrites (e.g. "SET", "HSET", "DEL"), but not for the increments.
+ * <p>
+ * The instances of the same application share the bootstrapped domains, thus the bootstrap is guarded by a lock in the
+ * target Redis, which is leased and renewed while bootstrapping : only the instance holding the lock records the
+ * positions and copies the keyspace, the others wait until the domains are bootstrapped or the lock is released.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisKeyspaceBootstrapper
+ * @since 1.0.0
+ */
+public class RedisReplicatorBootstrapper {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisReplicatorBootstrapper.class);
+
+    static final String LOCK_KEY_SUFFIX = ":lock";
+
+    /**
+     * Acquire the lock if it's absent, returns 1 if acquired, 0 if it's held by another instance
+     */
+    private static final byte[] LOCK_SCRIPT = ("if redis.call('SET', KEYS[1], ARGV[1], 'NX', 'PX', ARGV[2]) then " +
+            "return 1 end " +
+            "return 0").getBytes(UTF_8);
+
+    /**
+     * Renew the lock if it's held by the owner, returns 1 if renewed, 0 if it's lost
+     */
+    private static final byte[] RENEW_LOCK_SCRIPT = ("if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('PEXPIRE', KEYS[1], ARGV[2]) end " +
+            "return 0").getBytes(UTF_8);
+
+    private static final byte[] UNLOCK_SCRIPT = ("if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('DEL', KEYS[1]) end " +
+            "return 0").getBytes(UTF_8);
+
+    private final RedisKeyspaceBootstrapper keyspaceBootstrapper;
+
+    private final RedisConnectionFactory targetConnectionFactory;
+
+    private final byte[] bootstrapKey;
+
+    private final byte[] lockKey;
+
+    /**
+     * The owner of the lock, which is unique per instance
+     */
+    private final byte[] lockOwner;
+
+    private final long lockLeaseTime;
+
+    /**
+     * @param keyspaceBootstrapper    {@link RedisKeyspaceBootstrapper}
+     * @param targetConnectionFactory the raw {@link RedisConnectionFactory} of the target Redis
+     * @param bootstrapKey            the key of Redis hash recording the bootstrapped domains
+     * @param lockLeaseTime           the lease time in milliseconds of the bootstrap lock
+     */
+    public RedisReplicatorBootstrapper(RedisKeyspaceBootstrapper keyspaceBootstrapper, RedisConnectionFactory targetConnectionFactory,
+                                       String bootstrapKey, long lockLeaseTime) {
+        this.keyspaceBootstrapper = keyspaceBootstrapper;
+        this.targetConnectionFactory = targetConnectionFactory;
+        this.bootstrapKey = bootstrapKey.getBytes(UTF_8);
+        this.lockKey = (bootstrapKey + LOCK_KEY_SUFFIX).getBytes(UTF_8);
+        this.lockOwner = (ManagementFactory.getRuntimeMXBean().getName() + "-" + UUID.randomUUID()).getBytes(UTF_8);
+        this.lockLeaseTime = lockLeaseTime;
+    }
+
+    /**
+     * Create the {@link RedisReplicatorBootstrapper} by the properties
+     *
+     * @param environment            {@link Environment}
+     * @param beanFactory            {@link BeanFactory} to lookup the source {@link RedisConnectionFactory}
+     * @param redisCommandReplicator {@link RedisCommandReplicator} whose {@link RedisConnectionFactory} is the target
+     * @param applicationName        the application name
+     * @return <code>null</code> if the bootstrap is disabled
+     */
+    @Nullable
+    public static RedisReplicatorBootstrapper create(Environment environment, BeanFactory beanFactory,
+                                                     @Nullable RedisCommandReplicator redisCommandReplicator, String applicationName) {
+        if (!environment.getProperty(CONSUMER_BOOTSTRAP_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_BOOTSTRAP_ENABLED)) {
+            return null;
+        }
+        String source = environment.getProperty(CONSUMER_BOOTSTRAP_SOURCE_PROPERTY_NAME);
+        if (source == null || redisCommandReplicator == null) {
+            logger.warn("The bootstrap of Redis Replicator is disabled, the property '{}' or RedisCommandReplicator is absent", CONSUMER_BOOTSTRAP_SOURCE_PROPERTY_NAME);
+            return null;
+        }
+        RedisConnectionFactory sourceConnectionFactory = beanFactory.getBean(source, RedisConnectionFactory.class);
+        RedisConnectionFactory targetConnectionFactory = redisCommandReplicator.getRedisConnectionFactory();
+        RedisKeyspaceBootstrapper keyspaceBootstrapper = new RedisKeyspaceBootstrapper(sourceConnectionFactory, targetConnectionFactory,
+                environment.getProperty(CONSUMER_BOOTSTRAP_MATCH_PROPERTY_NAME),
+                environment.getProperty(CONSUMER_BOOTSTRAP_SCAN_COUNT_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_BOOTSTRAP_SCAN_COUNT),
+                environment.getProperty(CONSUMER_BOOTSTRAP_BATCH_SIZE_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_BOOTSTRAP_BATCH_SIZE),
+                environment.getProperty(CONSUMER_BOOTSTRAP_WORKERS_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_BOOTSTRAP_WORKERS),
+                environment.getProperty(CONSUMER_BOOTSTRAP_RATE_LIMIT_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_BOOTSTRAP_RATE_LIMIT),
+                environment.getProperty(CONSUMER_BOOTSTRAP_REPLACE_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_BOOTSTRAP_REPLACE));
+        String bootstrapKey = environment.getProperty(CONSUMER_BOOTSTRAP_KEY_PROPERTY_NAME, DEFAULT_CONSUMER_BOOTSTRAP_KEY_PREFIX + applicationName);
+        long lockLeaseTime = environment.getProperty(CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME);
+        return new RedisReplicatorBootstrapper(keyspaceBootstrapper, targetConnectionFactory, bootstrapKey, lockLeaseTime);
+    }
+
+    /**
+     * Get the domains never bootstrapped
+     *
+     * @param domains the domains
+     * @return non-null
+     */
+    public List<String> getPendingDomains(List<String> domains) {
+        List<String> pendingDomains = new ArrayList<>(domains.size());
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            for (int i = 0, size = domains.size(); i < size; i++) {
+                String domain = domains.get(i);
+                if (connection.hGet(bootstrapKey, domain.getBytes(UTF_8)) == null) {
+                    pendingDomains.add(domain);
+                }
+            }
+        }
+        return pendingDomains;
+    }
+
+    /**
+     * Bootstrap the domains never bootstrapped by the instance holding the lock, or wait until they are bootstrapped
+     * by another instance
+     *
+     * @param domains          the domains
+     * @param positionRecorder {@link PositionRecorder}
+     * @return the domains bootstrapped by this instance, which are empty if bootstrapped by another instance
+     * @throws Exception if the bootstrap fails, the domains are not marked as bootstrapped
+     */
+    public List<String> bootstrap(List<String> domains, PositionRecorder positionRecorder) throws Exception {
+        boolean waiting = false;
+        for (; ; ) {
+            List<String> pendingDomains = getPendingDomains(domains);
+            if (pendingDomains.isEmpty()) {
+                return pendingDomains;
+            }
+            if (tryLock()) {
+                try {
+                    // The domains may be bootstrapped by another instance before the lock is acquired
+                    pendingDomains = getPendingDomains(domains);
+                    bootstrapUnderLock(pendingDomains, positionRecorder);
+                    return pendingDomains;
+                } finally {
+                    unlock();
+                }
+            }
+            if (!waiting) {
+                waiting = true;
+                logger.info("The domains {} are being bootstrapped by another instance, waiting until it's completed", pendingDomains);
+            }
+            MILLISECONDS.sleep(Math.max(1, lockLeaseTime / 3));
+        }
+    }
+
+    private void bootstrapUnderLock(List<String> domains, PositionRecorder positionRecorder) throws Exception {
+        if (domains.isEmpty()) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("Redis-Replicator-Bootstrap-Lock-");
+        threadFactory.setDaemon(true);
+        ScheduledExecutorService lockRenewer = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        long renewInterval = Math.max(1, lockLeaseTime / 3);
+        lockRenewer.scheduleWithFixedDelay(this::renewLock, renewInterval, renewInterval, MILLISECONDS);
+        try {
+            doBootstrap(domains, positionRecorder);
+        } finally {
+            lockRenewer.shutdownNow();
+        }
+    }
+
+    private void doBootstrap(List<String> domains, PositionRecorder positionRecorder) throws Exception {
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            positionRecorder.recordPosition(domains.get(i));
+        }
+        logger.info("The positions of domains {} are recorded, the keyspace is being copied", domains);
+        keyspaceBootstrapper.bootstrap();
+        byte[] bootstrapTime = String.valueOf(System.currentTimeMillis()).getBytes(UTF_8);
+        Map<byte[], byte[]> bootstrappedDomains = new HashMap<>(domains.size());
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            bootstrappedDomains.put(domains.get(i).getBytes(UTF_8), bootstrapTime);
+        }
+        if (!renewLock()) {
+            // Another instance may be bootstrapping the domains, whose positions are recorded again
+            throw new IllegalStateException("The bootstrap lock is lost, the domains " + domains + " are not marked as bootstrapped");
+        }
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            connection.hMSet(bootstrapKey, bootstrappedDomains);
+        }
+        logger.info("The domains {} are bootstrapped", domains);
+    }
+
+    private boolean tryLock() {
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            Long locked = connection.eval(LOCK_SCRIPT, ReturnType.INTEGER, 1, lockKey, lockOwner,
+                    String.valueOf(lockLeaseTime).getBytes(UTF_8));
+            return locked != null && locked == 1L;
+        }
+    }
+
+    private boolean renewLock() {
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            Long renewed = connection.eval(RENEW_LOCK_SCRIPT, ReturnType.INTEGER, 1, lockKey, lockOwner,
+                    String.valueOf(lockLeaseTime).getBytes(UTF_8));
+            if (renewed != null && renewed == 1L) {
+                return true;
+            }
+            logger.error("The bootstrap lock[key : '{}'] is lost", new String(lockKey, UTF_8));
+        } catch (Throwable e) {
+            logger.warn("The bootstrap lock[key : '{}'] can't be renewed", new String(lockKey, UTF_8), e);
+        }
+        return false;
+    }
+
+    private void unlock() {
+        try (RedisConnection connection = targetConnectionFactory.getConnection()) {
+            connection.eval(UNLOCK_SCRIPT, ReturnType.INTEGER, 1, lockKey, lockOwner);
+        } catch (Throwable e) {
+            logger.warn("The bootstrap lock[key : '{}'] can't be released, it will expire in {} ms", new String(lockKey, UTF_8), lockLeaseTime, e);
+        }
+    }
+
+    public RedisKeyspaceBootstrapper getKeyspaceBootstrapper() {
+        return keyspaceBootstrapper;
+    }
+
+    /**
+     * The recorder of the current position of domain, the consumer catches up from the recorded position after the
+     * bootstrap
+     */
+    @FunctionalInterface
+    public interface PositionRecorder {
+
+        /**
+         * Record the current position of domain
+         *
+         * @param domain the domain
+         * @throws Exception if the position can't be recorded
+         */
+        void recordPosition(String domain) throws Exception;
+    }
+}
@@ -18,6 +18,7 @@ package io.github.microsphere.spring.redis.replicator.config;
 
 import io.github.microsphere.spring.redis.config.RedisConfiguration;
 import io.github.microsphere.spring.redis.context.RedisContext;
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
 import io.github.microsphere.spring.redis.event.RedisConfigurationPropertyChangedEvent;
 import io.github.microsphere.spring.redis.util.RedisConstants;
 import org.slf4j.Logger;
@@ -29,7 +30,9 @@ import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
 import org.springframework.lang.NonNull;
+import org.springframework.lang.Nullable;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedList;
@@ -67,6 +70,147 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
 
     public static final boolean DEFAULT_CONSUMER_ENABLED = Boolean.getBoolean(CONSUMER_ENABLED_PROPERTY_NAME);
 
+    /**
+     * Whether the batch of replicated commands is applied in a transaction ("MULTI" / "EXEC") rather than a pipeline
+     */
+    public static final String CONSUMER_TRANSACTIONAL_PROPERTY_NAME = CONSUMER_PROPERTY_NAME_PREFIX + "transactional";
+
+    public static final boolean DEFAULT_CONSUMER_TRANSACTIONAL = false;
+
+    public static final String CONSUMER_DEDUP_PROPERTY_NAME_PREFIX = CONSUMER_PROPERTY_NAME_PREFIX + "dedup.";
+
+    /**
+     * Whether the replicated commands are deduplicated by (source, sequence) or not
+     *
+     * @see io.github.microsphere.spring.redis.replicator.RedisCommandDeduplicator
+     */
+    public static final String CONSUMER_DEDUP_ENABLED_PROPERTY_NAME = CONSUMER_DEDUP_PROPERTY_NAME_PREFIX + "enabled";
+
+    public static final boolean DEFAULT_CONSUMER_DEDUP_ENABLED = true;
+
+    /**
+     * The size of the sliding window of sequences per source
+     */
+    public static final String CONSUMER_DEDUP_WINDOW_SIZE_PROPERTY_NAME = CONSUMER_DEDUP_PROPERTY_NAME_PREFIX + "window-size";
+
+    public static final int DEFAULT_CONSUMER_DEDUP_WINDOW_SIZE = 1024;
+
+    /**
+     * The timeout in milliseconds that the window of the idle source is evicted
+     */
+    public static final String CONSUMER_DEDUP_IDLE_TIMEOUT_PROPERTY_NAME = CONSUMER_DEDUP_PROPERTY_NAME_PREFIX + "idle-timeout";
+
+    public static final long DEFAULT_CONSUMER_DEDUP_IDLE_TIMEOUT = 60 * 60 * 1000L;
+
+    public static final String CONSUMER_DEDUP_CHECKPOINT_PROPERTY_NAME_PREFIX = CONSUMER_DEDUP_PROPERTY_NAME_PREFIX + "checkpoint.";
+
+    /**
+     * Whether the watermarks of sources are checkpointed into Redis or not
+     */
+    public static final String CONSUMER_DEDUP_CHECKPOINT_ENABLED_PROPERTY_NAME = CONSUMER_DEDUP_CHECKPOINT_PROPERTY_NAME_PREFIX + "enabled";
+
+    public static final boolean DEFAULT_CONSUMER_DEDUP_CHECKPOINT_ENABLED = false;
+
+    /**
+     * The key of Redis hash of the checkpoint, the default is {@link #DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX}
+     * with the application name
+     */
+    public static final String CONSUMER_DEDUP_CHECKPOINT_KEY_PROPERTY_NAME = CONSUMER_DEDUP_CHECKPOINT_PROPERTY_NAME_PREFIX + "key";
+
+    public static final String DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX = "redis-replicator:dedup:";
+
+    /**
+     * The interval in milliseconds of the checkpoint
+     */
+    public static final String CONSUMER_DEDUP_CHECKPOINT_INTERVAL_PROPERTY_NAME = CONSUMER_DEDUP_CHECKPOINT_PROPERTY_NAME_PREFIX + "interval";
+
+    public static final long DEFAULT_CONSUMER_DEDUP_CHECKPOINT_INTERVAL = 1000;
+
+    /**
+     * The time to live in milliseconds of the checkpoint, which is renewed on each checkpoint
+     */
+    public static final String CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE_PROPERTY_NAME = CONSUMER_DEDUP_CHECKPOINT_PROPERTY_NAME_PREFIX + "time-to-live";
+
+    public static final long DEFAULT_CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE = 7 * 24 * 60 * 60 * 1000L;
+
+    public static final String CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX = CONSUMER_PROPERTY_NAME_PREFIX + "bootstrap.";
+
+    /**
+     * Whether the domains never bootstrapped copy the source keyspace before consuming or not
+     *
+     * @see io.github.microsphere.spring.redis.replicator.bootstrap.RedisReplicatorBootstrapper
+     */
+    public static final String CONSUMER_BOOTSTRAP_ENABLED_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "enabled";
+
+    public static final boolean DEFAULT_CONSUMER_BOOTSTRAP_ENABLED = false;
+
+    /**
+     * The bean name of {@link org.springframework.data.redis.connection.RedisConnectionFactory} of the source Redis
+     */
+    public static final String CONSUMER_BOOTSTRAP_SOURCE_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "source";
+
+    /**
+     * The pattern of the keys to copy, all keys are copied if absent
+     */
+    public static final String CONSUMER_BOOTSTRAP_MATCH_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "match";
+
+    /**
+     * The "COUNT" hint of "SCAN"
+     */
+    public static final String CONSUMER_BOOTSTRAP_SCAN_COUNT_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "scan-count";
+
+    public static final int DEFAULT_CONSUMER_BOOTSTRAP_SCAN_COUNT = 1000;
+
+    /**
+     * The count of keys copied by a pipeline
+     */
+    public static final String CONSUMER_BOOTSTRAP_BATCH_SIZE_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "batch-size";
+
+    public static final int DEFAULT_CONSUMER_BOOTSTRAP_BATCH_SIZE = 100;
+
+    /**
+     * The number of workers copying the batches
+     */
+    public static final String CONSUMER_BOOTSTRAP_WORKERS_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "workers";
+
+    public static final int DEFAULT_CONSUMER_BOOTSTRAP_WORKERS = 4;
+
+    /**
+     * The max count of keys copied per second, non-positive if unlimited
+     */
+    public static final String CONSUMER_BOOTSTRAP_RATE_LIMIT_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "rate-limit";
+
+    public static final int DEFAULT_CONSUMER_BOOTSTRAP_RATE_LIMIT = 10000;
+
+    /**
+     * Whether the existing keys of the target are replaced or not
+     */
+    public static final String CONSUMER_BOOTSTRAP_REPLACE_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "replace";
+
+    public static final boolean DEFAULT_CONSUMER_BOOTSTRAP_REPLACE = true;
+
+    /**
+     * The key of Redis hash recording the bootstrapped domains, the default is
+     * {@link #DEFAULT_CONSUMER_BOOTSTRAP_KEY_PREFIX} with the application name
+     */
+    public static final String CONSUMER_BOOTSTRAP_KEY_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "key";
+
+    public static final String DEFAULT_CONSUMER_BOOTSTRAP_KEY_PREFIX = "redis-replicator:bootstrap:";
+
+    /**
+     * The lease time in milliseconds of the bootstrap lock, which is renewed while bootstrapping, thus only one
+     * instance bootstraps the domains and the others wait until it's completed
+     */
+    public static final String CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME_PROPERTY_NAME = CONSUMER_BOOTSTRAP_PROPERTY_NAME_PREFIX + "lock-lease-time";
+
+    public static final long DEFAULT_CONSUMER_BOOTSTRAP_LOCK_LEASE_TIME = 30000;
+
+    /**
+     * The id of the local Redis cluster, which is recorded by the replicated events, if it's configured, the consumer
+     * will drop the events originated from the local cluster to prevent the bidirectional replication loop
+     */
+    public static final String CLUSTER_ID_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "cluster-id";
+
     /**
      * Business Domains
      */
@@ -86,19 +230,30 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
 
     private final boolean consumerEnabled;
 
+    private final String clusterId;
+
     private volatile boolean enabled;
 
+    private volatile boolean consumerTransactional;
+
     private volatile List<String> domains;
 
     private volatile Map<String, List<String>> sourceBeanDomains;
 
+    /**
+     * The filters by domain, the domain without any rule is absent
+     */
+    private volatile Map<String, RedisReplicatorDomainFilter> domainFilters;
+
     private RedisContext redisContext;
 
     public RedisReplicatorConfiguration(ConfigurableApplicationContext context) {
         this.context = context;
         this.environment = context.getEnvironment();
         this.consumerEnabled = isConsumerEnabled(context);
+        this.clusterId = environment.getProperty(CLUSTER_ID_PROPERTY_NAME);
         setEnabled();
+        setConsumerTransactional();
         setDomains();
     }
 
@@ -106,12 +261,29 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
         this.enabled = isEnabled(context);
     }
 
+    private void setConsumerTransactional() {
+        this.consumerTransactional = environment.getProperty(CONSUMER_TRANSACTIONAL_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_TRANSACTIONAL);
+    }
+
     private void setDomains() {
         List<String> domains = getDomains(environment);
         setSourceBeanDomains(domains);
+        setDomainFilters(domains);
         this.domains = domains;
     }
 
+    private void setDomainFilters(List<String> domains) {
+        Map<String, RedisReplicatorDomainFilter> domainFilters = new HashMap<>(domains.size());
+        for (String domain : domains) {
+            RedisReplicatorDomainFilter domainFilter = RedisReplicatorDomainFilter.create(environment, domain);
+            if (domainFilter != null) {
+                domainFilters.put(domain, domainFilter);
+                logger.debug("The domain[{}] filter : {}", domain, domainFilter);
+            }
+        }
+        this.domainFilters = unmodifiableMap(domainFilters);
+    }
+
     @Override
     public void onApplicationEvent(RedisConfigurationPropertyChangedEvent event) {
         Set<String> keys = event.getPropertyNames();
@@ -120,6 +292,8 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
                 setDomains();
             } else if (key.startsWith(DOMAIN_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME_PREFIX)) {
                 setDomains();
+            } else if (CONSUMER_TRANSACTIONAL_PROPERTY_NAME.equals(key)) {
+                setConsumerTransactional();
             }
             // TODO More configuration changes are supported
         }
@@ -180,6 +354,18 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
         return consumerEnabled;
     }
 
+    /**
+     * @return the id of the local Redis cluster, or <code>null</code> if not configured
+     */
+    @Nullable
+    public String getClusterId() {
+        return clusterId;
+    }
+
+    public boolean isConsumerTransactional() {
+        return consumerTransactional;
+    }
+
     public List<String> getDomains() {
         return domains;
     }
@@ -188,6 +374,38 @@ public class RedisReplicatorConfiguration implements ApplicationListener<RedisCo
         return sourceBeanDomains.getOrDefault(sourceBeanName, getDomains());
     }
 
+    /**
+     * Get the domains that the event is replicated into, which are the domains of its source bean accepted by
+     * {@link RedisReplicatorDomainFilter the filters}
+     *
+     * @param event {@link RedisCommandEvent}
+     * @return non-null
+     */
+    @NonNull
+    public List<String> getDomains(RedisCommandEvent event) {
+        List<String> domains = getDomains(event.getSourceBeanName());
+        Map<String, RedisReplicatorDomainFilter> domainFilters = this.domainFilters;
+        if (domainFilters.isEmpty()) {
+            return domains;
+        }
+        List<String> acceptedDomains = null;
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            String domain = domains.get(i);
+            RedisReplicatorDomainFilter domainFilter = domainFilters.get(domain);
+            boolean accepted = domainFilter == null || domainFilter.accepts(event);
+            if (acceptedDomains == null) {
+                if (accepted) {
+                    continue;
+                }
+                // The list is copied since the first rejected domain
+                acceptedDomains = new ArrayList<>(domains.subList(0, i));
+            } else if (accepted) {
+                acceptedDomains.add(domain);
+            }
+        }
+        return acceptedDomains == null ? domains : acceptedDomains;
+    }
+
     @NonNull
     public RedisContext getRedisContext() {
         RedisContext redisContext = this.redisContext;
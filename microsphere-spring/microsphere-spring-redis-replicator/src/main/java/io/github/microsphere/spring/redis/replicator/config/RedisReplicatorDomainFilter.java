@@ -0,0 +1,219 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.config;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.util.KeyPrefixTrie;
+import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
+
+import java.lang.reflect.Method;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DOMAIN_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME_PREFIX;
+import static org.springframework.util.StringUtils.commaDelimitedListToStringArray;
+import static org.springframework.util.StringUtils.trimWhitespace;
+
+/**
+ * The filter of the replicated writes per domain, which is compiled from the properties :
+ * <ul>
+ *     <li>microsphere.redis.replicator.domains.{domain}.include-key-prefixes</li>
+ *     <li>microsphere.redis.replicator.domains.{domain}.exclude-key-prefixes</li>
+ *     <li>microsphere.redis.replicator.domains.{domain}.include-commands</li>
+ *     <li>microsphere.redis.replicator.domains.{domain}.exclude-commands</li>
+ * </ul>
+ * The key prefixes are compiled into a {@link KeyPrefixTrie} evaluated on the raw key bytes, the longest matched prefix
+ * wins, e.g. "user:" is included and "user:session:" is excluded. If no prefix is matched, the key is accepted only if
+ * no include prefix is configured. The commands are the names of Redis command methods (e.g. "set", "hSet") in
+ * case-insensitive.
+ * <p>
+ * The keys of the multi-key commands are accepted if any key is accepted, and the event whose key is not resolvable is
+ * accepted, thus no write is lost by the filter.
+ * <p>
+ * The instance is immutable and thread-safe.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisReplicatorConfiguration#getDomains(RedisCommandEvent)
+ * @since 1.0.0
+ */
+public class RedisReplicatorDomainFilter {
+
+    public static final String INCLUDE_KEY_PREFIXES_PROPERTY_NAME_SUFFIX = ".include-key-prefixes";
+
+    public static final String EXCLUDE_KEY_PREFIXES_PROPERTY_NAME_SUFFIX = ".exclude-key-prefixes";
+
+    public static final String INCLUDE_COMMANDS_PROPERTY_NAME_SUFFIX = ".include-commands";
+
+    public static final String EXCLUDE_COMMANDS_PROPERTY_NAME_SUFFIX = ".exclude-commands";
+
+    private final String domain;
+
+    /**
+     * The key prefixes, the value is {@link Boolean#TRUE} if included, or {@link Boolean#FALSE} if excluded
+     */
+    private final KeyPrefixTrie<Boolean> keyPrefixTrie;
+
+    private final boolean includeKeyPrefixesPresent;
+
+    private final Set<String> includeCommands;
+
+    private final Set<String> excludeCommands;
+
+    /**
+     * The cache of the evaluated commands by method
+     */
+    private final ConcurrentMap<Method, Boolean> commandsCache = new ConcurrentHashMap<>();
+
+    public RedisReplicatorDomainFilter(String domain, String includeKeyPrefixes, String excludeKeyPrefixes,
+                                       String includeCommands, String excludeCommands) {
+        this.domain = domain;
+        this.keyPrefixTrie = new KeyPrefixTrie<>();
+        // The prefixes in both are excluded
+        this.includeKeyPrefixesPresent = putKeyPrefixes(includeKeyPrefixes, Boolean.TRUE) > 0;
+        putKeyPrefixes(excludeKeyPrefixes, Boolean.FALSE);
+        this.includeCommands = toCommands(includeCommands);
+        this.excludeCommands = toCommands(excludeCommands);
+    }
+
+    /**
+     * Create the {@link RedisReplicatorDomainFilter} of the domain
+     *
+     * @param environment {@link Environment}
+     * @param domain      the domain
+     * @return <code>null</code> if no rule is configured
+     */
+    @Nullable
+    public static RedisReplicatorDomainFilter create(Environment environment, String domain) {
+        String propertyNamePrefix = DOMAIN_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME_PREFIX + domain;
+        String includeKeyPrefixes = environment.getProperty(propertyNamePrefix + INCLUDE_KEY_PREFIXES_PROPERTY_NAME_SUFFIX);
+        String excludeKeyPrefixes = environment.getProperty(propertyNamePrefix + EXCLUDE_KEY_PREFIXES_PROPERTY_NAME_SUFFIX);
+        String includeCommands = environment.getProperty(propertyNamePrefix + INCLUDE_COMMANDS_PROPERTY_NAME_SUFFIX);
+        String excludeCommands = environment.getProperty(propertyNamePrefix + EXCLUDE_COMMANDS_PROPERTY_NAME_SUFFIX);
+        RedisReplicatorDomainFilter filter = new RedisReplicatorDomainFilter(domain, includeKeyPrefixes, excludeKeyPrefixes, includeCommands, excludeCommands);
+        return filter.isEmpty() ? null : filter;
+    }
+
+    private int putKeyPrefixes(String keyPrefixes, Boolean included) {
+        int count = 0;
+        for (String keyPrefix : commaDelimitedListToStringArray(keyPrefixes)) {
+            String prefix = trimWhitespace(keyPrefix);
+            if (!prefix.isEmpty()) {
+                keyPrefixTrie.put(prefix, included);
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private static Set<String> toCommands(String commands) {
+        Set<String> commandSet = new HashSet<>();
+        for (String command : commaDelimitedListToStringArray(commands)) {
+            String name = trimWhitespace(command);
+            if (!name.isEmpty()) {
+                commandSet.add(name.toLowerCase(Locale.ENGLISH));
+            }
+        }
+        return commandSet;
+    }
+
+    /**
+     * Whether the event is replicated into the domain or not
+     *
+     * @param event {@link RedisCommandEvent}
+     * @return <code>true</code> if accepted
+     */
+    public boolean accepts(RedisCommandEvent event) {
+        return acceptsCommand(event.getMethod()) && acceptsKeys(event.getArg(0));
+    }
+
+    boolean acceptsCommand(Method method) {
+        if (includeCommands.isEmpty() && excludeCommands.isEmpty()) {
+            return true;
+        }
+        Boolean accepted = commandsCache.get(method);
+        if (accepted == null) {
+            String command = method.getName().toLowerCase(Locale.ENGLISH);
+            accepted = !excludeCommands.contains(command) && (includeCommands.isEmpty() || includeCommands.contains(command));
+            commandsCache.putIfAbsent(method, accepted);
+        }
+        return accepted;
+    }
+
+    private boolean acceptsKeys(Object arg) {
+        if (keyPrefixTrie.isEmpty()) {
+            return true;
+        }
+        if (arg instanceof byte[]) {
+            return acceptsKey((byte[]) arg);
+        }
+        if (arg instanceof byte[][]) {
+            for (byte[] key : (byte[][]) arg) {
+                if (key != null && acceptsKey(key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (arg instanceof Map) {
+            for (Object key : ((Map<?, ?>) arg).keySet()) {
+                if (!(key instanceof byte[]) || acceptsKey((byte[]) key)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // The key is not resolvable
+        return true;
+    }
+
+    /**
+     * Whether the key is replicated into the domain or not
+     *
+     * @param key the raw key
+     * @return <code>true</code> if accepted
+     */
+    public boolean acceptsKey(byte[] key) {
+        Boolean included = keyPrefixTrie.findLongestPrefix(key);
+        return included == null ? !includeKeyPrefixesPresent : included;
+    }
+
+    /**
+     * @return <code>true</code> if no rule is configured
+     */
+    public boolean isEmpty() {
+        return keyPrefixTrie.isEmpty() && includeCommands.isEmpty() && excludeCommands.isEmpty();
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    @Override
+    public String toString() {
+        return "RedisReplicatorDomainFilter{" +
+                "domain='" + domain + '\'' +
+                ", keyPrefixes=" + keyPrefixTrie.size() +
+                ", includeCommands=" + includeCommands +
+                ", excludeCommands=" + excludeCommands +
+                '}';
+    }
+}
@@ -0,0 +1,415 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.event;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.util.RawValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The coalescer of {@link RedisCommandEvent RedisCommandEvents} collapses the idempotent overwrites per key (or per
+ * hash field) of the domain within a window, the last one wins :
+ * <ul>
+ *     <li>"SET" / "SETEX" / "PSETEX" (without "NX" or "XX")</li>
+ *     <li>"SET" with "KEEPTTL", which is only coalesced with another "SET" with "KEEPTTL"</li>
+ *     <li>"EXPIRE" / "PEXPIRE" / "EXPIREAT" / "PEXPIREAT"</li>
+ *     <li>"HSET" on the same field</li>
+ * </ul>
+ * The events are keyed by the domains and the Redis key regardless of their source beans, since the different
+ * RedisTemplates may write the same key of a domain. The coalesced event takes the place of the earlier one only if
+ * no other command on the same key of any its domain is between them, the other commands are never coalesced and act
+ * as the barriers, thus the order of them is never changed.
+ * The buffered events are delivered to the downstream in order when the window elapses or the buffer is full.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisCommandEvent
+ * @since 1.0.0
+ */
+public class RedisCommandEventCoalescer {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisCommandEventCoalescer.class);
+
+    /**
+     * The command is not coalescible
+     */
+    private static final byte NONE = 0;
+
+    /**
+     * The commands overwrite the value of key
+     */
+    private static final byte VALUE = 1;
+
+    /**
+     * "SET" with {@link Expiration} and {@link SetOption}, which is coalescible only if {@link SetOption#UPSERT}
+     */
+    private static final byte VALUE_WITH_OPTION = 2;
+
+    /**
+     * The commands overwrite the expiration of key
+     */
+    private static final byte EXPIRATION = 3;
+
+    /**
+     * The commands overwrite the value of hash field
+     */
+    private static final byte HASH_FIELD = 4;
+
+    /**
+     * "SET" with {@link Expiration#isKeepTtl() KEEPTTL}, which can't replace a "SET" resetting the expiration
+     */
+    private static final byte VALUE_KEEP_TTL = 5;
+
+    /**
+     * The placeholder of the events without any domain
+     */
+    private static final List<String> NO_DOMAINS = singletonList(null);
+
+    private final int maxSize;
+
+    private final Function<RedisCommandEvent, List<String>> domainsResolver;
+
+    private final Consumer<RedisCommandEvent> downstream;
+
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<Method, Byte> categoriesCache = new ConcurrentHashMap<>();
+
+    private final Object lock = new Object();
+
+    private final Object flushLock = new Object();
+
+    private final AtomicLong coalescedCount = new AtomicLong();
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    /**
+     * The buffered entries in order, guarded by {@link #lock}
+     */
+    private List<Entry> entries = new ArrayList<>();
+
+    /**
+     * The coalescible entries since the last barrier, guarded by {@link #lock}
+     */
+    private final Map<CoalescingKey, Entry> slots = new HashMap<>();
+
+    /**
+     * The last entries of keys per domain since the last barrier, guarded by {@link #lock}
+     */
+    private final Map<CoalescingKey, Entry> lastEntries = new HashMap<>();
+
+    /**
+     * The last key-level entries of keys per domain since the last barrier, guarded by {@link #lock}
+     */
+    private final Map<CoalescingKey, Entry> lastKeyEntries = new HashMap<>();
+
+    /**
+     * All events are regarded as the ones of the same domain
+     *
+     * @param window     the window in milliseconds
+     * @param maxSize    the max size of buffered events, the buffer will be flushed if reached
+     * @param downstream the downstream of events
+     */
+    public RedisCommandEventCoalescer(long window, int maxSize, Consumer<RedisCommandEvent> downstream) {
+        this(window, maxSize, event -> NO_DOMAINS, downstream);
+    }
+
+    /**
+     * @param window          the window in milliseconds
+     * @param maxSize         the max size of buffered events, the buffer will be flushed if reached
+     * @param domainsResolver the resolver of the domains that the event is replicated into
+     * @param downstream      the downstream of events
+     */
+    public RedisCommandEventCoalescer(long window, int maxSize, Function<RedisCommandEvent, List<String>> domainsResolver,
+                                      Consumer<RedisCommandEvent> downstream) {
+        this.maxSize = maxSize;
+        this.domainsResolver = domainsResolver;
+        this.downstream = downstream;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("Redis-Command-Event-Coalescer-"));
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, window, window, MILLISECONDS);
+    }
+
+    /**
+     * Publish the {@link RedisCommandEvent} into the buffer
+     *
+     * @param event {@link RedisCommandEvent}
+     */
+    public void publish(RedisCommandEvent event) {
+        byte category = getCategory(event);
+        // The domains are resolved out of the lock
+        List<String> domains = category == NONE ? null : resolveDomains(event);
+        boolean flushRequired;
+        synchronized (lock) {
+            if (category == NONE) {
+                addBarrier(event);
+            } else {
+                coalesce(event, category, domains);
+            }
+            flushRequired = entries.size() >= maxSize;
+        }
+        if (flushRequired) {
+            flush();
+        }
+    }
+
+    private void addBarrier(RedisCommandEvent event) {
+        entries.add(new Entry(event, entries.size()));
+        slots.clear();
+        lastEntries.clear();
+        lastKeyEntries.clear();
+    }
+
+    private List<String> resolveDomains(RedisCommandEvent event) {
+        List<String> domains = domainsResolver.apply(event);
+        return domains == null || domains.isEmpty() ? NO_DOMAINS : domains;
+    }
+
+    private void coalesce(RedisCommandEvent event, byte category, List<String> domains) {
+        RawValue key = RawValue.of((byte[]) event.getArg(0));
+        boolean hashField = category == HASH_FIELD;
+        RawValue field = hashField ? RawValue.of((byte[]) event.getArg(1)) : null;
+        CoalescingKey coalescingKey = new CoalescingKey(domains, category, key, field);
+        Entry slot = slots.get(coalescingKey);
+        if (slot != null && isReplaceable(slot, domains, key, hashField)) {
+            slot.event = event;
+            coalescedCount.incrementAndGet();
+            return;
+        }
+        Entry entry = new Entry(event, entries.size());
+        entries.add(entry);
+        slots.put(coalescingKey, entry);
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            CoalescingKey keyRef = new CoalescingKey(domains.get(i), NONE, key, null);
+            lastEntries.put(keyRef, entry);
+            if (!hashField) {
+                lastKeyEntries.put(keyRef, entry);
+            }
+        }
+    }
+
+    private boolean isReplaceable(Entry slot, List<String> domains, RawValue key, boolean hashField) {
+        // The slot must be the last one on the key of every domain
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            CoalescingKey keyRef = new CoalescingKey(domains.get(i), NONE, key, null);
+            if (hashField) {
+                // The writes on the other fields of the same hash are allowed between them
+                Entry lastKeyEntry = lastKeyEntries.get(keyRef);
+                if (lastKeyEntry != null && lastKeyEntry.sequence > slot.sequence) {
+                    return false;
+                }
+            } else if (lastEntries.get(keyRef) != slot) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private byte getCategory(RedisCommandEvent event) {
+        Method method = event.getMethod();
+        Byte category = categoriesCache.get(method);
+        if (category == null) {
+            category = resolveCategory(method);
+            categoriesCache.putIfAbsent(method, category);
+        }
+        if (category == VALUE_WITH_OPTION) {
+            if (event.getArg(3) != SetOption.UPSERT || !(event.getArg(0) instanceof byte[])) {
+                return NONE;
+            }
+            Expiration expiration = (Expiration) event.getArg(2);
+            return expiration != null && expiration.isKeepTtl() ? VALUE_KEEP_TTL : VALUE;
+        }
+        if (category != NONE && !(event.getArg(0) instanceof byte[])) {
+            return NONE;
+        }
+        return category;
+    }
+
+    static byte resolveCategory(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int parameterCount = parameterTypes.length;
+        if (parameterCount < 2 || parameterTypes[0] != byte[].class) {
+            return NONE;
+        }
+        switch (method.getName()) {
+            case "set":
+                if (parameterCount == 2 && parameterTypes[1] == byte[].class) {
+                    return VALUE;
+                }
+                if (parameterCount == 4 && parameterTypes[2] == Expiration.class && parameterTypes[3] == SetOption.class) {
+                    return VALUE_WITH_OPTION;
+                }
+                break;
+            case "setEx":
+            case "pSetEx":
+                if (parameterCount == 3 && parameterTypes[1] == long.class) {
+                    return VALUE;
+                }
+                break;
+            case "expire":
+            case "pExpire":
+            case "expireAt":
+            case "pExpireAt":
+                if (parameterCount == 2 && parameterTypes[1] == long.class) {
+                    return EXPIRATION;
+                }
+                break;
+            case "hSet":
+                if (parameterCount == 3 && parameterTypes[1] == byte[].class) {
+                    return HASH_FIELD;
+                }
+                break;
+        }
+        return NONE;
+    }
+
+    /**
+     * Deliver the buffered events to the downstream in order
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            List<Entry> entries;
+            synchronized (lock) {
+                entries = this.entries;
+                if (entries.isEmpty()) {
+                    return;
+                }
+                this.entries = new ArrayList<>(entries.size());
+                slots.clear();
+                lastEntries.clear();
+                lastKeyEntries.clear();
+            }
+            for (int i = 0, size = entries.size(); i < size; i++) {
+                RedisCommandEvent event = entries.get(i).event;
+                try {
+                    downstream.accept(event);
+                } catch (Throwable e) {
+                    logger.error("The downstream failed to accept the RedisCommandEvent : {}", event, e);
+                }
+            }
+            deliveredCount.addAndGet(entries.size());
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            logger.error("The RedisCommandEventCoalescer failed to flush", e);
+        }
+    }
+
+    /**
+     * Stop the window and flush the remaining events
+     */
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(1, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    /**
+     * @return the count of the events coalesced into the later ones
+     */
+    public long getCoalescedCount() {
+        return coalescedCount.get();
+    }
+
+    /**
+     * @return the count of the events delivered to the downstream
+     */
+    public long getDeliveredCount() {
+        return deliveredCount.get();
+    }
+
+    private static class Entry {
+
+        private RedisCommandEvent event;
+
+        private final int sequence;
+
+        private Entry(RedisCommandEvent event, int sequence) {
+            this.event = event;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class CoalescingKey {
+
+        /**
+         * The domains of the coalescible entry, or the domain of the key reference
+         */
+        private final Object domain;
+
+        private final byte category;
+
+        private final RawValue key;
+
+        private final RawValue field;
+
+        private CoalescingKey(Object domain, byte category, RawValue key, RawValue field) {
+            this.domain = domain;
+            this.category = category;
+            this.key = key;
+            this.field = field;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof CoalescingKey)) return false;
+            CoalescingKey that = (CoalescingKey) o;
+            return category == that.category
+                    && key.equals(that.key)
+                    && Objects.equals(field, that.field)
+                    && Objects.equals(domain, that.domain);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = key.hashCode();
+            result = 31 * result + category;
+            result = 31 * result + Objects.hashCode(field);
+            result = 31 * result + Objects.hashCode(domain);
+            return result;
+        }
+    }
+}
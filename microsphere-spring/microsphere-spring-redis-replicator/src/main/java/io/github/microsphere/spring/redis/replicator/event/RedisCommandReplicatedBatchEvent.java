@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.event;
+
+import org.springframework.context.ApplicationEvent;
+
+import java.util.List;
+
+/**
+ * The event of a batch of {@link RedisCommandReplicatedEvent RedisCommandReplicatedEvents} in order,
+ * which are applied together by one {@link org.springframework.data.redis.connection.RedisConnection}
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisCommandReplicatedEvent
+ * @since 1.0.0
+ */
+public class RedisCommandReplicatedBatchEvent extends ApplicationEvent {
+
+    public RedisCommandReplicatedBatchEvent(List<RedisCommandReplicatedEvent> events) {
+        super(events);
+    }
+
+    /**
+     * @return the {@link RedisCommandReplicatedEvent RedisCommandReplicatedEvents} in order
+     */
+    public List<RedisCommandReplicatedEvent> getEvents() {
+        return (List<RedisCommandReplicatedEvent>) getSource();
+    }
+}
@@ -20,7 +20,8 @@ import io.github.microsphere.spring.redis.event.RedisCommandEvent;
 import org.springframework.context.ApplicationEvent;
 
 /**
- * Redis Command Replicated Event
+ * Redis Command Replicated Event, which is published by the consumers after the command is applied, thus it's
+ * {@link #isApplied() applied} and the listeners are notified only.
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
  * @see RedisCommandEvent
@@ -33,6 +34,11 @@ public class RedisCommandReplicatedEvent extends ApplicationEvent {
      */
     private transient final String domain;
 
+    /**
+     * Whether the command is applied (non-serialized field, marked by the consumer)
+     */
+    private transient volatile boolean applied;
+
     public RedisCommandReplicatedEvent(RedisCommandEvent sourceEvent, String domain) {
         super(sourceEvent);
         this.domain = domain;
@@ -45,6 +51,21 @@ public class RedisCommandReplicatedEvent extends ApplicationEvent {
         return domain;
     }
 
+    /**
+     * @return <code>true</code> if the command is applied, the event is never applied again by
+     * {@link io.github.microsphere.spring.redis.replicator.RedisCommandReplicator}
+     */
+    public boolean isApplied() {
+        return applied;
+    }
+
+    /**
+     * Mark the command applied before the event is published
+     */
+    public void markApplied() {
+        this.applied = true;
+    }
+
     public RedisCommandEvent getSourceEvent() {
         return (RedisCommandEvent) getSource();
     }
@@ -1,6 +1,8 @@
 package io.github.microsphere.spring.redis.replicator.kafka;
 
 import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -9,10 +11,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.EnvironmentAware;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.core.env.Environment;
+import org.springframework.lang.Nullable;
 import org.springframework.util.Assert;
 
+import java.nio.ByteBuffer;
 import java.util.List;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.apache.kafka.clients.CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG;
 
 
@@ -39,6 +44,40 @@ public class KafkaRedisReplicatorConfiguration implements EnvironmentAware, Init
 
     public static final String DEFAULT_KAFKA_TOPIC_PREFIX_PROPERTY_VALUE = "redis-replicator-event-topic-";
 
+    /**
+     * The prefix of Kafka record header names, the headers allow the consumers to filter the records without
+     * deserializing the {@link io.github.microsphere.spring.redis.event.RedisCommandEvent}
+     */
+    public static final String KAFKA_HEADER_NAME_PREFIX = "redis-replicator-";
+
+    /**
+     * The header of the source application name (UTF-8)
+     */
+    public static final String SOURCE_APPLICATION_HEADER_NAME = KAFKA_HEADER_NAME_PREFIX + "source-application";
+
+    /**
+     * The header of the source id (UTF-8), which identifies the producer instance that the sequence belongs to
+     */
+    public static final String SOURCE_ID_HEADER_NAME = KAFKA_HEADER_NAME_PREFIX + "source-id";
+
+    /**
+     * The header of the origin cluster id (UTF-8), which is present only if the cluster id is configured
+     *
+     * @see RedisReplicatorConfiguration#CLUSTER_ID_PROPERTY_NAME
+     */
+    public static final String CLUSTER_ID_HEADER_NAME = KAFKA_HEADER_NAME_PREFIX + "cluster-id";
+
+    /**
+     * The header of the Redis command method id (short, big-endian)
+     */
+    public static final String METHOD_ID_HEADER_NAME = KAFKA_HEADER_NAME_PREFIX + "method-id";
+
+    /**
+     * The header of the sequence (long, big-endian), which is monotonic per source and topic partition,
+     * thus the gaps can be detected by the consumer of the partition
+     */
+    public static final String SEQUENCE_HEADER_NAME = KAFKA_HEADER_NAME_PREFIX + "sequence";
+
     /**
      * Node ip Port address (reusing application configurations)
      */
@@ -84,6 +123,32 @@ public class KafkaRedisReplicatorConfiguration implements EnvironmentAware, Init
         return topics;
     }
 
+    /**
+     * Get the source id from the headers
+     *
+     * @param headers the headers of Kafka record
+     * @return <code>null</code> if absent
+     * @see #SOURCE_ID_HEADER_NAME
+     */
+    @Nullable
+    public static String getSourceId(Headers headers) {
+        Header header = headers.lastHeader(SOURCE_ID_HEADER_NAME);
+        return header == null || header.value() == null ? null : new String(header.value(), UTF_8);
+    }
+
+    /**
+     * Get the per-source sequence from the headers
+     *
+     * @param headers the headers of Kafka record
+     * @return <code>-1</code> if absent
+     * @see #SEQUENCE_HEADER_NAME
+     */
+    public static long getSequence(Headers headers) {
+        Header header = headers.lastHeader(SEQUENCE_HEADER_NAME);
+        byte[] value = header == null ? null : header.value();
+        return value == null || value.length != Long.BYTES ? -1 : ByteBuffer.wrap(value).getLong();
+    }
+
     @Override
     public final void setEnvironment(Environment environment) {
         Assert.isInstanceOf(ConfigurableEnvironment.class, environment, "The 'environment' argument is not an instance of ConfigurableEnvironment");
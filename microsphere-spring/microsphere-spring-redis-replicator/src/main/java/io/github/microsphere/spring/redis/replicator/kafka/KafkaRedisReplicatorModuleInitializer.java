@@ -14,6 +14,8 @@ import org.springframework.util.ClassUtils;
 import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.SPRING_KAFKA_BOOTSTRAP_SERVERS_PROPERTY_NAME;
 import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.KAFKA_BOOTSTRAP_SERVERS_PROPERTY_NAME;
 import static io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerRedisReplicatorConfiguration.KAFKA_CONSUMER_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.TransportRedisReplicatorConfiguration.TRANSPORT_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.TransportRedisReplicatorConfiguration.isKafkaTransport;
 import static io.github.microsphere.spring.util.AnnotatedBeanDefinitionRegistryUtils.registerBeans;
 import static io.github.microsphere.spring.util.BeanRegistrar.registerBeanDefinition;
 
@@ -31,6 +33,11 @@ public class KafkaRedisReplicatorModuleInitializer implements RedisReplicatorMod
 
     @Override
     public boolean supports(ConfigurableApplicationContext context) {
+        if (!isKafkaTransport(context.getEnvironment())) {
+            logger.debug("Application context [id: '{}'] The transport of Redis Replicator is not Kafka, property {} : {}", context.getId(),
+                    TRANSPORT_PROPERTY_NAME, context.getEnvironment().getProperty(TRANSPORT_PROPERTY_NAME));
+            return false;
+        }
         if (!isClassPresent(context)) {
             logger.warn("spring-kafka and its related artifacts are not found in the class-path of application context [id: '{}'] . " + "The Kafka module will not be enabled!", context.getId());
             return false;
@@ -0,0 +1,276 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.PartitionMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+/**
+ * The controller adjusts the concurrency of {@link ConcurrentMessageListenerContainer} within the bounds by the lag in
+ * records and the apply latency of {@link KafkaConsumerReplicationMetrics}, which are evaluated periodically :
+ * <ul>
+ *     <li>Scale up : the lag or the latency is above its upper threshold for the consecutive evaluations, the
+ *     concurrency is doubled to absorb the burst</li>
+ *     <li>Scale down : both the lag and the latency are below their lower thresholds for the consecutive evaluations,
+ *     the concurrency is decreased by one to free the resources gradually</li>
+ * </ul>
+ * The gap between the thresholds, the consecutive evaluations and the cooldown after each change make up the hysteresis,
+ * thus the concurrency does not flap on the noisy metrics. The latency of the partitions without the progress since the
+ * last evaluation is ignored, since it's stale in the quiet periods.
+ * <p>
+ * The container is restarted to apply the new concurrency, which triggers the rebalance of consumer group, the records
+ * not acknowledged are redelivered and dropped by the deduplicator. The concurrency beyond the count of partitions makes
+ * the idle consumers only, thus the upper bound should not be greater than it.
+ * <p>
+ * The controller must be {@link #close() closed} before the container is stopped (e.g. by the phase of lifecycle),
+ * the container is restarted under the lock of controller only if it's still running and the controller is not closed,
+ * thus it's never restarted during the shutdown.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see KafkaConsumerRedisReplicatorConfiguration
+ * @since 1.0.0
+ */
+public class KafkaConsumerConcurrencyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerConcurrencyController.class);
+
+    private final ConcurrentMessageListenerContainer<?, ?> listenerContainer;
+
+    private final KafkaConsumerReplicationMetrics replicationMetrics;
+
+    private final int minConcurrency;
+
+    private final int maxConcurrency;
+
+    private final long scaleUpLag;
+
+    private final long scaleDownLag;
+
+    private final long scaleUpLatency;
+
+    private final long scaleDownLatency;
+
+    private final int scaleUpPeriods;
+
+    private final int scaleDownPeriods;
+
+    private final long cooldown;
+
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * The applied counts of partitions at the last evaluation, which is only accessed by the scheduler thread
+     */
+    private final Map<PartitionMetrics, Long> appliedCounts = new HashMap<>();
+
+    private int scaleUpCount;
+
+    private int scaleDownCount;
+
+    private long lastScaleTime;
+
+    private volatile int concurrency;
+
+    /**
+     * @param listenerContainer  the container
+     * @param replicationMetrics the metrics
+     * @param minConcurrency     the lower bound of concurrency
+     * @param maxConcurrency     the upper bound of concurrency
+     * @param scaleUpLag         the upper threshold of the total lag in records
+     * @param scaleDownLag       the lower threshold of the total lag in records
+     * @param scaleUpLatency     the upper threshold of the max apply latency in milliseconds
+     * @param scaleDownLatency   the lower threshold of the max apply latency in milliseconds
+     * @param scaleUpPeriods     the consecutive evaluations above the upper thresholds before scaling up
+     * @param scaleDownPeriods   the consecutive evaluations below the lower thresholds before scaling down
+     * @param cooldown           the time in milliseconds without any change after the last one
+     */
+    public KafkaConsumerConcurrencyController(ConcurrentMessageListenerContainer<?, ?> listenerContainer,
+                                              KafkaConsumerReplicationMetrics replicationMetrics,
+                                              int minConcurrency, int maxConcurrency,
+                                              long scaleUpLag, long scaleDownLag,
+                                              long scaleUpLatency, long scaleDownLatency,
+                                              int scaleUpPeriods, int scaleDownPeriods, long cooldown) {
+        if (minConcurrency < 1 || maxConcurrency < minConcurrency) {
+            throw new IllegalArgumentException("The bounds of concurrency are invalid, min : " + minConcurrency + " , max : " + maxConcurrency);
+        }
+        if (scaleDownLag > scaleUpLag || scaleDownLatency > scaleUpLatency) {
+            throw new IllegalArgumentException("The lower thresholds must not be greater than the upper ones");
+        }
+        this.listenerContainer = listenerContainer;
+        this.replicationMetrics = replicationMetrics;
+        this.minConcurrency = minConcurrency;
+        this.maxConcurrency = maxConcurrency;
+        this.scaleUpLag = scaleUpLag;
+        this.scaleDownLag = scaleDownLag;
+        this.scaleUpLatency = scaleUpLatency;
+        this.scaleDownLatency = scaleDownLatency;
+        this.scaleUpPeriods = Math.max(1, scaleUpPeriods);
+        this.scaleDownPeriods = Math.max(1, scaleDownPeriods);
+        this.cooldown = cooldown;
+        this.concurrency = Math.min(maxConcurrency, Math.max(minConcurrency, listenerContainer.getConcurrency()));
+        this.lastScaleTime = Long.MIN_VALUE / 2;
+        // The container is not started yet
+        listenerContainer.setConcurrency(concurrency);
+    }
+
+    /**
+     * Start the periodic evaluation
+     *
+     * @param interval the interval in milliseconds
+     */
+    public synchronized void start(long interval) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("Redis-Replicator-Concurrency-Controller-"));
+        scheduler.scheduleWithFixedDelay(this::evaluateQuietly, interval, interval, MILLISECONDS);
+    }
+
+    /**
+     * Stop the periodic evaluation, the current concurrency of container is kept, the scaling in progress is waited
+     */
+    public synchronized void close() {
+        ScheduledExecutorService scheduler = this.scheduler;
+        if (scheduler == null) {
+            return;
+        }
+        this.scheduler = null;
+        scheduler.shutdownNow();
+        try {
+            scheduler.awaitTermination(1, SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void evaluateQuietly() {
+        try {
+            evaluate();
+        } catch (Throwable e) {
+            logger.error("[Redis-Replicator-Kafka-C-F] The concurrency controller fails to evaluate", e);
+        }
+    }
+
+    private void evaluate() {
+        // The container is not started yet (e.g. the bootstrap is in progress) or is stopped
+        if (!listenerContainer.isRunning()) {
+            return;
+        }
+        long lag = 0;
+        long latency = 0;
+        for (PartitionMetrics metrics : replicationMetrics.getPartitionMetrics()) {
+            long lagRecords = metrics.getLagRecords();
+            if (lagRecords > 0) {
+                lag += lagRecords;
+            }
+            long appliedCount = metrics.getAppliedCount();
+            Long lastAppliedCount = appliedCounts.put(metrics, appliedCount);
+            if (lastAppliedCount == null || lastAppliedCount != appliedCount) {
+                latency = Math.max(latency, metrics.getLagTime());
+            }
+        }
+        int current = this.concurrency;
+        int target = decide(lag, latency, current, System.currentTimeMillis());
+        if (target != current) {
+            scale(current, target, lag, latency);
+        }
+    }
+
+    /**
+     * Decide the target concurrency by the metrics
+     *
+     * @param lag         the total lag in records
+     * @param latency     the max apply latency in milliseconds
+     * @param concurrency the current concurrency
+     * @param now         the current time in milliseconds
+     * @return the target concurrency, which is the current one if no change is required
+     */
+    int decide(long lag, long latency, int concurrency, long now) {
+        if (lag > scaleUpLag || latency > scaleUpLatency) {
+            scaleUpCount++;
+            scaleDownCount = 0;
+        } else if (lag < scaleDownLag && latency < scaleDownLatency) {
+            scaleDownCount++;
+            scaleUpCount = 0;
+        } else {
+            // Within the band between the thresholds
+            scaleUpCount = 0;
+            scaleDownCount = 0;
+        }
+
+        if (now - lastScaleTime < cooldown) {
+            return concurrency;
+        }
+
+        int target = concurrency;
+        if (scaleUpCount >= scaleUpPeriods) {
+            target = Math.min(maxConcurrency, concurrency * 2);
+        } else if (scaleDownCount >= scaleDownPeriods) {
+            target = Math.max(minConcurrency, concurrency - 1);
+        }
+        if (target != concurrency) {
+            scaleUpCount = 0;
+            scaleDownCount = 0;
+            lastScaleTime = now;
+        }
+        return target;
+    }
+
+    private void scale(int current, int target, long lag, long latency) {
+        synchronized (this) {
+            // The controller is closed or the container is stopped since the evaluation
+            if (scheduler == null || !listenerContainer.isRunning()) {
+                return;
+            }
+            logger.info("[Redis-Replicator-Kafka-C-S] The concurrency of Kafka listener container is being changed from {} to {}, lag : {} records, latency : {} ms",
+                    current, target, lag, latency);
+            listenerContainer.stop();
+            listenerContainer.setConcurrency(target);
+            this.concurrency = target;
+            listenerContainer.start();
+        }
+        // The cooldown starts after the restart, the metrics during the rebalance are not counted
+        lastScaleTime = System.currentTimeMillis();
+        appliedCounts.clear();
+    }
+
+    /**
+     * @return the current concurrency
+     */
+    public int getConcurrency() {
+        return concurrency;
+    }
+
+    public int getMinConcurrency() {
+        return minConcurrency;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+}
@@ -3,29 +3,71 @@ package io.github.microsphere.spring.redis.replicator.kafka.consumer;
 import io.github.microsphere.spring.redis.config.RedisConfiguration;
 import io.github.microsphere.spring.redis.event.RedisCommandEvent;
 import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import io.github.microsphere.spring.redis.replicator.RedisCommandDeduplicator;
+import io.github.microsphere.spring.redis.replicator.RedisCommandReplicationApplier;
+import io.github.microsphere.spring.redis.replicator.RedisCommandReplicator;
+import io.github.microsphere.spring.redis.replicator.bootstrap.RedisReplicatorBootstrapper;
 import io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration;
 import io.github.microsphere.spring.redis.serializer.Serializers;
+import org.apache.kafka.clients.consumer.Consumer;
 import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.OffsetAndMetadata;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
 import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.context.annotation.Bean;
 import org.springframework.kafka.core.ConsumerFactory;
 import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
-import org.springframework.kafka.listener.BatchAcknowledgingMessageListener;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.listener.BatchAcknowledgingConsumerAwareMessageListener;
 import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
 import org.springframework.kafka.listener.ContainerProperties;
-
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 import static io.github.microsphere.spring.redis.config.RedisConfiguration.getBoolean;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_INTERVAL_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_KEY_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_IDLE_TIMEOUT_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_WINDOW_SIZE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_ENABLED;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_INTERVAL;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_ENABLED;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_IDLE_TIMEOUT;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_WINDOW_SIZE;
+import static io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerRedisReplicatorConfiguration.KAFKA_PRODUCER_PROPERTY_NAME_PREFIX;
 import static io.github.microsphere.spring.util.PropertySourcesUtils.getSubProperties;
 import static org.apache.kafka.clients.CommonClientConfigs.BOOTSTRAP_SERVERS_CONFIG;
 import static org.apache.kafka.clients.CommonClientConfigs.GROUP_ID_CONFIG;
+import static org.apache.kafka.clients.consumer.ConsumerConfig.MAX_POLL_INTERVAL_MS_CONFIG;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.springframework.kafka.listener.ContainerProperties.AckMode.MANUAL;
 
 /**
  * Kafka Consumer {@link KafkaRedisReplicatorConfiguration}
@@ -33,10 +75,16 @@ import static org.apache.kafka.clients.CommonClientConfigs.GROUP_ID_CONFIG;
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy<a/>
  * @since 1.0.0
  */
-public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplicatorConfiguration implements ApplicationEventPublisherAware {
+public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplicatorConfiguration implements
+        SmartLifecycle, ApplicationEventPublisherAware {
 
     private static final Logger logger = LoggerFactory.getLogger(KafkaConsumerRedisReplicatorConfiguration.class);
 
+    /**
+     * The default value of "max.poll.interval.ms" in milliseconds
+     */
+    private static final long DEFAULT_MAX_POLL_INTERVAL_MS = 300000;
+
     public static final String KAFKA_CONSUMER_PROPERTY_NAME_PREFIX = KafkaRedisReplicatorConfiguration.KAFKA_PROPERTY_NAME_PREFIX + "consumer.";
 
     public static final String KAFKA_CONSUMER_ENABLED_PROPERTY_NAME = KAFKA_CONSUMER_PROPERTY_NAME_PREFIX + "enabled";
@@ -55,6 +103,141 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
 
     public static final int DEFAULT_KAFKA_LISTENER_CONCURRENCY = 1;
 
+    /**
+     * The number of workers applying the records of a batch, the records are dispatched by the hash of Redis key
+     */
+    public static final String KAFKA_LISTENER_APPLY_WORKERS_PROPERTY_NAME = KAFKA_LISTENER_PROPERTY_NAME_PREFIX + "apply-workers";
+
+    public static final int DEFAULT_KAFKA_LISTENER_APPLY_WORKERS = 1;
+
+    public static final String KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX = KAFKA_LISTENER_PROPERTY_NAME_PREFIX + "retry.";
+
+    /**
+     * The max retries of applying the records before they are routed to the dead-letter topic
+     */
+    public static final String KAFKA_LISTENER_RETRY_MAX_RETRIES_PROPERTY_NAME = KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX + "max-retries";
+
+    public static final int DEFAULT_KAFKA_LISTENER_RETRY_MAX_RETRIES = 3;
+
+    /**
+     * The initial interval in milliseconds of the exponential backoff
+     */
+    public static final String KAFKA_LISTENER_RETRY_INITIAL_INTERVAL_PROPERTY_NAME = KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX + "initial-interval";
+
+    public static final long DEFAULT_KAFKA_LISTENER_RETRY_INITIAL_INTERVAL = 100;
+
+    public static final String KAFKA_LISTENER_RETRY_MULTIPLIER_PROPERTY_NAME = KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX + "multiplier";
+
+    public static final double DEFAULT_KAFKA_LISTENER_RETRY_MULTIPLIER = 2.0;
+
+    /**
+     * The max interval in milliseconds of the exponential backoff
+     */
+    public static final String KAFKA_LISTENER_RETRY_MAX_INTERVAL_PROPERTY_NAME = KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX + "max-interval";
+
+    public static final long DEFAULT_KAFKA_LISTENER_RETRY_MAX_INTERVAL = 5000;
+
+    /**
+     * The max time in milliseconds of applying a batch including the retries, the default is the half of
+     * "max.poll.interval.ms", thus the consumer is never evicted from the group by the retries. If it's exceeded, the batch
+     * is not acknowledged and will be redelivered.
+     */
+    public static final String KAFKA_LISTENER_RETRY_MAX_ELAPSED_TIME_PROPERTY_NAME = KAFKA_LISTENER_RETRY_PROPERTY_NAME_PREFIX + "max-elapsed-time";
+
+    /**
+     * The dead-letter topic of the poison records, if it's absent, the original topic with
+     * {@link #KAFKA_LISTENER_DEAD_LETTER_TOPIC_SUFFIX_PROPERTY_NAME the suffix} will be used
+     */
+    public static final String KAFKA_LISTENER_DEAD_LETTER_TOPIC_PROPERTY_NAME = KAFKA_LISTENER_PROPERTY_NAME_PREFIX + "dead-letter-topic";
+
+    public static final String KAFKA_LISTENER_DEAD_LETTER_TOPIC_SUFFIX_PROPERTY_NAME = KAFKA_LISTENER_DEAD_LETTER_TOPIC_PROPERTY_NAME + "-suffix";
+
+    public static final String DEFAULT_KAFKA_LISTENER_DEAD_LETTER_TOPIC_SUFFIX = ".DLT";
+
+    /**
+     * The timeout in milliseconds to send a record to the dead-letter topic
+     */
+    public static final String KAFKA_LISTENER_DEAD_LETTER_SEND_TIMEOUT_PROPERTY_NAME = KAFKA_LISTENER_DEAD_LETTER_TOPIC_PROPERTY_NAME + "-send-timeout";
+
+    public static final long DEFAULT_KAFKA_LISTENER_DEAD_LETTER_SEND_TIMEOUT = 10000;
+
+    public static final String KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX = KAFKA_LISTENER_PROPERTY_NAME_PREFIX + "autoscaling.";
+
+    /**
+     * Whether the concurrency of listener is adjusted by the lag and the apply latency or not
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_ENABLED_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "enabled";
+
+    public static final boolean DEFAULT_KAFKA_LISTENER_AUTOSCALING_ENABLED = false;
+
+    /**
+     * The lower bound of concurrency, the default is the static concurrency
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_MIN_CONCURRENCY_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "min-concurrency";
+
+    /**
+     * The upper bound of concurrency, which should not be greater than the count of partitions
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_MAX_CONCURRENCY_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "max-concurrency";
+
+    public static final int DEFAULT_KAFKA_LISTENER_AUTOSCALING_MAX_CONCURRENCY = 8;
+
+    /**
+     * The interval in milliseconds of the evaluation
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_INTERVAL_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "interval";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_INTERVAL = 5000;
+
+    /**
+     * The upper threshold of the total lag in records
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LAG_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-up-lag";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LAG = 10000;
+
+    /**
+     * The lower threshold of the total lag in records
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LAG_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-down-lag";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LAG = 1000;
+
+    /**
+     * The upper threshold of the apply latency in milliseconds
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LATENCY_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-up-latency";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LATENCY = 5000;
+
+    /**
+     * The lower threshold of the apply latency in milliseconds
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LATENCY_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-down-latency";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LATENCY = 1000;
+
+    /**
+     * The consecutive evaluations above the upper thresholds before scaling up
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_UP_PERIODS_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-up-periods";
+
+    public static final int DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_PERIODS = 2;
+
+    /**
+     * The consecutive evaluations below the lower thresholds before scaling down
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_PERIODS_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "scale-down-periods";
+
+    public static final int DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_PERIODS = 12;
+
+    /**
+     * The time in milliseconds without any change after the last one
+     */
+    public static final String KAFKA_LISTENER_AUTOSCALING_COOLDOWN_PROPERTY_NAME = KAFKA_LISTENER_AUTOSCALING_PROPERTY_NAME_PREFIX + "cooldown";
+
+    public static final long DEFAULT_KAFKA_LISTENER_AUTOSCALING_COOLDOWN = 30000;
+
     private volatile Map<String, Object> consumerConfigs;
 
     /**
@@ -67,8 +250,77 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
      */
     private int listenerConcurrency;
 
+    /**
+     * Number of workers applying the records
+     */
+    private int applyWorkers;
+
+    /**
+     * The apply workers, which is <code>null</code> if the records are applied by the listener thread
+     */
+    private KafkaRecordsApplyWorkers recordsApplyWorkers;
+
+    /**
+     * The backoff of retrying to apply the records
+     */
+    private ExponentialBackOff retryBackOff;
+
+    private int retryMaxRetries;
+
+    private long retryMaxElapsedTime;
+
+    private volatile KafkaDeadLetterPublisher deadLetterPublisher;
+
+    private KafkaTemplate<byte[], byte[]> deadLetterKafkaTemplate;
+
+    /**
+     * The id of the local cluster, maybe <code>null</code>
+     */
+    private byte[] clusterId;
+
+    private final KafkaConsumerReplicationMetrics replicationMetrics = new KafkaConsumerReplicationMetrics();
+
+    /**
+     * The controller of the listener concurrency, which is <code>null</code> if the autoscaling is disabled
+     */
+    private KafkaConsumerConcurrencyController concurrencyController;
+
+    /**
+     * The interval in milliseconds of the evaluations by {@link #concurrencyController}
+     */
+    private long concurrencyControllerInterval;
+
+    /**
+     * The deduplicator of the records by the source id and sequence, which is <code>null</code> if disabled
+     */
+    private RedisCommandDeduplicator deduplicator;
+
+    private long deduplicatorCheckpointInterval;
+
+    private KafkaRecordsApplier recordsApplier;
+
+    @Autowired
+    private ObjectProvider<RedisCommandReplicator> redisCommandReplicatorProvider;
+
+    @Autowired
+    private BeanFactory beanFactory;
+
     private ApplicationEventPublisher applicationEventPublisher;
 
+    /**
+     * The bootstrapper, which is <code>null</code> if the bootstrap is disabled
+     */
+    private RedisReplicatorBootstrapper bootstrapper;
+
+    /**
+     * The container started after the bootstrap, which is <code>null</code> if the bootstrap is disabled
+     */
+    private ConcurrentMessageListenerContainer<byte[], byte[]> bootstrapListenerContainer;
+
+    private Thread bootstrapThread;
+
+    private volatile boolean running;
+
     public static boolean isEnabled(ApplicationContext applicationContext) {
         return getBoolean(applicationContext, KAFKA_CONSUMER_ENABLED_PROPERTY_NAME, DEFAULT_KAFKA_CONSUMER_ENABLED, "Kafka Consumer", "enabled");
     }
@@ -77,46 +329,177 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
     public ConcurrentMessageListenerContainer<byte[], byte[]> redisReplicatorConcurrentMessageListenerContainer() {
         String[] topics = getTopics();
         ContainerProperties containerProperties = new ContainerProperties(topics);
+        // The offsets are acknowledged after the batch is applied
+        containerProperties.setAckMode(MANUAL);
         ConsumerFactory<byte[], byte[]> redisReplicatorConsumerFactory = redisReplicatorConsumerFactory();
         ConcurrentMessageListenerContainer<byte[], byte[]> listenerContainer = new ConcurrentMessageListenerContainer<>(redisReplicatorConsumerFactory, containerProperties);
         listenerContainer.setConcurrency(getConcurrency(topics));
-        listenerContainer.setupMessageListener(batchAcknowledgingMessageListener());
+        listenerContainer.setupMessageListener(batchAcknowledgingConsumerAwareMessageListener());
+        listenerContainer.setCommonErrorHandler(errorHandler());
+        bootstrapIfRequired(listenerContainer);
+        initConcurrencyController(listenerContainer);
         return listenerContainer;
     }
 
+    private void initConcurrencyController(ConcurrentMessageListenerContainer<byte[], byte[]> listenerContainer) {
+        if (!environment.getProperty(KAFKA_LISTENER_AUTOSCALING_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_ENABLED)) {
+            return;
+        }
+        int minConcurrency = environment.getProperty(KAFKA_LISTENER_AUTOSCALING_MIN_CONCURRENCY_PROPERTY_NAME, int.class, listenerContainer.getConcurrency());
+        int maxConcurrency = environment.getProperty(KAFKA_LISTENER_AUTOSCALING_MAX_CONCURRENCY_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_MAX_CONCURRENCY);
+        KafkaConsumerConcurrencyController concurrencyController = new KafkaConsumerConcurrencyController(listenerContainer, replicationMetrics,
+                minConcurrency, Math.max(minConcurrency, maxConcurrency),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LAG_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LAG),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LAG_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LAG),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LATENCY_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_LATENCY),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LATENCY_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_LATENCY),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_UP_PERIODS_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_UP_PERIODS),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_PERIODS_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_SCALE_DOWN_PERIODS),
+                environment.getProperty(KAFKA_LISTENER_AUTOSCALING_COOLDOWN_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_COOLDOWN));
+        // The controller is started and stopped within the lifecycle of the container
+        this.concurrencyControllerInterval = environment.getProperty(KAFKA_LISTENER_AUTOSCALING_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_AUTOSCALING_INTERVAL);
+        this.concurrencyController = concurrencyController;
+        logger.debug("The autoscaling of Kafka listener concurrency is enabled, min : {} , max : {}",
+                concurrencyController.getMinConcurrency(), concurrencyController.getMaxConcurrency());
+    }
+
+    /**
+     * If the bootstrap is enabled, the container is started by {@link #start()} after the domains never bootstrapped
+     * are bootstrapped, and the consumer group catches up from the end offsets recorded before the bootstrap.
+     *
+     * @param listenerContainer the container
+     */
+    private void bootstrapIfRequired(ConcurrentMessageListenerContainer<byte[], byte[]> listenerContainer) {
+        RedisConfiguration redisConfiguration = redisReplicatorConfiguration.getRedisConfiguration();
+        RedisReplicatorBootstrapper bootstrapper = RedisReplicatorBootstrapper.create(environment, beanFactory,
+                redisCommandReplicatorProvider.getIfAvailable(), redisConfiguration.getApplicationName());
+        if (bootstrapper == null) {
+            return;
+        }
+        listenerContainer.setAutoStartup(false);
+        this.bootstrapper = bootstrapper;
+        this.bootstrapListenerContainer = listenerContainer;
+    }
+
+    /**
+     * Bootstrap the domains never bootstrapped, then start the container, even if the bootstrap fails, which leaves
+     * the domains pending for the next startup.
+     */
+    private void bootstrap() {
+        List<String> domains = redisReplicatorConfiguration.getDomains();
+        try {
+            bootstrapper.bootstrap(domains, this::seekToEnd);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Throwable e) {
+            logger.error("[Redis-Replicator-Kafka-C-F] fails to bootstrap the domains : {}, they will be bootstrapped on the next startup", domains, e);
+        }
+        if (running) {
+            bootstrapListenerContainer.start();
+        }
+    }
+
+    /**
+     * Commit the end offsets of the domain's topic for the consumer group, which must have no active members
+     *
+     * @param domain the domain
+     */
+    private void seekToEnd(String domain) {
+        String topic = createTopic(domain);
+        try (Consumer<byte[], byte[]> consumer = redisReplicatorConsumerFactory().createConsumer()) {
+            List<PartitionInfo> partitionInfos = consumer.partitionsFor(topic);
+            if (partitionInfos == null || partitionInfos.isEmpty()) {
+                return;
+            }
+            List<TopicPartition> topicPartitions = new ArrayList<>(partitionInfos.size());
+            for (PartitionInfo partitionInfo : partitionInfos) {
+                topicPartitions.add(new TopicPartition(topic, partitionInfo.partition()));
+            }
+            Map<TopicPartition, OffsetAndMetadata> offsets = new HashMap<>(topicPartitions.size());
+            for (Map.Entry<TopicPartition, Long> entry : consumer.endOffsets(topicPartitions).entrySet()) {
+                offsets.put(entry.getKey(), new OffsetAndMetadata(entry.getValue()));
+            }
+            consumer.commitSync(offsets);
+            logger.debug("The end offsets of Topic: {} are committed : {}", topic, offsets);
+        }
+    }
+
     private int getConcurrency(String[] topics) {
         int topicCount = topics.length;
         return topicCount > listenerConcurrency ? topicCount : listenerConcurrency;
     }
 
-    private BatchAcknowledgingMessageListener<byte[], byte[]> batchAcknowledgingMessageListener() {
-        return (data, acknowledgment) -> {
-            int size = data.size();
-            for (int i = 0; i < size; i++) {
-                ConsumerRecord<byte[], byte[]> consumerRecord = data.get(i);
-                consumeRecord(consumerRecord);
+    /**
+     * The batch that is thrown by the listener (e.g. the Redis connection is lost) is redelivered after the backoff, which
+     * never stops, thus the records are never skipped.
+     *
+     * @return non-null
+     */
+    private DefaultErrorHandler errorHandler() {
+        // The max elapsed time of the retry backoff is unlimited
+        DefaultErrorHandler errorHandler = new DefaultErrorHandler(retryBackOff);
+        // All failures are retried, the poison records are routed to the dead-letter topic by the listener
+        errorHandler.setClassifications(Collections.emptyMap(), true);
+        return errorHandler;
+    }
+
+    /**
+     * The records are applied by {@link KafkaRecordsApplier}, the poison records are routed to the dead-letter topic, and
+     * the batch is acknowledged unless the failure is transient or the max elapsed time is exceeded.
+     *
+     * @return non-null
+     */
+    private BatchAcknowledgingConsumerAwareMessageListener<byte[], byte[]> batchAcknowledgingConsumerAwareMessageListener() {
+        return (data, acknowledgment, consumer) -> {
+            long deadline = System.currentTimeMillis() + retryMaxElapsedTime;
+            if (recordsApplyWorkers == null) {
+                recordsApplier.apply(data, deadline);
+            } else {
+                recordsApplyWorkers.apply(data, share -> recordsApplier.apply(share, deadline));
             }
+            acknowledge(acknowledgment);
+            replicationMetrics.recordLag(consumer);
+            recordsApplier.checkpointDeduplicator();
         };
     }
 
-    private void consumeRecord(ConsumerRecord<byte[], byte[]> consumerRecord) {
-        byte[] key = consumerRecord.key();
-        byte[] value = consumerRecord.value();
-        int partition = consumerRecord.partition();
-        try {
-            RedisCommandEvent redisCommandEvent = Serializers.deserialize(value, RedisCommandEvent.class);
-            RedisCommandReplicatedEvent redisCommandReplicatedEvent = createRedisCommandReplicatedEvent(redisCommandEvent, consumerRecord);
-            applicationEventPublisher.publishEvent(redisCommandReplicatedEvent);
-            logger.debug("[Redis-Replicator-Kafka-C-S] Processing Redis Replicator message succeeded. Topic: {}, key: {}, data size: {} bytes, partition: {}", consumerRecord.topic(), key, value.length, partition);
-        } catch (Throwable e) {
-            logger.warn("[Redis-Replicator-Kafka-C-F] fails to process a Redis Replicator message. Topic: {}, key: {}, data size: {} bytes, partition: {}", consumerRecord.topic(), key, value.length, partition, e);
+    private void acknowledge(Acknowledgment acknowledgment) {
+        if (acknowledgment != null) {
+            acknowledgment.acknowledge();
+        }
+    }
+
+    private KafkaDeadLetterPublisher getDeadLetterPublisher() {
+        KafkaDeadLetterPublisher deadLetterPublisher = this.deadLetterPublisher;
+        if (deadLetterPublisher == null) {
+            synchronized (this) {
+                deadLetterPublisher = this.deadLetterPublisher;
+                if (deadLetterPublisher == null) {
+                    deadLetterPublisher = createDeadLetterPublisher();
+                    this.deadLetterPublisher = deadLetterPublisher;
+                }
+            }
         }
+        return deadLetterPublisher;
     }
 
-    private RedisCommandReplicatedEvent createRedisCommandReplicatedEvent(RedisCommandEvent redisCommandEvent, ConsumerRecord<byte[], byte[]> consumerRecord) {
-        String topic = consumerRecord.topic();
-        String domain = getDomain(topic);
-        return new RedisCommandReplicatedEvent(redisCommandEvent, domain);
+    private KafkaDeadLetterPublisher createDeadLetterPublisher() {
+        Map<String, Object> producerConfigs = new HashMap<>();
+        producerConfigs.put(BOOTSTRAP_SERVERS_CONFIG, brokerList);
+        // Kafka Common properties
+        producerConfigs.putAll(getSubProperties(environment, KAFKA_PROPERTY_NAME_PREFIX));
+        // Kafka Producer properties
+        producerConfigs.putAll(getSubProperties(environment, KAFKA_PRODUCER_PROPERTY_NAME_PREFIX));
+        DefaultKafkaProducerFactory<byte[], byte[]> producerFactory = new DefaultKafkaProducerFactory<>(producerConfigs);
+        producerFactory.setKeySerializer(new ByteArraySerializer());
+        producerFactory.setValueSerializer(new ByteArraySerializer());
+        KafkaTemplate<byte[], byte[]> kafkaTemplate = new KafkaTemplate<>(producerFactory);
+        this.deadLetterKafkaTemplate = kafkaTemplate;
+        String deadLetterTopic = environment.getProperty(KAFKA_LISTENER_DEAD_LETTER_TOPIC_PROPERTY_NAME);
+        String deadLetterTopicSuffix = environment.getProperty(KAFKA_LISTENER_DEAD_LETTER_TOPIC_SUFFIX_PROPERTY_NAME, DEFAULT_KAFKA_LISTENER_DEAD_LETTER_TOPIC_SUFFIX);
+        long sendTimeout = environment.getProperty(KAFKA_LISTENER_DEAD_LETTER_SEND_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_DEAD_LETTER_SEND_TIMEOUT);
+        return new KafkaDeadLetterPublisher(kafkaTemplate, deadLetterTopic, deadLetterTopicSuffix, sendTimeout);
     }
 
     private ConsumerFactory<byte[], byte[]> redisReplicatorConsumerFactory() {
@@ -131,6 +514,7 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
         super.afterPropertiesSet();
         initConsumerConfigs();
         initListenerConfigs();
+        initClusterId();
         logger.debug("Redis Replicator Kafka consumer configuration has been initialized");
     }
 
@@ -153,6 +537,72 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
     private void initListenerConfigs() {
         this.listenerPollTimeOut = environment.getProperty(KAFKA_LISTENER_POLL_TIMEOUT_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_POLL_TIMEOUT);
         this.listenerConcurrency = environment.getProperty(KAFKA_LISTENER_CONCURRENCY_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_CONCURRENCY);
+        this.applyWorkers = environment.getProperty(KAFKA_LISTENER_APPLY_WORKERS_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_APPLY_WORKERS);
+        if (applyWorkers > 1) {
+            this.recordsApplyWorkers = new KafkaRecordsApplyWorkers(applyWorkers);
+        }
+        initRetryBackOff();
+        initDeduplicator();
+        this.recordsApplier = new KafkaRecordsApplier();
+    }
+
+    private void initDeduplicator() {
+        if (!environment.getProperty(CONSUMER_DEDUP_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_DEDUP_ENABLED)) {
+            return;
+        }
+        int windowSize = environment.getProperty(CONSUMER_DEDUP_WINDOW_SIZE_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_DEDUP_WINDOW_SIZE);
+        long idleTimeout = environment.getProperty(CONSUMER_DEDUP_IDLE_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_IDLE_TIMEOUT);
+        this.deduplicatorCheckpointInterval = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_INTERVAL);
+        RedisCommandReplicator redisCommandReplicator = redisCommandReplicatorProvider.getIfAvailable();
+        if (redisCommandReplicator != null && environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_ENABLED)) {
+            RedisConfiguration redisConfiguration = redisReplicatorConfiguration.getRedisConfiguration();
+            String checkpointKey = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_KEY_PROPERTY_NAME, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX + redisConfiguration.getApplicationName());
+            long checkpointTimeToLive = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE);
+            this.deduplicator = new RedisCommandDeduplicator(windowSize, idleTimeout, redisCommandReplicator.getRedisConnectionFactory(), checkpointKey, checkpointTimeToLive);
+            logger.debug("The deduplicator of Redis Replicator is enabled with the checkpoint : {}", checkpointKey);
+        } else {
+            this.deduplicator = new RedisCommandDeduplicator(windowSize, idleTimeout);
+            logger.debug("The deduplicator of Redis Replicator is enabled");
+        }
+    }
+
+    private void initClusterId() {
+        String clusterId = redisReplicatorConfiguration.getClusterId();
+        this.clusterId = clusterId == null ? null : clusterId.getBytes(UTF_8);
+    }
+
+    private void initRetryBackOff() {
+        this.retryMaxRetries = environment.getProperty(KAFKA_LISTENER_RETRY_MAX_RETRIES_PROPERTY_NAME, int.class, DEFAULT_KAFKA_LISTENER_RETRY_MAX_RETRIES);
+        this.retryMaxElapsedTime = environment.getProperty(KAFKA_LISTENER_RETRY_MAX_ELAPSED_TIME_PROPERTY_NAME, long.class, getMaxPollInterval() / 2);
+        // The retries are bound by the max retries rather than the max elapsed time
+        ExponentialBackOff backOff = new ExponentialBackOff();
+        backOff.setInitialInterval(environment.getProperty(KAFKA_LISTENER_RETRY_INITIAL_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_RETRY_INITIAL_INTERVAL));
+        backOff.setMultiplier(environment.getProperty(KAFKA_LISTENER_RETRY_MULTIPLIER_PROPERTY_NAME, double.class, DEFAULT_KAFKA_LISTENER_RETRY_MULTIPLIER));
+        backOff.setMaxInterval(environment.getProperty(KAFKA_LISTENER_RETRY_MAX_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_KAFKA_LISTENER_RETRY_MAX_INTERVAL));
+        this.retryBackOff = backOff;
+    }
+
+    private long getMaxPollInterval() {
+        Object maxPollInterval = getConsumerConfigs().get(MAX_POLL_INTERVAL_MS_CONFIG);
+        return maxPollInterval == null ? DEFAULT_MAX_POLL_INTERVAL_MS : Long.parseLong(maxPollInterval.toString());
+    }
+
+    /**
+     * Get the replication metrics per domain and partition
+     *
+     * @return non-null
+     */
+    public KafkaConsumerReplicationMetrics getReplicationMetrics() {
+        return replicationMetrics;
+    }
+
+    /**
+     * Get the controller of the listener concurrency
+     *
+     * @return <code>null</code> if the autoscaling is disabled
+     */
+    public KafkaConsumerConcurrencyController getConcurrencyController() {
+        return concurrencyController;
     }
 
     private Map<String, Object> getConsumerConfigs() {
@@ -169,8 +619,149 @@ public class KafkaConsumerRedisReplicatorConfiguration extends KafkaRedisReplica
         this.applicationEventPublisher = applicationEventPublisher;
     }
 
+    /**
+     * Start the bootstrap and the concurrency controller after the container is started, since the phase is higher
+     */
+    @Override
+    public void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        KafkaConsumerConcurrencyController concurrencyController = this.concurrencyController;
+        if (concurrencyController != null) {
+            concurrencyController.start(concurrencyControllerInterval);
+        }
+        if (bootstrapper == null) {
+            return;
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("Redis-Replicator-Bootstrap-");
+        threadFactory.setDaemon(true);
+        Thread bootstrapThread = threadFactory.newThread(this::bootstrap);
+        bootstrapThread.start();
+        this.bootstrapThread = bootstrapThread;
+    }
+
+    /**
+     * Stop the bootstrap and the concurrency controller before the container is stopped, thus the container is never
+     * restarted by the controller during the shutdown
+     */
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        KafkaConsumerConcurrencyController concurrencyController = this.concurrencyController;
+        if (concurrencyController != null) {
+            // Wait for the scaling in progress
+            concurrencyController.close();
+        }
+        Thread bootstrapThread = this.bootstrapThread;
+        if (bootstrapThread != null) {
+            // The daemon thread stops waiting for the lock or copying the keyspace, the domains stay pending
+            bootstrapThread.interrupt();
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        // Started after the container and stopped before it
+        return Integer.MAX_VALUE;
+    }
+
     @Override
     public void destroy() {
         logger.debug("Redis Replicator Kafka consumer configuration is being destroyed");
+        KafkaConsumerConcurrencyController concurrencyController = this.concurrencyController;
+        if (concurrencyController != null) {
+            concurrencyController.close();
+        }
+        KafkaRecordsApplyWorkers recordsApplyWorkers = this.recordsApplyWorkers;
+        if (recordsApplyWorkers != null) {
+            recordsApplyWorkers.shutdown();
+        }
+        RedisCommandDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null) {
+            deduplicator.checkpoint();
+        }
+        KafkaTemplate<byte[], byte[]> deadLetterKafkaTemplate = this.deadLetterKafkaTemplate;
+        if (deadLetterKafkaTemplate != null) {
+            ((DefaultKafkaProducerFactory) deadLetterKafkaTemplate.getProducerFactory()).reset();
+        }
+    }
+    /**
+     * The {@link RedisCommandReplicationApplier} of Kafka records, whose sequences are monotonic per topic partition
+     */
+    private class KafkaRecordsApplier extends RedisCommandReplicationApplier<ConsumerRecord<byte[], byte[]>> {
+
+        private KafkaRecordsApplier() {
+            super(redisCommandReplicatorProvider.getIfAvailable(), retryBackOff, retryMaxRetries, deduplicator, deduplicatorCheckpointInterval,
+                    applicationEventPublisher);
+        }
+
+        /**
+         * Whether the record is originated from the local cluster or not, which is evaluated by the header without
+         * deserializing the record
+         */
+        @Override
+        protected boolean isLocallyOriginated(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            byte[] clusterId = KafkaConsumerRedisReplicatorConfiguration.this.clusterId;
+            if (clusterId == null) {
+                return false;
+            }
+            Header header = consumerRecord.headers().lastHeader(CLUSTER_ID_HEADER_NAME);
+            return header != null && Arrays.equals(clusterId, header.value());
+        }
+
+        @Override
+        protected String getSourceId(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            return KafkaRedisReplicatorConfiguration.getSourceId(consumerRecord.headers());
+        }
+
+        @Override
+        protected long getSequence(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            return KafkaRedisReplicatorConfiguration.getSequence(consumerRecord.headers());
+        }
+
+        @Override
+        protected String getSequenceScope(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            return consumerRecord.topic() + '-' + consumerRecord.partition();
+        }
+
+        @Override
+        protected RedisCommandReplicatedEvent createEvent(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            byte[] value = consumerRecord.value();
+            RedisCommandEvent redisCommandEvent = Serializers.deserialize(value, RedisCommandEvent.class);
+            // The creation time and sequence at the source are carried by the record rather than the serialized event
+            long timestamp = consumerRecord.timestamp();
+            if (timestamp > -1) {
+                redisCommandEvent.setCreationTime(timestamp);
+            }
+            redisCommandEvent.setSequence(getSequence(consumerRecord));
+            logger.debug("[Redis-Replicator-Kafka-C-S] Processing Redis Replicator message succeeded. Topic: {}, key: {}, data size: {} bytes, partition: {}",
+                    consumerRecord.topic(), consumerRecord.key(), value.length, consumerRecord.partition());
+            return new RedisCommandReplicatedEvent(redisCommandEvent, getDomain(consumerRecord.topic()));
+        }
+
+        @Override
+        protected void onApplied(ConsumerRecord<byte[], byte[]> consumerRecord, RedisCommandReplicatedEvent event, long appliedTime) {
+            replicationMetrics.recordApplied(consumerRecord, event, getSourceId(consumerRecord), appliedTime);
+        }
+
+        @Override
+        protected void onFailed(ConsumerRecord<byte[], byte[]> consumerRecord, Throwable failure) {
+            getDeadLetterPublisher().publish(consumerRecord, failure);
+        }
+
+        @Override
+        protected String describe(ConsumerRecord<byte[], byte[]> consumerRecord) {
+            return "Topic: " + consumerRecord.topic() + ", partition: " + consumerRecord.partition() + ", offset: " + consumerRecord.offset();
+        }
     }
 }
@@ -0,0 +1,335 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import io.github.microsphere.spring.redis.replicator.util.SequenceWindow;
+import org.apache.kafka.clients.consumer.Consumer;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.apache.kafka.common.TopicPartition;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * The metrics of the replication per domain and partition on the consumer side, which are recorded after the events
+ * are applied :
+ * <ul>
+ *     <li>The apply lag in time, which is the elapsed time from the creation of the last applied event at the source</li>
+ *     <li>The apply lag in records, which is reported by the Kafka consumer fetcher</li>
+ *     <li>The gaps of the sequences per source, which are tracked by {@link SequenceWindow}</li>
+ *     <li>The histogram of the end-to-end apply latency</li>
+ * </ul>
+ * The alerts may be fired on the replication delay rather than the consumer group lag only.
+ * <p>
+ * The instance is thread-safe.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see KafkaConsumerRedisReplicatorConfiguration#getReplicationMetrics()
+ * @since 1.0.0
+ */
+public class KafkaConsumerReplicationMetrics {
+
+    /**
+     * The upper bounds in milliseconds of the latency histogram buckets, the last bucket is unbounded
+     */
+    public static final long[] LATENCY_BUCKET_BOUNDS = {1, 2, 5, 10, 20, 50, 100, 200, 500, 1000, 2000, 5000, 10000, 30000, 60000};
+
+    /**
+     * The name of Kafka consumer fetcher metric of the records lag per partition
+     */
+    static final String RECORDS_LAG_METRIC_NAME = "records-lag";
+
+    static final String CONSUMER_FETCH_MANAGER_METRIC_GROUP = "consumer-fetch-manager-metrics";
+
+    private final int sequenceWindowSize;
+
+    private final ConcurrentMap<TopicPartition, PartitionMetrics> partitionMetrics = new ConcurrentHashMap<>();
+
+    public KafkaConsumerReplicationMetrics() {
+        this(SequenceWindow.DEFAULT_SIZE);
+    }
+
+    /**
+     * @param sequenceWindowSize the size of {@link SequenceWindow} per source
+     */
+    public KafkaConsumerReplicationMetrics(int sequenceWindowSize) {
+        this.sequenceWindowSize = sequenceWindowSize;
+    }
+
+    /**
+     * Record the applied event
+     *
+     * @param consumerRecord the record of event
+     * @param event          the applied event
+     * @param sourceId       the source id, maybe <code>null</code>
+     * @param appliedTime    the time in milliseconds when the event was applied
+     */
+    public void recordApplied(ConsumerRecord<?, ?> consumerRecord, RedisCommandReplicatedEvent event, String sourceId, long appliedTime) {
+        RedisCommandEvent sourceEvent = event.getSourceEvent();
+        PartitionMetrics metrics = getOrCreatePartitionMetrics(event.getDomain(), consumerRecord.topic(), consumerRecord.partition());
+        metrics.recordApplied(consumerRecord.offset(), sourceEvent.getCreationTime(), sourceId, sourceEvent.getSequence(), appliedTime);
+    }
+
+    /**
+     * Record the lag in records of the partitions from the metrics of Kafka consumer, which does not request the broker
+     *
+     * @param consumer the Kafka consumer
+     */
+    public void recordLag(Consumer<?, ?> consumer) {
+        if (consumer == null || partitionMetrics.isEmpty()) {
+            return;
+        }
+        Map<MetricName, ? extends Metric> metrics = consumer.metrics();
+        for (PartitionMetrics partitionMetrics : this.partitionMetrics.values()) {
+            partitionMetrics.recordLag(metrics);
+        }
+    }
+
+    private PartitionMetrics getOrCreatePartitionMetrics(String domain, String topic, int partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition);
+        PartitionMetrics metrics = partitionMetrics.get(topicPartition);
+        if (metrics == null) {
+            metrics = partitionMetrics.computeIfAbsent(topicPartition, tp -> new PartitionMetrics(domain, topic, partition, sequenceWindowSize));
+        }
+        return metrics;
+    }
+
+    /**
+     * @param topic     the topic
+     * @param partition the partition
+     * @return <code>null</code> if no event of the partition was applied
+     */
+    public PartitionMetrics getPartitionMetrics(String topic, int partition) {
+        return partitionMetrics.get(new TopicPartition(topic, partition));
+    }
+
+    /**
+     * @return the metrics of all partitions
+     */
+    public Collection<PartitionMetrics> getPartitionMetrics() {
+        return unmodifiableCollection(partitionMetrics.values());
+    }
+
+    static int getLatencyBucket(long latency) {
+        long[] bounds = LATENCY_BUCKET_BOUNDS;
+        int length = bounds.length;
+        for (int i = 0; i < length; i++) {
+            if (latency <= bounds[i]) {
+                return i;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * The replication metrics of a domain partition
+     */
+    public static class PartitionMetrics {
+
+        private final String domain;
+
+        private final String topic;
+
+        private final int partition;
+
+        private final int sequenceWindowSize;
+
+        private final AtomicLong appliedCount = new AtomicLong();
+
+        private final AtomicLong lastOffset = new AtomicLong(-1);
+
+        private volatile long lagTime;
+
+        private volatile long lagRecords = -1;
+
+        /**
+         * The cached name of the records lag metric, which is resolved once
+         */
+        private volatile MetricName recordsLagMetricName;
+
+        private final ConcurrentMap<String, SequenceWindow> sequenceWindows = new ConcurrentHashMap<>();
+
+        private final AtomicLongArray latencyHistogram = new AtomicLongArray(LATENCY_BUCKET_BOUNDS.length + 1);
+
+        PartitionMetrics(String domain, String topic, int partition, int sequenceWindowSize) {
+            this.domain = domain;
+            this.topic = topic;
+            this.partition = partition;
+            this.sequenceWindowSize = sequenceWindowSize;
+        }
+
+        void recordApplied(long offset, long creationTime, String sourceId, long sequence, long appliedTime) {
+            appliedCount.incrementAndGet();
+            if (offset > lastOffset.get()) {
+                lastOffset.accumulateAndGet(offset, Math::max);
+            }
+            long latency = Math.max(0, appliedTime - creationTime);
+            this.lagTime = latency;
+            latencyHistogram.incrementAndGet(getLatencyBucket(latency));
+            if (sourceId != null && sequence > -1) {
+                getSequenceWindow(sourceId).mark(sequence);
+            }
+        }
+
+        void recordLag(Map<MetricName, ? extends Metric> metrics) {
+            MetricName metricName = this.recordsLagMetricName;
+            Metric metric = metricName == null ? null : metrics.get(metricName);
+            if (metric == null) {
+                // The metric is re-resolved after the rebalance
+                metricName = findRecordsLagMetricName(metrics);
+                if (metricName == null) {
+                    return;
+                }
+                this.recordsLagMetricName = metricName;
+                metric = metrics.get(metricName);
+            }
+            Object value = metric.metricValue();
+            if (value instanceof Number) {
+                double lag = ((Number) value).doubleValue();
+                if (!Double.isNaN(lag)) {
+                    this.lagRecords = (long) lag;
+                }
+            }
+        }
+
+        private MetricName findRecordsLagMetricName(Map<MetricName, ? extends Metric> metrics) {
+            String partition = String.valueOf(this.partition);
+            for (MetricName metricName : metrics.keySet()) {
+                if (RECORDS_LAG_METRIC_NAME.equals(metricName.name())
+                        && CONSUMER_FETCH_MANAGER_METRIC_GROUP.equals(metricName.group())) {
+                    Map<String, String> tags = metricName.tags();
+                    if (partition.equals(tags.get("partition")) && isTopic(tags.get("topic"))) {
+                        return metricName;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private boolean isTopic(String topic) {
+            // The dots of topic are replaced by the underscores in the tag since some Kafka versions
+            return this.topic.equals(topic) || this.topic.replace('.', '_').equals(topic);
+        }
+
+        private SequenceWindow getSequenceWindow(String sourceId) {
+            SequenceWindow sequenceWindow = sequenceWindows.get(sourceId);
+            if (sequenceWindow == null) {
+                sequenceWindow = sequenceWindows.computeIfAbsent(sourceId, id -> new SequenceWindow(sequenceWindowSize));
+            }
+            return sequenceWindow;
+        }
+
+        public String getDomain() {
+            return domain;
+        }
+
+        public String getTopic() {
+            return topic;
+        }
+
+        public int getPartition() {
+            return partition;
+        }
+
+        /**
+         * @return the count of applied events
+         */
+        public long getAppliedCount() {
+            return appliedCount.get();
+        }
+
+        /**
+         * @return the offset of the last applied record, or <code>-1</code> if none
+         */
+        public long getLastOffset() {
+            return lastOffset.get();
+        }
+
+        /**
+         * @return the elapsed time in milliseconds from the creation of the last applied event to its apply
+         */
+        public long getLagTime() {
+            return lagTime;
+        }
+
+        /**
+         * @return the count of records behind the end of the partition, or <code>-1</code> if unknown
+         */
+        public long getLagRecords() {
+            return lagRecords;
+        }
+
+        /**
+         * @return the count of the sequences never applied from all sources
+         */
+        public long getGapCount() {
+            long gapCount = 0;
+            for (SequenceWindow sequenceWindow : sequenceWindows.values()) {
+                gapCount += sequenceWindow.getGapCount();
+            }
+            return gapCount;
+        }
+
+        /**
+         * @return the count of the sequences applied more than once from all sources
+         */
+        public long getDuplicateCount() {
+            long duplicateCount = 0;
+            for (SequenceWindow sequenceWindow : sequenceWindows.values()) {
+                duplicateCount += sequenceWindow.getDuplicateCount();
+            }
+            return duplicateCount;
+        }
+
+        /**
+         * @return the counts of the latency buckets, whose upper bounds are {@link #LATENCY_BUCKET_BOUNDS}
+         * and the last one is unbounded
+         */
+        public long[] getLatencyHistogram() {
+            int length = latencyHistogram.length();
+            long[] histogram = new long[length];
+            for (int i = 0; i < length; i++) {
+                histogram[i] = latencyHistogram.get(i);
+            }
+            return histogram;
+        }
+
+        @Override
+        public String toString() {
+            return "PartitionMetrics{" +
+                    "domain='" + domain + '\'' +
+                    ", topic='" + topic + '\'' +
+                    ", partition=" + partition +
+                    ", appliedCount=" + getAppliedCount() +
+                    ", lastOffset=" + getLastOffset() +
+                    ", lagTime=" + lagTime +
+                    ", lagRecords=" + lagRecords +
+                    ", gapCount=" + getGapCount() +
+                    '}';
+        }
+    }
+}
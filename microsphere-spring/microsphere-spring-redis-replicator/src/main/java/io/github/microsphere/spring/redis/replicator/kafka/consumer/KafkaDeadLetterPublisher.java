@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The publisher of the poison Redis Replicator records to the dead-letter topic, the failure reason and the original
+ * topic, partition and offset are recorded in the {@link KafkaHeaders#DLT_EXCEPTION_MESSAGE "kafka_dlt-*"} headers.
+ * <p>
+ * The record is sent synchronously, thus the offset of the original record is acknowledged only after it's accepted by
+ * the dead-letter topic.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see KafkaConsumerRedisReplicatorConfiguration
+ * @since 1.0.0
+ */
+public class KafkaDeadLetterPublisher {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaDeadLetterPublisher.class);
+
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+
+    private final String deadLetterTopic;
+
+    private final String deadLetterTopicSuffix;
+
+    private final long sendTimeout;
+
+    /**
+     * @param kafkaTemplate         {@link KafkaTemplate}
+     * @param deadLetterTopic       the dead-letter topic for all records, if it's blank, the topic of record with
+     *                              <code>deadLetterTopicSuffix</code> will be used
+     * @param deadLetterTopicSuffix the suffix of dead-letter topic
+     * @param sendTimeout           the timeout in milliseconds to send the record
+     */
+    public KafkaDeadLetterPublisher(KafkaTemplate<byte[], byte[]> kafkaTemplate, String deadLetterTopic,
+                                    String deadLetterTopicSuffix, long sendTimeout) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.deadLetterTopic = deadLetterTopic;
+        this.deadLetterTopicSuffix = deadLetterTopicSuffix;
+        this.sendTimeout = sendTimeout;
+    }
+
+    /**
+     * Publish the poison record to the dead-letter topic
+     *
+     * @param consumerRecord the poison record
+     * @param failure        the failure of record
+     * @throws IllegalStateException if the record can't be sent
+     */
+    public void publish(ConsumerRecord<byte[], byte[]> consumerRecord, Throwable failure) throws IllegalStateException {
+        String topic = getDeadLetterTopic(consumerRecord.topic());
+        ProducerRecord<byte[], byte[]> producerRecord = createDeadLetterRecord(topic, consumerRecord, failure);
+        try {
+            kafkaTemplate.send(producerRecord).get(sendTimeout, MILLISECONDS);
+            logger.warn("[Redis-Replicator-Kafka-C-DLT] The poison record[topic: {}, partition: {}, offset: {}] has been sent to the dead-letter topic: {}",
+                    consumerRecord.topic(), consumerRecord.partition(), consumerRecord.offset(), topic, failure);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("The thread is interrupted while sending the record to the dead-letter topic : " + topic, e);
+        } catch (ExecutionException | TimeoutException e) {
+            throw new IllegalStateException("The record can't be sent to the dead-letter topic : " + topic, e);
+        }
+    }
+
+    protected String getDeadLetterTopic(String topic) {
+        return StringUtils.hasText(deadLetterTopic) ? deadLetterTopic : topic + deadLetterTopicSuffix;
+    }
+
+    static ProducerRecord<byte[], byte[]> createDeadLetterRecord(String topic, ConsumerRecord<byte[], byte[]> consumerRecord, Throwable failure) {
+        Headers headers = new RecordHeaders();
+        for (Header header : consumerRecord.headers()) {
+            headers.add(header);
+        }
+        Throwable cause = getRootCause(failure);
+        headers.add(KafkaHeaders.DLT_EXCEPTION_FQCN, cause.getClass().getName().getBytes(UTF_8));
+        String message = cause.getMessage();
+        if (message != null) {
+            headers.add(KafkaHeaders.DLT_EXCEPTION_MESSAGE, message.getBytes(UTF_8));
+        }
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TOPIC, consumerRecord.topic().getBytes(UTF_8));
+        headers.add(KafkaHeaders.DLT_ORIGINAL_PARTITION, ByteBuffer.allocate(Integer.BYTES).putInt(consumerRecord.partition()).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_OFFSET, ByteBuffer.allocate(Long.BYTES).putLong(consumerRecord.offset()).array());
+        headers.add(KafkaHeaders.DLT_ORIGINAL_TIMESTAMP, ByteBuffer.allocate(Long.BYTES).putLong(consumerRecord.timestamp()).array());
+        // The partition is left to the Kafka partitioner, the partitions of dead-letter topic may be less
+        return new ProducerRecord<>(topic, null, consumerRecord.key(), consumerRecord.value(), headers);
+    }
+
+    private static Throwable getRootCause(Throwable failure) {
+        Throwable cause = failure;
+        while (cause.getCause() != null && cause.getCause() != cause) {
+            cause = cause.getCause();
+        }
+        return cause;
+    }
+}
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.common.header.Header;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findRedisCommandMethod;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.METHOD_ID_HEADER_NAME;
+import static org.springframework.data.redis.connection.ClusterSlotHashUtil.calculateSlot;
+
+/**
+ * The workers applying the Redis Replicator records in parallel, the records are dispatched by the hash slot of Redis key,
+ * thus the order of records on the same key is kept.
+ * <p>
+ * The keyless and multi-key records (e.g. <code>DEL k1 k2</code>, <code>MSET</code> or <code>RENAME</code>) can't be
+ * dispatched to a single worker without breaking the order of the keys they touch, so they are applied as the barriers :
+ * all workers are drained, the barrier records are applied serially by the caller thread, and then the workers resume.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see KafkaConsumerRedisReplicatorConfiguration
+ * @since 1.0.0
+ */
+class KafkaRecordsApplyWorkers {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaRecordsApplyWorkers.class);
+
+    /**
+     * The names of Redis commands whose first parameter is a key, but which touch the other keys
+     */
+    private static final Set<String> MULTI_KEY_COMMAND_METHOD_NAMES = new HashSet<>(Arrays.asList(
+            "rename", "renamenx", "copy", "smove", "rpoplpush", "brpoplpush", "lmove", "blmove",
+            "sunionstore", "sinterstore", "sdiffstore", "zunionstore", "zinterstore", "zdiffstore",
+            "zrangestorebylex", "zrangestorebyscore", "pfmerge", "bitop", "geosearchstore", "sort"));
+
+    private static final Map<Method, Boolean> multiKeyCommandMethodsCache = new ConcurrentHashMap<>();
+
+    private final int workers;
+
+    private final ExecutorService executor;
+
+    KafkaRecordsApplyWorkers(int workers) {
+        this.workers = workers;
+        this.executor = Executors.newFixedThreadPool(workers, new CustomizableThreadFactory("Redis-Replicator-Apply-Worker-"));
+    }
+
+    /**
+     * Apply the records of batch, the keyed records are applied by the workers in parallel, and the barrier records are
+     * applied by the caller thread after all preceding records are applied, if any worker fails, the first failure will
+     * be thrown after all workers are completed.
+     *
+     * @param data    the records of batch
+     * @param applier the applier of the records share
+     */
+    void apply(List<ConsumerRecord<byte[], byte[]>> data, Consumer<List<ConsumerRecord<byte[], byte[]>>> applier) {
+        int workers = this.workers;
+        List<ConsumerRecord<byte[], byte[]>>[] shares = new List[workers];
+        List<ConsumerRecord<byte[], byte[]>> barriers = null;
+        boolean dispatched = false;
+        for (int i = 0, size = data.size(); i < size; i++) {
+            ConsumerRecord<byte[], byte[]> consumerRecord = data.get(i);
+            if (isBarrier(consumerRecord)) {
+                if (dispatched) {
+                    applyInParallel(shares, applier);
+                    shares = new List[workers];
+                    dispatched = false;
+                }
+                if (barriers == null) {
+                    barriers = new ArrayList<>();
+                }
+                barriers.add(consumerRecord);
+            } else {
+                if (barriers != null) {
+                    applier.accept(barriers);
+                    barriers = null;
+                }
+                int worker = getApplyWorker(consumerRecord.key(), workers);
+                List<ConsumerRecord<byte[], byte[]>> share = shares[worker];
+                if (share == null) {
+                    share = new ArrayList<>();
+                    shares[worker] = share;
+                }
+                share.add(consumerRecord);
+                dispatched = true;
+            }
+        }
+        if (dispatched) {
+            applyInParallel(shares, applier);
+        }
+        if (barriers != null) {
+            applier.accept(barriers);
+        }
+    }
+
+    private void applyInParallel(List<ConsumerRecord<byte[], byte[]>>[] shares, Consumer<List<ConsumerRecord<byte[], byte[]>>> applier) {
+        List<Future<?>> futures = new ArrayList<>(shares.length);
+        for (int i = 0; i < shares.length; i++) {
+            List<ConsumerRecord<byte[], byte[]>> share = shares[i];
+            if (share != null) {
+                futures.add(executor.submit(() -> applier.accept(share)));
+            }
+        }
+
+        Throwable failure = null;
+        for (int i = 0, size = futures.size(); i < size; i++) {
+            try {
+                futures.get(i).get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The listener thread is interrupted while waiting for the apply workers", e);
+            } catch (ExecutionException e) {
+                logger.warn("[Redis-Replicator-Kafka-C-F] The apply worker fails to process the Redis Replicator messages", e.getCause());
+                if (failure == null) {
+                    failure = e.getCause();
+                }
+            }
+        }
+        if (failure != null) {
+            throw new IllegalStateException("The apply workers fail to process the Redis Replicator messages", failure);
+        }
+    }
+
+    void shutdown() {
+        executor.shutdown();
+    }
+
+    static int getApplyWorker(byte[] key, int workers) {
+        return calculateSlot(key) % workers;
+    }
+
+    /**
+     * Whether the record is a barrier, which is keyless or touches more than one key
+     *
+     * @param consumerRecord the record
+     * @return <code>true</code> if the record must be applied after all preceding records
+     */
+    static boolean isBarrier(ConsumerRecord<byte[], byte[]> consumerRecord) {
+        if (consumerRecord.key() == null) {
+            return true;
+        }
+        Header header = consumerRecord.headers().lastHeader(METHOD_ID_HEADER_NAME);
+        if (header == null) {
+            return false;
+        }
+        Method method = findRedisCommandMethod(ByteBuffer.wrap(header.value()).getShort());
+        return method != null && multiKeyCommandMethodsCache.computeIfAbsent(method, KafkaRecordsApplyWorkers::isMultiKeyCommandMethod);
+    }
+
+    private static boolean isMultiKeyCommandMethod(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        if (parameterTypes.length < 1 || !byte[].class.equals(parameterTypes[0])) {
+            return true;
+        }
+        return MULTI_KEY_COMMAND_METHOD_NAMES.contains(method.getName().toLowerCase());
+    }
+}
@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.producer;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import org.springframework.lang.Nullable;
+
+/**
+ * The strategy to calculate the Kafka partition of {@link RedisCommandEvent}, the implementation bean will be used
+ * by {@link KafkaProducerRedisCommandEventListener} if present, or {@link RedisKeyHashKafkaPartitionStrategy} as default.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisKeyHashKafkaPartitionStrategy
+ * @see KafkaProducerRedisCommandEventListener
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface KafkaPartitionStrategy {
+
+    /**
+     * Calculate the partition of {@link RedisCommandEvent}
+     *
+     * @param topic      the topic
+     * @param key        the Kafka message key, maybe <code>null</code>
+     * @param event      {@link RedisCommandEvent}
+     * @param partitions the count of the topic's partitions
+     * @return the partition in the range of [0, partitions), <code>null</code> if it's left to the Kafka partitioner
+     */
+    @Nullable
+    Integer getPartition(String topic, @Nullable byte[] key, RedisCommandEvent event, int partitions);
+}
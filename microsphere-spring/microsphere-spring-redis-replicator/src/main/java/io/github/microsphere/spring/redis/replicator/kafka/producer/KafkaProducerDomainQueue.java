@@ -0,0 +1,627 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.producer;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.transport.AbstractProducerDomainQueue;
+import io.github.microsphere.spring.redis.replicator.transport.OverflowPolicy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.lang.Nullable;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.ListenableFutureCallback;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+/**
+ * The {@link AbstractProducerDomainQueue} of the Kafka messages, the messages are sent one by one in order, and the
+ * {@link OverflowPolicy#SPILL} is supported. The partition and the sequence of message are {@link MessageResolver resolved}
+ * by the sender right before it's sent, which may wait for the partitions of topic, thus the messages are buffered rather
+ * than left to the Kafka partitioner. The metrics of the queue are exposed for the operators :
+ * <ul>
+ *     <li>The depth of queue, including the spilled messages</li>
+ *     <li>The enqueue latency</li>
+ *     <li>The send latency</li>
+ *     <li>The counters of the enqueued, dropped, spilled, succeeded and failed messages</li>
+ * </ul>
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see OverflowPolicy
+ * @see KafkaProducerRedisCommandEventListener
+ * @since 1.0.0
+ */
+public class KafkaProducerDomainQueue extends AbstractProducerDomainQueue<KafkaProducerDomainQueue.Message> {
+
+    private static final Logger logger = LoggerFactory.getLogger(KafkaProducerDomainQueue.class);
+
+    private static final Header[] EMPTY_HEADERS = new Header[0];
+
+    private final String topic;
+
+    private final KafkaTemplate<byte[], byte[]> kafkaTemplate;
+
+    private final MessageResolver messageResolver;
+
+    private final SpillFile spillFile;
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    private final AtomicLong totalEnqueueLatency = new AtomicLong();
+
+    private final AtomicLong maxEnqueueLatency = new AtomicLong();
+
+    private final AtomicLong totalSendLatency = new AtomicLong();
+
+    private final AtomicLong maxSendLatency = new AtomicLong();
+
+    /**
+     * @param domain          the domain
+     * @param topic           the topic of domain
+     * @param kafkaTemplate   {@link KafkaTemplate}
+     * @param messageResolver {@link MessageResolver}
+     * @param capacity        the capacity of queue
+     * @param overflowPolicy  {@link OverflowPolicy}
+     * @param blockTimeout    the timeout in milliseconds if {@link OverflowPolicy#BLOCK}
+     * @param spillDirectory  the directory of spill file if {@link OverflowPolicy#SPILL}
+     * @throws IOException if the spill file can't be opened or all spill files are locked
+     * @see SpillFile#open(File, String)
+     */
+    public KafkaProducerDomainQueue(String domain, String topic, KafkaTemplate<byte[], byte[]> kafkaTemplate,
+                                    MessageResolver messageResolver, int capacity, OverflowPolicy overflowPolicy,
+                                    long blockTimeout, File spillDirectory) throws IOException {
+        super("Kafka", domain, capacity, overflowPolicy, blockTimeout);
+        this.topic = topic;
+        this.kafkaTemplate = kafkaTemplate;
+        this.messageResolver = messageResolver;
+        this.spillFile = overflowPolicy == OverflowPolicy.SPILL ? SpillFile.open(spillDirectory, topic) : null;
+        startSender();
+    }
+
+    /**
+     * Enqueue the Kafka message, whose partition is resolved before it's sent
+     *
+     * @param key       the key
+     * @param value     the value
+     * @param timestamp the timestamp
+     * @param headers   the headers, which are shared by the messages of domains
+     * @param event     the source {@link RedisCommandEvent} of the value
+     * @return <code>true</code> if enqueued or spilled, <code>false</code> if dropped
+     */
+    public boolean enqueue(byte[] key, byte[] value, long timestamp, Header[] headers, RedisCommandEvent event) {
+        Message message = new Message(key, value, timestamp, headers, event);
+        long startTime = System.nanoTime();
+        boolean enqueued = enqueue(message);
+        record(totalEnqueueLatency, maxEnqueueLatency, System.nanoTime() - startTime);
+        return enqueued;
+    }
+
+    @Override
+    protected boolean spill(Message message) {
+        synchronized (spillFile) {
+            // The messages must be spilled until the spill file is drained in order to keep the order
+            if (spillFile.isEmpty() && queue.offer(message)) {
+                return true;
+            }
+        }
+        // Encode the record outside the lock, which is written by one call
+        ByteBuffer record = SpillFile.encode(message);
+        synchronized (spillFile) {
+            if (spillFile.isEmpty() && queue.offer(message)) {
+                return true;
+            }
+            try {
+                spillFile.write(record);
+                spilledCount.incrementAndGet();
+                return true;
+            } catch (IOException e) {
+                logger.error("[Redis-Replicator-Kafka-P-F] Failed to spill the message of domain: {}", domain, e);
+                return false;
+            }
+        }
+    }
+
+    @Override
+    protected void send() throws IOException, InterruptedException {
+        Message message = queue.poll();
+        if (message == null && spillFile != null) {
+            synchronized (spillFile) {
+                message = spillFile.read();
+            }
+        }
+        if (message == null) {
+            message = queue.poll(POLL_TIMEOUT, MILLISECONDS);
+        }
+        if (message != null) {
+            send(message);
+        }
+    }
+
+    private void send(Message message) throws InterruptedException {
+        ProducerRecord<byte[], byte[]> producerRecord;
+        try {
+            producerRecord = messageResolver.resolve(topic, message);
+        } catch (InterruptedException e) {
+            // The queue is closed before the partitions of topic are known
+            failureCount.incrementAndGet();
+            throw e;
+        }
+        long startTime = System.nanoTime();
+        ListenableFuture<SendResult<byte[], byte[]>> future = kafkaTemplate.send(producerRecord);
+        future.addCallback(new ListenableFutureCallback<SendResult<byte[], byte[]>>() {
+
+            @Override
+            public void onSuccess(SendResult<byte[], byte[]> result) {
+                record(totalSendLatency, maxSendLatency, System.nanoTime() - startTime);
+                successCount.incrementAndGet();
+                logger.debug("[Redis-Replicator-Kafka-P-S] Kafka message sending operation succeeds. Topic: {}, key: {}, data size: {} bytes",
+                        topic, message.key, message.value.length);
+            }
+
+            @Override
+            public void onFailure(Throwable e) {
+                record(totalSendLatency, maxSendLatency, System.nanoTime() - startTime);
+                failureCount.incrementAndGet();
+                logger.warn("[Redis-Replicator-Kafka-P-F] Kafka message sending operation failed. Topic: {}, key: {}, data size: {} bytes",
+                        topic, message.key, message.value.length, e);
+            }
+        });
+    }
+
+    private static void record(AtomicLong total, AtomicLong max, long latency) {
+        total.addAndGet(latency);
+        long current;
+        while (latency > (current = max.get())) {
+            if (max.compareAndSet(current, latency)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * The spilled messages are kept in the disk after the sender is stopped
+     */
+    @Override
+    protected void onClosed() {
+        if (spillFile != null) {
+            synchronized (spillFile) {
+                spillFile.close();
+            }
+        }
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    /**
+     * @return the count of the pending messages, including the spilled ones
+     */
+    @Override
+    public long getDepth() {
+        long depth = queue.size();
+        if (spillFile != null) {
+            synchronized (spillFile) {
+                depth += spillFile.getCount();
+            }
+        }
+        return depth;
+    }
+
+    public long getSpilledCount() {
+        return spilledCount.get();
+    }
+
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the average latency of enqueue
+     */
+    public long getAverageEnqueueLatency(TimeUnit timeUnit) {
+        return average(totalEnqueueLatency, enqueuedCount.get() + droppedCount.get(), timeUnit);
+    }
+
+    public long getMaxEnqueueLatency(TimeUnit timeUnit) {
+        return timeUnit.convert(maxEnqueueLatency.get(), NANOSECONDS);
+    }
+
+    /**
+     * @param timeUnit {@link TimeUnit}
+     * @return the average latency of send
+     */
+    public long getAverageSendLatency(TimeUnit timeUnit) {
+        return average(totalSendLatency, successCount.get() + failureCount.get(), timeUnit);
+    }
+
+    public long getMaxSendLatency(TimeUnit timeUnit) {
+        return timeUnit.convert(maxSendLatency.get(), NANOSECONDS);
+    }
+
+    private static long average(AtomicLong total, long count, TimeUnit timeUnit) {
+        return count == 0 ? 0 : timeUnit.convert(total.get() / count, NANOSECONDS);
+    }
+
+    @Override
+    public String toString() {
+        return "KafkaProducerDomainQueue{" +
+                "domain='" + domain + '\'' +
+                ", topic='" + topic + '\'' +
+                ", capacity=" + capacity +
+                ", overflowPolicy=" + overflowPolicy +
+                ", depth=" + getDepth() +
+                ", enqueued=" + getEnqueuedCount() +
+                ", dropped=" + getDroppedCount() +
+                ", spilled=" + getSpilledCount() +
+                ", success=" + getSuccessCount() +
+                ", failure=" + getFailureCount() +
+                '}';
+    }
+
+    /**
+     * The resolver of the {@link ProducerRecord} of {@link Message}, which is invoked by the sender in order
+     */
+    @FunctionalInterface
+    interface MessageResolver {
+
+        /**
+         * Resolve the partition and the headers of the message, which waits until the partitions of topic are known
+         *
+         * @param topic   the topic
+         * @param message {@link Message}
+         * @return non-null
+         * @throws InterruptedException if the sender is interrupted when the queue is closed
+         */
+        ProducerRecord<byte[], byte[]> resolve(String topic, Message message) throws InterruptedException;
+    }
+
+    /**
+     * The queued Kafka message, whose partition is unresolved
+     */
+    static class Message {
+
+        private final byte[] key;
+
+        private final byte[] value;
+
+        private final long timestamp;
+
+        private final Header[] headers;
+
+        /**
+         * The source event of the value, <code>null</code> if the message is recovered from the spill file
+         */
+        @Nullable
+        private final RedisCommandEvent event;
+
+        Message(byte[] key, byte[] value, long timestamp) {
+            this(key, value, timestamp, EMPTY_HEADERS, null);
+        }
+
+        Message(byte[] key, byte[] value, long timestamp, Header[] headers, @Nullable RedisCommandEvent event) {
+            this.key = key;
+            this.value = value;
+            this.timestamp = timestamp;
+            this.headers = headers;
+            this.event = event;
+        }
+
+        @Nullable
+        byte[] getKey() {
+            return key;
+        }
+
+        byte[] getValue() {
+            return value;
+        }
+
+        long getTimestamp() {
+            return timestamp;
+        }
+
+        Header[] getHeaders() {
+            return headers;
+        }
+
+        @Nullable
+        RedisCommandEvent getEvent() {
+            return event;
+        }
+    }
+
+    /**
+     * The append-only spill file of {@link Message messages}, which is truncated once all messages are read,
+     * the remaining messages will be recovered after restart.
+     * <p>
+     * The spill file is exclusively locked while it's opened, thus it can't be shared by the processes or the queues
+     * in the same process.
+     * <p>
+     * The record is framed : payload length(int) + payload CRC32(int) + payload, the payload format : key length(int,
+     * -1 if null) + key + value length(int) + value + timestamp(long) + headers count(int) + [header key length(int)
+     * + header key(UTF-8) + header value length(int) + header value]. The record whose checksum mismatches is skipped,
+     * the following records are still read.
+     */
+    static class SpillFile {
+
+        /**
+         * The max count of the spill files per topic in one directory
+         */
+        static final int MAX_FILES = 16;
+
+        /**
+         * payload length + payload CRC32
+         */
+        static final int FRAME_HEADER_LENGTH = 8;
+
+        private final File file;
+
+        private final RandomAccessFile randomAccessFile;
+
+        private long readPosition;
+
+        private long writePosition;
+
+        private long count;
+
+        SpillFile(File file) throws IOException {
+            File directory = file.getParentFile();
+            if (directory != null && !directory.exists() && !directory.mkdirs()) {
+                throw new IOException("The spill directory can't be created : " + directory);
+            }
+            this.file = file;
+            this.randomAccessFile = new RandomAccessFile(file, "rw");
+            // The lock is held until the channel is closed
+            if (tryLock(randomAccessFile) == null) {
+                randomAccessFile.close();
+                throw new SpillFileLockedException(file);
+            }
+            recover();
+        }
+
+        /**
+         * Open the first unlocked spill file of the topic : "${topic}.spill", "${topic}-1.spill", ...,
+         * the messages spilled by the previous process are recovered by whichever process locks the file.
+         *
+         * @param directory the directory of spill files
+         * @param topic     the topic
+         * @return non-null
+         * @throws IOException if the spill file can't be opened or all spill files are locked
+         */
+        static SpillFile open(File directory, String topic) throws IOException {
+            for (int i = 0; i < MAX_FILES; i++) {
+                File file = new File(directory, i == 0 ? topic + ".spill" : topic + "-" + i + ".spill");
+                try {
+                    return new SpillFile(file);
+                } catch (SpillFileLockedException e) {
+                    logger.debug("The spill file[{}] is locked, try the next one", file);
+                }
+            }
+            throw new IOException("All spill files of the topic[" + topic + "] in the directory[" + directory + "] are locked");
+        }
+
+        private static FileLock tryLock(RandomAccessFile randomAccessFile) throws IOException {
+            try {
+                return randomAccessFile.getChannel().tryLock();
+            } catch (OverlappingFileLockException e) {
+                // Locked by the current process
+                return null;
+            }
+        }
+
+        /**
+         * Recover the messages spilled before restart, the incomplete record at the tail will be truncated, the
+         * checksums are verified when the records are {@link #read() read}
+         */
+        private void recover() throws IOException {
+            RandomAccessFile file = this.randomAccessFile;
+            long length = file.length();
+            long position = 0;
+            long count = 0;
+            while (position + FRAME_HEADER_LENGTH <= length) {
+                file.seek(position);
+                int payloadLength = file.readInt();
+                long next = position + FRAME_HEADER_LENGTH + payloadLength;
+                if (payloadLength < 0 || next > length) {
+                    break;
+                }
+                position = next;
+                count++;
+            }
+            if (position < length) {
+                logger.warn("[Redis-Replicator-Kafka-P-F] The incomplete data of spill file[{}] is truncated at position: {}", this.file, position);
+                file.setLength(position);
+            }
+            this.writePosition = position;
+            this.count = count;
+            if (count > 0) {
+                logger.info("[Redis-Replicator-Kafka-P-S] {} messages are recovered from the spill file[{}]", count, this.file);
+            }
+        }
+
+        boolean isEmpty() {
+            return readPosition >= writePosition;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        void write(Message message) throws IOException {
+            write(encode(message));
+        }
+
+        /**
+         * Write the {@link #encode(Message) encoded} record at once
+         *
+         * @param record the encoded record
+         * @throws IOException if the record can't be written
+         */
+        void write(ByteBuffer record) throws IOException {
+            FileChannel channel = randomAccessFile.getChannel();
+            long position = writePosition;
+            while (record.hasRemaining()) {
+                position += channel.write(record, position);
+            }
+            writePosition = position;
+            count++;
+        }
+
+        /**
+         * Encode the {@link Message message} into the framed record, which is independent of the spill file
+         *
+         * @param message {@link Message}
+         * @return the {@link ByteBuffer} of record for read
+         */
+        static ByteBuffer encode(Message message) {
+            byte[] key = message.key;
+            Header[] headers = message.headers;
+            byte[][] headerKeys = new byte[headers.length][];
+            // key length + value length + timestamp + headers count
+            int length = 4 + (key == null ? 0 : key.length) + 4 + message.value.length + 8 + 4;
+            for (int i = 0; i < headers.length; i++) {
+                headerKeys[i] = headers[i].key().getBytes(StandardCharsets.UTF_8);
+                length += 4 + headerKeys[i].length + 4 + headers[i].value().length;
+            }
+            ByteBuffer record = ByteBuffer.allocate(FRAME_HEADER_LENGTH + length);
+            record.putInt(length);
+            // The placeholder of checksum
+            record.putInt(0);
+            if (key == null) {
+                record.putInt(-1);
+            } else {
+                record.putInt(key.length);
+                record.put(key);
+            }
+            record.putInt(message.value.length);
+            record.put(message.value);
+            record.putLong(message.timestamp);
+            record.putInt(headers.length);
+            for (int i = 0; i < headers.length; i++) {
+                record.putInt(headerKeys[i].length);
+                record.put(headerKeys[i]);
+                byte[] headerValue = headers[i].value();
+                record.putInt(headerValue.length);
+                record.put(headerValue);
+            }
+            record.putInt(4, checksum(record.array(), FRAME_HEADER_LENGTH, length));
+            record.flip();
+            return record;
+        }
+
+        private static int checksum(byte[] bytes, int offset, int length) {
+            CRC32 crc32 = new CRC32();
+            crc32.update(bytes, offset, length);
+            return (int) crc32.getValue();
+        }
+
+        /**
+         * Read the next message, the corrupted records are skipped
+         *
+         * @return <code>null</code> if the spill file is empty
+         * @throws IOException if the spill file can't be read, the record will be read again
+         */
+        Message read() throws IOException {
+            RandomAccessFile file = this.randomAccessFile;
+            Message message = null;
+            while (message == null && !isEmpty()) {
+                file.seek(readPosition);
+                int payloadLength = file.readInt();
+                int checksum = file.readInt();
+                long next = readPosition + FRAME_HEADER_LENGTH + payloadLength;
+                if (payloadLength < 0 || next > writePosition) {
+                    // The frame is corrupted, the next record can't be located
+                    logger.warn("[Redis-Replicator-Kafka-P-F] The frame of spill file[{}] is corrupted at position: {}, the remaining {} records are discarded",
+                            this.file, readPosition, count);
+                    readPosition = writePosition;
+                    break;
+                }
+                byte[] payload = new byte[payloadLength];
+                file.readFully(payload);
+                if (checksum(payload, 0, payloadLength) == checksum) {
+                    message = decode(payload);
+                } else {
+                    logger.warn("[Redis-Replicator-Kafka-P-F] The record of spill file[{}] is corrupted at position: {}, it's skipped",
+                            this.file, readPosition);
+                }
+                readPosition = next;
+                count = Math.max(0, count - 1);
+            }
+            if (isEmpty()) {
+                file.setLength(0);
+                readPosition = 0;
+                writePosition = 0;
+                count = 0;
+            }
+            return message;
+        }
+
+        private static Message decode(byte[] payload) {
+            ByteBuffer buffer = ByteBuffer.wrap(payload);
+            int keyLength = buffer.getInt();
+            byte[] key = null;
+            if (keyLength > -1) {
+                key = new byte[keyLength];
+                buffer.get(key);
+            }
+            byte[] value = new byte[buffer.getInt()];
+            buffer.get(value);
+            long timestamp = buffer.getLong();
+            Header[] headers = new Header[buffer.getInt()];
+            for (int i = 0; i < headers.length; i++) {
+                byte[] headerKey = new byte[buffer.getInt()];
+                buffer.get(headerKey);
+                byte[] headerValue = new byte[buffer.getInt()];
+                buffer.get(headerValue);
+                headers[i] = new RecordHeader(new String(headerKey, StandardCharsets.UTF_8), headerValue);
+            }
+            return new Message(key, value, timestamp, headers, null);
+        }
+
+        void close() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                logger.warn("[Redis-Replicator-Kafka-P-F] Failed to close the spill file[{}]", file, e);
+            }
+        }
+    }
+
+    /**
+     * The spill file is locked by another process or queue
+     */
+    static class SpillFileLockedException extends IOException {
+
+        SpillFileLockedException(File file) {
+            super("The spill file is locked : " + file);
+        }
+    }
+}
@@ -2,7 +2,15 @@ package io.github.microsphere.spring.redis.replicator.kafka.producer;
 
 import io.github.microsphere.spring.redis.event.RedisCommandEvent;
 import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandEventCoalescer;
 import io.github.microsphere.spring.redis.serializer.Serializers;
+import io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue.Message;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.apache.kafka.common.header.internals.RecordHeaders;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.DisposableBean;
@@ -12,18 +20,40 @@ import org.springframework.context.ApplicationListener;
 import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.context.event.SmartApplicationListener;
 import org.springframework.kafka.core.KafkaTemplate;
-import org.springframework.kafka.support.SendResult;
 import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
-import org.springframework.util.concurrent.ListenableFuture;
-import org.springframework.util.concurrent.ListenableFutureCallback;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findMethodIndex;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.CLUSTER_ID_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.METHOD_ID_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.SEQUENCE_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.SOURCE_APPLICATION_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.SOURCE_ID_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableCollection;
 
 /**
  * {@link ApplicationListener} listens to {@link RedisCommandEvent} implementation -
- * Transfers {@link RedisCommandEvent} objects using Kafka messages
+ * Transfers {@link RedisCommandEvent} objects using Kafka messages, which are queued per domain by
+ * {@link KafkaProducerDomainQueue}
+ * <p>
+ * The partition of record is resolved by the sender of {@link KafkaProducerDomainQueue}, thus the threads executing the
+ * Redis commands are never blocked by the metadata of Kafka. If the partitions count of topic is unknown, the sender looks
+ * it up and waits until it's known, the records are buffered in the queue meanwhile rather than left to the Kafka
+ * partitioner, whose hash differs from the {@link KafkaPartitionStrategy}. The known count is refreshed asynchronously.
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy<a/>
  * @since 1.0.0
@@ -32,6 +62,26 @@ public class KafkaProducerRedisCommandEventListener implements SmartApplicationL
 
     private final Logger logger = LoggerFactory.getLogger(getClass());
 
+    /**
+     * The timeout in milliseconds to send the queued messages when closing
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    /**
+     * The interval in milliseconds to refresh the known partitions count of topic
+     */
+    private static final long PARTITIONS_REFRESH_INTERVAL = 5 * 60 * 1000;
+
+    /**
+     * The initial backoff in milliseconds to retry the failed or empty lookup of the partitions
+     */
+    private static final long PARTITIONS_INITIAL_BACKOFF = 1000;
+
+    /**
+     * The max backoff in milliseconds to retry the failed or empty lookup of the partitions
+     */
+    private static final long PARTITIONS_MAX_BACKOFF = 60 * 1000;
+
     private KafkaTemplate<byte[], byte[]> redisReplicatorKafkaTemplate;
 
     private ApplicationContext context;
@@ -44,8 +94,54 @@ public class KafkaProducerRedisCommandEventListener implements SmartApplicationL
 
     private String keyPrefix;
 
-    private ExecutorService executor;
+    private final ConcurrentMap<String, KafkaProducerDomainQueue> domainQueues = new ConcurrentHashMap<>();
+
+    private KafkaPartitionStrategy partitionStrategy;
+
+    /**
+     * The cache of the partitions count by topic, including the failed lookups until their backoff elapses
+     */
+    private final ConcurrentMap<String, TopicPartitions> topicPartitionsCache = new ConcurrentHashMap<>();
+
+    /**
+     * The topics whose partitions are being looked up
+     */
+    private final Set<String> lookingUpTopics = ConcurrentHashMap.newKeySet();
+
+    /**
+     * The executor of the refreshes of the known partitions count, which never blocks the senders
+     */
+    private final ExecutorService partitionsLookupExecutor = newPartitionsLookupExecutor();
+
+    /**
+     * The id of this producer instance, which the sequences of the partitioned records belong to
+     */
+    private final String sourceId = UUID.randomUUID().toString();
+
+    private final Header sourceIdHeader = new RecordHeader(SOURCE_ID_HEADER_NAME, sourceId.getBytes(UTF_8));
 
+    /**
+     * The sequences of the records left to the Kafka partitioner by the {@link KafkaPartitionStrategy} (e.g. the keyless
+     * records) belong to another source id, since they land on the partitions whose sequences are deduplicated by the
+     * consumers per (source id, partition), the gaps of their sequences per partition are expected
+     */
+    private final Header unpartitionedSourceIdHeader = new RecordHeader(SOURCE_ID_HEADER_NAME, (sourceId + "-unpartitioned").getBytes(UTF_8));
+
+    /**
+     * The monotonic sequences of the replicated events from this producer instance per topic partition,
+     * the partition is <code>-1</code> if it's left to the Kafka partitioner, which are assigned by the senders in order
+     */
+    private final ConcurrentMap<TopicPartition, AtomicLong> sequences = new ConcurrentHashMap<>();
+
+    /**
+     * The id of the local cluster, maybe <code>null</code>
+     */
+    private byte[] clusterId;
+
+    /**
+     * The optional coalescer of events before replication
+     */
+    private volatile RedisCommandEventCoalescer coalescer;
 
     @Override
     public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
@@ -69,7 +165,8 @@ public class KafkaProducerRedisCommandEventListener implements SmartApplicationL
         initRedisReplicatorKafkaProducerConfiguration(context);
         initRedisReplicatorKafkaTemplate(kafkaProducerRedisReplicatorConfiguration);
         initKeyPrefix(kafkaProducerRedisReplicatorConfiguration);
-        initExecutor();
+        initPartitionStrategy(context);
+        initCoalescer(kafkaProducerRedisReplicatorConfiguration);
     }
 
     private void initApplicationContext(ApplicationContext context) {
@@ -77,7 +174,10 @@ public class KafkaProducerRedisCommandEventListener implements SmartApplicationL
     }
 
     private void initRedisReplicatorConfiguration(ApplicationContext context) {
-        this.redisReplicatorConfiguration = RedisReplicatorConfiguration.get(context);
+        RedisReplicatorConfiguration redisReplicatorConfiguration = RedisReplicatorConfiguration.get(context);
+        String clusterId = redisReplicatorConfiguration.getClusterId();
+        this.redisReplicatorConfiguration = redisReplicatorConfiguration;
+        this.clusterId = clusterId == null ? null : clusterId.getBytes(UTF_8);
     }
 
     private void initRedisReplicatorKafkaProducerConfiguration(ApplicationContext context) {
@@ -92,68 +192,284 @@ public class KafkaProducerRedisCommandEventListener implements SmartApplicationL
         this.keyPrefix = kafkaProducerRedisReplicatorConfiguration.getKeyPrefix();
     }
 
-    private void initExecutor() {
-        List<String> domains = redisReplicatorConfiguration.getDomains();
-        int size = domains.size();
-        this.executor = Executors.newFixedThreadPool(size, new CustomizableThreadFactory(domains.toString()));
+    private void initPartitionStrategy(ApplicationContext context) {
+        this.partitionStrategy = context.getBeanProvider(KafkaPartitionStrategy.class)
+                .getIfAvailable(() -> RedisKeyHashKafkaPartitionStrategy.INSTANCE);
+        logger.debug("The Kafka partition strategy : {}", partitionStrategy);
+    }
+
+    private void initCoalescer(KafkaProducerRedisReplicatorConfiguration kafkaProducerRedisReplicatorConfiguration) {
+        if (coalescer == null && kafkaProducerRedisReplicatorConfiguration.isCoalescingEnabled()) {
+            this.coalescer = new RedisCommandEventCoalescer(kafkaProducerRedisReplicatorConfiguration.getCoalescingWindow(),
+                    kafkaProducerRedisReplicatorConfiguration.getCoalescingMaxSize(), redisReplicatorConfiguration::getDomains,
+                    this::replicateRedisCommandEvent);
+            logger.debug("The RedisCommandEvent coalescer is enabled");
+        }
     }
 
     private void onRedisCommandEvent(RedisCommandEvent event) {
+        RedisCommandEventCoalescer coalescer = this.coalescer;
+        if (coalescer == null) {
+            replicateRedisCommandEvent(event);
+        } else {
+            coalescer.publish(event);
+        }
+    }
+
+    private void replicateRedisCommandEvent(RedisCommandEvent event) {
         try {
-            String beanName = event.getSourceBeanName();
-            List<String> domains = redisReplicatorConfiguration.getDomains(beanName);
-            for (String domain : domains) {
-                executor.execute(() -> sendRedisReplicatorKafkaMessage(domain, event));
+            // The event is serialized only if any domain accepts it
+            List<String> domains = redisReplicatorConfiguration.getDomains(event);
+            if (!domains.isEmpty()) {
+                dispatchRedisReplicatorKafkaMessages(domains, event);
             }
         } catch (Throwable e) {
             logger.warn("[Redis-Replicator-Kafka-P-F] Failed to perform Redis Replicator Kafka message sending operation.", e);
         }
     }
 
-    private void sendRedisReplicatorKafkaMessage(String domain, RedisCommandEvent event) {
-        String topic = kafkaProducerRedisReplicatorConfiguration.createTopic(domain);
+    private void dispatchRedisReplicatorKafkaMessages(List<String> domains, RedisCommandEvent event) {
         // Almost all RedisCommands interface methods take the first argument as Key
         byte[] key = generateKafkaKey(event);
+        // The event is serialized once, the bytes are shared by all domains' messages
         byte[] value = Serializers.serialize(event);
-        Integer partition = calcPartition(event);
         // Use a timestamp of the event
         long timestamp = event.getTimestamp();
-        ListenableFuture<SendResult<byte[], byte[]>> future = redisReplicatorKafkaTemplate.send(topic, partition, timestamp, key, value);
-        future.addCallback(new ListenableFutureCallback<SendResult<byte[], byte[]>>() {
-
-            @Override
-            public void onSuccess(SendResult<byte[], byte[]> result) {
-                logger.debug("[Redis-Replicator-Kafka-P-S] Kafka message sending operation succeeds. Topic: {}, key: {}, data size: {} bytes, event: {}",
-                        topics, key, value.length, event);
+        // The headers are shared by all domains' messages, the source id and the sequence are added by the senders
+        Header[] headers = createHeaders(event);
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            String domain = domains.get(i);
+            try {
+                KafkaProducerDomainQueue domainQueue = getDomainQueue(domain);
+                domainQueue.enqueue(key, value, timestamp, headers, event);
+            } catch (Throwable e) {
+                logger.warn("[Redis-Replicator-Kafka-P-F] Failed to send the Kafka message of domain: {}, event: {}", domain, event, e);
             }
+        }
+    }
+
+    private Header[] createHeaders(RedisCommandEvent event) {
+        List<Header> headers = new ArrayList<>(3);
+        String applicationName = event.getApplicationName();
+        if (applicationName != null) {
+            headers.add(new RecordHeader(SOURCE_APPLICATION_HEADER_NAME, applicationName.getBytes(UTF_8)));
+        }
+        if (clusterId != null) {
+            headers.add(new RecordHeader(CLUSTER_ID_HEADER_NAME, clusterId));
+        }
+        Short methodIndex = findMethodIndex(event.getMethod());
+        if (methodIndex != null) {
+            headers.add(new RecordHeader(METHOD_ID_HEADER_NAME, ByteBuffer.allocate(Short.BYTES).putShort(methodIndex).array()));
+        }
+        return headers.toArray(new Header[0]);
+    }
+
+    /**
+     * Resolve the {@link ProducerRecord} of the queued message, which is invoked by the sender of domain queue in order
+     *
+     * @param topic   the topic
+     * @param message the queued message
+     * @return non-null
+     * @throws InterruptedException if the sender is interrupted while waiting for the partitions of topic
+     */
+    private ProducerRecord<byte[], byte[]> resolveMessage(String topic, Message message) throws InterruptedException {
+        Integer partition = calcPartition(topic, message);
+        Header[] headers = withSequence(message.getHeaders(), partition, nextSequence(topic, partition));
+        return new ProducerRecord<>(topic, partition, message.getTimestamp(), message.getKey(), message.getValue(),
+                new RecordHeaders(headers));
+    }
+
+    private Header[] withSequence(Header[] headers, Integer partition, long sequence) {
+        int length = headers.length;
+        Header[] sequencedHeaders = new Header[length + 2];
+        System.arraycopy(headers, 0, sequencedHeaders, 0, length);
+        sequencedHeaders[length] = partition == null ? unpartitionedSourceIdHeader : sourceIdHeader;
+        sequencedHeaders[length + 1] = new RecordHeader(SEQUENCE_HEADER_NAME, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+        return sequencedHeaders;
+    }
+
+    private long nextSequence(String topic, Integer partition) {
+        TopicPartition topicPartition = new TopicPartition(topic, partition == null ? -1 : partition);
+        AtomicLong sequence = sequences.get(topicPartition);
+        if (sequence == null) {
+            sequence = sequences.computeIfAbsent(topicPartition, tp -> new AtomicLong());
+        }
+        return sequence.incrementAndGet();
+    }
 
-            @Override
-            public void onFailure(Throwable e) {
-                logger.warn("[Redis-Replicator-Kafka-P-F] Kafka message sending operation failed. Topic: {}, key: {}, data size: {} bytes",
-                        topics, key, value.length, e);
+    private KafkaProducerDomainQueue getDomainQueue(String domain) {
+        KafkaProducerDomainQueue domainQueue = domainQueues.get(domain);
+        if (domainQueue == null) {
+            synchronized (domainQueues) {
+                domainQueue = domainQueues.get(domain);
+                if (domainQueue == null) {
+                    domainQueue = createDomainQueue(domain);
+                    domainQueues.put(domain, domainQueue);
+                }
             }
+        }
+        return domainQueue;
+    }
 
-        });
+    private KafkaProducerDomainQueue createDomainQueue(String domain) {
+        KafkaProducerRedisReplicatorConfiguration configuration = this.kafkaProducerRedisReplicatorConfiguration;
+        String topic = configuration.createTopic(domain);
+        try {
+            KafkaProducerDomainQueue domainQueue = new KafkaProducerDomainQueue(domain, topic, redisReplicatorKafkaTemplate,
+                    this::resolveMessage, configuration.getQueueCapacity(), configuration.getQueueOverflowPolicy(), configuration.getQueueBlockTimeout(),
+                    configuration.getQueueSpillDirectory());
+            logger.debug("The Kafka producer queue of domain: {} is created : {}", domain, domainQueue);
+            return domainQueue;
+        } catch (IOException e) {
+            throw new IllegalStateException("The Kafka producer queue of domain: " + domain + " can't be created", e);
+        }
+    }
+
+    /**
+     * Get the {@link KafkaProducerDomainQueue queues} of domains, whose metrics are exposed
+     *
+     * @return non-null
+     */
+    public Collection<KafkaProducerDomainQueue> getDomainQueues() {
+        return unmodifiableCollection(domainQueues.values());
     }
 
     /**
      * Generate Kafka message keys, using Redis Key as part of Kafka
      *
      * @param event {@link RedisCommandEvent}
-     * @return Generate Kafka message keys
+     * @return Generate Kafka message keys, <code>null</code> if the command is keyless or multi-key (e.g. <code>DEL k1 k2</code>
+     * or <code>MSET</code>), which is applied as a barrier by the consumer
      */
     private byte[] generateKafkaKey(RedisCommandEvent event) {
         // Almost all RedisCommands interface methods take the first argument as Key
-        return (byte[]) event.getArg(0);
+        Object arg0 = event.getArg(0);
+        return arg0 instanceof byte[] ? (byte[]) arg0 : null;
+    }
+
+    private Integer calcPartition(String topic, Message message) throws InterruptedException {
+        int partitions = awaitPartitions(topic);
+        RedisCommandEvent event = message.getEvent();
+        if (event == null) {
+            // The message is recovered from the spill file
+            event = Serializers.deserialize(message.getValue(), RedisCommandEvent.class);
+        }
+        return partitionStrategy.getPartition(topic, message.getKey(), event, partitions);
+    }
+
+    /**
+     * Get the partitions count of topic, which waits until it's known, the refresh is scheduled if it's expired
+     *
+     * @param topic the topic
+     * @return the partitions count, which is positive
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    private int awaitPartitions(String topic) throws InterruptedException {
+        TopicPartitions topicPartitions = topicPartitionsCache.get(topic);
+        while (topicPartitions == null || topicPartitions.count < 1) {
+            if (topicPartitions != null) {
+                long backoff = topicPartitions.expiresAt - System.currentTimeMillis();
+                if (backoff > 0) {
+                    Thread.sleep(backoff);
+                }
+            }
+            // The lookup may block up to "max.block.ms" on the metadata miss
+            topicPartitions = lookupPartitions(topic, topicPartitions);
+            topicPartitionsCache.put(topic, topicPartitions);
+            if (Thread.interrupted()) {
+                throw new InterruptedException("The lookup of the partitions of Topic: " + topic + " is interrupted");
+            }
+        }
+        if (topicPartitions.isExpired(System.currentTimeMillis())) {
+            scheduleLookupPartitions(topic);
+        }
+        return topicPartitions.count;
+    }
+
+    private void scheduleLookupPartitions(String topic) {
+        if (!lookingUpTopics.add(topic)) {
+            return;
+        }
+        try {
+            partitionsLookupExecutor.execute(() -> {
+                try {
+                    topicPartitionsCache.put(topic, lookupPartitions(topic, topicPartitionsCache.get(topic)));
+                } finally {
+                    lookingUpTopics.remove(topic);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // destroyed
+            lookingUpTopics.remove(topic);
+        }
+    }
+
+    private TopicPartitions lookupPartitions(String topic, TopicPartitions previous) {
+        int partitions;
+        try {
+            List<PartitionInfo> partitionInfos = redisReplicatorKafkaTemplate.partitionsFor(topic);
+            partitions = partitionInfos == null ? 0 : partitionInfos.size();
+        } catch (Throwable e) {
+            partitions = 0;
+            logger.warn("[Redis-Replicator-Kafka-P-F] Failed to get the partitions of Topic: {}", topic, e);
+        }
+        long now = System.currentTimeMillis();
+        if (partitions > 0) {
+            if (previous != null && previous.count > 0 && previous.count != partitions) {
+                logger.info("The partitions of Topic: {} are changed from {} to {}", topic, previous.count, partitions);
+            }
+            return new TopicPartitions(partitions, now + PARTITIONS_REFRESH_INTERVAL, 0);
+        }
+        // The previous known count is kept until the lookup succeeds
+        long backoff = previous == null || previous.backoff == 0 ? PARTITIONS_INITIAL_BACKOFF :
+                Math.min(previous.backoff * 2, PARTITIONS_MAX_BACKOFF);
+        int count = previous == null ? 0 : previous.count;
+        return new TopicPartitions(count, now + backoff, backoff);
     }
 
-    private Integer calcPartition(RedisCommandEvent event) {
-        // TODO Future computing partition
-        return null;
+    private static ExecutorService newPartitionsLookupExecutor() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("Redis-Replicator-Kafka-Partitions-Lookup-");
+        threadFactory.setDaemon(true);
+        return Executors.newSingleThreadExecutor(threadFactory);
+    }
+
+    /**
+     * The cached partitions count of topic
+     */
+    private static class TopicPartitions {
+
+        /**
+         * The partitions count, <code>0</code> if unknown
+         */
+        private final int count;
+
+        private final long expiresAt;
+
+        /**
+         * The backoff of the failed lookup, <code>0</code> if succeeded
+         */
+        private final long backoff;
+
+        private TopicPartitions(int count, long expiresAt, long backoff) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+            this.backoff = backoff;
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
     }
 
     @Override
     public void destroy() throws Exception {
-        executor.shutdown();
+        RedisCommandEventCoalescer coalescer = this.coalescer;
+        if (coalescer != null) {
+            coalescer.close();
+        }
+        partitionsLookupExecutor.shutdownNow();
+        for (KafkaProducerDomainQueue domainQueue : domainQueues.values()) {
+            domainQueue.close(CLOSE_TIMEOUT);
+        }
     }
 }
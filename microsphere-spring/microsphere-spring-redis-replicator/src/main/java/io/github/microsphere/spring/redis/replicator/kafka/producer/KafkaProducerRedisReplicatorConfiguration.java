@@ -1,7 +1,9 @@
 package io.github.microsphere.spring.redis.replicator.kafka.producer;
 
 import io.github.microsphere.spring.redis.replicator.RedisReplicatorInitializer;
+import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
 import io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration;
+import io.github.microsphere.spring.redis.replicator.transport.OverflowPolicy;
 import org.apache.kafka.common.serialization.ByteArraySerializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -9,6 +11,7 @@ import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
 
+import java.io.File;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -32,6 +35,66 @@ public class KafkaProducerRedisReplicatorConfiguration extends KafkaRedisReplica
     public static final String KAFKA_PRODUCER_KEY_PREFIX_PROPERTY_NAME = KAFKA_PROPERTY_NAME_PREFIX + "key-prefix";
     public static final String DEFAULT_KAFKA_PRODUCER_KEY_PREFIX = "RPE-";
 
+    /**
+     * The prefix of the producer queue's property name, which is not a part of Kafka Producer properties
+     */
+    public static final String PRODUCER_QUEUE_PROPERTY_NAME_PREFIX = RedisReplicatorConfiguration.PROPERTY_NAME_PREFIX + "producer.queue.";
+
+    public static final String PRODUCER_QUEUE_CAPACITY_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "capacity";
+
+    public static final int DEFAULT_PRODUCER_QUEUE_CAPACITY = 10000;
+
+    public static final String PRODUCER_QUEUE_OVERFLOW_POLICY_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "overflow-policy";
+
+    /**
+     * The default overflow policy is {@link OverflowPolicy#BLOCK}, which blocks the thread executing the Redis command
+     * for up to the {@link #DEFAULT_PRODUCER_QUEUE_BLOCK_TIMEOUT block timeout} when the queue is full, the policy
+     * {@link OverflowPolicy#DROP_OLDEST} or {@link OverflowPolicy#SPILL} should be used if the Redis writes must not
+     * be delayed
+     */
+    public static final OverflowPolicy DEFAULT_PRODUCER_QUEUE_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+
+    /**
+     * The timeout in milliseconds of {@link OverflowPolicy#BLOCK}
+     */
+    public static final String PRODUCER_QUEUE_BLOCK_TIMEOUT_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "block-timeout";
+
+    public static final long DEFAULT_PRODUCER_QUEUE_BLOCK_TIMEOUT = 100;
+
+    /**
+     * The directory of spill files of {@link OverflowPolicy#SPILL}
+     */
+    public static final String PRODUCER_QUEUE_SPILL_DIRECTORY_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "spill-directory";
+
+    /**
+     * The base of the default spill directory, which is appended by the application name in order to be separated
+     * from the other applications in the same host, the spill files are also locked exclusively
+     */
+    public static final String DEFAULT_PRODUCER_QUEUE_SPILL_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator + "redis-replicator";
+
+    /**
+     * The prefix of the producer coalescing's property name, which is not a part of Kafka Producer properties
+     */
+    public static final String PRODUCER_COALESCING_PROPERTY_NAME_PREFIX = RedisReplicatorConfiguration.PROPERTY_NAME_PREFIX + "producer.coalescing.";
+
+    public static final String PRODUCER_COALESCING_ENABLED_PROPERTY_NAME = PRODUCER_COALESCING_PROPERTY_NAME_PREFIX + "enabled";
+
+    public static final boolean DEFAULT_PRODUCER_COALESCING_ENABLED = false;
+
+    /**
+     * The window in milliseconds of coalescing
+     */
+    public static final String PRODUCER_COALESCING_WINDOW_PROPERTY_NAME = PRODUCER_COALESCING_PROPERTY_NAME_PREFIX + "window";
+
+    public static final long DEFAULT_PRODUCER_COALESCING_WINDOW = 50;
+
+    /**
+     * The max size of the events buffered in the window
+     */
+    public static final String PRODUCER_COALESCING_MAX_SIZE_PROPERTY_NAME = PRODUCER_COALESCING_PROPERTY_NAME_PREFIX + "max-size";
+
+    public static final int DEFAULT_PRODUCER_COALESCING_MAX_SIZE = 10000;
+
 
     /**
      * Key Prefix
@@ -42,18 +105,60 @@ public class KafkaProducerRedisReplicatorConfiguration extends KafkaRedisReplica
 
     private KafkaTemplate<byte[], byte[]> redisReplicatorKafkaTemplate;
 
+    private int queueCapacity;
+
+    private OverflowPolicy queueOverflowPolicy;
+
+    private long queueBlockTimeout;
+
+    private File queueSpillDirectory;
+
+    private boolean coalescingEnabled;
+
+    private long coalescingWindow;
+
+    private int coalescingMaxSize;
+
     @Override
     public void afterPropertiesSet() throws Exception {
         super.afterPropertiesSet();
         initKeyPrefix();
         initProducerConfigs();
         initRedisReplicatorKafkaTemplate();
+        initQueue();
+        initCoalescing();
     }
 
     private void initKeyPrefix() {
         this.keyPrefix = environment.getProperty(KAFKA_PRODUCER_KEY_PREFIX_PROPERTY_NAME, DEFAULT_KAFKA_PRODUCER_KEY_PREFIX);
     }
 
+    private void initQueue() {
+        this.queueCapacity = environment.getProperty(PRODUCER_QUEUE_CAPACITY_PROPERTY_NAME, int.class, DEFAULT_PRODUCER_QUEUE_CAPACITY);
+        this.queueOverflowPolicy = environment.getProperty(PRODUCER_QUEUE_OVERFLOW_POLICY_PROPERTY_NAME, OverflowPolicy.class, DEFAULT_PRODUCER_QUEUE_OVERFLOW_POLICY);
+        this.queueBlockTimeout = environment.getProperty(PRODUCER_QUEUE_BLOCK_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_PRODUCER_QUEUE_BLOCK_TIMEOUT);
+        this.queueSpillDirectory = resolveQueueSpillDirectory();
+        logger.debug("The producer queue capacity : {} , overflow policy : {} , block timeout : {} ms , spill directory : {}",
+                queueCapacity, queueOverflowPolicy, queueBlockTimeout, queueSpillDirectory);
+    }
+
+    private File resolveQueueSpillDirectory() {
+        String directory = environment.getProperty(PRODUCER_QUEUE_SPILL_DIRECTORY_PROPERTY_NAME);
+        if (directory == null) {
+            String applicationName = redisReplicatorConfiguration.getRedisConfiguration().getApplicationName();
+            return new File(DEFAULT_PRODUCER_QUEUE_SPILL_DIRECTORY, applicationName);
+        }
+        return new File(directory);
+    }
+
+    private void initCoalescing() {
+        this.coalescingEnabled = environment.getProperty(PRODUCER_COALESCING_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_PRODUCER_COALESCING_ENABLED);
+        this.coalescingWindow = environment.getProperty(PRODUCER_COALESCING_WINDOW_PROPERTY_NAME, long.class, DEFAULT_PRODUCER_COALESCING_WINDOW);
+        this.coalescingMaxSize = environment.getProperty(PRODUCER_COALESCING_MAX_SIZE_PROPERTY_NAME, int.class, DEFAULT_PRODUCER_COALESCING_MAX_SIZE);
+        logger.debug("The producer coalescing enabled : {} , window : {} ms , max size : {}",
+                coalescingEnabled, coalescingWindow, coalescingMaxSize);
+    }
+
     private void initProducerConfigs() {
         Map<String, Object> producerConfigs = new HashMap<>();
         producerConfigs.put(BOOTSTRAP_SERVERS_CONFIG, brokerList);
@@ -79,6 +184,34 @@ public class KafkaProducerRedisReplicatorConfiguration extends KafkaRedisReplica
         return keyPrefix;
     }
 
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public OverflowPolicy getQueueOverflowPolicy() {
+        return queueOverflowPolicy;
+    }
+
+    public long getQueueBlockTimeout() {
+        return queueBlockTimeout;
+    }
+
+    public File getQueueSpillDirectory() {
+        return queueSpillDirectory;
+    }
+
+    public boolean isCoalescingEnabled() {
+        return coalescingEnabled;
+    }
+
+    public long getCoalescingWindow() {
+        return coalescingWindow;
+    }
+
+    public int getCoalescingMaxSize() {
+        return coalescingMaxSize;
+    }
+
     private void destroyProducerFactory() {
         if (redisReplicatorKafkaTemplate != null) {
             ProducerFactory producerFactory = redisReplicatorKafkaTemplate.getProducerFactory();
@@ -0,0 +1,42 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.producer;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import org.springframework.data.redis.connection.ClusterSlotHashUtil;
+
+/**
+ * {@link KafkaPartitionStrategy} hashes the Redis key in the same way as Redis Cluster slots, the "{hashtag}"
+ * section will be hashed only if present, thus the keys in the same slot are always sent to the same partition,
+ * and their orders are kept.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ClusterSlotHashUtil#calculateSlot(byte[])
+ * @since 1.0.0
+ */
+public class RedisKeyHashKafkaPartitionStrategy implements KafkaPartitionStrategy {
+
+    public static final RedisKeyHashKafkaPartitionStrategy INSTANCE = new RedisKeyHashKafkaPartitionStrategy();
+
+    @Override
+    public Integer getPartition(String topic, byte[] key, RedisCommandEvent event, int partitions) {
+        if (key == null || partitions < 1) {
+            return null;
+        }
+        return ClusterSlotHashUtil.calculateSlot(key) % partitions;
+    }
+}
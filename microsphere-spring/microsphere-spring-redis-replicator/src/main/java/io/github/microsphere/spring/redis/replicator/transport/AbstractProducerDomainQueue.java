@@ -0,0 +1,270 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The abstract bounded queue of the records per domain, the records are sent by the dedicated sender thread in order,
+ * thus the thread executing the Redis command is never blocked by the transport unless the queue is full and the
+ * {@link OverflowPolicy#BLOCK} is applied.
+ * <p>
+ * The sub-class sends the queued records in {@link #send()} and must {@link #startSender() start the sender} at the end
+ * of its constructor.
+ *
+ * @param <E> the type of record
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see OverflowPolicy
+ * @see TransportProducerDomainQueue
+ * @see io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue
+ * @since 1.0.0
+ */
+public abstract class AbstractProducerDomainQueue<E> {
+
+    private static final Logger logger = LoggerFactory.getLogger(AbstractProducerDomainQueue.class);
+
+    /**
+     * The timeout in milliseconds of polling the queue by the sender
+     */
+    protected static final long POLL_TIMEOUT = 100;
+
+    protected final String domain;
+
+    protected final int capacity;
+
+    protected final OverflowPolicy overflowPolicy;
+
+    protected final long blockTimeout;
+
+    protected final BlockingQueue<E> queue;
+
+    protected final AtomicLong enqueuedCount = new AtomicLong();
+
+    protected final AtomicLong droppedCount = new AtomicLong();
+
+    protected final AtomicLong successCount = new AtomicLong();
+
+    protected final AtomicLong failureCount = new AtomicLong();
+
+    /**
+     * The name of transport in the logs and the name of sender thread, e.g. "Kafka"
+     */
+    private final String transportName;
+
+    private final Thread sender;
+
+    private volatile boolean running = true;
+
+    /**
+     * Whether {@link #onClosed()} is invoked or not
+     */
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    /**
+     * @param transportName  the name of transport in the logs and the name of sender thread, e.g. "Kafka"
+     * @param domain         the domain
+     * @param capacity       the capacity of queue
+     * @param overflowPolicy {@link OverflowPolicy}
+     * @param blockTimeout   the timeout in milliseconds if {@link OverflowPolicy#BLOCK}
+     */
+    protected AbstractProducerDomainQueue(String transportName, String domain, int capacity, OverflowPolicy overflowPolicy,
+                                          long blockTimeout) {
+        this.transportName = transportName;
+        this.domain = domain;
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.blockTimeout = blockTimeout;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.sender = new Thread(this::sendLoop, "Redis-Replicator-" + transportName + "-Producer-" + domain);
+        this.sender.setDaemon(true);
+    }
+
+    /**
+     * Start the sender thread, which is invoked once the sub-class is initialized
+     */
+    protected final void startSender() {
+        sender.start();
+    }
+
+    /**
+     * Enqueue the record, the {@link OverflowPolicy} is applied if the queue is full
+     *
+     * @param record the record
+     * @return <code>true</code> if enqueued or spilled, <code>false</code> if dropped
+     */
+    public boolean enqueue(E record) {
+        boolean enqueued;
+        try {
+            enqueued = doEnqueue(record);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            enqueued = false;
+        }
+        if (enqueued) {
+            enqueuedCount.incrementAndGet();
+        } else {
+            long dropped = droppedCount.incrementAndGet();
+            // Avoid flooding the logs
+            if (dropped == 1 || dropped % 1000 == 0) {
+                logger.warn("[Redis-Replicator-{}-P-F] The queue of domain: {} is full(capacity: {}), the record is dropped, total dropped: {}",
+                        transportName, domain, capacity, dropped);
+            }
+        }
+        return enqueued;
+    }
+
+    private boolean doEnqueue(E record) throws InterruptedException {
+        switch (overflowPolicy) {
+            case DROP_OLDEST:
+                while (!queue.offer(record)) {
+                    if (queue.poll() != null) {
+                        droppedCount.incrementAndGet();
+                    }
+                }
+                return true;
+            case SPILL:
+                return spill(record);
+            default:
+                return queue.offer(record, blockTimeout, MILLISECONDS);
+        }
+    }
+
+    /**
+     * Enqueue or spill the record if {@link OverflowPolicy#SPILL}
+     *
+     * @param record the record
+     * @return <code>true</code> if enqueued or spilled, <code>false</code> if dropped
+     * @throws InterruptedException if the thread is interrupted
+     */
+    protected boolean spill(E record) throws InterruptedException {
+        throw new UnsupportedOperationException("The overflow policy SPILL is not supported by " + getClass().getSimpleName());
+    }
+
+    private void sendLoop() {
+        try {
+            while (running || !queue.isEmpty()) {
+                try {
+                    send();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Throwable e) {
+                    logger.error("[Redis-Replicator-{}-P-F] Failed to send the records of domain: {}", transportName, domain, e);
+                }
+            }
+        } finally {
+            if (!running) {
+                // The sender outlives the close
+                invokeOnClosed();
+            }
+        }
+    }
+
+    /**
+     * Send the queued records once, which waits for {@link #POLL_TIMEOUT} at most if the queue is empty
+     *
+     * @throws Exception if the records can't be sent
+     */
+    protected abstract void send() throws Exception;
+
+    /**
+     * Stop the sender after the queued records are sent, the sender is interrupted if it's still waiting after the timeout.
+     * {@link #onClosed()} is invoked once the sender is stopped, by the sender itself if it's still alive.
+     *
+     * @param timeout the timeout in milliseconds
+     */
+    public void close(long timeout) {
+        running = false;
+        try {
+            sender.join(timeout);
+            if (sender.isAlive()) {
+                sender.interrupt();
+                sender.join(POLL_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (sender.isAlive()) {
+            logger.warn("[Redis-Replicator-{}-P-F] The sender of domain: {} is still alive after being interrupted, the queue will be closed once it's stopped",
+                    transportName, domain);
+        } else {
+            invokeOnClosed();
+        }
+    }
+
+    private void invokeOnClosed() {
+        if (closed.compareAndSet(false, true)) {
+            onClosed();
+        }
+    }
+
+    /**
+     * Callback after the sender is stopped, which is invoked once
+     */
+    protected void onClosed() {
+    }
+
+    /**
+     * @return <code>false</code> if the queue is being closed
+     */
+    protected boolean isRunning() {
+        return running;
+    }
+
+    public String getDomain() {
+        return domain;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * @return the count of the pending records
+     */
+    public long getDepth() {
+        return queue.size();
+    }
+
+    public long getEnqueuedCount() {
+        return enqueuedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public long getSuccessCount() {
+        return successCount.get();
+    }
+
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The exclusive lock of the producer or the consumer of a domain across the processes, which is held until it's
+ * closed, thus the local {@link ReplicationTransport transports} sharing a directory fail fast rather than corrupting
+ * the data of each other.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see SegmentedFileReplicationTransport
+ * @since 1.0.0
+ */
+final class DomainRoleLock implements Closeable {
+
+    static final String PRODUCER_ROLE = "producer";
+
+    static final String CONSUMER_ROLE = "consumer";
+
+    static final String LOCK_FILE_SUFFIX = ".lock";
+
+    private final FileChannel channel;
+
+    private DomainRoleLock(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Acquire the lock of role
+     *
+     * @param lockFile the lock file of role
+     * @param role     the role, {@link #PRODUCER_ROLE} or {@link #CONSUMER_ROLE}
+     * @return non-null
+     * @throws IOException if the lock is held by another process or transport
+     */
+    static DomainRoleLock acquire(File lockFile, String role) throws IOException {
+        FileChannel channel = FileChannel.open(lockFile.toPath(), CREATE, WRITE);
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Locked by another transport in the current process
+            lock = null;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (lock == null) {
+            channel.close();
+            throw new IOException("The lock[" + lockFile + "] is held by another " + role + ", the directory must not be shared by more than one " + role);
+        }
+        return new DomainRoleLock(channel);
+    }
+
+    @Override
+    public void close() throws IOException {
+        // The lock is released with the channel
+        channel.close();
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The in-memory {@link ReplicationTransport}, whose producers and consumers must be in the same JVM, it's designed for
+ * the tests. The records are kept until they are committed, and the position is the index of record in the domain.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class InMemoryReplicationTransport implements ReplicationTransport {
+
+    public static final String NAME = "memory";
+
+    private final ConcurrentMap<String, DomainLog> domainLogs = new ConcurrentHashMap<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void publish(String domain, List<ReplicationRecord> records) {
+        getDomainLog(domain).append(records);
+    }
+
+    @Override
+    public List<ReplicationRecord> poll(String domain, int maxRecords, long timeout) throws InterruptedException {
+        return getDomainLog(domain).poll(maxRecords, timeout);
+    }
+
+    @Override
+    public void commit(String domain, String position) {
+        getDomainLog(domain).commit(Long.parseLong(position));
+    }
+
+    @Override
+    public void seekToEnd(String domain) {
+        getDomainLog(domain).seekToEnd();
+    }
+
+    /**
+     * @param domain the domain
+     * @return the count of the records not committed
+     */
+    public int getPendingCount(String domain) {
+        return getDomainLog(domain).size();
+    }
+
+    private DomainLog getDomainLog(String domain) {
+        DomainLog domainLog = domainLogs.get(domain);
+        if (domainLog == null) {
+            domainLog = domainLogs.computeIfAbsent(domain, d -> new DomainLog());
+        }
+        return domainLog;
+    }
+
+    @Override
+    public void close() {
+        domainLogs.clear();
+    }
+
+    private static class DomainLog {
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        private final Condition appended = lock.newCondition();
+
+        /**
+         * The records not committed, guarded by {@link #lock}
+         */
+        private final List<ReplicationRecord> records = new ArrayList<>();
+
+        /**
+         * The index of the first record in {@link #records}
+         */
+        private long base;
+
+        /**
+         * The index of the next record to poll
+         */
+        private long next;
+
+        void append(List<ReplicationRecord> records) {
+            lock.lock();
+            try {
+                this.records.addAll(records);
+                appended.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        List<ReplicationRecord> poll(int maxRecords, long timeout) throws InterruptedException {
+            long nanos = TimeUnit.MILLISECONDS.toNanos(timeout);
+            lock.lock();
+            try {
+                while (next >= base + records.size()) {
+                    if (nanos <= 0) {
+                        return Collections.emptyList();
+                    }
+                    nanos = appended.awaitNanos(nanos);
+                }
+                int from = (int) (next - base);
+                int to = Math.min(records.size(), from + maxRecords);
+                List<ReplicationRecord> polledRecords = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    polledRecords.add(records.get(i).withPosition(String.valueOf(base + i)));
+                }
+                next = base + to;
+                return polledRecords;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void commit(long position) {
+            lock.lock();
+            try {
+                int count = (int) Math.min(records.size(), position - base + 1);
+                if (count > 0) {
+                    records.subList(0, count).clear();
+                    base += count;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        void seekToEnd() {
+            lock.lock();
+            try {
+                base += records.size();
+                next = base;
+                records.clear();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int size() {
+            lock.lock();
+            try {
+                return records.size();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
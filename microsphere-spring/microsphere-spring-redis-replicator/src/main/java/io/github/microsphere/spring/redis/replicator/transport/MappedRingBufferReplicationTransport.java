@@ -0,0 +1,508 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.CONSUMER_ROLE;
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.LOCK_FILE_SUFFIX;
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.PRODUCER_ROLE;
+import static io.github.microsphere.spring.redis.replicator.transport.SegmentedFileReplicationTransport.decode;
+import static io.github.microsphere.spring.redis.replicator.transport.SegmentedFileReplicationTransport.encode;
+import static java.nio.channels.FileChannel.MapMode.READ_WRITE;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The memory-mapped ring buffer {@link ReplicationTransport} for the producer and the consumer on the same host, the
+ * records of each domain are written into a ring file mapped by both processes, thus the consumer tails the records
+ * without any system call :
+ * <ul>
+ *     <li>The header of file holds the capacity, the write sequence of the producer and the committed sequence of the
+ *     consumer, the sequences are the monotonic offsets in bytes, which are never wrapped</li>
+ *     <li>The record is framed by its length and CRC32 as {@link SegmentedFileReplicationTransport}, and aligned to
+ *     8 bytes, the frame never spans the end of ring, the remaining bytes are skipped by a padding marker</li>
+ *     <li>The write sequence is advanced after the frames are written, but the plain writes of the mapping are not
+ *     ordered across the processes, thus the CRC32 of frame is seeded with its sequence, the consumer never delivers
+ *     a partially written frame nor the stale frame of the previous lap, which is retried until it's visible</li>
+ *     <li>The producer never overwrites the records after the committed sequence, it waits for the consumer to commit
+ *     until the publish timeout if the ring is full</li>
+ * </ul>
+ * After the crash, the producer resumes from the write sequence, which discards the frames written partially, and the
+ * consumer resumes from the committed sequence, thus the records are delivered at least once.
+ * <p>
+ * Each domain supports one producer process and one consumer process, which are guarded by the lock files
+ * "${domain}.producer.lock" and "${domain}.consumer.lock", thus the transport fails fast if the directory is shared by
+ * more than one producer or consumer. The mapping is released by the garbage collector
+ * after {@link #close()}, since Java 8 can't unmap it explicitly.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class MappedRingBufferReplicationTransport implements ReplicationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(MappedRingBufferReplicationTransport.class);
+
+    public static final String NAME = "mmap";
+
+    static final String RING_FILE_SUFFIX = ".ring";
+
+    /**
+     * "RRRB" in ASCII
+     */
+    static final int MAGIC = 0x52525242;
+
+    static final int MAGIC_OFFSET = 0;
+
+    static final int CAPACITY_OFFSET = 8;
+
+    /**
+     * The sequences are in the separate cache lines, since they are written by the different processes
+     */
+    static final int WRITE_SEQUENCE_OFFSET = 64;
+
+    static final int COMMITTED_SEQUENCE_OFFSET = 128;
+
+    static final int HEADER_SIZE = 192;
+
+    static final int ALIGNMENT = 8;
+
+    /**
+     * The length of the padding frame, which skips the remaining bytes to the end of ring, the padding frame is
+     * stamped by the CRC32 of its sequence
+     */
+    static final int PADDING = -1;
+
+    /**
+     * The length and CRC32 of frame
+     */
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES * 2;
+
+    private static final byte[] EMPTY_BODY = new byte[0];
+
+    private final File directory;
+
+    private final int capacity;
+
+    private final long pollInterval;
+
+    private final long publishTimeout;
+
+    private final boolean sync;
+
+    private final ConcurrentMap<String, RingBuffer> ringBuffers = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory      the directory of the ring files
+     * @param capacity       the capacity in bytes of the new ring, which is rounded down to the multiple of 8, the
+     *                       existing ring keeps its capacity
+     * @param pollInterval   the interval in microseconds to check the new records
+     * @param publishTimeout the timeout in milliseconds to wait for the free space
+     * @param sync           whether the records are forced to the storage device on publish or not
+     */
+    public MappedRingBufferReplicationTransport(File directory, int capacity, long pollInterval, long publishTimeout, boolean sync) {
+        int alignedCapacity = capacity & -ALIGNMENT;
+        if (alignedCapacity <= 0 || alignedCapacity > Integer.MAX_VALUE - HEADER_SIZE) {
+            throw new IllegalArgumentException("The capacity of ring is invalid : " + capacity);
+        }
+        this.directory = directory;
+        this.capacity = alignedCapacity;
+        this.pollInterval = pollInterval;
+        this.publishTimeout = publishTimeout;
+        this.sync = sync;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void publish(String domain, List<ReplicationRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        RingBuffer ringBuffer = getRingBuffer(domain);
+        ByteBuffer frames = encode(records);
+        synchronized (ringBuffer.writeLock) {
+            ringBuffer.acquireProducerLock();
+            ringBuffer.write(frames);
+        }
+    }
+
+    @Override
+    public List<ReplicationRecord> poll(String domain, int maxRecords, long timeout) throws IOException, InterruptedException {
+        RingBuffer ringBuffer = getRingBuffer(domain);
+        long deadline = System.nanoTime() + MILLISECONDS.toNanos(timeout);
+        long pollIntervalNanos = MICROSECONDS.toNanos(pollInterval);
+        synchronized (ringBuffer.readLock) {
+            ringBuffer.acquireConsumerLock();
+            while (true) {
+                List<ReplicationRecord> records = ringBuffer.read(maxRecords);
+                if (!records.isEmpty()) {
+                    return records;
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return records;
+                }
+                LockSupport.parkNanos(Math.min(remaining, pollIntervalNanos));
+                if (Thread.interrupted()) {
+                    throw new InterruptedException("The thread is interrupted while polling the ring of domain : " + domain);
+                }
+            }
+        }
+    }
+
+    @Override
+    public void commit(String domain, String position) throws IOException {
+        RingBuffer ringBuffer = getRingBuffer(domain);
+        synchronized (ringBuffer.readLock) {
+            ringBuffer.acquireConsumerLock();
+            ringBuffer.commit(Long.parseLong(position));
+        }
+    }
+
+    @Override
+    public void seekToEnd(String domain) throws IOException {
+        RingBuffer ringBuffer = getRingBuffer(domain);
+        synchronized (ringBuffer.readLock) {
+            ringBuffer.acquireConsumerLock();
+            long writeSequence = ringBuffer.getWriteSequence();
+            ringBuffer.commit(writeSequence);
+            ringBuffer.readSequence = writeSequence;
+        }
+    }
+
+    private RingBuffer getRingBuffer(String domain) throws IOException {
+        RingBuffer ringBuffer = ringBuffers.get(domain);
+        if (ringBuffer == null) {
+            synchronized (ringBuffers) {
+                ringBuffer = ringBuffers.get(domain);
+                if (ringBuffer == null) {
+                    ringBuffer = new RingBuffer(domain, getRingFile(domain));
+                    ringBuffers.put(domain, ringBuffer);
+                }
+            }
+        }
+        return ringBuffer;
+    }
+
+    private File getRingFile(String domain) throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs() && !directory.isDirectory()) {
+            throw new IOException("The directory of ring files can't be created : " + directory);
+        }
+        return new File(directory, domain + RING_FILE_SUFFIX);
+    }
+
+    /**
+     * The CRC32 of frame seeded with its sequence
+     *
+     * @param crc32    {@link CRC32}
+     * @param sequence the sequence of frame
+     * @param body     the body of frame
+     * @param offset   the offset of body
+     * @param length   the length of body
+     * @return the CRC32 value
+     */
+    static int stamp(CRC32 crc32, long sequence, byte[] body, int offset, int length) {
+        crc32.reset();
+        for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE) {
+            crc32.update((int) (sequence >>> shift));
+        }
+        crc32.update(body, offset, length);
+        return (int) crc32.getValue();
+    }
+
+    static int align(int size) {
+        return (size + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (RingBuffer ringBuffer : ringBuffers.values()) {
+            ringBuffer.close();
+        }
+        ringBuffers.clear();
+    }
+
+    private class RingBuffer {
+
+        private final Object writeLock = new Object();
+
+        private final Object readLock = new Object();
+
+        private final String domain;
+
+        private final File file;
+
+        private final FileChannel channel;
+
+        private final MappedByteBuffer buffer;
+
+        private final int capacity;
+
+        /**
+         * The sequence of the next record to read, guarded by {@link #readLock}
+         */
+        private long readSequence;
+
+        /**
+         * The {@link CRC32} of reading, guarded by {@link #readLock}
+         */
+        private final CRC32 crc32 = new CRC32();
+
+        /**
+         * The {@link CRC32} of writing, guarded by {@link #writeLock}
+         */
+        private final CRC32 writeCrc32 = new CRC32();
+
+        /**
+         * The lock of producer, guarded by {@link #writeLock}
+         */
+        private DomainRoleLock producerLock;
+
+        /**
+         * The lock of consumer, guarded by {@link #readLock}
+         */
+        private DomainRoleLock consumerLock;
+
+        RingBuffer(String domain, File file) throws IOException {
+            this.domain = domain;
+            this.file = file;
+            this.channel = FileChannel.open(file.toPath(), CREATE, READ, WRITE);
+            // The producer and the consumer may initialize the new file concurrently
+            try (FileLock lock = channel.lock()) {
+                this.capacity = initialize();
+                this.buffer = channel.map(READ_WRITE, 0, HEADER_SIZE + (long) capacity);
+            }
+            this.readSequence = recover();
+        }
+
+        private int initialize() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            if (channel.size() >= HEADER_SIZE) {
+                channel.read(header, 0);
+                if (header.getInt(MAGIC_OFFSET) == MAGIC) {
+                    int capacity = (int) header.getLong(CAPACITY_OFFSET);
+                    if (capacity != MappedRingBufferReplicationTransport.this.capacity) {
+                        logger.warn("The existing ring[{}] keeps its capacity : {}", file, capacity);
+                    }
+                    return capacity;
+                }
+            }
+            int capacity = MappedRingBufferReplicationTransport.this.capacity;
+            header.clear();
+            header.putInt(MAGIC_OFFSET, MAGIC);
+            header.putLong(CAPACITY_OFFSET, capacity);
+            channel.truncate(0);
+            channel.write(header, 0);
+            // Extend the file to the full size
+            channel.write(ByteBuffer.allocate(1), HEADER_SIZE + (long) capacity - 1);
+            channel.force(true);
+            logger.debug("The ring[{}] is created, capacity : {}", file, capacity);
+            return capacity;
+        }
+
+        /**
+         * Recover the sequences after the crash
+         *
+         * @return the committed sequence
+         */
+        private long recover() {
+            long writeSequence = getWriteSequence();
+            long committedSequence = getCommittedSequence();
+            if (committedSequence > writeSequence || committedSequence < writeSequence - capacity) {
+                logger.warn("The committed sequence of ring[{}] is out of range : {} , the write sequence : {}", file, committedSequence, writeSequence);
+                committedSequence = Math.min(writeSequence, Math.max(committedSequence, writeSequence - capacity));
+                buffer.putLong(COMMITTED_SEQUENCE_OFFSET, committedSequence);
+            }
+            return committedSequence;
+        }
+
+        void acquireProducerLock() throws IOException {
+            if (producerLock == null) {
+                producerLock = acquireLock(PRODUCER_ROLE);
+            }
+        }
+
+        void acquireConsumerLock() throws IOException {
+            if (consumerLock == null) {
+                consumerLock = acquireLock(CONSUMER_ROLE);
+            }
+        }
+
+        private DomainRoleLock acquireLock(String role) throws IOException {
+            return DomainRoleLock.acquire(new File(directory, domain + '.' + role + LOCK_FILE_SUFFIX), role);
+        }
+
+        long getWriteSequence() {
+            return buffer.getLong(WRITE_SEQUENCE_OFFSET);
+        }
+
+        long getCommittedSequence() {
+            return buffer.getLong(COMMITTED_SEQUENCE_OFFSET);
+        }
+
+        void write(ByteBuffer frames) throws IOException {
+            long writeSequence = getWriteSequence();
+            ByteBuffer data = buffer.duplicate();
+            int limit = frames.limit();
+            while (frames.hasRemaining()) {
+                int frameStart = frames.position();
+                int frameSize = FRAME_HEADER_SIZE + frames.getInt(frameStart);
+                int alignedSize = align(frameSize);
+                if (alignedSize > capacity) {
+                    throw new IOException("The size of record exceeds the capacity of ring[" + file + "] : " + frameSize);
+                }
+                int index = (int) (writeSequence % capacity);
+                int tail = capacity - index;
+                int required = tail < alignedSize ? tail + alignedSize : alignedSize;
+                if (writeSequence + required - getCommittedSequence() > capacity) {
+                    // The written frames are published before waiting for the consumer
+                    publishWriteSequence(writeSequence);
+                    awaitFreeSpace(writeSequence + required);
+                }
+                if (tail < alignedSize) {
+                    buffer.putInt(HEADER_SIZE + index + Integer.BYTES, stamp(writeCrc32, writeSequence, EMPTY_BODY, 0, 0));
+                    buffer.putInt(HEADER_SIZE + index, PADDING);
+                    writeSequence += tail;
+                    index = 0;
+                }
+                int bodyStart = frameStart + FRAME_HEADER_SIZE;
+                frames.putInt(frameStart + Integer.BYTES, stamp(writeCrc32, writeSequence, frames.array(), bodyStart, frameSize - FRAME_HEADER_SIZE));
+                frames.limit(frameStart + frameSize);
+                data.position(HEADER_SIZE + index);
+                data.put(frames);
+                frames.limit(limit);
+                writeSequence += alignedSize;
+            }
+            publishWriteSequence(writeSequence);
+        }
+
+        private void publishWriteSequence(long writeSequence) {
+            if (sync) {
+                buffer.force();
+            }
+            buffer.putLong(WRITE_SEQUENCE_OFFSET, writeSequence);
+        }
+
+        private void awaitFreeSpace(long endSequence) throws IOException {
+            long deadline = System.nanoTime() + MILLISECONDS.toNanos(publishTimeout);
+            long pollIntervalNanos = MICROSECONDS.toNanos(pollInterval);
+            while (endSequence - getCommittedSequence() > capacity) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new IOException("The ring[" + file + "] is full, the consumer does not commit in " + publishTimeout + " ms");
+                }
+                LockSupport.parkNanos(Math.min(remaining, pollIntervalNanos));
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new IOException("The thread is interrupted while waiting for the free space of ring[" + file + "]");
+                }
+            }
+        }
+
+        List<ReplicationRecord> read(int maxRecords) {
+            long writeSequence = getWriteSequence();
+            if (readSequence >= writeSequence) {
+                return Collections.emptyList();
+            }
+            List<ReplicationRecord> records = new ArrayList<>();
+            while (records.size() < maxRecords && readSequence < writeSequence) {
+                int index = (int) (readSequence % capacity);
+                int bodySize = buffer.getInt(HEADER_SIZE + index);
+                if (bodySize == PADDING) {
+                    if (buffer.getInt(HEADER_SIZE + index + Integer.BYTES) != stamp(crc32, readSequence, EMPTY_BODY, 0, 0)) {
+                        // The padding of the previous lap
+                        break;
+                    }
+                    readSequence += capacity - index;
+                    continue;
+                }
+                ByteBuffer body = readBody(index, bodySize);
+                if (body == null) {
+                    // The frame is not visible yet
+                    break;
+                }
+                readSequence += align(FRAME_HEADER_SIZE + bodySize);
+                records.add(decode(body, String.valueOf(readSequence)));
+            }
+            return records;
+        }
+
+        private ByteBuffer readBody(int index, int bodySize) {
+            if (bodySize < 0 || FRAME_HEADER_SIZE + bodySize > capacity - index) {
+                return null;
+            }
+            int crc = buffer.getInt(HEADER_SIZE + index + Integer.BYTES);
+            byte[] body = new byte[bodySize];
+            ByteBuffer data = buffer.duplicate();
+            data.position(HEADER_SIZE + index + FRAME_HEADER_SIZE);
+            data.get(body);
+            // The stale frame of the previous lap is rejected by the sequence
+            return stamp(crc32, readSequence, body, 0, bodySize) == crc ? ByteBuffer.wrap(body) : null;
+        }
+
+        void commit(long sequence) {
+            buffer.putLong(COMMITTED_SEQUENCE_OFFSET, sequence);
+            if (sync) {
+                buffer.force();
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                channel.close();
+            } finally {
+                closeLocks();
+            }
+        }
+
+        private void closeLocks() throws IOException {
+            synchronized (writeLock) {
+                if (producerLock != null) {
+                    producerLock.close();
+                    producerLock = null;
+                }
+            }
+            synchronized (readLock) {
+                if (consumerLock != null) {
+                    consumerLock.close();
+                    consumerLock = null;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+/**
+ * The overflow policy of {@link AbstractProducerDomainQueue} when the queue is full
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see AbstractProducerDomainQueue
+ * @since 1.0.0
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Block the publishing thread until the space is available or the timeout elapses, the message will be dropped
+     * if timeout.
+     * <p>
+     * The publishing thread is the one executing the Redis command, thus the Redis writes are delayed for up to the
+     * timeout(100 ms by default) when the queue is full.
+     */
+    BLOCK,
+
+    /**
+     * Drop the oldest message in the queue
+     */
+    DROP_OLDEST,
+
+    /**
+     * Spill the messages to the local disk, which will be sent after the queue is drained, it's supported by
+     * {@link io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue} only
+     */
+    SPILL
+}
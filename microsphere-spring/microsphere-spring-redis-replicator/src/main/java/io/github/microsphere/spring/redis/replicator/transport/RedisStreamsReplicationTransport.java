@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.connection.stream.ByteRecord;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessages;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static io.github.microsphere.spring.redis.beans.Wrapper.tryUnwrap;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The Redis Streams {@link ReplicationTransport}, the records of each domain are appended to a stream by "XADD" and
+ * consumed by a consumer group :
+ * <ul>
+ *     <li>The key, value and timestamp of record are the fields "k", "v" and "t", the headers are the fields with the
+ *     prefix "h:"</li>
+ *     <li>The position is the id of stream entry, the entries up to the committed position are acknowledged by "XACK"</li>
+ *     <li>Each domain is consumed by one consumer of the group at a time, which holds the lease of domain, the lease
+ *     is renewed on each poll and taken over by another consumer if it expires</li>
+ *     <li>The pending entries of the group are claimed by the consumer acquiring the lease and redelivered first</li>
+ *     <li>The stream is trimmed to the max length periodically, the entries not consumed may be trimmed if the
+ *     consumers fall behind</li>
+ * </ul>
+ * The {@link RedisConnectionFactory} must not be intercepted, otherwise, the commands of transport are replicated.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisStreamsReplicationTransport implements ReplicationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisStreamsReplicationTransport.class);
+
+    public static final String NAME = "redis-streams";
+
+    static final byte[] KEY_FIELD = "k".getBytes(UTF_8);
+
+    static final byte[] VALUE_FIELD = "v".getBytes(UTF_8);
+
+    static final byte[] TIMESTAMP_FIELD = "t".getBytes(UTF_8);
+
+    static final String HEADER_FIELD_PREFIX = "h:";
+
+    /**
+     * The count of publishing between the trims
+     */
+    private static final int TRIM_INTERVAL = 100;
+
+    /**
+     * The max count of pending entries claimed at once
+     */
+    private static final int CLAIM_BATCH_SIZE = 100;
+
+    static final String LEASE_KEY_SUFFIX = ":lease";
+
+    /**
+     * Acquire or renew the lease, returns 0 if it's held by another consumer, 1 if it's renewed, 2 if it's acquired
+     */
+    private static final byte[] LEASE_SCRIPT = ("local owner = redis.call('GET', KEYS[1]) " +
+            "if owner and owner ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[1], ARGV[1], 'PX', ARGV[2]) " +
+            "if owner then return 1 end " +
+            "return 2").getBytes(UTF_8);
+
+    private static final byte[] RELEASE_LEASE_SCRIPT = ("if redis.call('GET', KEYS[1]) == ARGV[1] then " +
+            "return redis.call('DEL', KEYS[1]) end " +
+            "return 0").getBytes(UTF_8);
+
+    private final RedisConnectionFactory redisConnectionFactory;
+
+    private final String keyPrefix;
+
+    private final long maxLength;
+
+    private final String group;
+
+    private final String consumerName;
+
+    private final long leaseTime;
+
+    private final ConcurrentMap<String, AtomicLong> publishCounts = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, StreamReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * @param redisConnectionFactory the {@link RedisConnectionFactory}, it will be unwrapped if intercepted
+     * @param keyPrefix              the prefix of stream keys, the domain is the suffix
+     * @param maxLength              the max length of streams, non-positive if unlimited
+     * @param group                  the consumer group
+     * @param consumerName           the name of consumer in the group, which must be unique per instance
+     * @param leaseTime              the time in milliseconds of the lease of domain, which should be longer than the time
+     *                               of applying a batch
+     */
+    public RedisStreamsReplicationTransport(RedisConnectionFactory redisConnectionFactory, String keyPrefix, long maxLength,
+                                            String group, String consumerName, long leaseTime) {
+        this.redisConnectionFactory = tryUnwrap(redisConnectionFactory, RedisConnectionFactory.class);
+        this.keyPrefix = keyPrefix;
+        this.maxLength = maxLength;
+        this.group = group;
+        this.consumerName = consumerName;
+        this.leaseTime = leaseTime;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void publish(String domain, List<ReplicationRecord> records) {
+        if (records.isEmpty()) {
+            return;
+        }
+        byte[] key = getStreamKey(domain);
+        boolean trimRequired = maxLength > 0 && getPublishCount(domain).incrementAndGet() % TRIM_INTERVAL == 0;
+        try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+            connection.openPipeline();
+            for (int i = 0, size = records.size(); i < size; i++) {
+                connection.xAdd(StreamRecords.rawBytes(toFields(records.get(i))).withStreamKey(key));
+            }
+            if (trimRequired) {
+                connection.xTrim(key, maxLength);
+            }
+            connection.closePipeline();
+        }
+    }
+
+    private AtomicLong getPublishCount(String domain) {
+        AtomicLong publishCount = publishCounts.get(domain);
+        if (publishCount == null) {
+            publishCount = publishCounts.computeIfAbsent(domain, d -> new AtomicLong());
+        }
+        return publishCount;
+    }
+
+    static Map<byte[], byte[]> toFields(ReplicationRecord record) {
+        Map<String, byte[]> headers = record.getHeaders();
+        Map<byte[], byte[]> fields = new LinkedHashMap<>(headers.size() + 3);
+        byte[] key = record.getKey();
+        if (key != null) {
+            fields.put(KEY_FIELD, key);
+        }
+        fields.put(VALUE_FIELD, record.getValue());
+        fields.put(TIMESTAMP_FIELD, ByteBuffer.allocate(Long.BYTES).putLong(record.getTimestamp()).array());
+        for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+            fields.put((HEADER_FIELD_PREFIX + header.getKey()).getBytes(UTF_8), header.getValue());
+        }
+        return fields;
+    }
+
+    static ReplicationRecord toRecord(Map<byte[], byte[]> fields, String position) {
+        byte[] key = null;
+        byte[] value = null;
+        long timestamp = -1;
+        Map<String, byte[]> headers = new LinkedHashMap<>();
+        for (Map.Entry<byte[], byte[]> field : fields.entrySet()) {
+            byte[] name = field.getKey();
+            if (Arrays.equals(KEY_FIELD, name)) {
+                key = field.getValue();
+            } else if (Arrays.equals(VALUE_FIELD, name)) {
+                value = field.getValue();
+            } else if (Arrays.equals(TIMESTAMP_FIELD, name)) {
+                timestamp = ByteBuffer.wrap(field.getValue()).getLong();
+            } else {
+                String headerName = new String(name, UTF_8);
+                if (headerName.startsWith(HEADER_FIELD_PREFIX)) {
+                    headers.put(headerName.substring(HEADER_FIELD_PREFIX.length()), field.getValue());
+                }
+            }
+        }
+        return new ReplicationRecord(key, value, headers, timestamp, position);
+    }
+
+    @Override
+    public List<ReplicationRecord> poll(String domain, int maxRecords, long timeout) throws InterruptedException {
+        StreamReader reader = getReader(domain);
+        synchronized (reader) {
+            return reader.read(maxRecords, timeout);
+        }
+    }
+
+    @Override
+    public void commit(String domain, String position) {
+        StreamReader reader = getReader(domain);
+        synchronized (reader) {
+            reader.acknowledge(position);
+        }
+    }
+
+    @Override
+    public void seekToEnd(String domain) {
+        StreamReader reader = getReader(domain);
+        synchronized (reader) {
+            reader.seekToEnd();
+        }
+    }
+
+    private StreamReader getReader(String domain) {
+        StreamReader reader = readers.get(domain);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(domain, d -> new StreamReader(getStreamKey(d), (keyPrefix + d + LEASE_KEY_SUFFIX).getBytes(UTF_8)));
+        }
+        return reader;
+    }
+
+    private byte[] getStreamKey(String domain) {
+        return (keyPrefix + domain).getBytes(UTF_8);
+    }
+
+    private static boolean isBusyGroup(Throwable failure) {
+        Throwable cause = failure;
+        while (cause != null) {
+            String message = cause.getMessage();
+            if (message != null && message.contains("BUSYGROUP")) {
+                return true;
+            }
+            cause = cause.getCause() == cause ? null : cause.getCause();
+        }
+        return false;
+    }
+
+    @Override
+    public void close() {
+        for (StreamReader reader : readers.values()) {
+            synchronized (reader) {
+                reader.releaseLease();
+            }
+        }
+        readers.clear();
+    }
+
+    private class StreamReader {
+
+        private final byte[] key;
+
+        private final byte[] leaseKey;
+
+        private final Consumer consumer;
+
+        private boolean groupCreated;
+
+        private boolean leased;
+
+        /**
+         * The last id of the pending entries redelivered, which is <code>null</code> if all of them are redelivered
+         */
+        private String lastPendingId = "0";
+
+        /**
+         * The ids of the entries delivered but not acknowledged in order
+         */
+        private final Deque<String> deliveredIds = new ArrayDeque<>();
+
+        StreamReader(byte[] key, byte[] leaseKey) {
+            this.key = key;
+            this.leaseKey = leaseKey;
+            this.consumer = Consumer.from(group, consumerName);
+        }
+
+        List<ReplicationRecord> read(int maxRecords, long timeout) throws InterruptedException {
+            if (!holdLease()) {
+                // The domain is consumed by another consumer of the group
+                if (timeout > 0) {
+                    Thread.sleep(timeout);
+                }
+                return Collections.emptyList();
+            }
+            try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+                List<ByteRecord> byteRecords = null;
+                if (lastPendingId != null) {
+                    byteRecords = connection.xReadGroup(consumer, StreamReadOptions.empty().count(maxRecords),
+                            StreamOffset.create(key, ReadOffset.from(lastPendingId)));
+                    if (byteRecords == null || byteRecords.isEmpty()) {
+                        logger.debug("The pending entries of stream[key : '{}'] are redelivered", new String(key, UTF_8));
+                        lastPendingId = null;
+                    } else {
+                        lastPendingId = byteRecords.get(byteRecords.size() - 1).getId().getValue();
+                    }
+                }
+                if (lastPendingId == null) {
+                    StreamReadOptions readOptions = StreamReadOptions.empty().count(maxRecords);
+                    if (timeout > 0) {
+                        readOptions = readOptions.block(Duration.ofMillis(timeout));
+                    }
+                    byteRecords = connection.xReadGroup(consumer, readOptions, StreamOffset.create(key, ReadOffset.lastConsumed()));
+                }
+                return toRecords(byteRecords);
+            }
+        }
+
+        private List<ReplicationRecord> toRecords(List<ByteRecord> byteRecords) {
+            if (byteRecords == null || byteRecords.isEmpty()) {
+                return Collections.emptyList();
+            }
+            List<ReplicationRecord> records = new ArrayList<>(byteRecords.size());
+            for (int i = 0, size = byteRecords.size(); i < size; i++) {
+                ByteRecord byteRecord = byteRecords.get(i);
+                String id = byteRecord.getId().getValue();
+                deliveredIds.add(id);
+                records.add(toRecord(byteRecord.getValue(), id));
+            }
+            return records;
+        }
+
+        /**
+         * Acquire or renew the lease of domain, the pending entries of the group are claimed if the lease is acquired
+         *
+         * @return <code>true</code> if the lease is held by the current consumer
+         */
+        private boolean holdLease() {
+            try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+                Long state = connection.eval(LEASE_SCRIPT, ReturnType.INTEGER, 1, leaseKey, consumerName.getBytes(UTF_8),
+                        String.valueOf(leaseTime).getBytes(UTF_8));
+                if (state == null || state == 0L) {
+                    if (leased) {
+                        logger.warn("The lease of stream[key : '{}'] is taken over by another consumer", new String(key, UTF_8));
+                        leased = false;
+                    }
+                    return false;
+                }
+                if (!leased) {
+                    createGroup(connection);
+                    claimPendingEntries(connection);
+                    lastPendingId = "0";
+                    deliveredIds.clear();
+                    leased = true;
+                    logger.debug("The lease of stream[key : '{}'] is acquired by the consumer['{}']", new String(key, UTF_8), consumerName);
+                }
+                return true;
+            }
+        }
+
+        /**
+         * Claim the pending entries of the other consumers, which were delivered to the previous holders of the lease
+         */
+        private void claimPendingEntries(RedisConnection connection) {
+            Range<String> range = Range.unbounded();
+            while (true) {
+                PendingMessages pendingMessages = connection.xPending(key, group, range, (long) CLAIM_BATCH_SIZE);
+                if (pendingMessages == null || pendingMessages.isEmpty()) {
+                    return;
+                }
+                List<RecordId> recordIds = new ArrayList<>(pendingMessages.size());
+                String lastId = null;
+                for (PendingMessage pendingMessage : pendingMessages) {
+                    lastId = pendingMessage.getIdAsString();
+                    if (!consumerName.equals(pendingMessage.getConsumerName())) {
+                        recordIds.add(pendingMessage.getId());
+                    }
+                }
+                if (!recordIds.isEmpty()) {
+                    connection.xClaimJustId(key, group, consumerName, XClaimOptions.minIdle(Duration.ZERO).ids(recordIds.toArray(new RecordId[0])));
+                    logger.debug("{} pending entries of stream[key : '{}'] are claimed by the consumer['{}']", recordIds.size(),
+                            new String(key, UTF_8), consumerName);
+                }
+                if (pendingMessages.size() < CLAIM_BATCH_SIZE) {
+                    return;
+                }
+                // The inclusive bound is compatible with Redis prior to 6.2, the entry of last id is claimed already
+                range = Range.rightUnbounded(Range.Bound.inclusive(lastId));
+            }
+        }
+
+        void releaseLease() {
+            if (!leased) {
+                return;
+            }
+            leased = false;
+            try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+                connection.eval(RELEASE_LEASE_SCRIPT, ReturnType.INTEGER, 1, leaseKey, consumerName.getBytes(UTF_8));
+            } catch (RuntimeException e) {
+                logger.warn("The lease of stream[key : '{}'] can't be released, it will expire in {} ms", new String(key, UTF_8), leaseTime, e);
+            }
+        }
+
+        private void createGroup(RedisConnection connection) {
+            if (groupCreated) {
+                return;
+            }
+            try {
+                connection.xGroupCreate(key, group, ReadOffset.from("0"), true);
+                logger.debug("The consumer group['{}'] of stream[key : '{}'] is created", group, new String(key, UTF_8));
+            } catch (RuntimeException e) {
+                if (!isBusyGroup(e)) {
+                    throw e;
+                }
+            }
+            groupCreated = true;
+        }
+
+        /**
+         * Set the last delivered id of the consumer group to the end of stream by "XGROUP SETID", the pending entries
+         * are not redelivered, the lease is acquired before, thus it's not reset by the next poll
+         */
+        void seekToEnd() {
+            if (!holdLease()) {
+                throw new IllegalStateException("The stream[key : '" + new String(key, UTF_8) + "'] is consumed by another consumer");
+            }
+            try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+                createGroup(connection);
+                connection.execute("XGROUP", "SETID".getBytes(UTF_8), key, group.getBytes(UTF_8), "$".getBytes(UTF_8));
+            }
+            lastPendingId = null;
+            deliveredIds.clear();
+        }
+
+        void acknowledge(String position) {
+            if (!deliveredIds.contains(position)) {
+                return;
+            }
+            List<RecordId> recordIds = new ArrayList<>();
+            String id;
+            do {
+                id = deliveredIds.poll();
+                recordIds.add(RecordId.of(id));
+            } while (!position.equals(id));
+            try (RedisConnection connection = redisConnectionFactory.getConnection()) {
+                connection.xAck(key, group, recordIds.toArray(new RecordId[0]));
+            }
+        }
+    }
+}
@@ -0,0 +1,176 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.springframework.lang.Nullable;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The record of {@link ReplicationTransport}, which carries the serialized
+ * {@link io.github.microsphere.spring.redis.event.RedisCommandEvent} with its key, headers and timestamp.
+ * <p>
+ * The {@link #getPosition() position} is assigned by the transport when the record is polled, which is opaque to
+ * the others and committed by {@link ReplicationTransport#commit(String, String)}.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ReplicationTransport
+ * @since 1.0.0
+ */
+public final class ReplicationRecord {
+
+    /**
+     * The prefix of header names, the headers allow the consumers to filter the records without deserializing
+     * the {@link io.github.microsphere.spring.redis.event.RedisCommandEvent}
+     */
+    public static final String HEADER_NAME_PREFIX = "redis-replicator-";
+
+    /**
+     * The header of the source application name (UTF-8)
+     */
+    public static final String SOURCE_APPLICATION_HEADER_NAME = HEADER_NAME_PREFIX + "source-application";
+
+    /**
+     * The header of the source id (UTF-8), which identifies the producer instance that the sequence belongs to
+     */
+    public static final String SOURCE_ID_HEADER_NAME = HEADER_NAME_PREFIX + "source-id";
+
+    /**
+     * The header of the origin cluster id (UTF-8), which is present only if the cluster id is configured
+     */
+    public static final String CLUSTER_ID_HEADER_NAME = HEADER_NAME_PREFIX + "cluster-id";
+
+    /**
+     * The header of the Redis command method id (short, big-endian)
+     */
+    public static final String METHOD_ID_HEADER_NAME = HEADER_NAME_PREFIX + "method-id";
+
+    /**
+     * The header of the sequence (long, big-endian), which is monotonic per source and the ordered log of records,
+     * e.g. a Kafka topic partition or a domain
+     */
+    public static final String SEQUENCE_HEADER_NAME = HEADER_NAME_PREFIX + "sequence";
+
+    private final byte[] key;
+
+    private final byte[] value;
+
+    private final Map<String, byte[]> headers;
+
+    private final long timestamp;
+
+    private final String position;
+
+    /**
+     * @param key       the key, maybe <code>null</code>
+     * @param value     the value
+     * @param headers   the headers
+     * @param timestamp the timestamp in milliseconds
+     */
+    public ReplicationRecord(@Nullable byte[] key, byte[] value, Map<String, byte[]> headers, long timestamp) {
+        this(key, value, headers, timestamp, null);
+    }
+
+    /**
+     * @param key       the key, maybe <code>null</code>
+     * @param value     the value
+     * @param headers   the headers
+     * @param timestamp the timestamp in milliseconds
+     * @param position  the position assigned by the transport
+     */
+    public ReplicationRecord(@Nullable byte[] key, byte[] value, Map<String, byte[]> headers, long timestamp, @Nullable String position) {
+        this.key = key;
+        this.value = value;
+        this.headers = headers.isEmpty() ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(headers));
+        this.timestamp = timestamp;
+        this.position = position;
+    }
+
+    /**
+     * Create a copy of this record with the position
+     *
+     * @param position the position assigned by the transport
+     * @return non-null
+     */
+    public ReplicationRecord withPosition(String position) {
+        return new ReplicationRecord(key, value, headers, timestamp, position);
+    }
+
+    @Nullable
+    public byte[] getKey() {
+        return key;
+    }
+
+    public byte[] getValue() {
+        return value;
+    }
+
+    public Map<String, byte[]> getHeaders() {
+        return headers;
+    }
+
+    @Nullable
+    public byte[] getHeader(String name) {
+        return headers.get(name);
+    }
+
+    /**
+     * @param name the name of header
+     * @return the UTF-8 value of header, or <code>null</code> if absent
+     */
+    @Nullable
+    public String getStringHeader(String name) {
+        byte[] value = getHeader(name);
+        return value == null ? null : new String(value, UTF_8);
+    }
+
+    /**
+     * @param name the name of header
+     * @return the big-endian long value of header, or <code>-1</code> if absent
+     */
+    public long getLongHeader(String name) {
+        byte[] value = getHeader(name);
+        return value == null || value.length != Long.BYTES ? -1 : ByteBuffer.wrap(value).getLong();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * @return the position assigned by the transport, or <code>null</code> if the record is not polled
+     */
+    @Nullable
+    public String getPosition() {
+        return position;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicationRecord{" +
+                "headers=" + headers.keySet() +
+                ", value size=" + value.length +
+                ", timestamp=" + timestamp +
+                ", position='" + position + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * The transport SPI of Redis Replicator, which delivers the {@link ReplicationRecord records} of domains from the
+ * producers to the consumers in order per domain :
+ * <ul>
+ *     <li>{@link #publish(String, List) Publish} the batch of records</li>
+ *     <li>{@link #poll(String, int, long) Subscribe} the batch of records after the last polled position</li>
+ *     <li>{@link #commit(String, String) Commit} the position that all records up to it are applied, the consumer
+ *     resumes from the committed position after the restart</li>
+ * </ul>
+ * The records are delivered at least once, the records polled but not committed may be delivered again after the
+ * restart.
+ * <p>
+ * The Kafka transport is provided by the {@link io.github.microsphere.spring.redis.replicator.kafka Kafka module}, whose
+ * consumer acknowledges the batches by the listener container.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see InMemoryReplicationTransport
+ * @see SegmentedFileReplicationTransport
+ * @see RedisStreamsReplicationTransport
+ * @see MappedRingBufferReplicationTransport
+ * @since 1.0.0
+ */
+public interface ReplicationTransport extends Closeable {
+
+    /**
+     * @return the name of transport, e.g. "memory"
+     */
+    String getName();
+
+    /**
+     * Publish the batch of records to the domain in order
+     *
+     * @param domain  the domain
+     * @param records the records
+     * @throws IOException if the records can't be published
+     */
+    void publish(String domain, List<ReplicationRecord> records) throws IOException;
+
+    /**
+     * Poll the batch of records of the domain after the last polled position
+     *
+     * @param domain     the domain
+     * @param maxRecords the max count of records
+     * @param timeout    the timeout in milliseconds to wait for the records
+     * @return the records with {@link ReplicationRecord#getPosition() positions}, empty if timeout
+     * @throws IOException          if the records can't be polled
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    List<ReplicationRecord> poll(String domain, int maxRecords, long timeout) throws IOException, InterruptedException;
+
+    /**
+     * Commit the position of domain, all records up to it are applied
+     *
+     * @param domain   the domain
+     * @param position the {@link ReplicationRecord#getPosition() position} of the last applied record
+     * @throws IOException if the position can't be committed
+     */
+    void commit(String domain, String position) throws IOException;
+
+    /**
+     * Commit the end position of domain, the records before it are skipped, which is used to record the position
+     * before the bootstrap
+     *
+     * @param domain the domain
+     * @throws IOException if the position can't be committed
+     */
+    void seekToEnd(String domain) throws IOException;
+}
@@ -0,0 +1,584 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.zip.CRC32;
+
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.CONSUMER_ROLE;
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.LOCK_FILE_SUFFIX;
+import static io.github.microsphere.spring.redis.replicator.transport.DomainRoleLock.PRODUCER_ROLE;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * The local segmented-file {@link ReplicationTransport}, the records of each domain are appended to the segment files
+ * in the directory of domain, the producers and the consumers may be in the different processes on the same host :
+ * <ul>
+ *     <li>The segment file is named by the offset of its first record, and rolled when its size exceeds the limit</li>
+ *     <li>The record is framed by its length and CRC32, thus the incomplete frame at the tail is not delivered</li>
+ *     <li>The position is the offset after the record, the committed position is persisted into a file atomically</li>
+ *     <li>The segments before the committed position are deleted</li>
+ * </ul>
+ * Each domain supports one producer process and one consumer process, which are guarded by the lock files in the
+ * directory of domain, thus the transport fails fast if the directory is shared by more than one producer or consumer.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class SegmentedFileReplicationTransport implements ReplicationTransport {
+
+    private static final Logger logger = LoggerFactory.getLogger(SegmentedFileReplicationTransport.class);
+
+    public static final String NAME = "file";
+
+    static final String SEGMENT_FILE_SUFFIX = ".log";
+
+    static final String COMMITTED_POSITION_FILE_NAME = "committed.position";
+
+    /**
+     * The length and CRC32 of frame
+     */
+    private static final int FRAME_HEADER_SIZE = Integer.BYTES * 2;
+
+    private final File directory;
+
+    private final long segmentSize;
+
+    private final boolean sync;
+
+    private final long pollInterval;
+
+    private final ConcurrentMap<String, SegmentWriter> writers = new ConcurrentHashMap<>();
+
+    private final ConcurrentMap<String, SegmentReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * @param directory    the root directory
+     * @param segmentSize  the max size of segment in bytes
+     * @param sync         whether the records are forced to the storage device on publish or not
+     * @param pollInterval the interval in milliseconds to check the new records
+     */
+    public SegmentedFileReplicationTransport(File directory, long segmentSize, boolean sync, long pollInterval) {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.sync = sync;
+        this.pollInterval = pollInterval;
+    }
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public void publish(String domain, List<ReplicationRecord> records) throws IOException {
+        if (records.isEmpty()) {
+            return;
+        }
+        SegmentWriter writer = getWriter(domain);
+        synchronized (writer) {
+            writer.append(encode(records));
+        }
+    }
+
+    @Override
+    public List<ReplicationRecord> poll(String domain, int maxRecords, long timeout) throws IOException, InterruptedException {
+        SegmentReader reader = getReader(domain);
+        long deadline = System.currentTimeMillis() + timeout;
+        synchronized (reader) {
+            while (true) {
+                List<ReplicationRecord> records = reader.read(maxRecords);
+                if (!records.isEmpty()) {
+                    return records;
+                }
+                long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0) {
+                    return records;
+                }
+                Thread.sleep(Math.min(remaining, pollInterval));
+            }
+        }
+    }
+
+    @Override
+    public void commit(String domain, String position) throws IOException {
+        long offset = Long.parseLong(position);
+        File domainDirectory = getDomainDirectory(domain);
+        Path committedFile = new File(domainDirectory, COMMITTED_POSITION_FILE_NAME).toPath();
+        Path tempFile = new File(domainDirectory, COMMITTED_POSITION_FILE_NAME + ".tmp").toPath();
+        Files.write(tempFile, position.getBytes(UTF_8));
+        Files.move(tempFile, committedFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        deleteConsumedSegments(domainDirectory, offset);
+    }
+
+    @Override
+    public void seekToEnd(String domain) throws IOException {
+        File domainDirectory = getDomainDirectory(domain);
+        SegmentReader reader = readers.remove(domain);
+        if (reader != null) {
+            synchronized (reader) {
+                reader.close();
+            }
+        }
+        commit(domain, String.valueOf(getEndOffset(domainDirectory)));
+    }
+
+    /**
+     * Get the offset after the last complete frame
+     *
+     * @param domainDirectory the directory of domain
+     * @return the end offset
+     */
+    static long getEndOffset(File domainDirectory) throws IOException {
+        List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+        if (baseOffsets.isEmpty()) {
+            return 0;
+        }
+        long baseOffset = baseOffsets.get(baseOffsets.size() - 1);
+        try (FileChannel channel = FileChannel.open(getSegmentFile(domainDirectory, baseOffset).toPath(), READ)) {
+            long offset = 0;
+            ByteBuffer body;
+            while ((body = readFrame(channel, offset)) != null) {
+                offset += FRAME_HEADER_SIZE + body.limit();
+            }
+            return baseOffset + offset;
+        }
+    }
+
+    private void deleteConsumedSegments(File domainDirectory, long committedOffset) {
+        List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+        // The segment is consumed if the next one starts before the committed offset
+        for (int i = 0, size = baseOffsets.size() - 1; i < size; i++) {
+            if (baseOffsets.get(i + 1) > committedOffset) {
+                break;
+            }
+            File segmentFile = getSegmentFile(domainDirectory, baseOffsets.get(i));
+            if (segmentFile.delete()) {
+                logger.debug("The consumed segment is deleted : {}", segmentFile);
+            }
+        }
+    }
+
+    static ByteBuffer encode(List<ReplicationRecord> records) {
+        int size = 0;
+        for (int i = 0, count = records.size(); i < count; i++) {
+            size += FRAME_HEADER_SIZE + getBodySize(records.get(i));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        CRC32 crc32 = new CRC32();
+        for (int i = 0, count = records.size(); i < count; i++) {
+            ReplicationRecord record = records.get(i);
+            int bodySize = getBodySize(record);
+            int frameStart = buffer.position();
+            buffer.putInt(bodySize);
+            buffer.putInt(0);
+            int bodyStart = buffer.position();
+            buffer.putLong(record.getTimestamp());
+            putBytes(buffer, record.getKey());
+            putBytes(buffer, record.getValue());
+            Map<String, byte[]> headers = record.getHeaders();
+            buffer.putInt(headers.size());
+            for (Map.Entry<String, byte[]> header : headers.entrySet()) {
+                putBytes(buffer, header.getKey().getBytes(UTF_8));
+                putBytes(buffer, header.getValue());
+            }
+            crc32.reset();
+            crc32.update(buffer.array(), bodyStart, bodySize);
+            buffer.putInt(frameStart + Integer.BYTES, (int) crc32.getValue());
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static int getBodySize(ReplicationRecord record) {
+        int size = Long.BYTES + bytesSize(record.getKey()) + bytesSize(record.getValue()) + Integer.BYTES;
+        for (Map.Entry<String, byte[]> header : record.getHeaders().entrySet()) {
+            size += bytesSize(header.getKey().getBytes(UTF_8)) + bytesSize(header.getValue());
+        }
+        return size;
+    }
+
+    private static int bytesSize(byte[] bytes) {
+        return Integer.BYTES + (bytes == null ? 0 : bytes.length);
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putInt(-1);
+        } else {
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+    }
+
+    private static byte[] getBytes(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buffer.get(bytes);
+        return bytes;
+    }
+
+    static ReplicationRecord decode(ByteBuffer body, String position) {
+        long timestamp = body.getLong();
+        byte[] key = getBytes(body);
+        byte[] value = getBytes(body);
+        int headerCount = body.getInt();
+        Map<String, byte[]> headers = headerCount == 0 ? Collections.emptyMap() : new LinkedHashMap<>(headerCount);
+        for (int i = 0; i < headerCount; i++) {
+            headers.put(new String(getBytes(body), UTF_8), getBytes(body));
+        }
+        return new ReplicationRecord(key, value, headers, timestamp, position);
+    }
+
+    private SegmentWriter getWriter(String domain) throws IOException {
+        SegmentWriter writer = writers.get(domain);
+        if (writer == null) {
+            synchronized (writers) {
+                writer = writers.get(domain);
+                if (writer == null) {
+                    writer = new SegmentWriter(getDomainDirectory(domain));
+                    writers.put(domain, writer);
+                }
+            }
+        }
+        return writer;
+    }
+
+    private SegmentReader getReader(String domain) throws IOException {
+        SegmentReader reader = readers.get(domain);
+        if (reader == null) {
+            synchronized (readers) {
+                reader = readers.get(domain);
+                if (reader == null) {
+                    reader = new SegmentReader(getDomainDirectory(domain));
+                    readers.put(domain, reader);
+                }
+            }
+        }
+        return reader;
+    }
+
+    private File getDomainDirectory(String domain) throws IOException {
+        File domainDirectory = new File(directory, domain);
+        if (!domainDirectory.isDirectory() && !domainDirectory.mkdirs() && !domainDirectory.isDirectory()) {
+            throw new IOException("The directory of domain can't be created : " + domainDirectory);
+        }
+        return domainDirectory;
+    }
+
+    static List<Long> listSegmentBaseOffsets(File domainDirectory) {
+        File[] files = domainDirectory.listFiles((dir, name) -> name.endsWith(SEGMENT_FILE_SUFFIX));
+        List<Long> baseOffsets = new ArrayList<>(files == null ? 0 : files.length);
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                try {
+                    baseOffsets.add(Long.parseLong(name.substring(0, name.length() - SEGMENT_FILE_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    logger.warn("The file is not a segment : {}", file);
+                }
+            }
+        }
+        Collections.sort(baseOffsets);
+        return baseOffsets;
+    }
+
+    private static DomainRoleLock acquireLock(File domainDirectory, String role) throws IOException {
+        return DomainRoleLock.acquire(new File(domainDirectory, role + LOCK_FILE_SUFFIX), role);
+    }
+
+    static File getSegmentFile(File domainDirectory, long baseOffset) {
+        return new File(domainDirectory, String.format("%020d", baseOffset) + SEGMENT_FILE_SUFFIX);
+    }
+
+    private static long readCommittedOffset(File domainDirectory) throws IOException {
+        File committedFile = new File(domainDirectory, COMMITTED_POSITION_FILE_NAME);
+        if (!committedFile.exists()) {
+            return -1;
+        }
+        return Long.parseLong(new String(Files.readAllBytes(committedFile.toPath()), UTF_8).trim());
+    }
+
+    /**
+     * Read the complete and valid frame
+     *
+     * @param channel the channel of segment
+     * @param offset  the offset in segment
+     * @return the body of frame, or <code>null</code> if the frame is incomplete or invalid
+     */
+    private static ByteBuffer readFrame(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE);
+        if (!readFully(channel, header, offset)) {
+            return null;
+        }
+        int bodySize = header.getInt(0);
+        int crc = header.getInt(Integer.BYTES);
+        if (bodySize < 0) {
+            return null;
+        }
+        ByteBuffer body = ByteBuffer.allocate(bodySize);
+        if (!readFully(channel, body, offset + FRAME_HEADER_SIZE)) {
+            return null;
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(body.array(), 0, bodySize);
+        if ((int) crc32.getValue() != crc) {
+            return null;
+        }
+        body.flip();
+        return body;
+    }
+
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long offset) throws IOException {
+        long position = offset;
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                return false;
+            }
+            position += read;
+        }
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (SegmentWriter writer : writers.values()) {
+            writer.close();
+        }
+        for (SegmentReader reader : readers.values()) {
+            reader.close();
+        }
+        writers.clear();
+        readers.clear();
+    }
+
+    private class SegmentWriter {
+
+        private final File domainDirectory;
+
+        private final DomainRoleLock lock;
+
+        private FileChannel channel;
+
+        private long baseOffset;
+
+        private long size;
+
+        SegmentWriter(File domainDirectory) throws IOException {
+            this.domainDirectory = domainDirectory;
+            this.lock = acquireLock(domainDirectory, PRODUCER_ROLE);
+            try {
+                List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+                long baseOffset = baseOffsets.isEmpty() ? 0 : baseOffsets.get(baseOffsets.size() - 1);
+                open(baseOffset);
+                recover();
+            } catch (IOException e) {
+                close();
+                throw e;
+            }
+        }
+
+        private void open(long baseOffset) throws IOException {
+            this.channel = FileChannel.open(getSegmentFile(domainDirectory, baseOffset).toPath(), CREATE, READ, WRITE);
+            this.baseOffset = baseOffset;
+            this.size = channel.size();
+        }
+
+        /**
+         * Truncate the incomplete frame at the tail, which was written partially before the crash
+         */
+        private void recover() throws IOException {
+            long offset = 0;
+            ByteBuffer body;
+            while (offset < size && (body = readFrame(channel, offset)) != null) {
+                offset += FRAME_HEADER_SIZE + body.limit();
+            }
+            if (offset < size) {
+                logger.warn("The incomplete frame of segment[base offset : {}] is truncated at {}, size : {}", baseOffset, offset, size);
+                channel.truncate(offset);
+                size = offset;
+            }
+        }
+
+        void append(ByteBuffer buffer) throws IOException {
+            if (size > 0 && size + buffer.remaining() > segmentSize) {
+                roll();
+            }
+            long position = size;
+            while (buffer.hasRemaining()) {
+                position += channel.write(buffer, position);
+            }
+            if (sync) {
+                channel.force(false);
+            }
+            size = position;
+        }
+
+        private void roll() throws IOException {
+            long nextBaseOffset = baseOffset + size;
+            channel.close();
+            open(nextBaseOffset);
+            logger.debug("The segment is rolled, base offset : {}", nextBaseOffset);
+        }
+
+        void close() throws IOException {
+            try {
+                if (channel != null) {
+                    channel.close();
+                }
+            } finally {
+                lock.close();
+            }
+        }
+    }
+
+    private class SegmentReader {
+
+        private final File domainDirectory;
+
+        private final DomainRoleLock lock;
+
+        private FileChannel channel;
+
+        private long baseOffset = -1;
+
+        /**
+         * The offset of the next record
+         */
+        private long next;
+
+        SegmentReader(File domainDirectory) throws IOException {
+            this.domainDirectory = domainDirectory;
+            this.lock = acquireLock(domainDirectory, CONSUMER_ROLE);
+            long committedOffset;
+            try {
+                committedOffset = readCommittedOffset(domainDirectory);
+            } catch (IOException | RuntimeException e) {
+                lock.close();
+                throw e;
+            }
+            if (committedOffset < 0) {
+                List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+                committedOffset = baseOffsets.isEmpty() ? 0 : baseOffsets.get(0);
+            }
+            this.next = committedOffset;
+        }
+
+        List<ReplicationRecord> read(int maxRecords) throws IOException {
+            if (!locateSegment()) {
+                return Collections.emptyList();
+            }
+            List<ReplicationRecord> records = new ArrayList<>();
+            while (records.size() < maxRecords) {
+                ByteBuffer body = readFrame(channel, next - baseOffset);
+                if (body == null) {
+                    if (records.isEmpty() && nextSegmentExists()) {
+                        // The tail of the rolled segment is skipped
+                        logger.warn("The tail of segment[base offset : {}] is invalid from the offset : {}", baseOffset, next);
+                        next = getNextBaseOffset();
+                        locateSegment();
+                        continue;
+                    }
+                    break;
+                }
+                next += FRAME_HEADER_SIZE + body.limit();
+                records.add(decode(body, String.valueOf(next)));
+            }
+            return records;
+        }
+
+        /**
+         * Locate the segment containing the next offset
+         *
+         * @return <code>true</code> if located
+         */
+        private boolean locateSegment() throws IOException {
+            List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+            long segmentBaseOffset = -1;
+            for (int i = 0, size = baseOffsets.size(); i < size; i++) {
+                long offset = baseOffsets.get(i);
+                if (offset <= next) {
+                    segmentBaseOffset = offset;
+                } else {
+                    break;
+                }
+            }
+            if (segmentBaseOffset < 0) {
+                return false;
+            }
+            if (segmentBaseOffset != baseOffset) {
+                closeSegment();
+                channel = FileChannel.open(getSegmentFile(domainDirectory, segmentBaseOffset).toPath(), READ);
+                baseOffset = segmentBaseOffset;
+            }
+            return true;
+        }
+
+        private boolean nextSegmentExists() {
+            return getNextBaseOffset() > next;
+        }
+
+        private long getNextBaseOffset() {
+            List<Long> baseOffsets = listSegmentBaseOffsets(domainDirectory);
+            for (int i = 0, size = baseOffsets.size(); i < size; i++) {
+                long offset = baseOffsets.get(i);
+                if (offset > baseOffset) {
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        private void closeSegment() throws IOException {
+            if (channel != null) {
+                channel.close();
+                channel = null;
+            }
+        }
+
+        void close() throws IOException {
+            try {
+                closeSegment();
+            } finally {
+                lock.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,382 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import io.github.microsphere.spring.redis.config.RedisConfiguration;
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.RedisCommandDeduplicator;
+import io.github.microsphere.spring.redis.replicator.RedisCommandReplicationApplier;
+import io.github.microsphere.spring.redis.replicator.RedisCommandReplicator;
+import io.github.microsphere.spring.redis.replicator.bootstrap.RedisReplicatorBootstrapper;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import io.github.microsphere.spring.redis.serializer.Serializers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.ApplicationEventPublisherAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.util.backoff.BackOffExecution;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_INTERVAL_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_KEY_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_IDLE_TIMEOUT_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.CONSUMER_DEDUP_WINDOW_SIZE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_ENABLED;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_INTERVAL;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_ENABLED;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_IDLE_TIMEOUT;
+import static io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration.DEFAULT_CONSUMER_DEDUP_WINDOW_SIZE;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.CLUSTER_ID_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SOURCE_ID_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The consumer {@link TransportRedisReplicatorConfiguration}, each domain is polled by a dedicated thread, the records
+ * are applied at least once by {@link RedisCommandReplicationApplier} and then the position is committed, the poison
+ * records are logged and skipped. If the failure is transient (e.g. the Redis connection is lost), the batch is not
+ * committed and will be applied again.
+ * <p>
+ * If the bootstrap is enabled, the domains never bootstrapped are bootstrapped before polling, which is coordinated
+ * across the instances by {@link RedisReplicatorBootstrapper}.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class TransportConsumerRedisReplicatorConfiguration extends TransportRedisReplicatorConfiguration implements
+        SmartLifecycle, ApplicationEventPublisherAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportConsumerRedisReplicatorConfiguration.class);
+
+    public static final String CONSUMER_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME_PREFIX + "consumer.";
+
+    /**
+     * The max count of records polled at once
+     */
+    public static final String CONSUMER_MAX_RECORDS_PROPERTY_NAME = CONSUMER_PROPERTY_NAME_PREFIX + "max-records";
+
+    public static final int DEFAULT_CONSUMER_MAX_RECORDS = 500;
+
+    /**
+     * The timeout in milliseconds to wait for the records
+     */
+    public static final String CONSUMER_POLL_TIMEOUT_PROPERTY_NAME = CONSUMER_PROPERTY_NAME_PREFIX + "poll-timeout";
+
+    public static final long DEFAULT_CONSUMER_POLL_TIMEOUT = 1000;
+
+    public static final String CONSUMER_RETRY_PROPERTY_NAME_PREFIX = CONSUMER_PROPERTY_NAME_PREFIX + "retry.";
+
+    public static final String CONSUMER_RETRY_MAX_RETRIES_PROPERTY_NAME = CONSUMER_RETRY_PROPERTY_NAME_PREFIX + "max-retries";
+
+    public static final int DEFAULT_CONSUMER_RETRY_MAX_RETRIES = 3;
+
+    public static final String CONSUMER_RETRY_INITIAL_INTERVAL_PROPERTY_NAME = CONSUMER_RETRY_PROPERTY_NAME_PREFIX + "initial-interval";
+
+    public static final long DEFAULT_CONSUMER_RETRY_INITIAL_INTERVAL = 100;
+
+    public static final String CONSUMER_RETRY_MULTIPLIER_PROPERTY_NAME = CONSUMER_RETRY_PROPERTY_NAME_PREFIX + "multiplier";
+
+    public static final double DEFAULT_CONSUMER_RETRY_MULTIPLIER = 2.0;
+
+    public static final String CONSUMER_RETRY_MAX_INTERVAL_PROPERTY_NAME = CONSUMER_RETRY_PROPERTY_NAME_PREFIX + "max-interval";
+
+    public static final long DEFAULT_CONSUMER_RETRY_MAX_INTERVAL = 5000;
+
+    private int maxRecords;
+
+    private long pollTimeout;
+
+    private ExponentialBackOff retryBackOff;
+
+    private int retryMaxRetries;
+
+    /**
+     * The id of the local cluster, maybe <code>null</code>
+     */
+    private byte[] clusterId;
+
+    /**
+     * The deduplicator of the records by the source id and sequence, which is <code>null</code> if disabled
+     */
+    private RedisCommandDeduplicator deduplicator;
+
+    private long deduplicatorCheckpointInterval;
+
+    @Autowired
+    private ObjectProvider<RedisCommandReplicator> redisCommandReplicatorProvider;
+
+    private ApplicationEventPublisher applicationEventPublisher;
+
+    private ExecutorService pollExecutor;
+
+    private volatile boolean running;
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        super.afterPropertiesSet();
+        this.maxRecords = environment.getProperty(CONSUMER_MAX_RECORDS_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_MAX_RECORDS);
+        this.pollTimeout = environment.getProperty(CONSUMER_POLL_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_POLL_TIMEOUT);
+        String clusterId = redisReplicatorConfiguration.getClusterId();
+        this.clusterId = clusterId == null ? null : clusterId.getBytes(UTF_8);
+        initRetryBackOff();
+        initDeduplicator();
+        logger.debug("Redis Replicator transport consumer configuration has been initialized");
+    }
+
+    private void initRetryBackOff() {
+        this.retryMaxRetries = environment.getProperty(CONSUMER_RETRY_MAX_RETRIES_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_RETRY_MAX_RETRIES);
+        ExponentialBackOff backOff = new ExponentialBackOff();
+        backOff.setInitialInterval(environment.getProperty(CONSUMER_RETRY_INITIAL_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_RETRY_INITIAL_INTERVAL));
+        backOff.setMultiplier(environment.getProperty(CONSUMER_RETRY_MULTIPLIER_PROPERTY_NAME, double.class, DEFAULT_CONSUMER_RETRY_MULTIPLIER));
+        backOff.setMaxInterval(environment.getProperty(CONSUMER_RETRY_MAX_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_RETRY_MAX_INTERVAL));
+        this.retryBackOff = backOff;
+    }
+
+    private void initDeduplicator() {
+        if (!environment.getProperty(CONSUMER_DEDUP_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_DEDUP_ENABLED)) {
+            return;
+        }
+        int windowSize = environment.getProperty(CONSUMER_DEDUP_WINDOW_SIZE_PROPERTY_NAME, int.class, DEFAULT_CONSUMER_DEDUP_WINDOW_SIZE);
+        long idleTimeout = environment.getProperty(CONSUMER_DEDUP_IDLE_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_IDLE_TIMEOUT);
+        this.deduplicatorCheckpointInterval = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_INTERVAL);
+        RedisCommandReplicator redisCommandReplicator = redisCommandReplicatorProvider.getIfAvailable();
+        if (redisCommandReplicator != null && environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_ENABLED)) {
+            RedisConfiguration redisConfiguration = redisReplicatorConfiguration.getRedisConfiguration();
+            String checkpointKey = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_KEY_PROPERTY_NAME, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_KEY_PREFIX + redisConfiguration.getApplicationName());
+            long checkpointTimeToLive = environment.getProperty(CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE_PROPERTY_NAME, long.class, DEFAULT_CONSUMER_DEDUP_CHECKPOINT_TIME_TO_LIVE);
+            this.deduplicator = new RedisCommandDeduplicator(windowSize, idleTimeout, redisCommandReplicator.getRedisConnectionFactory(), checkpointKey, checkpointTimeToLive);
+        } else {
+            this.deduplicator = new RedisCommandDeduplicator(windowSize, idleTimeout);
+        }
+    }
+
+    @Override
+    public void setApplicationEventPublisher(ApplicationEventPublisher applicationEventPublisher) {
+        this.applicationEventPublisher = applicationEventPublisher;
+    }
+
+    @Override
+    public void start() {
+        List<String> domains = redisReplicatorConfiguration.getDomains();
+        int size = domains.size();
+        if (running || size < 1) {
+            return;
+        }
+        running = true;
+        pollExecutor = Executors.newFixedThreadPool(size, new CustomizableThreadFactory("Redis-Replicator-Transport-Consumer-"));
+        RedisReplicatorBootstrapper bootstrapper = RedisReplicatorBootstrapper.create(environment, beanFactory,
+                redisCommandReplicatorProvider.getIfAvailable(), redisReplicatorConfiguration.getRedisConfiguration().getApplicationName());
+        if (bootstrapper == null) {
+            startPolling(domains);
+        } else {
+            // The pending domains are resolved by the poll thread, which doesn't block the startup
+            pollExecutor.execute(() -> bootstrap(bootstrapper, domains));
+        }
+    }
+
+    /**
+     * Bootstrap the domains never bootstrapped, then start polling, even if the bootstrap fails, which leaves the
+     * domains pending for the next startup.
+     */
+    private void bootstrap(RedisReplicatorBootstrapper bootstrapper, List<String> domains) {
+        ReplicationTransport replicationTransport = getReplicationTransport();
+        try {
+            bootstrapper.bootstrap(domains, replicationTransport::seekToEnd);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        } catch (Throwable e) {
+            logger.error("[Redis-Replicator-Transport-C-F] fails to bootstrap the domains : {}, they will be bootstrapped on the next startup", domains, e);
+        }
+        startPolling(domains);
+    }
+
+    private void startPolling(List<String> domains) {
+        if (!running) {
+            return;
+        }
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            String domain = domains.get(i);
+            pollExecutor.execute(() -> consume(domain));
+        }
+        logger.debug("Redis Replicator transport consumer is started, transport : {}, domains : {}", getReplicationTransport().getName(), domains);
+    }
+
+    private void consume(String domain) {
+        ReplicationTransport replicationTransport = getReplicationTransport();
+        DomainRecordsApplier recordsApplier = new DomainRecordsApplier(domain);
+        // The batch is kept until it's committed, thus it's applied again after the transient failure
+        List<ReplicationRecord> records = null;
+        // The backoff is started on the first failure and reset once the batch is committed
+        BackOffExecution backOffExecution = null;
+        while (running && !Thread.currentThread().isInterrupted()) {
+            try {
+                if (records == null) {
+                    records = replicationTransport.poll(domain, maxRecords, pollTimeout);
+                }
+                if (!records.isEmpty()) {
+                    recordsApplier.apply(records);
+                    replicationTransport.commit(domain, records.get(records.size() - 1).getPosition());
+                    recordsApplier.checkpointDeduplicator();
+                }
+                records = null;
+                backOffExecution = null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Throwable e) {
+                logger.warn("[Redis-Replicator-Transport-C-F] fails to consume the Redis Replicator records of domain: {}, they will be retried", domain, e);
+                if (backOffExecution == null) {
+                    backOffExecution = retryBackOff.start();
+                }
+                long interval = backOffExecution.nextBackOff();
+                // The max elapsed time of the retry backoff is unlimited, the max interval is used if it's stopped
+                if (!sleep(interval == BackOffExecution.STOP ? retryBackOff.getMaxInterval() : interval)) {
+                    break;
+                }
+            }
+        }
+    }
+
+    private boolean sleep(long interval) {
+        try {
+            Thread.sleep(interval);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @Override
+    public void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ExecutorService pollExecutor = this.pollExecutor;
+        pollExecutor.shutdownNow();
+        try {
+            pollExecutor.awaitTermination(pollTimeout * 2, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        logger.debug("Redis Replicator transport consumer is stopped");
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public boolean isAutoStartup() {
+        return true;
+    }
+
+    @Override
+    public void stop(Runnable callback) {
+        stop();
+        callback.run();
+    }
+
+    @Override
+    public int getPhase() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        stop();
+        RedisCommandDeduplicator deduplicator = this.deduplicator;
+        if (deduplicator != null) {
+            deduplicator.checkpoint();
+        }
+        super.destroy();
+    }
+
+    /**
+     * The {@link RedisCommandReplicationApplier} of the records of a domain, whose sequences are monotonic per domain
+     */
+    private class DomainRecordsApplier extends RedisCommandReplicationApplier<ReplicationRecord> {
+
+        private final String domain;
+
+        private DomainRecordsApplier(String domain) {
+            super(redisCommandReplicatorProvider.getIfAvailable(), retryBackOff, retryMaxRetries, deduplicator, deduplicatorCheckpointInterval,
+                    applicationEventPublisher);
+            this.domain = domain;
+        }
+
+        @Override
+        protected boolean isLocallyOriginated(ReplicationRecord record) {
+            byte[] clusterId = TransportConsumerRedisReplicatorConfiguration.this.clusterId;
+            return clusterId != null && Arrays.equals(clusterId, record.getHeader(CLUSTER_ID_HEADER_NAME));
+        }
+
+        @Override
+        protected String getSourceId(ReplicationRecord record) {
+            return record.getStringHeader(SOURCE_ID_HEADER_NAME);
+        }
+
+        @Override
+        protected long getSequence(ReplicationRecord record) {
+            return record.getLongHeader(SEQUENCE_HEADER_NAME);
+        }
+
+        @Override
+        protected String getSequenceScope(ReplicationRecord record) {
+            return domain;
+        }
+
+        @Override
+        protected RedisCommandReplicatedEvent createEvent(ReplicationRecord record) {
+            RedisCommandEvent redisCommandEvent = Serializers.deserialize(record.getValue(), RedisCommandEvent.class);
+            // The creation time and sequence at the source are carried by the record rather than the serialized event
+            long timestamp = record.getTimestamp();
+            if (timestamp > -1) {
+                redisCommandEvent.setCreationTime(timestamp);
+            }
+            redisCommandEvent.setSequence(getSequence(record));
+            return new RedisCommandReplicatedEvent(redisCommandEvent, domain);
+        }
+
+        @Override
+        protected void onFailed(ReplicationRecord record, Throwable failure) {
+            logger.error("[Redis-Replicator-Transport-C-F] fails to apply a Redis Replicator record, it's skipped. {}", describe(record), failure);
+        }
+
+        @Override
+        protected String describe(ReplicationRecord record) {
+            return "Domain: " + domain + ", position: " + record.getPosition();
+        }
+    }
+}
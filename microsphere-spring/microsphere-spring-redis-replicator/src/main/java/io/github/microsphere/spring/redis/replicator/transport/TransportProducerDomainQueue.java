@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.util.backoff.BackOff;
+import org.springframework.util.backoff.BackOffExecution;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The {@link AbstractProducerDomainQueue} of the {@link ReplicationRecord records}, the records are published in batches
+ * by the {@link ReplicationTransport}.
+ * <p>
+ * The sequence header of the records is assigned by the sender thread in the order of the domain's log, the batch failed
+ * to publish is retried with the backoff until it's published or the queue is closed, thus the sequences are never
+ * skipped by the transient failures (e.g. the Redis Streams is unavailable or the ring buffer is full).
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see OverflowPolicy
+ * @see TransportProducerRedisCommandEventListener
+ * @since 1.0.0
+ */
+public class TransportProducerDomainQueue extends AbstractProducerDomainQueue<ReplicationRecord> {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportProducerDomainQueue.class);
+
+    private final ReplicationTransport replicationTransport;
+
+    private final int batchSize;
+
+    private final BackOff publishBackOff;
+
+    /**
+     * The sequence of the domain, which is only accessed by the sender thread
+     */
+    private long sequence;
+
+    /**
+     * @param domain               the domain
+     * @param replicationTransport {@link ReplicationTransport}
+     * @param capacity             the capacity of queue
+     * @param batchSize            the max count of records published at once
+     * @param overflowPolicy       {@link OverflowPolicy#BLOCK} or {@link OverflowPolicy#DROP_OLDEST}
+     * @param blockTimeout         the timeout in milliseconds if {@link OverflowPolicy#BLOCK}
+     * @param publishBackOff       the {@link BackOff} of retrying to publish the failed batch
+     * @throws IllegalArgumentException if the overflow policy is {@link OverflowPolicy#SPILL}
+     */
+    public TransportProducerDomainQueue(String domain, ReplicationTransport replicationTransport, int capacity, int batchSize,
+                                        OverflowPolicy overflowPolicy, long blockTimeout, BackOff publishBackOff) throws IllegalArgumentException {
+        super("Transport", domain, capacity, overflowPolicy, blockTimeout);
+        if (overflowPolicy == OverflowPolicy.SPILL) {
+            throw new IllegalArgumentException("The overflow policy SPILL is not supported by the transport producer queue");
+        }
+        this.replicationTransport = replicationTransport;
+        this.batchSize = Math.max(1, batchSize);
+        this.publishBackOff = publishBackOff;
+        startSender();
+    }
+
+    @Override
+    protected void send() throws InterruptedException {
+        ReplicationRecord record = queue.poll(POLL_TIMEOUT, MILLISECONDS);
+        if (record == null) {
+            return;
+        }
+        List<ReplicationRecord> batch = new ArrayList<>(batchSize);
+        batch.add(record);
+        queue.drainTo(batch, batchSize - 1);
+        int size = batch.size();
+        for (int i = 0; i < size; i++) {
+            batch.set(i, withSequence(batch.get(i), ++sequence));
+        }
+        publish(batch);
+    }
+
+    private void publish(List<ReplicationRecord> batch) throws InterruptedException {
+        int size = batch.size();
+        BackOffExecution backOffExecution = null;
+        while (true) {
+            try {
+                replicationTransport.publish(domain, batch);
+                successCount.addAndGet(size);
+                logger.debug("[Redis-Replicator-Transport-P-S] The records of domain: {} are published, size: {}", domain, size);
+                return;
+            } catch (Exception e) {
+                long interval = BackOffExecution.STOP;
+                // The batch is not retried after the queue is closed
+                if (isRunning()) {
+                    if (backOffExecution == null) {
+                        backOffExecution = publishBackOff.start();
+                    }
+                    interval = backOffExecution.nextBackOff();
+                }
+                if (interval == BackOffExecution.STOP) {
+                    failureCount.addAndGet(size);
+                    logger.error("[Redis-Replicator-Transport-P-F] Failed to publish the records of domain: {}, size: {}, they are dropped", domain, size, e);
+                    return;
+                }
+                logger.warn("[Redis-Replicator-Transport-P-F] Failed to publish the records of domain: {}, size: {}, retry in {} ms", domain, size, interval, e);
+                MILLISECONDS.sleep(interval);
+            }
+        }
+    }
+
+    private static ReplicationRecord withSequence(ReplicationRecord record, long sequence) {
+        Map<String, byte[]> headers = new LinkedHashMap<>(record.getHeaders());
+        headers.put(SEQUENCE_HEADER_NAME, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array());
+        return new ReplicationRecord(record.getKey(), record.getValue(), headers, record.getTimestamp());
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportProducerDomainQueue{" +
+                "domain='" + domain + '\'' +
+                ", capacity=" + capacity +
+                ", batchSize=" + batchSize +
+                ", overflowPolicy=" + overflowPolicy +
+                ", depth=" + getDepth() +
+                ", enqueued=" + getEnqueuedCount() +
+                ", dropped=" + getDroppedCount() +
+                ", success=" + getSuccessCount() +
+                ", failure=" + getFailureCount() +
+                '}';
+    }
+}
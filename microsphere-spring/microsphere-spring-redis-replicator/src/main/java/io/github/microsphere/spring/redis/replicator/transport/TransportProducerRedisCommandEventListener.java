@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
+import io.github.microsphere.spring.redis.serializer.Serializers;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
+import org.springframework.context.event.SmartApplicationListener;
+
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findMethodIndex;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.CLUSTER_ID_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.METHOD_ID_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SOURCE_APPLICATION_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SOURCE_ID_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Collections.unmodifiableCollection;
+
+/**
+ * {@link ApplicationListener} listens to {@link RedisCommandEvent} implementation -
+ * Transfers {@link RedisCommandEvent} objects using the {@link ReplicationTransport}, whose records are queued per domain
+ * by {@link TransportProducerDomainQueue}
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see TransportRedisReplicatorConfiguration
+ * @since 1.0.0
+ */
+public class TransportProducerRedisCommandEventListener implements SmartApplicationListener, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportProducerRedisCommandEventListener.class);
+
+    /**
+     * The timeout in milliseconds to publish the queued records when closing
+     */
+    private static final long CLOSE_TIMEOUT = 5000;
+
+    private RedisReplicatorConfiguration redisReplicatorConfiguration;
+
+    private TransportRedisReplicatorConfiguration transportRedisReplicatorConfiguration;
+
+    /**
+     * The id of this producer instance, which the sequence belongs to
+     */
+    private final byte[] sourceId = UUID.randomUUID().toString().getBytes(UTF_8);
+
+    /**
+     * The queues per domain, which assign the monotonic sequences of the replicated events from this producer instance
+     */
+    private final ConcurrentMap<String, TransportProducerDomainQueue> domainQueues = new ConcurrentHashMap<>();
+
+    /**
+     * The id of the local cluster, maybe <code>null</code>
+     */
+    private byte[] clusterId;
+
+    @Override
+    public boolean supportsEventType(Class<? extends ApplicationEvent> eventType) {
+        return RedisCommandEvent.class.equals(eventType) ||
+                ContextRefreshedEvent.class.equals(eventType);
+    }
+
+    @Override
+    public void onApplicationEvent(ApplicationEvent event) {
+        if (event instanceof ContextRefreshedEvent) {
+            onContextRefreshedEvent((ContextRefreshedEvent) event);
+        } else if (event instanceof RedisCommandEvent) {
+            onRedisCommandEvent((RedisCommandEvent) event);
+        }
+    }
+
+    private void onContextRefreshedEvent(ContextRefreshedEvent event) {
+        ApplicationContext context = event.getApplicationContext();
+        TransportRedisReplicatorConfiguration transportRedisReplicatorConfiguration = context.getBean(TransportRedisReplicatorConfiguration.class);
+        RedisReplicatorConfiguration redisReplicatorConfiguration = transportRedisReplicatorConfiguration.getRedisReplicatorConfiguration();
+        String clusterId = redisReplicatorConfiguration.getClusterId();
+        this.redisReplicatorConfiguration = redisReplicatorConfiguration;
+        this.transportRedisReplicatorConfiguration = transportRedisReplicatorConfiguration;
+        this.clusterId = clusterId == null ? null : clusterId.getBytes(UTF_8);
+    }
+
+    private void onRedisCommandEvent(RedisCommandEvent event) {
+        try {
+            // The event is serialized only if any domain accepts it
+            List<String> domains = redisReplicatorConfiguration.getDomains(event);
+            if (!domains.isEmpty()) {
+                publishReplicationRecords(domains, event);
+            }
+        } catch (Throwable e) {
+            logger.warn("[Redis-Replicator-Transport-P-F] Failed to perform Redis Replicator transport publishing operation.", e);
+        }
+    }
+
+    private void publishReplicationRecords(List<String> domains, RedisCommandEvent event) {
+        // Almost all RedisCommands interface methods take the first argument as Key
+        Object arg = event.getArg(0);
+        byte[] key = arg instanceof byte[] ? (byte[]) arg : null;
+        // The event is serialized once, the bytes are shared by all domains' records
+        byte[] value = Serializers.serialize(event);
+        long timestamp = event.getTimestamp();
+        // The record without the sequence is shared by all domains, the sequence is assigned by the queue's sender
+        ReplicationRecord record = new ReplicationRecord(key, value, createHeaders(event), timestamp);
+        for (int i = 0, size = domains.size(); i < size; i++) {
+            String domain = domains.get(i);
+            try {
+                getDomainQueue(domain).enqueue(record);
+            } catch (Throwable e) {
+                logger.warn("[Redis-Replicator-Transport-P-F] Failed to enqueue the record of domain: {}, event: {}", domain, event, e);
+            }
+        }
+    }
+
+    private Map<String, byte[]> createHeaders(RedisCommandEvent event) {
+        Map<String, byte[]> headers = new LinkedHashMap<>(8);
+        String applicationName = event.getApplicationName();
+        if (applicationName != null) {
+            headers.put(SOURCE_APPLICATION_HEADER_NAME, applicationName.getBytes(UTF_8));
+        }
+        headers.put(SOURCE_ID_HEADER_NAME, sourceId);
+        if (clusterId != null) {
+            headers.put(CLUSTER_ID_HEADER_NAME, clusterId);
+        }
+        Short methodIndex = findMethodIndex(event.getMethod());
+        if (methodIndex != null) {
+            headers.put(METHOD_ID_HEADER_NAME, ByteBuffer.allocate(Short.BYTES).putShort(methodIndex).array());
+        }
+        return headers;
+    }
+
+    private TransportProducerDomainQueue getDomainQueue(String domain) {
+        TransportProducerDomainQueue domainQueue = domainQueues.get(domain);
+        if (domainQueue == null) {
+            synchronized (domainQueues) {
+                domainQueue = domainQueues.get(domain);
+                if (domainQueue == null) {
+                    domainQueue = createDomainQueue(domain);
+                    domainQueues.put(domain, domainQueue);
+                }
+            }
+        }
+        return domainQueue;
+    }
+
+    private TransportProducerDomainQueue createDomainQueue(String domain) {
+        TransportRedisReplicatorConfiguration configuration = this.transportRedisReplicatorConfiguration;
+        TransportProducerDomainQueue domainQueue = new TransportProducerDomainQueue(domain, configuration.getReplicationTransport(),
+                configuration.getProducerQueueCapacity(), configuration.getProducerQueueBatchSize(),
+                configuration.getProducerQueueOverflowPolicy(), configuration.getProducerQueueBlockTimeout(),
+                configuration.getProducerQueueRetryBackOff());
+        logger.debug("The transport producer queue of domain: {} is created : {}", domain, domainQueue);
+        return domainQueue;
+    }
+
+    /**
+     * Get the {@link TransportProducerDomainQueue queues} of domains, whose metrics are exposed
+     *
+     * @return non-null
+     */
+    public Collection<TransportProducerDomainQueue> getDomainQueues() {
+        return unmodifiableCollection(domainQueues.values());
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        for (TransportProducerDomainQueue domainQueue : domainQueues.values()) {
+            domainQueue.close(CLOSE_TIMEOUT);
+        }
+    }
+}
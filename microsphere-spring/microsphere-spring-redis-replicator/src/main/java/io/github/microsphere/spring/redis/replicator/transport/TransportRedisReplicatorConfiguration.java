@@ -0,0 +1,352 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import io.github.microsphere.spring.redis.replicator.config.RedisReplicatorConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.BeanFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.util.Assert;
+import org.springframework.util.backoff.ExponentialBackOff;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+
+/**
+ * The {@link ReplicationTransport} configuration of Redis Replicator, which is activated if the
+ * {@link #TRANSPORT_PROPERTY_NAME transport} is not {@link #KAFKA_TRANSPORT "kafka"}
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see ReplicationTransport
+ * @see TransportRedisReplicatorModuleInitializer
+ * @since 1.0.0
+ */
+public class TransportRedisReplicatorConfiguration implements EnvironmentAware, InitializingBean, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportRedisReplicatorConfiguration.class);
+
+    public static final String TRANSPORT_PROPERTY_NAME = RedisReplicatorConfiguration.PROPERTY_NAME_PREFIX + "transport";
+
+    /**
+     * The Kafka transport is provided by the Kafka module
+     */
+    public static final String KAFKA_TRANSPORT = "kafka";
+
+    public static final String DEFAULT_TRANSPORT = KAFKA_TRANSPORT;
+
+    public static final String TRANSPORT_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME + ".";
+
+    public static final String FILE_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME_PREFIX + "file.";
+
+    public static final String FILE_DIRECTORY_PROPERTY_NAME = FILE_PROPERTY_NAME_PREFIX + "directory";
+
+    /**
+     * The default directory is shared by the producer and the consumer processes on the same host, each domain allows
+     * one producer and one consumer which are guarded by the lock files, thus the distinct directory should be set
+     * if more than one application replicates the same domain on the host
+     */
+    public static final String DEFAULT_FILE_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator + "redis-replicator-transport";
+
+    /**
+     * The max size in bytes of the segment file
+     */
+    public static final String FILE_SEGMENT_SIZE_PROPERTY_NAME = FILE_PROPERTY_NAME_PREFIX + "segment-size";
+
+    public static final long DEFAULT_FILE_SEGMENT_SIZE = 64 * 1024 * 1024L;
+
+    /**
+     * The interval in milliseconds to check the new records of the segment files
+     */
+    public static final String FILE_POLL_INTERVAL_PROPERTY_NAME = FILE_PROPERTY_NAME_PREFIX + "poll-interval";
+
+    public static final long DEFAULT_FILE_POLL_INTERVAL = 10;
+
+    /**
+     * Whether the records are forced to the storage device on publish or not
+     */
+    public static final String FILE_SYNC_PROPERTY_NAME = FILE_PROPERTY_NAME_PREFIX + "sync";
+
+    public static final boolean DEFAULT_FILE_SYNC = false;
+
+    public static final String MMAP_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME_PREFIX + "mmap.";
+
+    public static final String MMAP_DIRECTORY_PROPERTY_NAME = MMAP_PROPERTY_NAME_PREFIX + "directory";
+
+    /**
+     * The default directory is shared as {@link #DEFAULT_FILE_DIRECTORY}, the producer and the consumer of each domain
+     * are guarded by the lock files
+     */
+    public static final String DEFAULT_MMAP_DIRECTORY = System.getProperty("java.io.tmpdir") + File.separator + "redis-replicator-mmap";
+
+    /**
+     * The capacity in bytes of the ring per domain
+     */
+    public static final String MMAP_CAPACITY_PROPERTY_NAME = MMAP_PROPERTY_NAME_PREFIX + "capacity";
+
+    public static final int DEFAULT_MMAP_CAPACITY = 64 * 1024 * 1024;
+
+    /**
+     * The interval in microseconds to check the new records of the ring
+     */
+    public static final String MMAP_POLL_INTERVAL_PROPERTY_NAME = MMAP_PROPERTY_NAME_PREFIX + "poll-interval";
+
+    public static final long DEFAULT_MMAP_POLL_INTERVAL = 50;
+
+    /**
+     * The timeout in milliseconds to wait for the free space of the full ring on publish
+     */
+    public static final String MMAP_PUBLISH_TIMEOUT_PROPERTY_NAME = MMAP_PROPERTY_NAME_PREFIX + "publish-timeout";
+
+    public static final long DEFAULT_MMAP_PUBLISH_TIMEOUT = 1000;
+
+    /**
+     * Whether the ring is forced to the storage device on publish and commit or not
+     */
+    public static final String MMAP_SYNC_PROPERTY_NAME = MMAP_PROPERTY_NAME_PREFIX + "sync";
+
+    public static final boolean DEFAULT_MMAP_SYNC = false;
+
+    public static final String REDIS_STREAMS_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME_PREFIX + "redis-streams.";
+
+    public static final String REDIS_STREAMS_KEY_PREFIX_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "key-prefix";
+
+    public static final String DEFAULT_REDIS_STREAMS_KEY_PREFIX = "redis-replicator:stream:";
+
+    /**
+     * The bean name of {@link RedisConnectionFactory} of the Redis hosting the streams, which is required and shared by
+     * the producers and the consumers, thus it must be neither the source nor the target Redis being replicated
+     */
+    public static final String REDIS_STREAMS_CONNECTION_FACTORY_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "connection-factory";
+
+    /**
+     * The max length of streams, non-positive if unlimited
+     */
+    public static final String REDIS_STREAMS_MAX_LENGTH_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "max-length";
+
+    public static final long DEFAULT_REDIS_STREAMS_MAX_LENGTH = 1000000;
+
+    /**
+     * The consumer group, the default value is the prefix with the application name
+     */
+    public static final String REDIS_STREAMS_GROUP_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "group";
+
+    public static final String DEFAULT_REDIS_STREAMS_GROUP_PREFIX = "Redis-Replicator-";
+
+    /**
+     * The name of consumer in the group, which must be unique per instance, the default value is the application name
+     * with the process id and host, e.g. "app-1234@host"
+     */
+    public static final String REDIS_STREAMS_CONSUMER_NAME_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "consumer-name";
+
+    /**
+     * The time in milliseconds of the lease of domain held by a consumer, which should be longer than the time of
+     * applying a batch
+     */
+    public static final String REDIS_STREAMS_LEASE_TIME_PROPERTY_NAME = REDIS_STREAMS_PROPERTY_NAME_PREFIX + "lease-time";
+
+    public static final long DEFAULT_REDIS_STREAMS_LEASE_TIME = 30000;
+
+    public static final String PRODUCER_QUEUE_PROPERTY_NAME_PREFIX = TRANSPORT_PROPERTY_NAME_PREFIX + "producer.queue.";
+
+    public static final String PRODUCER_QUEUE_CAPACITY_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "capacity";
+
+    public static final int DEFAULT_PRODUCER_QUEUE_CAPACITY = 10000;
+
+    /**
+     * The max count of records published at once by {@link TransportProducerDomainQueue}
+     */
+    public static final String PRODUCER_QUEUE_BATCH_SIZE_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "batch-size";
+
+    public static final int DEFAULT_PRODUCER_QUEUE_BATCH_SIZE = 500;
+
+    /**
+     * The overflow policy of {@link TransportProducerDomainQueue}, {@link OverflowPolicy#SPILL} is not supported
+     */
+    public static final String PRODUCER_QUEUE_OVERFLOW_POLICY_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "overflow-policy";
+
+    public static final OverflowPolicy DEFAULT_PRODUCER_QUEUE_OVERFLOW_POLICY = OverflowPolicy.BLOCK;
+
+    /**
+     * The timeout in milliseconds of {@link OverflowPolicy#BLOCK}
+     */
+    public static final String PRODUCER_QUEUE_BLOCK_TIMEOUT_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "block-timeout";
+
+    public static final long DEFAULT_PRODUCER_QUEUE_BLOCK_TIMEOUT = 100;
+
+    /**
+     * The initial interval in milliseconds of retrying to publish the failed batch by {@link TransportProducerDomainQueue}
+     */
+    public static final String PRODUCER_QUEUE_RETRY_INITIAL_INTERVAL_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "retry.initial-interval";
+
+    public static final long DEFAULT_PRODUCER_QUEUE_RETRY_INITIAL_INTERVAL = 100;
+
+    /**
+     * The max interval in milliseconds of retrying to publish the failed batch, the batch is retried until it's published
+     * or the queue is closed
+     */
+    public static final String PRODUCER_QUEUE_RETRY_MAX_INTERVAL_PROPERTY_NAME = PRODUCER_QUEUE_PROPERTY_NAME_PREFIX + "retry.max-interval";
+
+    public static final long DEFAULT_PRODUCER_QUEUE_RETRY_MAX_INTERVAL = 5000;
+
+    protected ConfigurableEnvironment environment;
+
+    @Autowired
+    protected RedisReplicatorConfiguration redisReplicatorConfiguration;
+
+    @Autowired
+    protected BeanFactory beanFactory;
+
+    private ReplicationTransport replicationTransport;
+
+    private int producerQueueCapacity;
+
+    private int producerQueueBatchSize;
+
+    private OverflowPolicy producerQueueOverflowPolicy;
+
+    private long producerQueueBlockTimeout;
+
+    private ExponentialBackOff producerQueueRetryBackOff;
+
+    /**
+     * Get the name of transport
+     *
+     * @param environment {@link Environment}
+     * @return non-null
+     */
+    public static String getTransport(Environment environment) {
+        return environment.getProperty(TRANSPORT_PROPERTY_NAME, DEFAULT_TRANSPORT);
+    }
+
+    public static boolean isKafkaTransport(Environment environment) {
+        return KAFKA_TRANSPORT.equals(getTransport(environment));
+    }
+
+    @Override
+    public final void setEnvironment(Environment environment) {
+        Assert.isInstanceOf(ConfigurableEnvironment.class, environment, "The 'environment' argument is not an instance of ConfigurableEnvironment");
+        this.environment = (ConfigurableEnvironment) environment;
+    }
+
+    @Override
+    public void afterPropertiesSet() throws Exception {
+        this.replicationTransport = createReplicationTransport(getTransport(environment));
+        this.producerQueueCapacity = environment.getProperty(PRODUCER_QUEUE_CAPACITY_PROPERTY_NAME, int.class, DEFAULT_PRODUCER_QUEUE_CAPACITY);
+        this.producerQueueBatchSize = environment.getProperty(PRODUCER_QUEUE_BATCH_SIZE_PROPERTY_NAME, int.class, DEFAULT_PRODUCER_QUEUE_BATCH_SIZE);
+        this.producerQueueOverflowPolicy = environment.getProperty(PRODUCER_QUEUE_OVERFLOW_POLICY_PROPERTY_NAME, OverflowPolicy.class, DEFAULT_PRODUCER_QUEUE_OVERFLOW_POLICY);
+        this.producerQueueBlockTimeout = environment.getProperty(PRODUCER_QUEUE_BLOCK_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_PRODUCER_QUEUE_BLOCK_TIMEOUT);
+        this.producerQueueRetryBackOff = new ExponentialBackOff(environment.getProperty(PRODUCER_QUEUE_RETRY_INITIAL_INTERVAL_PROPERTY_NAME,
+                long.class, DEFAULT_PRODUCER_QUEUE_RETRY_INITIAL_INTERVAL), ExponentialBackOff.DEFAULT_MULTIPLIER);
+        this.producerQueueRetryBackOff.setMaxInterval(environment.getProperty(PRODUCER_QUEUE_RETRY_MAX_INTERVAL_PROPERTY_NAME,
+                long.class, DEFAULT_PRODUCER_QUEUE_RETRY_MAX_INTERVAL));
+        Assert.isTrue(producerQueueOverflowPolicy != OverflowPolicy.SPILL, "The overflow policy SPILL is not supported by the transport producer queue");
+        logger.debug("The ReplicationTransport of Redis Replicator : {}", replicationTransport.getName());
+    }
+
+    private ReplicationTransport createReplicationTransport(String transport) {
+        switch (transport) {
+            case InMemoryReplicationTransport.NAME:
+                return new InMemoryReplicationTransport();
+            case SegmentedFileReplicationTransport.NAME:
+                return createSegmentedFileReplicationTransport();
+            case RedisStreamsReplicationTransport.NAME:
+                return createRedisStreamsReplicationTransport();
+            case MappedRingBufferReplicationTransport.NAME:
+                return createMappedRingBufferReplicationTransport();
+            default:
+                throw new IllegalStateException("The transport of Redis Replicator is not supported : " + transport);
+        }
+    }
+
+    private ReplicationTransport createSegmentedFileReplicationTransport() {
+        File directory = new File(environment.getProperty(FILE_DIRECTORY_PROPERTY_NAME, DEFAULT_FILE_DIRECTORY));
+        long segmentSize = environment.getProperty(FILE_SEGMENT_SIZE_PROPERTY_NAME, long.class, DEFAULT_FILE_SEGMENT_SIZE);
+        boolean sync = environment.getProperty(FILE_SYNC_PROPERTY_NAME, boolean.class, DEFAULT_FILE_SYNC);
+        long pollInterval = environment.getProperty(FILE_POLL_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_FILE_POLL_INTERVAL);
+        logger.debug("The segmented-file transport directory : {}", directory);
+        return new SegmentedFileReplicationTransport(directory, segmentSize, sync, pollInterval);
+    }
+
+    private ReplicationTransport createMappedRingBufferReplicationTransport() {
+        File directory = new File(environment.getProperty(MMAP_DIRECTORY_PROPERTY_NAME, DEFAULT_MMAP_DIRECTORY));
+        int capacity = environment.getProperty(MMAP_CAPACITY_PROPERTY_NAME, int.class, DEFAULT_MMAP_CAPACITY);
+        long pollInterval = environment.getProperty(MMAP_POLL_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_MMAP_POLL_INTERVAL);
+        long publishTimeout = environment.getProperty(MMAP_PUBLISH_TIMEOUT_PROPERTY_NAME, long.class, DEFAULT_MMAP_PUBLISH_TIMEOUT);
+        boolean sync = environment.getProperty(MMAP_SYNC_PROPERTY_NAME, boolean.class, DEFAULT_MMAP_SYNC);
+        logger.debug("The memory-mapped ring buffer transport directory : {}", directory);
+        return new MappedRingBufferReplicationTransport(directory, capacity, pollInterval, publishTimeout, sync);
+    }
+
+    private ReplicationTransport createRedisStreamsReplicationTransport() {
+        String connectionFactoryBeanName = environment.getProperty(REDIS_STREAMS_CONNECTION_FACTORY_PROPERTY_NAME);
+        if (connectionFactoryBeanName == null) {
+            throw new IllegalStateException("The property '" + REDIS_STREAMS_CONNECTION_FACTORY_PROPERTY_NAME + "' is required by the Redis Streams transport");
+        }
+        RedisConnectionFactory redisConnectionFactory = beanFactory.getBean(connectionFactoryBeanName, RedisConnectionFactory.class);
+        String applicationName = redisReplicatorConfiguration.getRedisConfiguration().getApplicationName();
+        String keyPrefix = environment.getProperty(REDIS_STREAMS_KEY_PREFIX_PROPERTY_NAME, DEFAULT_REDIS_STREAMS_KEY_PREFIX);
+        long maxLength = environment.getProperty(REDIS_STREAMS_MAX_LENGTH_PROPERTY_NAME, long.class, DEFAULT_REDIS_STREAMS_MAX_LENGTH);
+        String group = environment.getProperty(REDIS_STREAMS_GROUP_PROPERTY_NAME, DEFAULT_REDIS_STREAMS_GROUP_PREFIX + applicationName);
+        String consumerName = environment.getProperty(REDIS_STREAMS_CONSUMER_NAME_PROPERTY_NAME, applicationName + "-" + ManagementFactory.getRuntimeMXBean().getName());
+        long leaseTime = environment.getProperty(REDIS_STREAMS_LEASE_TIME_PROPERTY_NAME, long.class, DEFAULT_REDIS_STREAMS_LEASE_TIME);
+        logger.debug("The Redis Streams transport consumer : {}, group : {}", consumerName, group);
+        return new RedisStreamsReplicationTransport(redisConnectionFactory, keyPrefix, maxLength, group, consumerName, leaseTime);
+    }
+
+    public ReplicationTransport getReplicationTransport() {
+        return replicationTransport;
+    }
+
+    public RedisReplicatorConfiguration getRedisReplicatorConfiguration() {
+        return redisReplicatorConfiguration;
+    }
+
+    public int getProducerQueueCapacity() {
+        return producerQueueCapacity;
+    }
+
+    public int getProducerQueueBatchSize() {
+        return producerQueueBatchSize;
+    }
+
+    public OverflowPolicy getProducerQueueOverflowPolicy() {
+        return producerQueueOverflowPolicy;
+    }
+
+    public long getProducerQueueBlockTimeout() {
+        return producerQueueBlockTimeout;
+    }
+
+    public ExponentialBackOff getProducerQueueRetryBackOff() {
+        return producerQueueRetryBackOff;
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        ReplicationTransport replicationTransport = this.replicationTransport;
+        if (replicationTransport != null) {
+            replicationTransport.close();
+        }
+    }
+}
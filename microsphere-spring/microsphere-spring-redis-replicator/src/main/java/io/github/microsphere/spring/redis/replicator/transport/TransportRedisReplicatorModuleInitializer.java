@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import io.github.microsphere.spring.redis.replicator.RedisReplicatorModuleInitializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.support.BeanDefinitionRegistry;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import static io.github.microsphere.spring.redis.replicator.transport.TransportRedisReplicatorConfiguration.getTransport;
+import static io.github.microsphere.spring.redis.replicator.transport.TransportRedisReplicatorConfiguration.isKafkaTransport;
+import static io.github.microsphere.spring.util.AnnotatedBeanDefinitionRegistryUtils.registerBeans;
+import static io.github.microsphere.spring.util.BeanRegistrar.registerBeanDefinition;
+
+/**
+ * {@link ReplicationTransport} {@link RedisReplicatorModuleInitializer}, which is activated if the transport is not
+ * Kafka
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see TransportRedisReplicatorConfiguration#TRANSPORT_PROPERTY_NAME
+ * @since 1.0.0
+ */
+public class TransportRedisReplicatorModuleInitializer implements RedisReplicatorModuleInitializer {
+
+    private static final Logger logger = LoggerFactory.getLogger(TransportRedisReplicatorModuleInitializer.class);
+
+    @Override
+    public boolean supports(ConfigurableApplicationContext context) {
+        if (isKafkaTransport(context.getEnvironment())) {
+            return false;
+        }
+        logger.debug("Application context [id: '{}'] The transport of Redis Replicator : {}", context.getId(), getTransport(context.getEnvironment()));
+        return true;
+    }
+
+    @Override
+    public void initializeProducerModule(ConfigurableApplicationContext context, BeanDefinitionRegistry registry) {
+        registerBeans(registry, TransportRedisReplicatorConfiguration.class);
+        registerBeanDefinition(registry, TransportProducerRedisCommandEventListener.class);
+    }
+
+    @Override
+    public void initializeConsumerModule(ConfigurableApplicationContext context, BeanDefinitionRegistry registry) {
+        registerBeans(registry, TransportConsumerRedisReplicatorConfiguration.class);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * The token bucket rate limiter, the permits are refilled continuously at the rate and at most one second of permits
+ * are stored for the burst. The permits acquired beyond the stored ones are borrowed from the future, thus the later
+ * acquisitions wait for the debt.
+ * <p>
+ * The instance is thread-safe.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RateLimiter {
+
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final double permitsPerNano;
+
+    private final double maxPermits;
+
+    private final LongSupplier nanoTime;
+
+    private double storedPermits;
+
+    private long lastTime;
+
+    /**
+     * @param permitsPerSecond the permits per second, non-positive if unlimited
+     */
+    public RateLimiter(double permitsPerSecond) {
+        this(permitsPerSecond, System::nanoTime);
+    }
+
+    RateLimiter(double permitsPerSecond, LongSupplier nanoTime) {
+        this.permitsPerNano = permitsPerSecond > 0 ? permitsPerSecond / NANOS_PER_SECOND : 0;
+        this.maxPermits = Math.max(permitsPerSecond, 1);
+        this.nanoTime = nanoTime;
+        this.storedPermits = maxPermits;
+        this.lastTime = nanoTime.getAsLong();
+    }
+
+    /**
+     * Acquire the permits, wait if they are not available
+     *
+     * @param permits the count of permits
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long waitNanos = reserve(permits);
+        if (waitNanos > 0) {
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+        }
+    }
+
+    /**
+     * Reserve the permits
+     *
+     * @param permits the count of permits
+     * @return the time in nanoseconds to wait for the permits
+     */
+    synchronized long reserve(int permits) {
+        if (permitsPerNano == 0) {
+            return 0;
+        }
+        long now = nanoTime.getAsLong();
+        storedPermits = Math.min(maxPermits, storedPermits + (now - lastTime) * permitsPerNano);
+        lastTime = now;
+        storedPermits -= permits;
+        return storedPermits >= 0 ? 0 : (long) (-storedPermits / permitsPerNano);
+    }
+
+    public boolean isUnlimited() {
+        return permitsPerNano == 0;
+    }
+}
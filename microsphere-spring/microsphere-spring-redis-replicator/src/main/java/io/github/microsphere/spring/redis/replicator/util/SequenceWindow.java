@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.util;
+
+/**
+ * The sliding window of the sequences from one source, which is a compact bitmap of the latest {@link #getSize() size}
+ * sequences, it tracks :
+ * <ul>
+ *     <li>The duplicate sequences, which are marked before or not after the restored watermark</li>
+ *     <li>The gaps, which are the sequences never marked when they slide out of the window</li>
+ * </ul>
+ * The sequences may arrive out of order within the window, the ones older than the window are regarded as unknown
+ * rather than duplicate, since their slots are reused, thus they are new and {@link #getStaleCount() counted} but never
+ * marked. The size of window should be larger than the count of the sequences in flight (e.g. the max records of a poll).
+ * <p>
+ * The {@link #getWatermark() watermark} is the sequence that all sequences up to it are marked or lost, which can be
+ * checkpointed and then restored by {@link #SequenceWindow(int, long)}.
+ * <p>
+ * The instance is thread-safe.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class SequenceWindow {
+
+    public static final int DEFAULT_SIZE = 1024;
+
+    private final int size;
+
+    private final long[] bits;
+
+    /**
+     * The first marked sequence, the sequences before it are unknown
+     */
+    private long first = -1;
+
+    /**
+     * The highest marked sequence
+     */
+    private long highest = -1;
+
+    /**
+     * All sequences up to the watermark are marked or lost
+     */
+    private long watermark = -1;
+
+    /**
+     * The sequences up to the floor are regarded as duplicate, which is the restored watermark
+     */
+    private long floor = -1;
+
+    private long gapCount;
+
+    private long duplicateCount;
+
+    private long staleCount;
+
+    public SequenceWindow() {
+        this(DEFAULT_SIZE);
+    }
+
+    /**
+     * @param size the size of window, which will be rounded up to the power of two (at least 64)
+     */
+    public SequenceWindow(int size) {
+        if (size < 1 || size > (1 << 30)) {
+            throw new IllegalArgumentException("The size of window must be in (0, 2^30] : " + size);
+        }
+        this.size = Math.max(64, Integer.highestOneBit(size - 1) << 1);
+        this.bits = new long[this.size >>> 6];
+    }
+
+    /**
+     * @param size      the size of window, which will be rounded up to the power of two (at least 64)
+     * @param watermark the restored watermark, the sequences up to it are regarded as duplicate
+     */
+    public SequenceWindow(int size, long watermark) {
+        this(size);
+        if (watermark > -1) {
+            this.floor = watermark;
+            this.watermark = watermark;
+            this.first = watermark + 1;
+            this.highest = watermark;
+        }
+    }
+
+    /**
+     * Mark the sequence
+     *
+     * @param sequence the non-negative sequence
+     * @return <code>true</code> if the sequence is new or too old to be evaluated, <code>false</code> if it's duplicate
+     */
+    public synchronized boolean mark(long sequence) {
+        if (highest < 0) {
+            first = sequence;
+            highest = sequence;
+            watermark = sequence;
+            set(sequence);
+            return true;
+        }
+        if (sequence > highest) {
+            slide(sequence);
+        } else if (isMarked(sequence)) {
+            duplicateCount++;
+            return false;
+        } else if (isStale(sequence)) {
+            // The slot is reused by the newer sequence, thus the sequence is unknown and can't be marked
+            staleCount++;
+            return true;
+        } else if (sequence < first) {
+            // The earlier sequence arrives later
+            first = sequence;
+        }
+        set(sequence);
+        advanceWatermark();
+        return true;
+    }
+
+    /**
+     * Whether the sequence was marked or not, which does not change the window
+     *
+     * @param sequence the non-negative sequence
+     * @return <code>true</code> if the sequence is marked before, <code>false</code> if it's new or too old to be evaluated
+     */
+    public synchronized boolean contains(long sequence) {
+        return highest > -1 && sequence <= highest && isMarked(sequence);
+    }
+
+    private boolean isMarked(long sequence) {
+        return sequence <= floor || (!isStale(sequence) && isSet(sequence));
+    }
+
+    /**
+     * Whether the sequence is older than the window or not
+     */
+    private boolean isStale(long sequence) {
+        return sequence <= highest - size;
+    }
+
+    private void advanceWatermark() {
+        long watermark = this.watermark;
+        while (watermark < highest && isSet(watermark + 1)) {
+            watermark++;
+        }
+        this.watermark = watermark;
+    }
+
+    /**
+     * Slide the window to end with the sequence, the unmarked sequences sliding out are counted as the gaps
+     *
+     * @param sequence the new highest sequence
+     */
+    private void slide(long sequence) {
+        long evictedTo = sequence - size;
+        long evictedFrom = Math.max(highest - size + 1, first);
+        long markedTo = Math.min(evictedTo, highest);
+        for (long s = evictedFrom; s <= markedTo; s++) {
+            if (!isSet(s)) {
+                gapCount++;
+            }
+            clear(s);
+        }
+        if (evictedTo > highest) {
+            // The sequences never reached the window
+            gapCount += evictedTo - highest;
+        }
+        // Clear the slots of the new sequences
+        for (long s = Math.max(highest, evictedTo) + 1; s <= sequence; s++) {
+            clear(s);
+        }
+        highest = sequence;
+        if (watermark < evictedTo) {
+            // The unmarked sequences out of the window are lost
+            watermark = evictedTo;
+        }
+    }
+
+    private boolean isSet(long sequence) {
+        int index = index(sequence);
+        return (bits[index >>> 6] & (1L << index)) != 0;
+    }
+
+    private void set(long sequence) {
+        int index = index(sequence);
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private void clear(long sequence) {
+        int index = index(sequence);
+        bits[index >>> 6] &= ~(1L << index);
+    }
+
+    private int index(long sequence) {
+        return (int) (sequence & (size - 1));
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the highest marked sequence, or <code>-1</code> if nothing is marked
+     */
+    public synchronized long getHighest() {
+        return highest;
+    }
+
+    /**
+     * @return the sequence that all sequences up to it are marked or lost, or <code>-1</code> if nothing is marked
+     */
+    public synchronized long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return the count of the sequences never marked before they slid out of the window
+     */
+    public synchronized long getGapCount() {
+        return gapCount;
+    }
+
+    public synchronized long getDuplicateCount() {
+        return duplicateCount;
+    }
+
+    /**
+     * @return the count of the sequences that arrived after they slid out of the window
+     */
+    public synchronized long getStaleCount() {
+        return staleCount;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RedisCommandDeduplicator} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisCommandDeduplicatorTest {
+
+    @Test
+    public void testIsDuplicate() {
+        RedisCommandDeduplicator deduplicator = new RedisCommandDeduplicator(64, 60000);
+        assertFalse(deduplicator.isDuplicate("source-1", 1));
+        deduplicator.markApplied("source-1", 1);
+        assertTrue(deduplicator.isDuplicate("source-1", 1));
+        assertFalse(deduplicator.isDuplicate("source-1", 2));
+        // The sequences are independent per source
+        assertFalse(deduplicator.isDuplicate("source-2", 1));
+
+        // The unknown source or sequence is never duplicate
+        deduplicator.markApplied(null, 1);
+        deduplicator.markApplied("source-1", -1);
+        assertFalse(deduplicator.isDuplicate(null, 1));
+        assertFalse(deduplicator.isDuplicate("source-1", -1));
+        assertEquals(2, deduplicator.getSourceCount());
+    }
+
+    @Test
+    public void testCheckpointEvictsIdleSources() throws InterruptedException {
+        RedisCommandDeduplicator deduplicator = new RedisCommandDeduplicator(64, 0);
+        deduplicator.markApplied("source-1", 1);
+        // The changed source is kept
+        deduplicator.checkpoint();
+        assertEquals(1, deduplicator.getSourceCount());
+        Thread.sleep(2);
+        deduplicator.checkpoint();
+        assertEquals(0, deduplicator.getSourceCount());
+        assertFalse(deduplicator.isDuplicate("source-1", 1));
+    }
+
+    @Test
+    public void testParseWatermark() {
+        assertEquals("100:1700000000000", RedisCommandDeduplicator.formatWatermark(100, 1700000000000L));
+        assertEquals(100, RedisCommandDeduplicator.parseWatermark("100:1700000000000"));
+        // The legacy watermark without the time of checkpoint
+        assertEquals(100, RedisCommandDeduplicator.parseWatermark("100"));
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.INVOKER_TYPE;
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.createInvoker;
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.getInvoker;
+import static io.github.microsphere.spring.redis.replicator.RedisCommandInvokers.invoke;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link RedisCommandInvokers} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisCommandInvokersTest {
+
+    private final List<Object[]> invocations = new ArrayList<>();
+
+    @Test
+    public void testInvoke() throws Throwable {
+        RedisConnection redisConnection = newRedisConnection();
+        byte[] key = "key".getBytes();
+        byte[] value = "value".getBytes();
+
+        Method set = RedisStringCommands.class.getMethod("set", byte[].class, byte[].class);
+        MethodHandle invoker = createInvoker(set);
+        assertEquals(INVOKER_TYPE, invoker.type());
+        assertEquals(Boolean.TRUE, invoke(redisConnection, invoker, new Object[]{key, value}));
+        assertEquals("set", invocations.get(0)[0]);
+        assertSame(key, invocations.get(0)[1]);
+        assertSame(value, invocations.get(0)[2]);
+
+        // The primitive argument is unboxed
+        Method pExpireAt = RedisKeyCommands.class.getMethod("pExpireAt", byte[].class, long.class);
+        invoke(redisConnection, createInvoker(pExpireAt), new Object[]{key, 100L});
+        assertEquals("pExpireAt", invocations.get(1)[0]);
+        assertEquals(100L, invocations.get(1)[2]);
+
+        // The varargs are passed as an array
+        Method del = RedisKeyCommands.class.getMethod("del", byte[][].class);
+        byte[][] keys = new byte[][]{key, value};
+        invoke(redisConnection, createInvoker(del), new Object[]{keys});
+        assertEquals("del", invocations.get(2)[0]);
+        assertArrayEquals(keys, (byte[][]) invocations.get(2)[1]);
+    }
+
+    @Test
+    public void testGetInvoker() throws Throwable {
+        Method set = RedisStringCommands.class.getMethod("set", byte[].class, byte[].class);
+        MethodHandle invoker = getInvoker(set);
+        assertEquals(INVOKER_TYPE, invoker.type());
+        // The resolved invoker is cached
+        assertSame(invoker, getInvoker(set));
+
+        RedisConnection redisConnection = newRedisConnection();
+        assertEquals(Boolean.TRUE, invoke(redisConnection, invoker, new Object[]{"key".getBytes(), "value".getBytes()}));
+
+        // The method without index is not a Redis command method
+        assertNull(getInvoker(Object.class.getMethod("toString")));
+    }
+
+    @Test
+    public void testInvokeFailure() throws Throwable {
+        RedisConnection redisConnection = newRedisConnection();
+        Method set = RedisStringCommands.class.getMethod("set", byte[].class, byte[].class);
+        // The failure is not wrapped
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> invoke(redisConnection, createInvoker(set), new Object[]{null, null}));
+        assertEquals("null key", e.getMessage());
+    }
+
+    private RedisConnection newRedisConnection() {
+        ClassLoader classLoader = getClass().getClassLoader();
+        Object commands = Proxy.newProxyInstance(classLoader, new Class[]{RedisStringCommands.class, RedisKeyCommands.class}, (proxy, method, args) -> {
+            if (args[0] == null) {
+                throw new IllegalArgumentException("null key");
+            }
+            Object[] invocation = new Object[args.length + 1];
+            invocation[0] = method.getName();
+            System.arraycopy(args, 0, invocation, 1, args.length);
+            invocations.add(invocation);
+            return method.getReturnType() == Boolean.class ? Boolean.TRUE : null;
+        });
+        return (RedisConnection) Proxy.newProxyInstance(classLoader, new Class[]{RedisConnection.class}, (proxy, method, args) -> {
+            String methodName = method.getName();
+            if ("stringCommands".equals(methodName) || "keyCommands".equals(methodName)) {
+                return commands;
+            }
+            throw new UnsupportedOperationException(methodName);
+        });
+    }
+}
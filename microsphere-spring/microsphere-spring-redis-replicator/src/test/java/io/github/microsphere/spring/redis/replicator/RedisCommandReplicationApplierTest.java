@@ -0,0 +1,278 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.function.Function;
+
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RedisCommandReplicationApplier} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisCommandReplicationApplierTest {
+
+    private static final String LOCAL_SOURCE_ID = "local";
+
+    private static final String SOURCE_ID = "remote";
+
+    private static final String POISON = "poison";
+
+    /**
+     * The sequences of the published batches
+     */
+    private final List<List<Long>> batches = new ArrayList<>();
+
+    /**
+     * The failures thrown in order by the replicator, the batch is accepted if it returns <code>null</code>
+     */
+    private final Queue<Function<List<RedisCommandReplicatedEvent>, RuntimeException>> failures = new LinkedList<>();
+
+    private final List<Long> applied = new ArrayList<>();
+
+    private final List<Long> failed = new ArrayList<>();
+
+    private RedisCommandReplicationApplier<TestRecord> applier;
+
+    @BeforeEach
+    public void init() {
+        applier = newApplier(newReplicator());
+    }
+
+    private RedisCommandReplicator newReplicator() {
+        return new RedisCommandReplicator(null, null) {
+            @Override
+            public void replicate(List<RedisCommandReplicatedEvent> events) {
+                RedisCommandReplicationApplierTest.this.replicate(events);
+            }
+        };
+    }
+
+    private RedisCommandReplicationApplier<TestRecord> newApplier(RedisCommandReplicator redisCommandReplicator) {
+        return newApplier(redisCommandReplicator, null);
+    }
+
+    private RedisCommandReplicationApplier<TestRecord> newApplier(RedisCommandReplicator redisCommandReplicator,
+                                                                  ApplicationEventPublisher applicationEventPublisher) {
+        RedisCommandDeduplicator deduplicator = new RedisCommandDeduplicator(1024, 60_000);
+        return new RedisCommandReplicationApplier<TestRecord>(redisCommandReplicator, new FixedBackOff(0, 10), 2, deduplicator, 0,
+                applicationEventPublisher) {
+
+            @Override
+            protected boolean isLocallyOriginated(TestRecord record) {
+                return LOCAL_SOURCE_ID.equals(record.sourceId);
+            }
+
+            @Override
+            protected String getSourceId(TestRecord record) {
+                return record.sourceId;
+            }
+
+            @Override
+            protected long getSequence(TestRecord record) {
+                return record.sequence;
+            }
+
+            @Override
+            protected String getSequenceScope(TestRecord record) {
+                return "test";
+            }
+
+            @Override
+            protected RedisCommandReplicatedEvent createEvent(TestRecord record) {
+                RedisCommandEvent redisCommandEvent = RedisCommandEvent.Builder.source(this).build();
+                redisCommandEvent.setSequence(record.sequence);
+                return new RedisCommandReplicatedEvent(redisCommandEvent, record.value);
+            }
+
+            @Override
+            protected void onApplied(TestRecord record, RedisCommandReplicatedEvent event, long appliedTime) {
+                applied.add(record.sequence);
+            }
+
+            @Override
+            protected void onFailed(TestRecord record, Throwable failure) {
+                failed.add(record.sequence);
+            }
+
+            @Override
+            protected String describe(TestRecord record) {
+                return "Sequence: " + record.sequence;
+            }
+        };
+    }
+
+    @Test
+    public void testDropLocallyOriginatedAndDuplicates() {
+        applier.apply(asList(record(1), new TestRecord(LOCAL_SOURCE_ID, 2, "default"), record(1), record(3)));
+        assertEquals(asList(asList(1L, 3L)), batches);
+        assertEquals(asList(1L, 3L), applied);
+
+        // The redelivered records are dropped
+        applier.apply(asList(record(1), record(3), record(4)));
+        assertEquals(asList(asList(1L, 3L), asList(4L)), batches);
+        assertEquals(asList(1L, 3L, 4L), applied);
+    }
+
+    @Test
+    public void testRetryUnappliedOnly() {
+        failures.add(events -> {
+            BitSet unappliedIndexes = new BitSet(events.size());
+            unappliedIndexes.set(1);
+            return new RedisCommandReplicationException("test", null, events.size(), unappliedIndexes);
+        });
+        applier.apply(asList(record(1), record(2), record(3)));
+        assertEquals(asList(asList(1L, 2L, 3L), asList(2L)), batches);
+        assertEquals(asList(1L, 3L, 2L), applied);
+        assertEquals(0, failed.size());
+    }
+
+    @Test
+    public void testSplitPoisonRecord() {
+        // The batch and the single records are retried twice
+        for (int i = 0; i < 9; i++) {
+            failures.add(this::failIfPoison);
+        }
+        applier.apply(asList(record(1), new TestRecord(SOURCE_ID, 2, POISON), record(3)));
+        assertEquals(asList(1L, 3L), applied);
+        assertEquals(asList(2L), failed);
+    }
+
+    @Test
+    public void testNotReplayUnknownOutcome() {
+        failures.add(events -> new RedisCommandReplicationException("test", null, events.size(), null));
+        applier.apply(asList(record(1), record(2)));
+        assertEquals(1, batches.size());
+        assertEquals(0, applied.size());
+        assertEquals(asList(1L, 2L), failed);
+    }
+
+    @Test
+    public void testThrowTransientFailure() {
+        // The applied events are unknown, the record is not replayed in place
+        failures.add(events -> new DataAccessResourceFailureException("test"));
+        assertThrows(DataAccessResourceFailureException.class, () -> applier.apply(asList(record(1))));
+        assertEquals(0, applied.size());
+        assertEquals(0, failed.size());
+
+        // The redelivered record is applied
+        applier.apply(asList(record(1)));
+        assertEquals(asList(1L), applied);
+    }
+
+    @Test
+    public void testFailWithoutReplicator() {
+        RedisCommandReplicationApplier<TestRecord> applier = newApplier(null);
+        assertThrows(IllegalStateException.class, () -> applier.apply(asList(record(1), record(2))));
+        assertEquals(0, applied.size());
+        assertEquals(0, failed.size());
+
+        // The records are not acknowledged as the applied ones, thus the redelivered records are applied
+        this.applier.apply(asList(record(1), record(2)));
+        assertEquals(asList(1L, 2L), applied);
+    }
+
+    @Test
+    public void testPublishAppliedEvents() {
+        List<RedisCommandReplicatedEvent> published = new ArrayList<>();
+        RedisCommandReplicationApplier<TestRecord> applier = newApplier(newReplicator(), event -> {
+            published.add((RedisCommandReplicatedEvent) event);
+            // The failure of listener is logged, the applied event is not retried
+            throw new IllegalStateException("listener");
+        });
+        failures.add(events -> {
+            BitSet unappliedIndexes = new BitSet(events.size());
+            unappliedIndexes.set(0);
+            return new RedisCommandReplicationException("test", null, events.size(), unappliedIndexes);
+        });
+        applier.apply(asList(record(1), record(2)));
+        assertEquals(asList(2L, 1L), applied);
+        assertEquals(2, published.size());
+        assertEquals(2L, published.get(0).getSourceEvent().getSequence());
+        assertEquals(1L, published.get(1).getSourceEvent().getSequence());
+        assertTrue(published.get(0).isApplied());
+        assertTrue(published.get(1).isApplied());
+        assertEquals(asList(asList(1L, 2L), asList(1L)), batches);
+    }
+
+    /**
+     * None of the events is applied if the poison one is present, like the failure of sending the commands
+     */
+    private RuntimeException failIfPoison(List<RedisCommandReplicatedEvent> events) {
+        for (RedisCommandReplicatedEvent event : events) {
+            if (POISON.equals(event.getDomain())) {
+                BitSet unappliedIndexes = new BitSet(events.size());
+                unappliedIndexes.set(0, events.size());
+                return new RedisCommandReplicationException(POISON, null, events.size(), unappliedIndexes);
+            }
+        }
+        return null;
+    }
+
+    private void replicate(List<RedisCommandReplicatedEvent> events) {
+        List<Long> sequences = new ArrayList<>(events.size());
+        for (RedisCommandReplicatedEvent e : events) {
+            sequences.add(e.getSourceEvent().getSequence());
+        }
+        batches.add(sequences);
+        Function<List<RedisCommandReplicatedEvent>, RuntimeException> failure = failures.poll();
+        RuntimeException e = failure == null ? null : failure.apply(events);
+        if (e != null) {
+            throw e;
+        }
+    }
+
+    private static TestRecord record(long sequence) {
+        return new TestRecord(SOURCE_ID, sequence, "default");
+    }
+
+    private static class TestRecord {
+
+        private final String sourceId;
+
+        private final long sequence;
+
+        /**
+         * The value, which is used as the domain of event
+         */
+        private final String value;
+
+        private TestRecord(String sourceId, long sequence, String value) {
+            this.sourceId = sourceId;
+            this.sequence = sequence;
+            this.value = value;
+        }
+    }
+}
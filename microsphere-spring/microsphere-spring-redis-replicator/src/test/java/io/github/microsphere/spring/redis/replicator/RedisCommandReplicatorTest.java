@@ -17,17 +17,27 @@
 package io.github.microsphere.spring.redis.replicator;
 
 import io.github.microsphere.spring.redis.context.RedisInitializer;
-import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedEvent;
+import io.github.microsphere.spring.redis.replicator.event.RedisCommandReplicatedBatchEvent;
 import io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerRedisReplicatorConfiguration;
 import org.junit.jupiter.api.Test;
 import org.springframework.context.ApplicationListener;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisKeyCommands;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.TestPropertySource;
 
+import java.util.BitSet;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
+import static java.util.Arrays.asList;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
 /**
  * {@link RedisCommandReplicator} Test
  *
@@ -52,7 +62,7 @@ public class RedisCommandReplicatorTest extends AbstractRedisReplicatorTest {
 
         Map<Object, Object> data = new HashMap<>();
 
-        context.addApplicationListener((ApplicationListener<RedisCommandReplicatedEvent>) event -> {
+        context.addApplicationListener((ApplicationListener<RedisCommandReplicatedBatchEvent>) event -> {
             latch.countDown();
         });
 
@@ -60,4 +70,68 @@ public class RedisCommandReplicatorTest extends AbstractRedisReplicatorTest {
         stringRedisTemplate.opsForValue().set("Key-1", "Value-1");
         latch.await();
     }
+
+    @Test
+    public void testGetUnappliedIndexes() {
+        // The command[2] failed to be sent, the command[1] failed in the pipeline
+        BitSet unappliedIndexes = new BitSet(4);
+        unappliedIndexes.set(2, 4);
+        List<Object> results = asList("OK", new RedisSystemException("WRONGTYPE", null));
+        unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(unappliedIndexes, results, replies(false, false), 2);
+        RedisCommandReplicationException exception = new RedisCommandReplicationException("failed", null, 4, unappliedIndexes);
+        assertTrue(exception.isOutcomeKnown());
+        assertTrue(exception.isApplied(0));
+        assertFalse(exception.isApplied(1));
+        assertFalse(exception.isApplied(2));
+        assertFalse(exception.isApplied(3));
+        assertEquals(1, exception.getAppliedCount());
+
+        // The results can't be matched to the commands
+        assertNull(RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), results, replies(false, false, false), 3));
+        assertNull(RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), null, replies(false, false, false), 3));
+        exception = new RedisCommandReplicationException("failed", null, 3, null);
+        assertFalse(exception.isOutcomeKnown());
+        assertFalse(exception.isApplied(0));
+        assertEquals(0, exception.getAppliedCount());
+    }
+
+    @Test
+    public void testGetUnappliedIndexesWithStatusCommands() {
+        RedisSystemException failure = new RedisSystemException("ERR", null);
+        // The results of the succeeded status commands are absent
+        BitSet unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(new BitSet(4), asList(1L, failure),
+                replies(true, false, true, false), 4);
+        assertEquals(BitSet.valueOf(new long[]{0b1000}), unappliedIndexes);
+
+        // The exception may be the result of either failed status command
+        unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), asList(1L, failure),
+                replies(false, true, true), 3);
+        assertNull(unappliedIndexes);
+        // The failed status command has its result
+        unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), asList(failure, 1L),
+                replies(true, false, true), 3);
+        assertEquals(BitSet.valueOf(new long[]{0b001}), unappliedIndexes);
+        unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), asList(1L, failure, failure),
+                replies(false, true, true), 3);
+        assertEquals(BitSet.valueOf(new long[]{0b110}), unappliedIndexes);
+
+        // The commands that are not sent have no result
+        unappliedIndexes = RedisCommandReplicator.getUnappliedIndexes(new BitSet(3), asList(failure),
+                replies(false), 3);
+        assertEquals(BitSet.valueOf(new long[]{0b001}), unappliedIndexes);
+    }
+
+    @Test
+    public void testIsStatusCommand() throws NoSuchMethodException {
+        assertTrue(RedisCommandReplicator.isStatusCommand(RedisKeyCommands.class.getMethod("rename", byte[].class, byte[].class)));
+        assertFalse(RedisCommandReplicator.isStatusCommand(RedisKeyCommands.class.getMethod("del", byte[][].class)));
+    }
+
+    private static RedisCommandReplicator.CommandReplies replies(boolean... statuses) {
+        RedisCommandReplicator.CommandReplies replies = new RedisCommandReplicator.CommandReplies(statuses.length);
+        for (int i = 0; i < statuses.length; i++) {
+            replies.add(i, statuses[i]);
+        }
+        return replies;
+    }
 }
@@ -0,0 +1,160 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.bootstrap;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.Cursor;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.github.microsphere.spring.redis.replicator.bootstrap.RedisKeyspaceBootstrapper.isInternalKey;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RedisKeyspaceBootstrapper} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisKeyspaceBootstrapperTest {
+
+    /**
+     * The source keys and their dumps, the key "c" is deleted after scanning
+     */
+    private final Map<String, byte[]> sourceDumps = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> sourceTtls = new ConcurrentHashMap<>();
+
+    private final Map<String, Object[]> targetRestores = new ConcurrentHashMap<>();
+
+    @Test
+    public void testBootstrap() throws Exception {
+        sourceDumps.put("a", "dump-a".getBytes(UTF_8));
+        sourceTtls.put("a", -1L);
+        sourceDumps.put("b", "dump-b".getBytes(UTF_8));
+        sourceTtls.put("b", 5000L);
+        sourceDumps.put("redis-replicator:dedup:test", "dump-dedup".getBytes(UTF_8));
+        sourceTtls.put("redis-replicator:dedup:test", -1L);
+
+        RedisConnectionFactory source = newRedisConnectionFactory(true);
+        RedisConnectionFactory target = newRedisConnectionFactory(false);
+        RedisKeyspaceBootstrapper bootstrapper = new RedisKeyspaceBootstrapper(source, target, null, 10, 1, 2, 0, true);
+        bootstrapper.bootstrap();
+
+        assertEquals(4, bootstrapper.getScannedCount());
+        assertEquals(2, bootstrapper.getRestoredCount());
+        assertEquals(2, bootstrapper.getSkippedCount());
+        assertEquals(0, bootstrapper.getFailedCount());
+
+        assertArrayEquals("dump-a".getBytes(UTF_8), (byte[]) targetRestores.get("a")[1]);
+        // The key without expiration is restored with the ttl 0
+        assertEquals(0L, targetRestores.get("a")[0]);
+        assertEquals(5000L, targetRestores.get("b")[0]);
+        assertEquals(true, targetRestores.get("b")[2]);
+        assertNull(targetRestores.get("c"));
+        assertNull(targetRestores.get("redis-replicator:dedup:test"));
+    }
+
+    @Test
+    public void testIsInternalKey() {
+        assertTrue(isInternalKey("redis-replicator:bootstrap:test".getBytes(UTF_8)));
+        assertFalse(isInternalKey("redis-replicator".getBytes(UTF_8)));
+        assertFalse(isInternalKey("user:1".getBytes(UTF_8)));
+    }
+
+    private RedisConnectionFactory newRedisConnectionFactory(boolean source) {
+        ClassLoader classLoader = getClass().getClassLoader();
+        return (RedisConnectionFactory) Proxy.newProxyInstance(classLoader, new Class[]{RedisConnectionFactory.class}, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                return source ? newSourceConnection() : newTargetConnection();
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private RedisConnection newSourceConnection() {
+        List<Object> results = new ArrayList<>();
+        return newRedisConnection((methodName, args) -> {
+            switch (methodName) {
+                case "scan":
+                    List<byte[]> keys = new ArrayList<>();
+                    for (String key : sourceDumps.keySet()) {
+                        keys.add(key.getBytes(UTF_8));
+                    }
+                    keys.add("c".getBytes(UTF_8));
+                    return newCursor(keys.iterator());
+                case "dump":
+                    results.add(sourceDumps.get(new String((byte[]) args[0], UTF_8)));
+                    return null;
+                case "pTtl":
+                    Long ttl = sourceTtls.get(new String((byte[]) args[0], UTF_8));
+                    results.add(ttl == null ? -2L : ttl);
+                    return null;
+                case "closePipeline":
+                    return results;
+            }
+            return null;
+        });
+    }
+
+    private RedisConnection newTargetConnection() {
+        return newRedisConnection((methodName, args) -> {
+            if ("restore".equals(methodName)) {
+                targetRestores.put(new String((byte[]) args[0], UTF_8), new Object[]{args[1], args[2], args[3]});
+            } else if ("closePipeline".equals(methodName)) {
+                return new ArrayList<>();
+            }
+            return null;
+        });
+    }
+
+    private RedisConnection newRedisConnection(Invocation invocation) {
+        return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisConnection.class},
+                (proxy, method, args) -> invocation.invoke(method.getName(), args));
+    }
+
+    private Cursor<byte[]> newCursor(Iterator<byte[]> keys) {
+        return (Cursor<byte[]>) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{Cursor.class}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hasNext":
+                    return keys.hasNext();
+                case "next":
+                    return keys.next();
+                case "close":
+                    return null;
+            }
+            throw new UnsupportedOperationException(method.getName());
+        });
+    }
+
+    private interface Invocation {
+
+        Object invoke(String methodName, Object[] args);
+    }
+}
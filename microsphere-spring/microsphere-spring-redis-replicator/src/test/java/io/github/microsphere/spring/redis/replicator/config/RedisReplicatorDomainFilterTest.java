@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisHashCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.Method;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RedisReplicatorDomainFilter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisReplicatorDomainFilterTest {
+
+    @Test
+    public void testAcceptsKey() {
+        RedisReplicatorDomainFilter filter = new RedisReplicatorDomainFilter("test", "user:, order:", "user:session:, order:", null, null);
+        assertTrue(filter.acceptsKey(key("user:1")));
+        assertFalse(filter.acceptsKey(key("user:session:1")));
+        // The prefix in both is excluded
+        assertFalse(filter.acceptsKey(key("order:1")));
+        assertFalse(filter.acceptsKey(key("product:1")));
+        assertFalse(filter.acceptsKey(key("")));
+
+        // No include prefix, only the excluded keys are rejected
+        filter = new RedisReplicatorDomainFilter("test", null, "cache:", null, null);
+        assertTrue(filter.acceptsKey(key("user:1")));
+        assertFalse(filter.acceptsKey(key("cache:user:1")));
+    }
+
+    @Test
+    public void testAcceptsCommand() throws Exception {
+        Method set = RedisStringCommands.class.getMethod("set", byte[].class, byte[].class);
+        Method hSet = RedisHashCommands.class.getMethod("hSet", byte[].class, byte[].class, byte[].class);
+        Method del = RedisKeyCommands.class.getMethod("del", byte[][].class);
+
+        RedisReplicatorDomainFilter filter = new RedisReplicatorDomainFilter("test", null, null, "SET, hset", null);
+        assertTrue(filter.acceptsCommand(set));
+        assertTrue(filter.acceptsCommand(hSet));
+        assertFalse(filter.acceptsCommand(del));
+
+        filter = new RedisReplicatorDomainFilter("test", null, null, null, "del");
+        assertTrue(filter.acceptsCommand(set));
+        assertFalse(filter.acceptsCommand(del));
+    }
+
+    @Test
+    public void testIsEmpty() {
+        assertTrue(new RedisReplicatorDomainFilter("test", null, " , ", "", null).isEmpty());
+        assertFalse(new RedisReplicatorDomainFilter("test", "user:", null, null, null).isEmpty());
+        assertFalse(new RedisReplicatorDomainFilter("test", null, null, null, "del").isEmpty());
+    }
+
+    private static byte[] key(String key) {
+        return key.getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.event;
+
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link RedisCommandEventCoalescer} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisCommandEventCoalescerTest {
+
+    private static final byte[] KEY = "key".getBytes();
+
+    private static final byte[] OTHER_KEY = "other-key".getBytes();
+
+    private final List<RedisCommandEvent> events = new ArrayList<>();
+
+    private RedisCommandEventCoalescer coalescer;
+
+    private Method set;
+
+    private Method expire;
+
+    private Method hSet;
+
+    private Method del;
+
+    private Method setWithOption;
+
+    @BeforeEach
+    public void init() throws Exception {
+        set = RedisConnection.class.getMethod("set", byte[].class, byte[].class);
+        setWithOption = RedisConnection.class.getMethod("set", byte[].class, byte[].class, Expiration.class, SetOption.class);
+        expire = RedisConnection.class.getMethod("expire", byte[].class, long.class);
+        hSet = RedisConnection.class.getMethod("hSet", byte[].class, byte[].class, byte[].class);
+        del = RedisConnection.class.getMethod("del", byte[][].class);
+        // The window is long enough, the buffer is flushed manually
+        coalescer = new RedisCommandEventCoalescer(60_000, 100, this::getDomains, events::add);
+    }
+
+    @AfterEach
+    public void destroy() {
+        coalescer.close();
+    }
+
+    @Test
+    public void testCoalesceValue() {
+        publish(set, KEY, "1".getBytes());
+        publish(set, OTHER_KEY, "a".getBytes());
+        publish(set, KEY, "2".getBytes());
+        coalescer.flush();
+        assertEquals(2, events.size());
+        assertArrayEquals("2".getBytes(), (byte[]) events.get(0).getArg(1));
+        assertArrayEquals("a".getBytes(), (byte[]) events.get(1).getArg(1));
+        assertEquals(1, coalescer.getCoalescedCount());
+        assertEquals(2, coalescer.getDeliveredCount());
+    }
+
+    @Test
+    public void testNotCoalesceAcrossOtherCommandOnSameKey() {
+        publish(set, KEY, "1".getBytes());
+        publish(expire, KEY, 10L);
+        publish(set, KEY, "2".getBytes());
+        coalescer.flush();
+        assertEquals(3, events.size());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testNotCoalesceAcrossBarrier() {
+        publish(set, KEY, "1".getBytes());
+        publish(del, (Object) new byte[][]{OTHER_KEY});
+        publish(set, KEY, "2".getBytes());
+        coalescer.flush();
+        assertEquals(3, events.size());
+        assertEquals(del, events.get(1).getMethod());
+    }
+
+    @Test
+    public void testCoalesceHashField() {
+        publish(hSet, KEY, "f1".getBytes(), "1".getBytes());
+        publish(hSet, KEY, "f2".getBytes(), "a".getBytes());
+        publish(hSet, KEY, "f1".getBytes(), "2".getBytes());
+        publish(expire, KEY, 10L);
+        publish(hSet, KEY, "f1".getBytes(), "3".getBytes());
+        coalescer.flush();
+        assertEquals(4, events.size());
+        assertArrayEquals("2".getBytes(), (byte[]) events.get(0).getArg(2));
+        assertEquals(expire, events.get(2).getMethod());
+        assertArrayEquals("3".getBytes(), (byte[]) events.get(3).getArg(2));
+    }
+
+    @Test
+    public void testCoalesceAcrossSourceBeans() {
+        publish("defaultRedisTemplate", set, KEY, "1".getBytes());
+        publish("stringRedisTemplate", set, KEY, "2".getBytes());
+        coalescer.flush();
+        assertEquals(1, events.size());
+        assertArrayEquals("2".getBytes(), (byte[]) events.get(0).getArg(1));
+    }
+
+    @Test
+    public void testNotCoalesceAcrossOtherCommandOfSharedDomain() {
+        // "redisTemplate" : [default, cache], "cacheRedisTemplate" : [cache]
+        publish("redisTemplate", set, KEY, "1".getBytes());
+        publish("cacheRedisTemplate", expire, KEY, 10L);
+        publish("redisTemplate", set, KEY, "2".getBytes());
+        coalescer.flush();
+        assertEquals(3, events.size());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testNotCoalesceKeepTtlIntoSet() {
+        publish(set, KEY, "1".getBytes());
+        publish(setWithOption, KEY, "2".getBytes(), Expiration.keepTtl(), SetOption.UPSERT);
+        coalescer.flush();
+        assertEquals(2, events.size());
+        assertEquals(set, events.get(0).getMethod());
+        assertEquals(setWithOption, events.get(1).getMethod());
+        assertEquals(0, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testCoalesceKeepTtl() {
+        publish(setWithOption, KEY, "1".getBytes(), Expiration.keepTtl(), SetOption.UPSERT);
+        publish(setWithOption, KEY, "2".getBytes(), Expiration.keepTtl(), SetOption.UPSERT);
+        // The plain "SET" resets the expiration, which is not coalesced into the former
+        publish(set, KEY, "3".getBytes());
+        coalescer.flush();
+        assertEquals(2, events.size());
+        assertArrayEquals("2".getBytes(), (byte[]) events.get(0).getArg(1));
+        assertArrayEquals("3".getBytes(), (byte[]) events.get(1).getArg(1));
+        assertEquals(1, coalescer.getCoalescedCount());
+    }
+
+    @Test
+    public void testFlushOnMaxSize() {
+        for (int i = 0; i < 100; i++) {
+            publish(set, String.valueOf(i).getBytes(), KEY);
+        }
+        assertEquals(100, events.size());
+    }
+
+    private List<String> getDomains(RedisCommandEvent event) {
+        switch (event.getSourceBeanName()) {
+            case "redisTemplate":
+                return asList("default", "cache");
+            case "cacheRedisTemplate":
+                return singletonList("cache");
+            default:
+                return singletonList("default");
+        }
+    }
+
+    private void publish(Method method, Object... args) {
+        publish("redisTemplate", method, args);
+    }
+
+    private void publish(String sourceBeanName, Method method, Object... args) {
+        coalescer.publish(RedisCommandEvent.Builder.source(this)
+                .sourceBeanName(sourceBeanName)
+                .method(method)
+                .args(args)
+                .build());
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.ConsumerFactory;
+import org.springframework.kafka.listener.ConcurrentMessageListenerContainer;
+import org.springframework.kafka.listener.ContainerProperties;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * {@link KafkaConsumerConcurrencyController} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KafkaConsumerConcurrencyControllerTest {
+
+    @Test
+    public void testScaleUp() {
+        KafkaConsumerConcurrencyController controller = createController(1);
+        // The lag is above the upper threshold for the consecutive evaluations
+        assertEquals(1, controller.decide(20000, 0, 1, 0));
+        assertEquals(2, controller.decide(20000, 0, 1, 1000));
+        // In the cooldown
+        assertEquals(2, controller.decide(20000, 0, 2, 2000));
+        assertEquals(2, controller.decide(20000, 0, 2, 3000));
+        // The latency is above the upper threshold, bounded by the max concurrency
+        assertEquals(4, controller.decide(0, 6000, 2, 12000));
+        assertEquals(4, controller.decide(20000, 6000, 4, 13000));
+        assertEquals(6, controller.decide(20000, 6000, 4, 23000));
+        assertEquals(6, controller.decide(20000, 6000, 6, 40000));
+    }
+
+    @Test
+    public void testScaleDown() {
+        KafkaConsumerConcurrencyController controller = createController(4);
+        assertEquals(4, controller.decide(0, 0, 4, 0));
+        assertEquals(4, controller.decide(0, 0, 4, 1000));
+        assertEquals(3, controller.decide(0, 0, 4, 2000));
+        // The counter is restarted after the change
+        assertEquals(3, controller.decide(0, 0, 3, 20000));
+        assertEquals(3, controller.decide(0, 0, 3, 21000));
+        assertEquals(2, controller.decide(0, 0, 3, 22000));
+        assertEquals(2, controller.decide(0, 0, 2, 40000));
+        assertEquals(2, controller.decide(0, 0, 2, 41000));
+        // Bounded by the min concurrency
+        assertEquals(2, controller.decide(0, 0, 2, 42000));
+    }
+
+    @Test
+    public void testHysteresis() {
+        KafkaConsumerConcurrencyController controller = createController(2);
+        // The metrics within the band between the thresholds reset the counters
+        assertEquals(2, controller.decide(0, 0, 2, 0));
+        assertEquals(2, controller.decide(0, 0, 2, 1000));
+        assertEquals(2, controller.decide(5000, 0, 2, 2000));
+        assertEquals(2, controller.decide(0, 0, 2, 3000));
+        assertEquals(2, controller.decide(0, 0, 2, 4000));
+        assertEquals(2, controller.decide(20000, 0, 2, 5000));
+        assertEquals(2, controller.decide(0, 2000, 2, 6000));
+        assertEquals(2, controller.decide(20000, 0, 2, 7000));
+        assertEquals(4, controller.decide(20000, 0, 2, 8000));
+    }
+
+    @Test
+    public void testInvalidBounds() {
+        assertThrows(IllegalArgumentException.class, () -> new KafkaConsumerConcurrencyController(createListenerContainer(1),
+                new KafkaConsumerReplicationMetrics(), 4, 2, 10000, 1000, 5000, 1000, 2, 3, 10000));
+    }
+
+    private KafkaConsumerConcurrencyController createController(int concurrency) {
+        return new KafkaConsumerConcurrencyController(createListenerContainer(concurrency), new KafkaConsumerReplicationMetrics(),
+                2, 6, 10000, 1000, 5000, 1000, 2, 3, 10000);
+    }
+
+    private ConcurrentMessageListenerContainer<byte[], byte[]> createListenerContainer(int concurrency) {
+        ConsumerFactory<byte[], byte[]> consumerFactory = null;
+        ConcurrentMessageListenerContainer<byte[], byte[]> listenerContainer =
+                new ConcurrentMessageListenerContainer<>(consumerFactory, new ContainerProperties("test-topic"));
+        listenerContainer.setConcurrency(concurrency);
+        return listenerContainer;
+    }
+}
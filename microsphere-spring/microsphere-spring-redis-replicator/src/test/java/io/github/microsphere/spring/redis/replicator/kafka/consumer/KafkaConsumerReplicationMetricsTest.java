@@ -0,0 +1,134 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.PartitionMetrics;
+import org.apache.kafka.common.Metric;
+import org.apache.kafka.common.MetricName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.CONSUMER_FETCH_MANAGER_METRIC_GROUP;
+import static io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.LATENCY_BUCKET_BOUNDS;
+import static io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.RECORDS_LAG_METRIC_NAME;
+import static io.github.microsphere.spring.redis.replicator.kafka.consumer.KafkaConsumerReplicationMetrics.getLatencyBucket;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * {@link KafkaConsumerReplicationMetrics} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KafkaConsumerReplicationMetricsTest {
+
+    @Test
+    public void testGetLatencyBucket() {
+        assertEquals(0, getLatencyBucket(0));
+        assertEquals(0, getLatencyBucket(1));
+        assertEquals(2, getLatencyBucket(3));
+        assertEquals(9, getLatencyBucket(1000));
+        assertEquals(LATENCY_BUCKET_BOUNDS.length, getLatencyBucket(60001));
+    }
+
+    @Test
+    public void testRecordApplied() {
+        PartitionMetrics metrics = new PartitionMetrics("test", "test-topic", 1, 64);
+        metrics.recordApplied(10, 1000, "source-1", 1, 1003);
+        metrics.recordApplied(12, 1000, "source-1", 3, 1050);
+        metrics.recordApplied(11, 1000, "source-1", 2, 1010);
+
+        assertEquals(3, metrics.getAppliedCount());
+        assertEquals(12, metrics.getLastOffset());
+        assertEquals(10, metrics.getLagTime());
+        long[] histogram = metrics.getLatencyHistogram();
+        assertEquals(LATENCY_BUCKET_BOUNDS.length + 1, histogram.length);
+        assertEquals(1, histogram[2]);
+        assertEquals(1, histogram[3]);
+        assertEquals(1, histogram[5]);
+        assertEquals(0, metrics.getGapCount());
+        assertEquals(0, metrics.getDuplicateCount());
+    }
+
+    @Test
+    public void testGapCount() {
+        PartitionMetrics metrics = new PartitionMetrics("test", "test-topic", 1, 64);
+        metrics.recordApplied(1, 0, "source-1", 1, 0);
+        // The sequences from 2 to 4 are lost
+        metrics.recordApplied(2, 0, "source-1", 5, 0);
+        metrics.recordApplied(3, 0, "source-2", 1, 0);
+        metrics.recordApplied(4, 0, "source-2", 65, 0);
+        assertEquals(0, metrics.getGapCount());
+
+        // The window of "source-1" slides to [37, 100], the sequences from 2 to 4 and 6 to 36 are counted as gaps
+        metrics.recordApplied(5, 0, "source-1", 100, 0);
+        assertEquals(34, metrics.getGapCount());
+
+        // The duplicate
+        metrics.recordApplied(6, 0, "source-2", 65, 0);
+        assertEquals(1, metrics.getDuplicateCount());
+    }
+
+    @Test
+    public void testRecordLag() {
+        PartitionMetrics metrics = new PartitionMetrics("test", "test.topic", 1, 64);
+        Map<MetricName, Metric> kafkaMetrics = new HashMap<>();
+        metrics.recordLag(kafkaMetrics);
+        assertEquals(-1, metrics.getLagRecords());
+
+        Map<String, String> tags = new HashMap<>();
+        tags.put("client-id", "consumer-1");
+        tags.put("topic", "test_topic");
+        tags.put("partition", "1");
+        MetricName metricName = new MetricName(RECORDS_LAG_METRIC_NAME, CONSUMER_FETCH_MANAGER_METRIC_GROUP, "", tags);
+        kafkaMetrics.put(metricName, new TestMetric(metricName, 42.0));
+        metrics.recordLag(kafkaMetrics);
+        assertEquals(42, metrics.getLagRecords());
+
+        kafkaMetrics.put(metricName, new TestMetric(metricName, Double.NaN));
+        metrics.recordLag(kafkaMetrics);
+        assertEquals(42, metrics.getLagRecords());
+    }
+
+    static class TestMetric implements Metric {
+
+        private final MetricName metricName;
+
+        private final double value;
+
+        TestMetric(MetricName metricName, double value) {
+            this.metricName = metricName;
+            this.value = value;
+        }
+
+        @Override
+        public MetricName metricName() {
+            return metricName;
+        }
+
+        public double value() {
+            return value;
+        }
+
+        @Override
+        public Object metricValue() {
+            return value;
+        }
+    }
+}
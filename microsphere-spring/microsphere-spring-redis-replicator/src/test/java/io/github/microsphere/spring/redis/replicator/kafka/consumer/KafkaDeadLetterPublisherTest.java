@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Headers;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.KafkaHeaders;
+
+import java.nio.ByteBuffer;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * {@link KafkaDeadLetterPublisher} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KafkaDeadLetterPublisherTest {
+
+    @Test
+    public void testCreateDeadLetterRecord() {
+        byte[] key = "key".getBytes(UTF_8);
+        byte[] value = "value".getBytes(UTF_8);
+        ConsumerRecord<byte[], byte[]> consumerRecord = new ConsumerRecord<>("test-topic", 3, 100L, key, value);
+        Throwable failure = new IllegalStateException(new IllegalArgumentException("poison"));
+
+        ProducerRecord<byte[], byte[]> producerRecord = KafkaDeadLetterPublisher.createDeadLetterRecord("test-topic.DLT", consumerRecord, failure);
+
+        assertEquals("test-topic.DLT", producerRecord.topic());
+        assertNull(producerRecord.partition());
+        assertArrayEquals(key, producerRecord.key());
+        assertArrayEquals(value, producerRecord.value());
+
+        Headers headers = producerRecord.headers();
+        assertEquals(IllegalArgumentException.class.getName(), new String(headers.lastHeader(KafkaHeaders.DLT_EXCEPTION_FQCN).value(), UTF_8));
+        assertEquals("poison", new String(headers.lastHeader(KafkaHeaders.DLT_EXCEPTION_MESSAGE).value(), UTF_8));
+        assertEquals("test-topic", new String(headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_TOPIC).value(), UTF_8));
+        assertEquals(3, ByteBuffer.wrap(headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_PARTITION).value()).getInt());
+        assertEquals(100L, ByteBuffer.wrap(headers.lastHeader(KafkaHeaders.DLT_ORIGINAL_OFFSET).value()).getLong());
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.consumer;
+
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static io.github.microsphere.spring.redis.metadata.RedisMetadataRepository.findMethodIndex;
+import static io.github.microsphere.spring.redis.replicator.kafka.KafkaRedisReplicatorConfiguration.METHOD_ID_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KafkaRecordsApplyWorkers} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KafkaRecordsApplyWorkersTest {
+
+    private static final Method SET_METHOD = getMethod(RedisStringCommands.class, "set", byte[].class, byte[].class);
+
+    private static final Method RENAME_METHOD = getMethod(RedisKeyCommands.class, "rename", byte[].class, byte[].class);
+
+    private static final Method DEL_METHOD = getMethod(RedisKeyCommands.class, "del", byte[][].class);
+
+    private static final Method MSET_METHOD = getMethod(RedisStringCommands.class, "mSet", Map.class);
+
+    @Test
+    public void testIsBarrier() {
+        assertFalse(KafkaRecordsApplyWorkers.isBarrier(createRecord(0, "k1", SET_METHOD)));
+        assertFalse(KafkaRecordsApplyWorkers.isBarrier(createRecord(0, "k1", null)));
+        assertTrue(KafkaRecordsApplyWorkers.isBarrier(createRecord(0, "k1", RENAME_METHOD)));
+        assertTrue(KafkaRecordsApplyWorkers.isBarrier(createRecord(0, null, DEL_METHOD)));
+        assertTrue(KafkaRecordsApplyWorkers.isBarrier(createRecord(0, null, MSET_METHOD)));
+    }
+
+    @Test
+    public void testApplyInOrderAcrossMultiKeyCommands() {
+        List<ConsumerRecord<byte[], byte[]>> data = new ArrayList<>();
+        long offset = 0;
+        for (int i = 0; i < 16; i++) {
+            data.add(createRecord(offset++, "k" + i, SET_METHOD));
+        }
+        long delOffset = offset++;
+        data.add(createRecord(delOffset, null, DEL_METHOD));
+        long msetOffset = offset++;
+        data.add(createRecord(msetOffset, null, MSET_METHOD));
+        for (int i = 0; i < 16; i++) {
+            data.add(createRecord(offset++, "k" + i, SET_METHOD));
+        }
+        long renameOffset = offset++;
+        data.add(createRecord(renameOffset, "k1", RENAME_METHOD));
+        for (int i = 0; i < 16; i++) {
+            data.add(createRecord(offset++, "k" + i, SET_METHOD));
+        }
+
+        List<Long> appliedOffsets = Collections.synchronizedList(new ArrayList<>());
+        List<List<ConsumerRecord<byte[], byte[]>>> barrierShares = Collections.synchronizedList(new ArrayList<>());
+        KafkaRecordsApplyWorkers workers = new KafkaRecordsApplyWorkers(4);
+        try {
+            workers.apply(data, share -> {
+                if (KafkaRecordsApplyWorkers.isBarrier(share.get(0))) {
+                    barrierShares.add(share);
+                }
+                for (ConsumerRecord<byte[], byte[]> consumerRecord : share) {
+                    appliedOffsets.add(consumerRecord.offset());
+                }
+            });
+        } finally {
+            workers.shutdown();
+        }
+
+        assertEquals(data.size(), appliedOffsets.size());
+        assertBarrier(appliedOffsets, delOffset);
+        assertBarrier(appliedOffsets, msetOffset);
+        assertBarrier(appliedOffsets, renameOffset);
+
+        assertEquals(2, barrierShares.size());
+        assertEquals(2, barrierShares.get(0).size());
+        assertEquals(delOffset, barrierShares.get(0).get(0).offset());
+        assertEquals(msetOffset, barrierShares.get(0).get(1).offset());
+        assertEquals(1, barrierShares.get(1).size());
+        assertEquals(renameOffset, barrierShares.get(1).get(0).offset());
+    }
+
+    @Test
+    public void testApplyOnFailure() {
+        List<ConsumerRecord<byte[], byte[]>> data = new ArrayList<>();
+        data.add(createRecord(0, "k1", SET_METHOD));
+        data.add(createRecord(1, null, DEL_METHOD));
+        data.add(createRecord(2, "k1", SET_METHOD));
+
+        List<Long> appliedOffsets = Collections.synchronizedList(new ArrayList<>());
+        KafkaRecordsApplyWorkers workers = new KafkaRecordsApplyWorkers(2);
+        try {
+            assertThrows(IllegalStateException.class, () -> workers.apply(data, share -> {
+                if (share.get(0).offset() == 0) {
+                    throw new IllegalArgumentException("poison");
+                }
+                share.forEach(consumerRecord -> appliedOffsets.add(consumerRecord.offset()));
+            }));
+        } finally {
+            workers.shutdown();
+        }
+        // The barrier and the following records must not be applied after the preceding failure
+        assertTrue(appliedOffsets.isEmpty());
+    }
+
+    private static void assertBarrier(List<Long> appliedOffsets, long barrierOffset) {
+        int barrierIndex = appliedOffsets.indexOf(barrierOffset);
+        for (int i = 0; i < appliedOffsets.size(); i++) {
+            long appliedOffset = appliedOffsets.get(i);
+            if (appliedOffset < barrierOffset) {
+                assertTrue(i < barrierIndex, "The offset " + appliedOffset + " is applied after the barrier " + barrierOffset);
+            } else if (appliedOffset > barrierOffset) {
+                assertTrue(i > barrierIndex, "The offset " + appliedOffset + " is applied before the barrier " + barrierOffset);
+            }
+        }
+    }
+
+    private static ConsumerRecord<byte[], byte[]> createRecord(long offset, String key, Method method) {
+        byte[] keyBytes = key == null ? null : key.getBytes(UTF_8);
+        ConsumerRecord<byte[], byte[]> consumerRecord = new ConsumerRecord<>("test-topic", 0, offset, keyBytes, new byte[0]);
+        if (method != null) {
+            short methodIndex = findMethodIndex(method);
+            consumerRecord.headers().add(METHOD_ID_HEADER_NAME, ByteBuffer.allocate(Short.BYTES).putShort(methodIndex).array());
+        }
+        return consumerRecord;
+    }
+
+    private static Method getMethod(Class<?> type, String name, Class<?>... parameterTypes) {
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
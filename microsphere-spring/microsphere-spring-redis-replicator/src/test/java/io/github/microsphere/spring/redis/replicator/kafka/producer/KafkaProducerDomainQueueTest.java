@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.producer;
+
+import io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue.Message;
+import io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue.SpillFile;
+import io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue.MessageResolver;
+import io.github.microsphere.spring.redis.replicator.kafka.producer.KafkaProducerDomainQueue.SpillFileLockedException;
+import io.github.microsphere.spring.redis.replicator.transport.OverflowPolicy;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.internals.RecordHeader;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.util.concurrent.ListenableFuture;
+import org.springframework.util.concurrent.SettableListenableFuture;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link KafkaProducerDomainQueue} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KafkaProducerDomainQueueTest {
+
+    private static final Header[] NO_HEADERS = new Header[0];
+
+    @TempDir
+    File temporaryFolder;
+
+    private final List<ProducerRecord<byte[], byte[]>> sentRecords = Collections.synchronizedList(new ArrayList<>());
+
+    @Test
+    public void testSendAfterPartitionsKnown() throws Exception {
+        CountDownLatch partitionsKnown = new CountDownLatch(1);
+        KafkaProducerDomainQueue domainQueue = newDomainQueue((topic, message) -> {
+            partitionsKnown.await();
+            return new ProducerRecord<>(topic, message.getValue()[0] % 2, message.getTimestamp(), message.getKey(), message.getValue());
+        });
+        try {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(domainQueue.enqueue(null, new byte[]{(byte) i}, i, NO_HEADERS, null));
+            }
+            // The messages are buffered until the partitions of topic are known
+            Thread.sleep(50);
+            assertTrue(sentRecords.isEmpty());
+            partitionsKnown.countDown();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (domainQueue.getSuccessCount() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            domainQueue.close(1000);
+        }
+        assertEquals(4, sentRecords.size());
+        for (int i = 0; i < 4; i++) {
+            ProducerRecord<byte[], byte[]> sentRecord = sentRecords.get(i);
+            assertEquals(i, sentRecord.value()[0]);
+            assertEquals(i % 2, sentRecord.partition());
+        }
+    }
+
+    @Test
+    public void testCloseWhileResolving() throws Exception {
+        CountDownLatch resolving = new CountDownLatch(1);
+        KafkaProducerDomainQueue domainQueue = newDomainQueue((topic, message) -> {
+            resolving.countDown();
+            // The partitions of topic are never known
+            new CountDownLatch(1).await();
+            return null;
+        });
+        assertTrue(domainQueue.enqueue(null, new byte[]{1}, 1, NO_HEADERS, null));
+        resolving.await();
+        // The waiting sender is interrupted
+        domainQueue.close(10);
+        assertEquals(1, domainQueue.getFailureCount());
+        assertTrue(sentRecords.isEmpty());
+    }
+
+    private KafkaProducerDomainQueue newDomainQueue(MessageResolver messageResolver) throws Exception {
+        KafkaTemplate<byte[], byte[]> kafkaTemplate = new KafkaTemplate<byte[], byte[]>(new DefaultKafkaProducerFactory<>(Collections.emptyMap())) {
+            @Override
+            public ListenableFuture<SendResult<byte[], byte[]>> send(ProducerRecord<byte[], byte[]> record) {
+                sentRecords.add(record);
+                SettableListenableFuture<SendResult<byte[], byte[]>> future = new SettableListenableFuture<>();
+                future.set(new SendResult<>(record, null));
+                return future;
+            }
+        };
+        return new KafkaProducerDomainQueue("default", "topic", kafkaTemplate, messageResolver, 16, OverflowPolicy.BLOCK,
+                100, temporaryFolder);
+    }
+
+    @Test
+    public void testSpillFile() throws Exception {
+        File file = new File(temporaryFolder, "test.spill");
+        SpillFile spillFile = new SpillFile(file);
+        assertTrue(spillFile.isEmpty());
+        for (int i = 0; i < 5; i++) {
+            spillFile.write(new Message(new byte[]{1}, new byte[]{(byte) i}, i));
+        }
+        assertEquals(5, spillFile.getCount());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(5 - i, spillFile.getCount());
+            spillFile.read();
+        }
+        assertNull(spillFile.read());
+        assertTrue(spillFile.isEmpty());
+        assertEquals(0, file.length());
+        spillFile.close();
+    }
+
+    @Test
+    public void testSpillHeaders() throws Exception {
+        File file = new File(temporaryFolder, "headers.spill");
+        SpillFile spillFile = new SpillFile(file);
+        Header[] headers = new Header[]{new RecordHeader("h1", new byte[]{1, 2}), new RecordHeader("h2", new byte[0])};
+        spillFile.write(new Message(null, new byte[]{1}, 1, headers, null));
+        spillFile.close();
+
+        spillFile = new SpillFile(file);
+        assertEquals(1, spillFile.getCount());
+        Message message = spillFile.read();
+        assertEquals(2, message.getHeaders().length);
+        assertEquals("h1", message.getHeaders()[0].key());
+        assertArrayEquals(new byte[]{1, 2}, message.getHeaders()[0].value());
+        assertEquals("h2", message.getHeaders()[1].key());
+        assertArrayEquals(new byte[0], message.getHeaders()[1].value());
+        spillFile.close();
+    }
+
+    @Test
+    public void testRecover() throws Exception {
+        File file = new File(temporaryFolder, "recover.spill");
+        SpillFile spillFile = new SpillFile(file);
+        for (int i = 0; i < 5; i++) {
+            spillFile.write(new Message(null, new byte[]{(byte) i}, i));
+        }
+        spillFile.close();
+
+        // The incomplete record at the tail
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.setLength(randomAccessFile.length() - 3);
+        }
+
+        spillFile = new SpillFile(file);
+        assertEquals(4, spillFile.getCount());
+        int count = 0;
+        while (spillFile.read() != null) {
+            count++;
+        }
+        assertEquals(4, count);
+        spillFile.close();
+    }
+
+    @Test
+    public void testSkipCorruptedRecord() throws Exception {
+        File file = new File(temporaryFolder, "corrupted.spill");
+        SpillFile spillFile = new SpillFile(file);
+        for (int i = 0; i < 3; i++) {
+            spillFile.write(new Message(null, new byte[]{(byte) i}, i));
+        }
+        long recordLength = file.length() / 3;
+        spillFile.close();
+
+        // The value of the second record
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+            randomAccessFile.seek(recordLength + SpillFile.FRAME_HEADER_LENGTH + 8);
+            randomAccessFile.write(9);
+        }
+
+        spillFile = new SpillFile(file);
+        assertEquals(3, spillFile.getCount());
+        assertEquals(0, spillFile.read().getValue()[0]);
+        // The corrupted record is skipped, the following one is read
+        assertEquals(2, spillFile.read().getValue()[0]);
+        assertNull(spillFile.read());
+        assertTrue(spillFile.isEmpty());
+        spillFile.close();
+    }
+
+    @Test
+    public void testSpillFileLocked() throws Exception {
+        File file = new File(temporaryFolder, "locked.spill");
+        SpillFile spillFile = new SpillFile(file);
+        assertThrows(SpillFileLockedException.class, () -> new SpillFile(file));
+        spillFile.close();
+    }
+
+    @Test
+    public void testOpenSpillFile() throws Exception {
+        File directory = temporaryFolder;
+        SpillFile spillFile = SpillFile.open(directory, "topic");
+        spillFile.write(new Message(null, new byte[]{1}, 1));
+        // The locked spill file is skipped
+        SpillFile anotherSpillFile = SpillFile.open(directory, "topic");
+        assertTrue(anotherSpillFile.isEmpty());
+        assertTrue(new File(directory, "topic.spill").exists());
+        assertTrue(new File(directory, "topic-1.spill").exists());
+        anotherSpillFile.close();
+        spillFile.close();
+
+        // The unlocked spill file is recovered
+        spillFile = SpillFile.open(directory, "topic");
+        assertEquals(1, spillFile.getCount());
+        spillFile.close();
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.kafka.producer;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RedisKeyHashKafkaPartitionStrategy} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisKeyHashKafkaPartitionStrategyTest {
+
+    private final KafkaPartitionStrategy strategy = RedisKeyHashKafkaPartitionStrategy.INSTANCE;
+
+    @Test
+    public void testGetPartition() {
+        int partitions = 16;
+        for (int i = 0; i < 100; i++) {
+            Integer partition = strategy.getPartition("topic", bytes("key-" + i), null, partitions);
+            assertTrue(partition >= 0 && partition < partitions);
+            assertEquals(partition, strategy.getPartition("topic", bytes("key-" + i), null, partitions));
+        }
+        assertNull(strategy.getPartition("topic", null, null, partitions));
+        assertNull(strategy.getPartition("topic", bytes("key"), null, 0));
+    }
+
+    @Test
+    public void testHashTag() {
+        int partitions = 7;
+        Integer partition = strategy.getPartition("topic", bytes("user"), null, partitions);
+        assertEquals(partition, strategy.getPartition("topic", bytes("{user}:1"), null, partitions));
+        assertEquals(partition, strategy.getPartition("topic", bytes("{user}:session:2"), null, partitions));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
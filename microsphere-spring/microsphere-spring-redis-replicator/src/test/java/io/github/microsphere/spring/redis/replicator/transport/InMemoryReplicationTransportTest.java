@@ -0,0 +1,112 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link InMemoryReplicationTransport} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class InMemoryReplicationTransportTest {
+
+    @Test
+    public void testPublishAndPoll() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        assertTrue(transport.poll("default", 10, 0).isEmpty());
+
+        transport.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3)));
+        List<ReplicationRecord> records = transport.poll("default", 2, 0);
+        assertEquals(2, records.size());
+        assertArrayEquals("a".getBytes(UTF_8), records.get(0).getValue());
+        assertEquals("0", records.get(0).getPosition());
+        assertEquals(2, records.get(1).getLongHeader(SEQUENCE_HEADER_NAME));
+
+        records = transport.poll("default", 2, 0);
+        assertEquals(1, records.size());
+        assertEquals("2", records.get(0).getPosition());
+        assertTrue(transport.poll("other", 10, 0).isEmpty());
+    }
+
+    @Test
+    public void testCommit() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        transport.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3)));
+        List<ReplicationRecord> records = transport.poll("default", 2, 0);
+        transport.commit("default", records.get(1).getPosition());
+        assertEquals(1, transport.getPendingCount("default"));
+
+        records = transport.poll("default", 10, 0);
+        assertEquals(1, records.size());
+        assertEquals("2", records.get(0).getPosition());
+        transport.commit("default", "2");
+        assertEquals(0, transport.getPendingCount("default"));
+    }
+
+    @Test
+    public void testSeekToEnd() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+        transport.seekToEnd("default");
+        assertEquals(0, transport.getPendingCount("default"));
+        assertTrue(transport.poll("default", 10, 0).isEmpty());
+
+        transport.publish("default", Collections.singletonList(record("c", 3)));
+        List<ReplicationRecord> records = transport.poll("default", 10, 0);
+        assertEquals(1, records.size());
+        assertEquals("2", records.get(0).getPosition());
+    }
+
+    @Test
+    public void testPollWithTimeout() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        CountDownLatch latch = new CountDownLatch(1);
+        Thread producer = new Thread(() -> {
+            try {
+                latch.await();
+                transport.publish("default", Collections.singletonList(record("a", 1)));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        latch.countDown();
+        List<ReplicationRecord> records = transport.poll("default", 10, 10000);
+        assertEquals(1, records.size());
+        producer.join();
+    }
+
+    static ReplicationRecord record(String value, long sequence) {
+        return new ReplicationRecord(value.getBytes(UTF_8), value.getBytes(UTF_8),
+                Collections.singletonMap(SEQUENCE_HEADER_NAME, ByteBuffer.allocate(Long.BYTES).putLong(sequence).array()),
+                System.currentTimeMillis());
+    }
+}
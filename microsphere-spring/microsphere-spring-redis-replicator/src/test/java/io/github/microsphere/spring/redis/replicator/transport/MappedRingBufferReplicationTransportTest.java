@@ -0,0 +1,267 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.microsphere.spring.redis.replicator.transport.InMemoryReplicationTransportTest.record;
+import static io.github.microsphere.spring.redis.replicator.transport.MappedRingBufferReplicationTransport.WRITE_SEQUENCE_OFFSET;
+import static io.github.microsphere.spring.redis.replicator.transport.MappedRingBufferReplicationTransport.align;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.SegmentedFileReplicationTransport.encode;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * {@link MappedRingBufferReplicationTransport} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class MappedRingBufferReplicationTransportTest {
+
+    @Test
+    public void testAlign() {
+        assertEquals(0, align(0));
+        assertEquals(8, align(1));
+        assertEquals(8, align(8));
+        assertEquals(16, align(9));
+    }
+
+    @Test
+    public void testPublishAndPoll() throws Exception {
+        File directory = createDirectory();
+        try (MappedRingBufferReplicationTransport producer = new MappedRingBufferReplicationTransport(directory, 4096, 10, 100, false);
+             MappedRingBufferReplicationTransport consumer = new MappedRingBufferReplicationTransport(directory, 4096, 10, 100, false)) {
+            assertTrue(consumer.poll("default", 10, 0).isEmpty());
+            producer.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3)));
+
+            List<ReplicationRecord> records = consumer.poll("default", 2, 0);
+            assertEquals(2, records.size());
+            assertArrayEquals("a".getBytes(UTF_8), records.get(0).getKey());
+            assertEquals(1, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            assertEquals(2, records.get(1).getLongHeader(SEQUENCE_HEADER_NAME));
+
+            records = consumer.poll("default", 10, 5);
+            assertEquals(1, records.size());
+            assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            assertTrue(consumer.poll("default", 10, 1).isEmpty());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testWrapAround() throws Exception {
+        File directory = createDirectory();
+        int frameSize = align(encode(Collections.singletonList(record("a", 1))).remaining());
+        // The ring holds 2 frames and a half, thus the third frame is wrapped with a padding
+        int capacity = frameSize * 2 + frameSize / 2;
+        try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, capacity, 10, 10, false)) {
+            long sequence = 0;
+            for (int round = 0; round < 5; round++) {
+                transport.publish("default", Arrays.asList(record("a", ++sequence), record("b", ++sequence)));
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(2, records.size());
+                assertEquals(sequence - 1, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+                assertEquals(sequence, records.get(1).getLongHeader(SEQUENCE_HEADER_NAME));
+                transport.commit("default", records.get(1).getPosition());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testStaleFrameOfPreviousLap() throws Exception {
+        File directory = createDirectory();
+        int frameSize = align(encode(Collections.singletonList(record("a", 1))).remaining());
+        try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, frameSize * 2, 10, 10, false)) {
+            transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+            List<ReplicationRecord> records = transport.poll("default", 10, 0);
+            assertEquals(2, records.size());
+            transport.commit("default", records.get(1).getPosition());
+
+            // The write sequence of the next lap is visible before its frame, the slot still holds the frame "a"
+            setWriteSequence(directory, frameSize * 3);
+            assertTrue(transport.poll("default", 10, 0).isEmpty());
+
+            setWriteSequence(directory, frameSize * 2);
+            transport.publish("default", Collections.singletonList(record("c", 3)));
+            records = transport.poll("default", 10, 0);
+            assertEquals(1, records.size());
+            assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testStalePaddingOfPreviousLap() throws Exception {
+        File directory = createDirectory();
+        int frameSize = align(encode(Collections.singletonList(record("a", 1))).remaining());
+        // The ring holds 2 frames and a half, thus the padding is at the end of each lap
+        int capacity = align(frameSize * 2 + frameSize / 2);
+        try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, capacity, 10, 10, false)) {
+            long sequence = 0;
+            // "a" and "b" of the first lap, "c" after the padding and "d" of the second lap
+            for (int i = 0; i < 2; i++) {
+                transport.publish("default", Arrays.asList(record("a", ++sequence), record("b", ++sequence)));
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(2, records.size());
+                transport.commit("default", records.get(1).getPosition());
+            }
+            long writeSequence = capacity + frameSize * 2;
+
+            // The padding of the first lap is stale, the next frame is not visible
+            setWriteSequence(directory, writeSequence + capacity - frameSize * 2 + frameSize);
+            assertTrue(transport.poll("default", 10, 0).isEmpty());
+
+            setWriteSequence(directory, writeSequence);
+            transport.publish("default", Collections.singletonList(record("e", ++sequence)));
+            List<ReplicationRecord> records = transport.poll("default", 10, 0);
+            assertEquals(1, records.size());
+            assertEquals(sequence, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testExclusiveProducerAndConsumer() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (MappedRingBufferReplicationTransport producer = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false);
+                 MappedRingBufferReplicationTransport consumer = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false)) {
+                producer.publish("default", Collections.singletonList(record("a", 1)));
+                assertEquals(1, consumer.poll("default", 10, 0).size());
+                try (MappedRingBufferReplicationTransport other = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false)) {
+                    assertThrows(IOException.class, () -> other.publish("default", Collections.singletonList(record("b", 2))));
+                    assertThrows(IOException.class, () -> other.poll("default", 10, 0));
+                    assertThrows(IOException.class, () -> other.commit("default", "0"));
+                }
+            }
+            // The locks are released after closing
+            try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false)) {
+                transport.publish("default", Collections.singletonList(record("b", 2)));
+                assertEquals(2, transport.poll("default", 10, 0).size());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testFull() throws Exception {
+        File directory = createDirectory();
+        int frameSize = align(encode(Collections.singletonList(record("a", 1))).remaining());
+        try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, frameSize * 2, 10, 10, false)) {
+            transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+            try {
+                transport.publish("default", Collections.singletonList(record("c", 3)));
+                fail("The ring is full");
+            } catch (IOException e) {
+                // The records before the full ring are published
+                assertEquals(2, transport.poll("default", 10, 0).size());
+            }
+            // The first record is applied
+            transport.commit("default", String.valueOf(frameSize));
+            transport.publish("default", Collections.singletonList(record("c", 3)));
+            List<ReplicationRecord> records = transport.poll("default", 10, 0);
+            assertEquals(1, records.size());
+            assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testCommitAndResume() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false)) {
+                transport.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3)));
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(3, records.size());
+                // The last record is not applied before the crash
+                transport.commit("default", records.get(1).getPosition());
+            }
+            // The capacity of the existing ring is kept
+            try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, 8192, 10, 10, false)) {
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(1, records.size());
+                assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+                assertEquals(4096 + MappedRingBufferReplicationTransport.HEADER_SIZE, new File(directory, "default.ring").length());
+                transport.publish("default", Collections.singletonList(record("d", 4)));
+                records = transport.poll("default", 10, 0);
+                assertEquals(1, records.size());
+                assertEquals(4, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testSeekToEnd() throws Exception {
+        File directory = createDirectory();
+        try (MappedRingBufferReplicationTransport transport = new MappedRingBufferReplicationTransport(directory, 4096, 10, 10, false)) {
+            transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+            transport.seekToEnd("default");
+            assertTrue(transport.poll("default", 10, 0).isEmpty());
+            transport.publish("default", Collections.singletonList(record("c", 3)));
+            List<ReplicationRecord> records = transport.poll("default", 10, 0);
+            assertEquals(1, records.size());
+            assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private void setWriteSequence(File directory, long writeSequence) throws IOException {
+        try (RandomAccessFile ringFile = new RandomAccessFile(new File(directory, "default.ring"), "rw")) {
+            ringFile.seek(WRITE_SEQUENCE_OFFSET);
+            ringFile.writeLong(writeSequence);
+        }
+    }
+
+    private File createDirectory() throws IOException {
+        return Files.createTempDirectory("redis-replicator-mmap").toFile();
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
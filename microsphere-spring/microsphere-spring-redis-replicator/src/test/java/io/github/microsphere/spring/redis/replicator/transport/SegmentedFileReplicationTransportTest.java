@@ -0,0 +1,215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static io.github.microsphere.spring.redis.replicator.transport.InMemoryReplicationTransportTest.record;
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static io.github.microsphere.spring.redis.replicator.transport.SegmentedFileReplicationTransport.getSegmentFile;
+import static io.github.microsphere.spring.redis.replicator.transport.SegmentedFileReplicationTransport.listSegmentBaseOffsets;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SegmentedFileReplicationTransport} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class SegmentedFileReplicationTransportTest {
+
+    @Test
+    public void testPublishAndPoll() throws Exception {
+        File directory = createDirectory();
+        try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+            assertTrue(transport.poll("default", 10, 0).isEmpty());
+            ReplicationRecord keyless = new ReplicationRecord(null, "d".getBytes(UTF_8), Collections.emptyMap(), 100L);
+            transport.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3), keyless));
+
+            List<ReplicationRecord> records = transport.poll("default", 2, 0);
+            assertEquals(2, records.size());
+            assertArrayEquals("a".getBytes(UTF_8), records.get(0).getKey());
+            assertArrayEquals("a".getBytes(UTF_8), records.get(0).getValue());
+            assertEquals(1, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            assertEquals(2, records.get(1).getLongHeader(SEQUENCE_HEADER_NAME));
+
+            records = transport.poll("default", 10, 0);
+            assertEquals(2, records.size());
+            assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            ReplicationRecord record = records.get(1);
+            assertNull(record.getKey());
+            assertArrayEquals("d".getBytes(UTF_8), record.getValue());
+            assertEquals(100L, record.getTimestamp());
+            assertTrue(record.getHeaders().isEmpty());
+            assertTrue(transport.poll("default", 10, 5).isEmpty());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testCommitAndResume() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                transport.publish("default", Arrays.asList(record("a", 1), record("b", 2), record("c", 3)));
+                List<ReplicationRecord> records = transport.poll("default", 2, 0);
+                transport.commit("default", records.get(1).getPosition());
+            }
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(1, records.size());
+                assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testSeekToEnd() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+                assertEquals(1, transport.poll("default", 1, 0).size());
+                transport.seekToEnd("default");
+                assertTrue(transport.poll("default", 10, 0).isEmpty());
+                transport.publish("default", Collections.singletonList(record("c", 3)));
+            }
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(1, records.size());
+                assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testExclusiveProducerAndConsumer() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (SegmentedFileReplicationTransport producer = new SegmentedFileReplicationTransport(directory, 1024, false, 1);
+                 SegmentedFileReplicationTransport consumer = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                producer.publish("default", Collections.singletonList(record("a", 1)));
+                assertEquals(1, consumer.poll("default", 10, 0).size());
+                try (SegmentedFileReplicationTransport other = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                    assertThrows(IOException.class, () -> other.publish("default", Collections.singletonList(record("b", 2))));
+                    assertThrows(IOException.class, () -> other.poll("default", 10, 0));
+                    // The other domains are not locked
+                    other.publish("other", Collections.singletonList(record("b", 2)));
+                }
+            }
+            // The locks are released after closing
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                transport.publish("default", Collections.singletonList(record("c", 3)));
+                assertEquals(2, transport.poll("default", 10, 0).size());
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testRollAndRetention() throws Exception {
+        File directory = createDirectory();
+        try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 100, false, 1)) {
+            for (int i = 1; i <= 10; i++) {
+                transport.publish("default", Collections.singletonList(record("value-" + i, i)));
+            }
+            File domainDirectory = new File(directory, "default");
+            assertEquals(10, listSegmentBaseOffsets(domainDirectory).size());
+
+            List<ReplicationRecord> records = new ArrayList<>();
+            List<ReplicationRecord> polledRecords;
+            while (!(polledRecords = transport.poll("default", 3, 0)).isEmpty()) {
+                records.addAll(polledRecords);
+            }
+            assertEquals(10, records.size());
+            for (int i = 0; i < 10; i++) {
+                assertEquals(i + 1, records.get(i).getLongHeader(SEQUENCE_HEADER_NAME));
+            }
+
+            transport.commit("default", records.get(9).getPosition());
+            assertEquals(1, listSegmentBaseOffsets(domainDirectory).size());
+        } finally {
+            delete(directory);
+        }
+    }
+
+    @Test
+    public void testIncompleteFrame() throws Exception {
+        File directory = createDirectory();
+        try {
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                transport.publish("default", Arrays.asList(record("a", 1), record("b", 2)));
+            }
+            // The frame written partially before the crash
+            File segmentFile = getSegmentFile(new File(directory, "default"), 0);
+            long size = segmentFile.length();
+            try (RandomAccessFile file = new RandomAccessFile(segmentFile, "rw")) {
+                file.seek(size);
+                file.writeInt(64);
+                file.writeInt(0);
+                file.write(new byte[10]);
+            }
+            try (SegmentedFileReplicationTransport transport = new SegmentedFileReplicationTransport(directory, 1024, false, 1)) {
+                assertEquals(2, transport.poll("default", 10, 0).size());
+                assertTrue(transport.poll("default", 10, 0).isEmpty());
+
+                transport.publish("default", Collections.singletonList(record("c", 3)));
+                // The incomplete frame is truncated before appending
+                assertEquals(size + size / 2, segmentFile.length());
+                List<ReplicationRecord> records = transport.poll("default", 10, 0);
+                assertEquals(1, records.size());
+                assertEquals(3, records.get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    private File createDirectory() throws IOException {
+        return Files.createTempDirectory("redis-replicator-transport").toFile();
+    }
+
+    private void delete(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files) {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+}
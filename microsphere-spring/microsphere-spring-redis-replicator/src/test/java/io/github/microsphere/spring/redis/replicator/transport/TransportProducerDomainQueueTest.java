@@ -0,0 +1,122 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.transport;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.util.backoff.FixedBackOff;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.microsphere.spring.redis.replicator.transport.ReplicationRecord.SEQUENCE_HEADER_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link TransportProducerDomainQueue} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class TransportProducerDomainQueueTest {
+
+    @Test
+    public void testPublishInOrderWithSequences() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        TransportProducerDomainQueue domainQueue = new TransportProducerDomainQueue("default", transport, 100, 3, OverflowPolicy.BLOCK, 100, new FixedBackOff(10, FixedBackOff.UNLIMITED_ATTEMPTS));
+        for (int i = 0; i < 10; i++) {
+            assertTrue(domainQueue.enqueue(record(String.valueOf(i))));
+        }
+        domainQueue.close(5000);
+
+        List<ReplicationRecord> records = transport.poll("default", 100, 0);
+        assertEquals(10, records.size());
+        for (int i = 0; i < 10; i++) {
+            ReplicationRecord record = records.get(i);
+            assertArrayEquals(String.valueOf(i).getBytes(UTF_8), record.getValue());
+            assertEquals(i + 1, record.getLongHeader(SEQUENCE_HEADER_NAME));
+        }
+        assertEquals(10, domainQueue.getEnqueuedCount());
+        assertEquals(10, domainQueue.getSuccessCount());
+        assertEquals(0, domainQueue.getDepth());
+    }
+
+    @Test
+    public void testSharedRecordOfDomains() throws Exception {
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport();
+        TransportProducerDomainQueue defaultQueue = new TransportProducerDomainQueue("default", transport, 100, 10, OverflowPolicy.BLOCK, 100, new FixedBackOff(10, FixedBackOff.UNLIMITED_ATTEMPTS));
+        TransportProducerDomainQueue otherQueue = new TransportProducerDomainQueue("other", transport, 100, 10, OverflowPolicy.BLOCK, 100, new FixedBackOff(10, FixedBackOff.UNLIMITED_ATTEMPTS));
+        ReplicationRecord record = record("a");
+        // The sequences of domains are independent
+        defaultQueue.enqueue(record("b"));
+        defaultQueue.enqueue(record);
+        otherQueue.enqueue(record);
+        defaultQueue.close(5000);
+        otherQueue.close(5000);
+
+        assertEquals(2, transport.poll("default", 10, 0).get(1).getLongHeader(SEQUENCE_HEADER_NAME));
+        assertEquals(1, transport.poll("other", 10, 0).get(0).getLongHeader(SEQUENCE_HEADER_NAME));
+        assertEquals(-1, record.getLongHeader(SEQUENCE_HEADER_NAME));
+    }
+
+    @Test
+    public void testRetryFailedBatch() throws Exception {
+        AtomicInteger failures = new AtomicInteger(3);
+        InMemoryReplicationTransport transport = new InMemoryReplicationTransport() {
+            @Override
+            public void publish(String domain, List<ReplicationRecord> records) {
+                if (failures.getAndDecrement() > 0) {
+                    throw new IllegalStateException(new IOException("unavailable"));
+                }
+                super.publish(domain, records);
+            }
+        };
+        TransportProducerDomainQueue domainQueue = new TransportProducerDomainQueue("default", transport, 100, 10, OverflowPolicy.BLOCK, 100, new FixedBackOff(10, FixedBackOff.UNLIMITED_ATTEMPTS));
+        for (int i = 0; i < 5; i++) {
+            assertTrue(domainQueue.enqueue(record(String.valueOf(i))));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (domainQueue.getSuccessCount() < 5 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        domainQueue.close(5000);
+
+        // The sequences of the retried batch are not skipped
+        List<ReplicationRecord> records = transport.poll("default", 100, 0);
+        assertEquals(5, records.size());
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i + 1, records.get(i).getLongHeader(SEQUENCE_HEADER_NAME));
+        }
+        assertEquals(5, domainQueue.getSuccessCount());
+        assertEquals(0, domainQueue.getFailureCount());
+    }
+
+    @Test
+    public void testSpillNotSupported() {
+        assertThrows(IllegalArgumentException.class, () ->
+                new TransportProducerDomainQueue("default", new InMemoryReplicationTransport(), 100, 10, OverflowPolicy.SPILL, 100, new FixedBackOff(10, FixedBackOff.UNLIMITED_ATTEMPTS)));
+    }
+
+    private static ReplicationRecord record(String value) {
+        return new ReplicationRecord(null, value.getBytes(UTF_8), Collections.emptyMap(), System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,60 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link RateLimiter} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RateLimiterTest {
+
+    @Test
+    public void testUnlimited() throws Exception {
+        RateLimiter rateLimiter = new RateLimiter(0);
+        assertTrue(rateLimiter.isUnlimited());
+        assertEquals(0, rateLimiter.reserve(Integer.MAX_VALUE));
+        rateLimiter.acquire(Integer.MAX_VALUE);
+    }
+
+    @Test
+    public void testReserve() {
+        AtomicLong time = new AtomicLong();
+        RateLimiter rateLimiter = new RateLimiter(100, time::get);
+        // The burst of one second
+        assertEquals(0, rateLimiter.reserve(100));
+        // 10 permits are borrowed, 100 ms to wait
+        assertEquals(100_000_000L, rateLimiter.reserve(10));
+        // The debt is paid after 100 ms
+        time.addAndGet(100_000_000L);
+        assertEquals(0, rateLimiter.reserve(0));
+        assertEquals(10_000_000L, rateLimiter.reserve(1));
+
+        // The stored permits are bound by the burst
+        time.addAndGet(10_000_000_000L);
+        assertEquals(0, rateLimiter.reserve(100));
+        assertEquals(10_000_000L, rateLimiter.reserve(1));
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.replicator.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link SequenceWindow} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class SequenceWindowTest {
+
+    @Test
+    public void testSize() {
+        assertEquals(64, new SequenceWindow(1).getSize());
+        assertEquals(128, new SequenceWindow(100).getSize());
+        assertEquals(1024, new SequenceWindow().getSize());
+    }
+
+    @Test
+    public void testDuplicate() {
+        SequenceWindow window = new SequenceWindow(64);
+        assertTrue(window.mark(1));
+        assertTrue(window.mark(3));
+        assertTrue(window.mark(2));
+        assertFalse(window.mark(2));
+        assertFalse(window.mark(3));
+        // The earlier sequence arrives later
+        assertTrue(window.mark(0));
+        assertEquals(3, window.getHighest());
+        assertEquals(2, window.getDuplicateCount());
+
+        // The sequence older than the window is unknown, which is never marked
+        assertTrue(window.mark(100));
+        assertTrue(window.mark(10));
+        assertTrue(window.mark(10));
+        assertEquals(2, window.getDuplicateCount());
+        assertEquals(2, window.getStaleCount());
+        assertFalse(window.contains(10));
+        // The slot of the stale sequence is not corrupted
+        assertFalse(window.contains(74));
+    }
+
+    @Test
+    public void testGaps() {
+        SequenceWindow window = new SequenceWindow(64);
+        for (long i = 0; i < 64; i++) {
+            if (i != 10 && i != 20) {
+                assertTrue(window.mark(i));
+            }
+        }
+        assertEquals(0, window.getGapCount());
+        // The sequence 20 arrives later within the window
+        assertTrue(window.mark(20));
+        // 0 ~ 15 slide out of the window, 10 is missing
+        assertTrue(window.mark(79));
+        assertEquals(1, window.getGapCount());
+        // 16 ~ 78 slide out of the window, 64 ~ 78 are missing
+        assertTrue(window.mark(142));
+        assertEquals(16, window.getGapCount());
+        // 80 ~ 141 slide out of the window, and the sequences 143 ~ 936 never reached the window
+        assertTrue(window.mark(1000));
+        assertEquals(16 + 62 + (1000 - 64 - 142), window.getGapCount());
+    }
+
+    @Test
+    public void testContains() {
+        SequenceWindow window = new SequenceWindow(64);
+        assertFalse(window.contains(1));
+        window.mark(1);
+        window.mark(3);
+        assertTrue(window.contains(1));
+        assertFalse(window.contains(2));
+        assertTrue(window.contains(3));
+        assertFalse(window.contains(4));
+        assertEquals(0, window.getDuplicateCount());
+
+        window.mark(100);
+        // The sequence older than the window is unknown
+        assertFalse(window.contains(1));
+        assertFalse(window.contains(2));
+    }
+
+    @Test
+    public void testWatermark() {
+        SequenceWindow window = new SequenceWindow(64);
+        assertEquals(-1, window.getWatermark());
+        window.mark(1);
+        window.mark(3);
+        assertEquals(1, window.getWatermark());
+        window.mark(2);
+        assertEquals(3, window.getWatermark());
+        // 4 and 5 are lost after they slide out of the window
+        window.mark(6);
+        window.mark(69);
+        assertEquals(6, window.getWatermark());
+        window.mark(70);
+        assertEquals(6, window.getWatermark());
+        window.mark(200);
+        assertEquals(200 - 64, window.getWatermark());
+    }
+
+    @Test
+    public void testRestore() {
+        SequenceWindow window = new SequenceWindow(64, 10);
+        assertEquals(10, window.getWatermark());
+        assertTrue(window.contains(5));
+        assertTrue(window.contains(10));
+        assertFalse(window.contains(11));
+        assertFalse(window.mark(10));
+        assertTrue(window.mark(12));
+        assertEquals(10, window.getWatermark());
+        assertTrue(window.mark(11));
+        assertEquals(12, window.getWatermark());
+        assertEquals(0, window.getGapCount());
+    }
+}
@@ -20,6 +20,7 @@ import io.github.microsphere.spring.redis.beans.RedisConnectionFactoryWrapperBea
 import io.github.microsphere.spring.redis.beans.RedisTemplateWrapperBeanPostProcessor;
 import io.github.microsphere.spring.redis.beans.WrapperProcessors;
 import io.github.microsphere.spring.redis.interceptor.EventPublishingRedisCommandInterceptor;
+import io.github.microsphere.spring.redis.interceptor.ExpirationJitterRedisCommandInterceptor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.support.BeanDefinitionBuilder;
@@ -80,6 +81,9 @@ public class RedisInterceptorBeanDefinitionRegistrar implements ImportBeanDefini
         if (exposedCommandEvent) {
             registerEventPublishingRedisCommendInterceptor(registry);
         }
+
+        // The expiration jitter is opt-in, which is gated by the interceptor, thus it can be enabled dynamically
+        registerExpirationJitterRedisCommandInterceptor(registry);
     }
 
     private void registerRedisTemplateWrapperBeanPostProcessor(Set<String> wrappedRedisTemplateBeanNames, BeanDefinitionRegistry registry) {
@@ -114,6 +118,10 @@ public class RedisInterceptorBeanDefinitionRegistrar implements ImportBeanDefini
         registerBeanDefinition(registry, EventPublishingRedisCommandInterceptor.BEAN_NAME, EventPublishingRedisCommandInterceptor.class);
     }
 
+    private void registerExpirationJitterRedisCommandInterceptor(BeanDefinitionRegistry registry) {
+        registerBeanDefinition(registry, ExpirationJitterRedisCommandInterceptor.BEAN_NAME, ExpirationJitterRedisCommandInterceptor.class);
+    }
+
     private void registerBeanDefinition(BeanDefinitionRegistry registry, String beanName, Class<?>
             beanClass, Object... constructorArgs) {
         if (!registry.containsBeanDefinition(beanName)) {
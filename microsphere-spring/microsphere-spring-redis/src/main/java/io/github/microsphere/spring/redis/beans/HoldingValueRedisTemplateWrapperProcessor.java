@@ -16,22 +16,35 @@
  */
 package io.github.microsphere.spring.redis.beans;
 
+import io.github.microsphere.spring.redis.serializer.CompressingRedisSerializerWrapper;
 import io.github.microsphere.spring.redis.serializer.HoldingValueRedisSerializerWrapper;
+import org.springframework.context.EnvironmentAware;
+import org.springframework.core.env.Environment;
 
 import static io.github.microsphere.spring.redis.serializer.HoldingValueRedisSerializerWrapper.wrap;
+import static io.github.microsphere.spring.redis.util.RedisConstants.COMPRESSION_THRESHOLD_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_COMPRESSION_THRESHOLD;
 
 /**
  * The {@link WrapperProcessor} of {@link RedisTemplateWrapper} that holds the value
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
  * @see HoldingValueRedisSerializerWrapper
+ * @see CompressingRedisSerializerWrapper
  * @since 1.0.0
  */
-public class HoldingValueRedisTemplateWrapperProcessor implements WrapperProcessor<RedisTemplateWrapper> {
+public class HoldingValueRedisTemplateWrapperProcessor implements WrapperProcessor<RedisTemplateWrapper>, EnvironmentAware {
+
+    private int compressionThreshold = DEFAULT_COMPRESSION_THRESHOLD;
 
     @Override
     public RedisTemplateWrapper process(RedisTemplateWrapper wrapper) {
-        wrap(wrapper);
+        wrap(wrapper, compressionThreshold);
         return wrapper;
     }
+
+    @Override
+    public void setEnvironment(Environment environment) {
+        this.compressionThreshold = environment.getProperty(COMPRESSION_THRESHOLD_PROPERTY_NAME, int.class, DEFAULT_COMPRESSION_THRESHOLD);
+    }
 }
@@ -1,13 +1,10 @@
 package io.github.microsphere.spring.redis.beans;
 
 import io.github.microsphere.spring.redis.context.RedisContext;
-import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionInvocationHandler;
+import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionDispatcher;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.core.RedisTemplate;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Proxy;
-
 /**
  * {@link RedisTemplate} Wrapper class, compatible with {@link RedisTemplate}
  *
@@ -18,8 +15,6 @@ import java.lang.reflect.Proxy;
  */
 public class RedisTemplateWrapper<K, V> extends RedisTemplate<K, V> implements DelegatingWrapper {
 
-    private static final Class<?>[] REDIS_CONNECTION_TYPES = new Class[]{RedisConnection.class};
-
     private final String beanName;
 
     private final RedisTemplate<K, V> delegate;
@@ -73,13 +68,8 @@ public class RedisTemplateWrapper<K, V> extends RedisTemplate<K, V> implements D
     }
 
     protected static RedisConnection newProxyRedisConnection(RedisConnection connection, RedisContext redisContext, String sourceBeanName) {
-        ClassLoader classLoader = redisContext.getClassLoader();
-        InvocationHandler invocationHandler = newInvocationHandler(connection, redisContext, sourceBeanName);
-        return (RedisConnection) Proxy.newProxyInstance(classLoader, REDIS_CONNECTION_TYPES, invocationHandler);
-    }
-
-    private static InvocationHandler newInvocationHandler(RedisConnection connection, RedisContext redisContext, String redisTemplateBeanName) {
-        return new InterceptingRedisConnectionInvocationHandler(connection, redisContext, redisTemplateBeanName);
+        InterceptingRedisConnectionDispatcher dispatcher = redisContext.getInterceptingRedisConnectionDispatcher(sourceBeanName);
+        return dispatcher.newProxyRedisConnection(connection);
     }
 
     @Override
@@ -1,9 +1,12 @@
 package io.github.microsphere.spring.redis.beans;
 
 import io.github.microsphere.spring.redis.context.RedisContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.DestructionAwareBeanPostProcessor;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.context.ConfigurableApplicationContext;
@@ -15,24 +18,47 @@ import org.springframework.util.Assert;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import static io.github.microsphere.spring.redis.beans.WriteBehindRedisTemplateWrapper.DEFAULT_CAPACITY;
+import static io.github.microsphere.spring.redis.beans.WriteBehindRedisTemplateWrapper.DEFAULT_FLUSH_INTERVAL;
+import static io.github.microsphere.spring.redis.beans.WriteBehindRedisTemplateWrapper.DEFAULT_FLUSH_SIZE;
 import static io.github.microsphere.spring.redis.util.RedisConstants.ALL_WRAPPED_REDIS_TEMPLATE_BEAN_NAMES;
 import static io.github.microsphere.spring.redis.util.RedisConstants.WRAPPED_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_CAPACITY_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_FLUSH_INTERVAL_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_FLUSH_SIZE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME;
 import static java.util.Collections.emptySet;
 import static java.util.Collections.unmodifiableSet;
 import static org.springframework.aop.framework.AopProxyUtils.ultimateTargetClass;
 
 /**
  * {@link BeanPostProcessor} implements Wrapper {@link RedisTemplate} and {@link StringRedisTemplate}
+ * <p>
+ * The {@link RedisTemplate} Beans (excluding {@link StringRedisTemplate}) whose names are listed in the property
+ * {@link io.github.microsphere.spring.redis.util.RedisConstants#WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME
+ * "microsphere.redis.write-behind-redis-templates"} are wrapped into {@link WriteBehindRedisTemplateWrapper}, which
+ * could be injected by its type, and its buffer is configured by the properties "microsphere.redis.write-behind.capacity",
+ * "microsphere.redis.write-behind.flush-size" and "microsphere.redis.write-behind.flush-interval"(milliseconds).
+ * <p>
+ * Spring destroys the raw {@link RedisTemplate} Bean rather than the wrapper, thus the {@link WriteBehindRedisTemplateWrapper
+ * write-behind wrappers} are destroyed by this processor before their {@link RedisTemplate} Beans, which flushes the
+ * remaining writes.
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy<a/>
  * @see RedisTemplateWrapper
  * @see StringRedisTemplateWrapper
+ * @see WriteBehindRedisTemplateWrapper
  * @see BeanPostProcessor
+ * @see DestructionAwareBeanPostProcessor
  * @since 1.0.0
  */
-public class RedisTemplateWrapperBeanPostProcessor implements BeanPostProcessor, InitializingBean, ApplicationContextAware {
+public class RedisTemplateWrapperBeanPostProcessor implements DestructionAwareBeanPostProcessor, InitializingBean, ApplicationContextAware {
+
+    private static final Logger logger = LoggerFactory.getLogger(RedisTemplateWrapperBeanPostProcessor.class);
 
     public static final String BEAN_NAME = "redisTemplateWrapperBeanPostProcessor";
 
@@ -42,8 +68,15 @@ public class RedisTemplateWrapperBeanPostProcessor implements BeanPostProcessor,
 
     private Set<String> wrappedRedisTemplateBeanNames;
 
+    private Set<String> writeBehindRedisTemplateBeanNames;
+
     private WrapperProcessors wrapperProcessors;
 
+    /**
+     * The {@link WriteBehindRedisTemplateWrapper write-behind wrappers} to be destroyed, keyed by the bean names
+     */
+    private final Map<String, WriteBehindRedisTemplateWrapper> writeBehindRedisTemplateWrappers = new ConcurrentHashMap<>();
+
     public RedisTemplateWrapperBeanPostProcessor() {
     }
 
@@ -53,6 +86,13 @@ public class RedisTemplateWrapperBeanPostProcessor implements BeanPostProcessor,
 
     @Override
     public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+        if (writeBehindRedisTemplateBeanNames.contains(beanName)
+                && RedisTemplate.class.equals(ultimateTargetClass(bean))) {
+            RedisTemplate redisTemplate = (RedisTemplate) bean;
+            WriteBehindRedisTemplateWrapper wrapper = newWriteBehindRedisTemplateWrapper(beanName, redisTemplate);
+            writeBehindRedisTemplateWrappers.put(beanName, wrapper);
+            return process(wrapper);
+        }
         if (wrappedRedisTemplateBeanNames.contains(beanName)) {
             Class<?> beanClass = ultimateTargetClass(bean);
             if (StringRedisTemplate.class.equals(beanClass)) {
@@ -67,6 +107,37 @@ public class RedisTemplateWrapperBeanPostProcessor implements BeanPostProcessor,
         return bean;
     }
 
+    @Override
+    public void postProcessBeforeDestruction(Object bean, String beanName) throws BeansException {
+        WriteBehindRedisTemplateWrapper wrapper = writeBehindRedisTemplateWrappers.remove(beanName);
+        if (wrapper != null) {
+            try {
+                wrapper.destroy();
+            } catch (Exception e) {
+                logger.error("The write-behind RedisTemplate[name : '{}'] can't be destroyed", beanName, e);
+            }
+        }
+    }
+
+    @Override
+    public boolean requiresDestruction(Object bean) {
+        // The bean is the raw RedisTemplate, which is the delegate of its wrapper
+        for (WriteBehindRedisTemplateWrapper wrapper : writeBehindRedisTemplateWrappers.values()) {
+            if (wrapper.getDelegate() == bean) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private WriteBehindRedisTemplateWrapper newWriteBehindRedisTemplateWrapper(String beanName, RedisTemplate redisTemplate) {
+        Environment environment = context.getEnvironment();
+        int capacity = environment.getProperty(WRITE_BEHIND_CAPACITY_PROPERTY_NAME, int.class, DEFAULT_CAPACITY);
+        int flushSize = environment.getProperty(WRITE_BEHIND_FLUSH_SIZE_PROPERTY_NAME, int.class, DEFAULT_FLUSH_SIZE);
+        long flushInterval = environment.getProperty(WRITE_BEHIND_FLUSH_INTERVAL_PROPERTY_NAME, long.class, DEFAULT_FLUSH_INTERVAL);
+        return new WriteBehindRedisTemplateWrapper(beanName, redisTemplate, redisContext, capacity, flushSize, flushInterval);
+    }
+
     private <W extends Wrapper> W process(W wrapper) {
         return wrapperProcessors.process(wrapper);
     }
@@ -95,16 +166,33 @@ public class RedisTemplateWrapperBeanPostProcessor implements BeanPostProcessor,
         }
     }
 
+    /**
+     * Resolve the write-behind {@link RedisTemplate} Bean Name list
+     *
+     * @param context {@link ConfigurableApplicationContext}
+     * @return If no configuration is found, {@link Collections#emptySet()} is returned
+     */
+    private Set<String> resolveWriteBehindRedisTemplateBeanNames(ConfigurableApplicationContext context) {
+        Environment environment = context.getEnvironment();
+        Set<String> writeBehindRedisTemplateBeanNames = environment.getProperty(WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME, Set.class);
+        return writeBehindRedisTemplateBeanNames == null ? emptySet() : unmodifiableSet(writeBehindRedisTemplateBeanNames);
+    }
+
     @Override
     public void afterPropertiesSet() throws Exception {
         this.redisContext = RedisContext.get(context);
         if (this.wrappedRedisTemplateBeanNames == null) {
             this.wrappedRedisTemplateBeanNames = resolveWrappedRedisTemplateBeanNames(context);
         }
+        this.writeBehindRedisTemplateBeanNames = resolveWriteBehindRedisTemplateBeanNames(context);
         this.wrapperProcessors = context.getBean(WrapperProcessors.BEAN_NAME, WrapperProcessors.class);
     }
 
     public Set<String> getWrappedRedisTemplateBeanNames() {
         return wrappedRedisTemplateBeanNames;
     }
+
+    public Set<String> getWriteBehindRedisTemplateBeanNames() {
+        return writeBehindRedisTemplateBeanNames;
+    }
 }
@@ -0,0 +1,409 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.beans;
+
+import io.github.microsphere.spring.redis.context.RedisContext;
+import io.github.microsphere.spring.redis.util.RawValue;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisStringCommands.SetOption;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * The write-behind {@link RedisTemplateWrapper} queues the fire-and-forget writes into a bounded buffer,
+ * the redundant writes on the same key will be merged :
+ * <ul>
+ *     <li>"SET" : the last one wins, all pending writes of the key will be discarded</li>
+ *     <li>"INCRBY" : the deltas of the successive ones are summed</li>
+ *     <li>"PEXPIRE" : the last one of the successive ones wins</li>
+ * </ul>
+ * The buffered writes are flushed through a pipelined connection when the pending size reaches the flush size
+ * or the flush interval elapses, thus the Redis Command Events are published once per flushed command if
+ * {@link #isEnabled() enabled}. The writes will be dropped if the buffer is full or the wrapper has been
+ * {@link #destroy() destroyed}, which flushes the remaining writes.
+ * <p>
+ * The {@link RedisTemplateWrapperBeanPostProcessor} creates the wrapper for the {@link RedisTemplate} Beans listed in
+ * the property "microsphere.redis.write-behind-redis-templates" and destroys it before its {@link RedisTemplate} Bean,
+ * or it could be created manually, and then it must be {@link #afterPropertiesSet() initialized} and
+ * {@link #destroy() destroyed} by the caller. The flushing thread is a daemon, which never blocks the JVM exiting.
+ *
+ * @param <K> Redis Key type
+ * @param <V> Redis Value type
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisTemplateWrapper
+ * @see RedisTemplateWrapperBeanPostProcessor
+ * @since 1.0.0
+ */
+public class WriteBehindRedisTemplateWrapper<K, V> extends RedisTemplateWrapper<K, V> implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(WriteBehindRedisTemplateWrapper.class);
+
+    public static final int DEFAULT_CAPACITY = 10000;
+
+    public static final int DEFAULT_FLUSH_SIZE = 256;
+
+    public static final long DEFAULT_FLUSH_INTERVAL = 100;
+
+    private static final byte SET = 1;
+
+    private static final byte INCR_BY = 2;
+
+    private static final byte EXPIRE = 3;
+
+    private final int capacity;
+
+    private final int flushSize;
+
+    private final Object lock = new Object();
+
+    private final Object flushLock = new Object();
+
+    private final ScheduledExecutorService scheduler;
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final AtomicLong mergedCount = new AtomicLong();
+
+    private final AtomicLong flushedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    /**
+     * The pending writes in the order of keys, guarded by {@link #lock}
+     */
+    private Map<RawValue, List<WriteCommand>> buffer = new LinkedHashMap<>();
+
+    /**
+     * The count of the pending writes, guarded by {@link #lock}
+     */
+    private int queueDepth;
+
+    private volatile boolean flushScheduled;
+
+    private volatile boolean destroyed;
+
+    public WriteBehindRedisTemplateWrapper(String beanName, RedisTemplate<K, V> delegate, RedisContext redisContext) {
+        this(beanName, delegate, redisContext, DEFAULT_CAPACITY, DEFAULT_FLUSH_SIZE, DEFAULT_FLUSH_INTERVAL);
+    }
+
+    public WriteBehindRedisTemplateWrapper(String beanName, RedisTemplate<K, V> delegate, RedisContext redisContext,
+                                           int capacity, int flushSize, long flushInterval) {
+        super(beanName, delegate, redisContext);
+        this.capacity = capacity;
+        this.flushSize = flushSize;
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("WriteBehind-" + beanName + "-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushInterval, flushInterval, MILLISECONDS);
+    }
+
+    /**
+     * Write "SET" behind
+     *
+     * @param key   the key
+     * @param value the value
+     * @return <code>true</code> if queued, <code>false</code> if dropped
+     */
+    public boolean setBehind(K key, V value) {
+        return enqueue(key, new WriteCommand(SET, rawValue(value), null, 0));
+    }
+
+    /**
+     * Write "SET" with the expiration behind
+     *
+     * @param key     the key
+     * @param value   the value
+     * @param timeout the timeout
+     * @param unit    the {@link TimeUnit unit} of timeout
+     * @return <code>true</code> if queued, <code>false</code> if dropped
+     */
+    public boolean setBehind(K key, V value, long timeout, TimeUnit unit) {
+        return enqueue(key, new WriteCommand(SET, rawValue(value), Expiration.from(timeout, unit), 0));
+    }
+
+    /**
+     * Write "INCRBY" behind
+     *
+     * @param key   the key
+     * @param delta the delta
+     * @return <code>true</code> if queued, <code>false</code> if dropped
+     */
+    public boolean incrementBehind(K key, long delta) {
+        return enqueue(key, new WriteCommand(INCR_BY, null, null, delta));
+    }
+
+    /**
+     * Write "PEXPIRE" behind
+     *
+     * @param key     the key
+     * @param timeout the timeout
+     * @param unit    the {@link TimeUnit unit} of timeout
+     * @return <code>true</code> if queued, <code>false</code> if dropped
+     */
+    public boolean expireBehind(K key, long timeout, TimeUnit unit) {
+        return enqueue(key, new WriteCommand(EXPIRE, null, null, unit.toMillis(timeout)));
+    }
+
+    private boolean enqueue(K key, WriteCommand command) {
+        RawValue rawKey = RawValue.of(rawKey(key));
+        boolean flushRequired;
+        synchronized (lock) {
+            if (destroyed) {
+                return drop(key);
+            }
+            List<WriteCommand> commands = buffer.get(rawKey);
+            if (commands == null) {
+                if (queueDepth >= capacity) {
+                    return drop(key);
+                }
+                commands = new ArrayList<>(1);
+                commands.add(command);
+                buffer.put(rawKey, commands);
+                queueDepth++;
+            } else if (!merge(commands, command)) {
+                if (queueDepth >= capacity) {
+                    return drop(key);
+                }
+                commands.add(command);
+                queueDepth++;
+            }
+            flushRequired = queueDepth >= flushSize;
+        }
+        if (flushRequired && !flushScheduled) {
+            flushScheduled = true;
+            try {
+                scheduler.execute(this::flushQuietly);
+            } catch (RejectedExecutionException e) {
+                // destroyed concurrently, the pending writes will be flushed by destroy()
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Merge the command into the pending commands of the same key, guarded by {@link #lock}
+     *
+     * @return <code>true</code> if merged
+     */
+    private boolean merge(List<WriteCommand> commands, WriteCommand command) {
+        int size = commands.size();
+        if (command.type == SET) {
+            // SET overwrites the value and the expiration
+            commands.clear();
+            commands.add(command);
+            queueDepth += 1 - size;
+            mergedCount.addAndGet(size);
+            return true;
+        }
+        WriteCommand last = commands.get(size - 1);
+        if (last.type == command.type) {
+            if (command.type == INCR_BY) {
+                last.number += command.number;
+            } else {
+                last.number = command.number;
+            }
+            mergedCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean drop(K key) {
+        long dropped = droppedCount.incrementAndGet();
+        if (logger.isDebugEnabled()) {
+            logger.debug("The write-behind buffer of RedisTemplate[name : '{}'] is full(capacity : {}) or destroyed, the write on key[{}] is dropped, total dropped : {}", getBeanName(), capacity, key, dropped);
+        }
+        return false;
+    }
+
+    /**
+     * Flush the pending writes through a pipelined connection
+     */
+    public void flush() {
+        synchronized (flushLock) {
+            flushScheduled = false;
+            Map<RawValue, List<WriteCommand>> buffer;
+            int count;
+            synchronized (lock) {
+                count = this.queueDepth;
+                if (count == 0) {
+                    return;
+                }
+                buffer = this.buffer;
+                this.buffer = new LinkedHashMap<>();
+                this.queueDepth = 0;
+            }
+            try {
+                executePipelined((RedisCallback<Object>) connection -> {
+                    for (Map.Entry<RawValue, List<WriteCommand>> entry : buffer.entrySet()) {
+                        byte[] rawKey = entry.getKey().getData();
+                        for (WriteCommand command : entry.getValue()) {
+                            command.execute(connection, rawKey);
+                        }
+                    }
+                    return null;
+                }, null);
+                flushedCount.addAndGet(count);
+            } catch (Throwable e) {
+                failedCount.addAndGet(count);
+                logger.error("The write-behind RedisTemplate[name : '{}'] failed to flush {} commands", getBeanName(), count, e);
+            }
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (Throwable e) {
+            logger.error("The write-behind RedisTemplate[name : '{}'] failed to flush", getBeanName(), e);
+        }
+    }
+
+    private byte[] rawKey(K key) {
+        RedisSerializer<K> keySerializer = (RedisSerializer<K>) getKeySerializer();
+        if (keySerializer == null && key instanceof byte[]) {
+            return (byte[]) key;
+        }
+        return keySerializer.serialize(key);
+    }
+
+    private byte[] rawValue(V value) {
+        RedisSerializer<V> valueSerializer = (RedisSerializer<V>) getValueSerializer();
+        if (valueSerializer == null && value instanceof byte[]) {
+            return (byte[]) value;
+        }
+        return valueSerializer.serialize(value);
+    }
+
+    /**
+     * @return the count of the pending writes
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queueDepth;
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getFlushSize() {
+        return flushSize;
+    }
+
+    /**
+     * @return the count of the writes dropped since the buffer was full or destroyed
+     */
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    /**
+     * @return the count of the writes merged into the pending ones
+     */
+    public long getMergedCount() {
+        return mergedCount.get();
+    }
+
+    /**
+     * @return the count of the flushed commands
+     */
+    public long getFlushedCount() {
+        return flushedCount.get();
+    }
+
+    /**
+     * @return the count of the commands failed to flush
+     */
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    @Override
+    public void destroy() throws Exception {
+        synchronized (lock) {
+            destroyed = true;
+        }
+        scheduler.shutdown();
+        scheduler.awaitTermination(DEFAULT_FLUSH_INTERVAL, MILLISECONDS);
+        // Flush the remaining writes
+        flush();
+    }
+
+    /**
+     * The buffered write command
+     */
+    private static class WriteCommand {
+
+        private final byte type;
+
+        private final byte[] value;
+
+        private final Expiration expiration;
+
+        /**
+         * The delta of "INCRBY" or the milliseconds of "PEXPIRE"
+         */
+        private long number;
+
+        private WriteCommand(byte type, byte[] value, Expiration expiration, long number) {
+            this.type = type;
+            this.value = value;
+            this.expiration = expiration;
+            this.number = number;
+        }
+
+        private void execute(RedisConnection connection, byte[] rawKey) {
+            switch (type) {
+                case SET:
+                    if (expiration == null) {
+                        connection.set(rawKey, value);
+                    } else {
+                        connection.set(rawKey, value, expiration, SetOption.upsert());
+                    }
+                    break;
+                case INCR_BY:
+                    connection.incrBy(rawKey, number);
+                    break;
+                case EXPIRE:
+                    connection.pExpire(rawKey, number);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
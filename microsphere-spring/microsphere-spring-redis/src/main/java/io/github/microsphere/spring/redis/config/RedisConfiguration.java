@@ -15,7 +15,9 @@ import org.springframework.core.env.Environment;
 import static io.github.microsphere.spring.redis.util.RedisConstants.COMMAND_EVENT_EXPOSED_PROPERTY_NAME;
 import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_COMMAND_EVENT_EXPOSED;
 import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_ENABLED;
+import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_EVAL_SHA_ENABLED;
 import static io.github.microsphere.spring.redis.util.RedisConstants.ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EVAL_SHA_ENABLED_PROPERTY_NAME;
 
 /**
  * Redis Configuration
@@ -41,11 +43,16 @@ public class RedisConfiguration implements ApplicationListener<RedisConfiguratio
 
     protected volatile boolean enabled;
 
+    protected volatile boolean evalShaEnabled;
+
     @Override
     public void onApplicationEvent(RedisConfigurationPropertyChangedEvent event) {
         if (event.hasProperty(ENABLED_PROPERTY_NAME)) {
             setEnabled();
         }
+        if (event.hasProperty(EVAL_SHA_ENABLED_PROPERTY_NAME)) {
+            setEvalShaEnabled();
+        }
     }
 
     public void setEnabled() {
@@ -56,6 +63,14 @@ public class RedisConfiguration implements ApplicationListener<RedisConfiguratio
         return enabled;
     }
 
+    public void setEvalShaEnabled() {
+        this.evalShaEnabled = isEvalShaEnabled(context);
+    }
+
+    public boolean isEvalShaEnabled() {
+        return evalShaEnabled;
+    }
+
     protected String resolveApplicationName(Environment environment) {
         String applicationName = environment.getProperty("spring.application.name", "default");
         return applicationName;
@@ -79,6 +94,7 @@ public class RedisConfiguration implements ApplicationListener<RedisConfiguratio
         this.environment = (ConfigurableEnvironment) context.getEnvironment();
         this.applicationName = resolveApplicationName(environment);
         setEnabled();
+        setEvalShaEnabled();
     }
 
     public static boolean isEnabled(ApplicationContext context) {
@@ -89,6 +105,10 @@ public class RedisConfiguration implements ApplicationListener<RedisConfiguratio
         return getBoolean(context, COMMAND_EVENT_EXPOSED_PROPERTY_NAME, DEFAULT_COMMAND_EVENT_EXPOSED, "Command Event", "exposed");
     }
 
+    public static boolean isEvalShaEnabled(ApplicationContext context) {
+        return getBoolean(context, EVAL_SHA_ENABLED_PROPERTY_NAME, DEFAULT_EVAL_SHA_ENABLED, "EVALSHA Promotion", "enabled");
+    }
+
     public static boolean getBoolean(ApplicationContext context, String propertyName, boolean defaultValue, String feature, String statusIfTrue) {
         Environment environment = context.getEnvironment();
         Boolean propertyValue = environment.getProperty(propertyName, Boolean.class);
@@ -18,16 +18,13 @@ package io.github.microsphere.spring.redis.connection;
 
 import io.github.microsphere.spring.redis.beans.DelegatingWrapper;
 import io.github.microsphere.spring.redis.context.RedisContext;
-import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionInvocationHandler;
+import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionDispatcher;
 import org.springframework.dao.DataAccessException;
 import org.springframework.data.redis.connection.RedisClusterConnection;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.connection.RedisSentinelConnection;
 
-import java.lang.reflect.InvocationHandler;
-import java.lang.reflect.Proxy;
-
 /**
  * {@link RedisConnectionFactory} Wrapper
  *
@@ -37,8 +34,6 @@ import java.lang.reflect.Proxy;
  */
 public class RedisConnectionFactoryWrapper implements RedisConnectionFactory, DelegatingWrapper {
 
-    private static final Class[] REDIS_CONNECTION_TYPES = new Class[]{RedisConnection.class};
-
     private final String beanName;
     private final RedisConnectionFactory delegate;
 
@@ -84,13 +79,8 @@ public class RedisConnectionFactoryWrapper implements RedisConnectionFactory, De
     }
 
     public static RedisConnection newProxyRedisConnection(RedisConnection connection, RedisContext redisContext, String sourceBeanName) {
-        ClassLoader classLoader = redisContext.getClassLoader();
-        InvocationHandler invocationHandler = newInvocationHandler(connection, redisContext, sourceBeanName);
-        return (RedisConnection) Proxy.newProxyInstance(classLoader, REDIS_CONNECTION_TYPES, invocationHandler);
-    }
-
-    private static InvocationHandler newInvocationHandler(RedisConnection connection, RedisContext redisContext, String sourceBeanName) {
-        return new InterceptingRedisConnectionInvocationHandler(connection, redisContext, sourceBeanName);
+        InterceptingRedisConnectionDispatcher dispatcher = redisContext.getInterceptingRedisConnectionDispatcher(sourceBeanName);
+        return dispatcher.newProxyRedisConnection(connection);
     }
 
     @Override
@@ -17,6 +17,8 @@
 package io.github.microsphere.spring.redis.context;
 
 import io.github.microsphere.spring.redis.config.RedisConfiguration;
+import io.github.microsphere.spring.redis.event.RedisConfigurationPropertyChangedEvent;
+import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionDispatcher;
 import io.github.microsphere.spring.redis.interceptor.RedisCommandInterceptor;
 import io.github.microsphere.spring.redis.interceptor.RedisConnectionInterceptor;
 import org.slf4j.Logger;
@@ -30,6 +32,7 @@ import org.springframework.beans.factory.SmartInitializingSingleton;
 import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.ApplicationListener;
 import org.springframework.context.ConfigurableApplicationContext;
 import org.springframework.core.env.ConfigurableEnvironment;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
@@ -39,6 +42,8 @@ import org.springframework.lang.NonNull;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import static io.github.microsphere.spring.util.BeanUtils.getBeanNames;
 import static io.github.microsphere.spring.util.BeanUtils.getSortedBeans;
@@ -51,7 +56,8 @@ import static java.util.Collections.unmodifiableSet;
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
  * @since 1.0.0
  */
-public class RedisContext implements SmartInitializingSingleton, ApplicationContextAware, BeanFactoryAware, BeanClassLoaderAware {
+public class RedisContext implements SmartInitializingSingleton, ApplicationContextAware, BeanFactoryAware, BeanClassLoaderAware,
+        ApplicationListener<RedisConfigurationPropertyChangedEvent> {
 
     private static final Logger logger = LoggerFactory.getLogger(RedisConfiguration.class);
 
@@ -73,17 +79,59 @@ public class RedisContext implements SmartInitializingSingleton, ApplicationCont
 
     private Set<String> redisConnectionFactoryBeanNames;
 
-    private List<RedisConnectionInterceptor> redisConnectionInterceptors;
-
-    private List<RedisCommandInterceptor> redisCommandInterceptors;
+    /**
+     * The current interceptors and their {@link InterceptingRedisConnectionDispatcher dispatchers}, which are replaced
+     * as a whole when refreshed
+     */
+    private volatile Interceptors interceptors = new Interceptors(null, null);
 
     @Override
     public void afterSingletonsInstantiated() {
         this.redisConfiguration = RedisConfiguration.get(context);
         this.redisTemplateBeanNames = findRestTemplateBeanNames(beanFactory);
         this.redisConnectionFactoryBeanNames = findRedisConnectionFactoryBeanNames(beanFactory);
-        this.redisConnectionInterceptors = findRedisConnectionInterceptors(beanFactory);
-        this.redisCommandInterceptors = findRedisCommandInterceptors(beanFactory);
+        refreshInterceptors();
+    }
+
+    /**
+     * Refresh the interceptors on the changes of Redis configuration
+     *
+     * @param event {@link RedisConfigurationPropertyChangedEvent}
+     */
+    @Override
+    public void onApplicationEvent(RedisConfigurationPropertyChangedEvent event) {
+        refreshInterceptors();
+    }
+
+    /**
+     * Refresh the {@link RedisConnectionInterceptor interceptors} and {@link RedisCommandInterceptor interceptors}
+     * from the {@link BeanFactory}, the cached {@link InterceptingRedisConnectionDispatcher dispatchers} are discarded
+     * at once, and then will be rebuilt from the refreshed interceptors on demand
+     */
+    public synchronized void refreshInterceptors() {
+        Interceptors interceptors = new Interceptors(findRedisConnectionInterceptors(beanFactory), findRedisCommandInterceptors(beanFactory));
+        this.interceptors = interceptors;
+        logger.debug("The interceptors were refreshed , RedisConnectionInterceptors : {} , RedisCommandInterceptors : {}",
+                interceptors.redisConnectionInterceptors, interceptors.redisCommandInterceptors);
+    }
+
+    /**
+     * Get the {@link InterceptingRedisConnectionDispatcher} of the specified source bean, which is built once per
+     * {@link #refreshInterceptors() refresh}
+     *
+     * @param sourceBeanName the bean name of {@link RedisTemplate} or {@link RedisConnectionFactory}
+     * @return non-null
+     */
+    @NonNull
+    public InterceptingRedisConnectionDispatcher getInterceptingRedisConnectionDispatcher(String sourceBeanName) {
+        Interceptors interceptors = this.interceptors;
+        InterceptingRedisConnectionDispatcher dispatcher = interceptors.dispatchers.get(sourceBeanName);
+        if (dispatcher == null) {
+            // The dispatcher built from the stale interceptors is only cached by the discarded ones
+            dispatcher = interceptors.dispatchers.computeIfAbsent(sourceBeanName, name -> new InterceptingRedisConnectionDispatcher(this, name,
+                    interceptors.redisConnectionInterceptors, interceptors.redisCommandInterceptors));
+        }
+        return dispatcher;
     }
 
     @NonNull
@@ -135,6 +183,10 @@ public class RedisContext implements SmartInitializingSingleton, ApplicationCont
         return getRedisConfiguration().getEnvironment();
     }
 
+    public boolean isEvalShaEnabled() {
+        return getRedisConfiguration().isEvalShaEnabled();
+    }
+
     public boolean isCommandEventExposed() {
         return getRedisConfiguration().isCommandEventExposed();
     }
@@ -144,11 +196,11 @@ public class RedisContext implements SmartInitializingSingleton, ApplicationCont
     }
 
     public List<RedisConnectionInterceptor> getRedisConnectionInterceptors() {
-        return redisConnectionInterceptors;
+        return interceptors.redisConnectionInterceptors;
     }
 
     public List<RedisCommandInterceptor> getRedisCommandInterceptors() {
-        return redisCommandInterceptors;
+        return interceptors.redisCommandInterceptors;
     }
 
     public RedisTemplate<?, ?> getRedisTemplate(String redisTemplateBeanName) {
@@ -191,4 +243,21 @@ public class RedisContext implements SmartInitializingSingleton, ApplicationCont
     public static List<RedisConnectionInterceptor> findRedisConnectionInterceptors(ListableBeanFactory beanFactory) {
         return getSortedBeans(beanFactory, RedisConnectionInterceptor.class);
     }
+
+    private static class Interceptors {
+
+        private final List<RedisConnectionInterceptor> redisConnectionInterceptors;
+
+        private final List<RedisCommandInterceptor> redisCommandInterceptors;
+
+        /**
+         * The cache of {@link InterceptingRedisConnectionDispatcher} by the source bean name
+         */
+        private final ConcurrentMap<String, InterceptingRedisConnectionDispatcher> dispatchers = new ConcurrentHashMap<>();
+
+        private Interceptors(List<RedisConnectionInterceptor> redisConnectionInterceptors, List<RedisCommandInterceptor> redisCommandInterceptors) {
+            this.redisConnectionInterceptors = redisConnectionInterceptors;
+            this.redisCommandInterceptors = redisCommandInterceptors;
+        }
+    }
 }
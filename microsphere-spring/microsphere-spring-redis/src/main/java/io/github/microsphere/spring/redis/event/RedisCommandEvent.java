@@ -73,12 +73,23 @@ public class RedisCommandEvent extends ApplicationEvent {
 
     private transient byte serializationVersion = VERSION_V1;
 
+    /**
+     * The creation time of the event at the source, which is not changed after the replication
+     */
+    private transient long creationTime;
+
+    /**
+     * The monotonic sequence of the event per source, <code>-1</code> if unassigned
+     */
+    private transient long sequence = -1;
+
     protected RedisCommandEvent(Object source, String applicationName, String sourceBeanName, Method method, Object... args) {
         super(source);
         this.applicationName = applicationName;
         this.sourceBeanName = sourceBeanName;
         this.method = method;
         this.args = args;
+        this.creationTime = getTimestamp();
     }
 
     public RedisCommandEvent(@NonNull RedisMethodContext redisMethodContext) {
@@ -228,6 +239,28 @@ public class RedisCommandEvent extends ApplicationEvent {
         return serializationVersion;
     }
 
+    /**
+     * @return The creation time in milliseconds of the event at the source
+     */
+    public long getCreationTime() {
+        return creationTime;
+    }
+
+    public void setCreationTime(long creationTime) {
+        this.creationTime = creationTime;
+    }
+
+    /**
+     * @return The monotonic sequence of the event per source, <code>-1</code> if unassigned
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    public void setSequence(long sequence) {
+        this.sequence = sequence;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.interceptor;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The invoker promotes {@link RedisScriptingCommands#eval(byte[], ReturnType, int, byte[]...) EVAL} to
+ * {@link RedisScriptingCommands#evalSha(String, ReturnType, int, byte[]...) EVALSHA}, the SHA1 digest of script
+ * will be computed once and cached by the content of script bytes (the least recently used ones are evicted if the
+ * cache is full), thus the callers rebuilding the script bytes on each call still hit the cache. If the Redis Server
+ * responds "NOSCRIPT" error,
+ * the original {@link RedisScriptingCommands#eval(byte[], ReturnType, int, byte[]...) EVAL} will be executed to load
+ * the script.
+ * <p>
+ * The promotion will be skipped if the {@link RedisConnection} is pipelined or queueing, because the "NOSCRIPT" error
+ * can't be handled before the results being closed.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisScriptingCommands
+ * @since 1.0.0
+ */
+public class EvalShaPromotingInvoker {
+
+    private static final Logger logger = LoggerFactory.getLogger(EvalShaPromotingInvoker.class);
+
+    public static final EvalShaPromotingInvoker INSTANCE = new EvalShaPromotingInvoker();
+
+    /**
+     * The default max size of cached SHA1 digests, the least recently used one will be evicted if exceeded.
+     */
+    public static final int MAX_CACHE_SIZE = 1024;
+
+    private static final String EVAL_METHOD_NAME = "eval";
+
+    private static final Class<?>[] EVAL_PARAMETER_TYPES = new Class[]{byte[].class, ReturnType.class, int.class, byte[][].class};
+
+    private static final String SCRIPTING_COMMANDS_METHOD_NAME = "scriptingCommands";
+
+    private static final String NO_SCRIPT_ERROR = "NOSCRIPT";
+
+    private static final char[] HEX_CHARS = "0123456789abcdef".toCharArray();
+
+    /**
+     * The LRU cache uses the copy of script bytes wrapped by {@link ByteBuffer} as the key, whose
+     * {@link Object#hashCode()} and {@link Object#equals(Object)} are based on the content, guarded by itself.
+     */
+    private final Map<ByteBuffer, String> shaCache;
+
+    public EvalShaPromotingInvoker() {
+        this(MAX_CACHE_SIZE);
+    }
+
+    /**
+     * @param maxCacheSize the max size of cached SHA1 digests
+     */
+    public EvalShaPromotingInvoker(int maxCacheSize) {
+        this.shaCache = new LinkedHashMap<ByteBuffer, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ByteBuffer, String> eldest) {
+                return size() > maxCacheSize;
+            }
+        };
+    }
+
+    /**
+     * Is the specified {@link Method} {@link RedisScriptingCommands#eval(byte[], ReturnType, int, byte[]...)} or not
+     *
+     * @param method {@link Method}
+     * @return <code>true</code> if matched
+     */
+    public static boolean isEvalMethod(Method method) {
+        return EVAL_METHOD_NAME.equals(method.getName()) && Arrays.equals(EVAL_PARAMETER_TYPES, method.getParameterTypes());
+    }
+
+    /**
+     * Is the specified {@link Method} {@link RedisConnection#scriptingCommands()} or not
+     *
+     * @param method {@link Method}
+     * @return <code>true</code> if matched
+     */
+    public static boolean isScriptingCommandsMethod(Method method) {
+        return SCRIPTING_COMMANDS_METHOD_NAME.equals(method.getName()) && method.getParameterCount() == 0;
+    }
+
+    /**
+     * Invoke {@link RedisScriptingCommands#evalSha(String, ReturnType, int, byte[]...) EVALSHA} instead of
+     * {@link RedisScriptingCommands#eval(byte[], ReturnType, int, byte[]...) EVAL}
+     *
+     * @param connection the raw {@link RedisConnection}
+     * @param args       the arguments of {@link RedisScriptingCommands#eval(byte[], ReturnType, int, byte[]...) EVAL}
+     * @return the result of script
+     * @throws InvocationTargetException the execution of command is failed, the same as {@link Method#invoke(Object, Object...)}
+     */
+    public Object invoke(RedisConnection connection, Object[] args) throws InvocationTargetException {
+        byte[] script = (byte[]) args[0];
+        ReturnType returnType = (ReturnType) args[1];
+        int numKeys = (Integer) args[2];
+        byte[][] keysAndArgs = (byte[][]) args[3];
+        RedisScriptingCommands scriptingCommands = connection.scriptingCommands();
+        try {
+            if (!connection.isPipelined() && !connection.isQueueing()) {
+                String sha = getSha1(script);
+                try {
+                    return scriptingCommands.evalSha(sha, returnType, numKeys, keysAndArgs);
+                } catch (RuntimeException e) {
+                    if (!isNoScriptError(e)) {
+                        throw e;
+                    }
+                    logger.debug("The script[sha1 : '{}'] is not found in the Redis Server, it will be loaded by EVAL", sha);
+                }
+            }
+            return scriptingCommands.eval(script, returnType, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            throw new InvocationTargetException(e);
+        }
+    }
+
+    /**
+     * Get the SHA1 digest of the specified script in hex
+     *
+     * @param script the script bytes
+     * @return non-null
+     */
+    public String getSha1(byte[] script) {
+        Map<ByteBuffer, String> shaCache = this.shaCache;
+        String sha;
+        synchronized (shaCache) {
+            sha = shaCache.get(ByteBuffer.wrap(script));
+        }
+        if (sha == null) {
+            sha = sha1DigestAsHex(script);
+            // The copy is cached in case the caller modifies the script bytes later
+            ByteBuffer key = ByteBuffer.wrap(script.clone());
+            synchronized (shaCache) {
+                String existedSha = shaCache.putIfAbsent(key, sha);
+                if (existedSha != null) {
+                    sha = existedSha;
+                }
+            }
+        }
+        return sha;
+    }
+
+    static String sha1DigestAsHex(byte[] script) {
+        MessageDigest messageDigest;
+        try {
+            messageDigest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        byte[] digest = messageDigest.digest(script);
+        char[] chars = new char[digest.length << 1];
+        for (int i = 0, j = 0; i < digest.length; i++) {
+            int value = digest[i] & 0xff;
+            chars[j++] = HEX_CHARS[value >>> 4];
+            chars[j++] = HEX_CHARS[value & 0x0f];
+        }
+        return new String(chars);
+    }
+
+    static boolean isNoScriptError(Throwable e) {
+        Throwable error = e;
+        while (error != null) {
+            String message = error.getMessage();
+            if (message != null && message.contains(NO_SCRIPT_ERROR)) {
+                return true;
+            }
+            Throwable cause = error.getCause();
+            error = cause == error ? null : cause;
+        }
+        return false;
+    }
+}
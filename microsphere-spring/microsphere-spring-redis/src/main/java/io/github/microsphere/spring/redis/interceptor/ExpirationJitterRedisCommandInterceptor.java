@@ -0,0 +1,290 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.interceptor;
+
+import io.github.microsphere.spring.redis.context.RedisContext;
+import io.github.microsphere.spring.redis.event.RedisConfigurationPropertyChangedEvent;
+import io.github.microsphere.spring.redis.serializer.ExpirationSerializer;
+import io.github.microsphere.spring.redis.util.KeyPrefixTrie;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationListener;
+import org.springframework.core.env.ConfigurableEnvironment;
+import org.springframework.data.redis.connection.RedisCommands;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_EXPIRATION_JITTER_ENABLED;
+import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_EXPIRATION_JITTER_MAX;
+import static io.github.microsphere.spring.redis.util.RedisConstants.DEFAULT_EXPIRATION_JITTER_RATIO;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EXPIRATION_JITTER_ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EXPIRATION_JITTER_KEY_PREFIXES_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EXPIRATION_JITTER_MAX_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EXPIRATION_JITTER_PROPERTY_NAME_PREFIX;
+import static io.github.microsphere.spring.redis.util.RedisConstants.EXPIRATION_JITTER_RATIO_PROPERTY_NAME;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.springframework.util.StringUtils.commaDelimitedListToStringArray;
+import static org.springframework.util.StringUtils.trimWhitespace;
+
+/**
+ * {@link RedisCommandInterceptor} applies the bounded random jitter to the expiration of the Redis write commands
+ * whose keys match the configured prefixes, in order to avoid the keys written in the same batch being expired
+ * at the same time :
+ * <ul>
+ *     <li>{@link RedisStringCommands#set(byte[], byte[], Expiration, RedisStringCommands.SetOption)}</li>
+ *     <li>{@link RedisStringCommands#setEx(byte[], long, byte[])}</li>
+ *     <li>{@link RedisStringCommands#pSetEx(byte[], long, byte[])}</li>
+ *     <li>{@link RedisKeyCommands#expire(byte[], long)}</li>
+ *     <li>{@link RedisKeyCommands#pExpire(byte[], long)}</li>
+ * </ul>
+ * The jitter is always added to the expiration in the range of [0, min(expiration * ratio, max)], and the arguments
+ * are replaced before the execution, thus the Redis Command Events carry the jittered expiration that
+ * {@link ExpirationSerializer} serializes, the replicas expire at the same time as the source.
+ * <p>
+ * The key prefixes are compiled into the {@link KeyPrefixTrie}, the longest one wins.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see KeyPrefixTrie
+ * @since 1.0.0
+ */
+public class ExpirationJitterRedisCommandInterceptor implements RedisCommandInterceptor, ApplicationListener<RedisConfigurationPropertyChangedEvent> {
+
+    private static final Logger logger = LoggerFactory.getLogger(ExpirationJitterRedisCommandInterceptor.class);
+
+    public static final String BEAN_NAME = "expirationJitterRedisCommandInterceptor";
+
+    private static final byte NO_EXPIRATION = 0;
+
+    private static final byte SECONDS_EXPIRATION = 1;
+
+    private static final byte MILLISECONDS_EXPIRATION = 2;
+
+    private static final byte OBJECT_EXPIRATION = 3;
+
+    private static final ExpirationParameter NO_EXPIRATION_PARAMETER = new ExpirationParameter(-1, NO_EXPIRATION);
+
+    private final RedisContext redisContext;
+
+    private final ConcurrentMap<Method, ExpirationParameter> expirationParametersCache = new ConcurrentHashMap<>();
+
+    private volatile boolean enabled;
+
+    private volatile Policy policy;
+
+    public ExpirationJitterRedisCommandInterceptor(RedisContext redisContext) {
+        this.redisContext = redisContext;
+        initialize();
+    }
+
+    private void initialize() {
+        ConfigurableEnvironment environment = redisContext.getEnvironment();
+        this.enabled = environment.getProperty(EXPIRATION_JITTER_ENABLED_PROPERTY_NAME, boolean.class, DEFAULT_EXPIRATION_JITTER_ENABLED);
+        double ratio = environment.getProperty(EXPIRATION_JITTER_RATIO_PROPERTY_NAME, double.class, DEFAULT_EXPIRATION_JITTER_RATIO);
+        long max = environment.getProperty(EXPIRATION_JITTER_MAX_PROPERTY_NAME, long.class, DEFAULT_EXPIRATION_JITTER_MAX);
+        String keyPrefixes = environment.getProperty(EXPIRATION_JITTER_KEY_PREFIXES_PROPERTY_NAME);
+        this.policy = new Policy(buildKeyPrefixTrie(keyPrefixes, ratio), max);
+        logger.debug("The expiration jitter[enabled : {}] policy : key prefixes : '{}' , ratio : {} , max : {} ms", enabled, keyPrefixes, ratio, max);
+    }
+
+    /**
+     * Build the {@link KeyPrefixTrie} from the comma-delimited key prefixes
+     *
+     * @param keyPrefixes  the comma-delimited key prefixes, the element is "prefix" or "prefix=ratio"
+     * @param defaultRatio the default ratio
+     * @return non-null
+     */
+    static KeyPrefixTrie<Double> buildKeyPrefixTrie(String keyPrefixes, double defaultRatio) {
+        KeyPrefixTrie<Double> trie = new KeyPrefixTrie<>();
+        for (String keyPrefix : commaDelimitedListToStringArray(keyPrefixes)) {
+            String prefix = trimWhitespace(keyPrefix);
+            if (prefix.isEmpty()) {
+                continue;
+            }
+            double ratio = defaultRatio;
+            int index = prefix.lastIndexOf('=');
+            if (index > -1) {
+                ratio = Double.parseDouble(trimWhitespace(prefix.substring(index + 1)));
+                prefix = trimWhitespace(prefix.substring(0, index));
+            }
+            trie.put(prefix, ratio);
+        }
+        if (trie.isEmpty()) { // matches all keys
+            trie.put("", defaultRatio);
+        }
+        return trie;
+    }
+
+    @Override
+    public void beforeExecute(RedisMethodContext<RedisCommands> context) throws Throwable {
+        if (!enabled) {
+            return;
+        }
+        ExpirationParameter expirationParameter = getExpirationParameter(context.getMethod());
+        if (expirationParameter == NO_EXPIRATION_PARAMETER) {
+            return;
+        }
+        Object[] args = context.getArgs();
+        Object key = args[0];
+        if (!(key instanceof byte[])) {
+            return;
+        }
+        Policy policy = this.policy;
+        Double ratio = policy.keyPrefixTrie.findLongestPrefix((byte[]) key);
+        if (ratio != null) {
+            int index = expirationParameter.index;
+            args[index] = expirationParameter.jitter(args[index], ratio, policy.max);
+        }
+    }
+
+    private ExpirationParameter getExpirationParameter(Method method) {
+        ExpirationParameter expirationParameter = expirationParametersCache.get(method);
+        if (expirationParameter == null) {
+            expirationParameter = resolveExpirationParameter(method);
+            expirationParametersCache.putIfAbsent(method, expirationParameter);
+        }
+        return expirationParameter;
+    }
+
+    static ExpirationParameter resolveExpirationParameter(Method method) {
+        Class<?>[] parameterTypes = method.getParameterTypes();
+        int parameterCount = parameterTypes.length;
+        if (parameterCount < 2 || parameterTypes[0] != byte[].class) {
+            return NO_EXPIRATION_PARAMETER;
+        }
+        switch (method.getName()) {
+            case "set":
+                if (parameterCount == 4 && parameterTypes[2] == Expiration.class) {
+                    return new ExpirationParameter(2, OBJECT_EXPIRATION);
+                }
+                break;
+            case "setEx":
+                if (parameterCount == 3 && parameterTypes[1] == long.class) {
+                    return new ExpirationParameter(1, SECONDS_EXPIRATION);
+                }
+                break;
+            case "pSetEx":
+                if (parameterCount == 3 && parameterTypes[1] == long.class) {
+                    return new ExpirationParameter(1, MILLISECONDS_EXPIRATION);
+                }
+                break;
+            case "expire":
+                if (parameterCount == 2 && parameterTypes[1] == long.class) {
+                    return new ExpirationParameter(1, SECONDS_EXPIRATION);
+                }
+                break;
+            case "pExpire":
+                if (parameterCount == 2 && parameterTypes[1] == long.class) {
+                    return new ExpirationParameter(1, MILLISECONDS_EXPIRATION);
+                }
+                break;
+        }
+        return NO_EXPIRATION_PARAMETER;
+    }
+
+    /**
+     * Add the random jitter to the expiration time
+     *
+     * @param time     the expiration time
+     * @param unit     the {@link TimeUnit unit} of expiration time
+     * @param ratio    the max ratio of jitter to the expiration time
+     * @param maxInMs  the upper bound of jitter in milliseconds
+     * @return the jittered expiration time in the same unit
+     */
+    static long jitter(long time, TimeUnit unit, double ratio, long maxInMs) {
+        if (time <= 0) {
+            return time;
+        }
+        long bound = Math.min((long) (time * ratio), unit.convert(maxInMs, MILLISECONDS));
+        if (bound <= 0) {
+            return time;
+        }
+        return time + ThreadLocalRandom.current().nextLong(bound + 1);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void onApplicationEvent(RedisConfigurationPropertyChangedEvent event) {
+        for (String propertyName : event.getPropertyNames()) {
+            if (propertyName.startsWith(EXPIRATION_JITTER_PROPERTY_NAME_PREFIX)) {
+                initialize();
+                break;
+            }
+        }
+    }
+
+    /**
+     * The immutable jitter policy
+     */
+    private static class Policy {
+
+        private final KeyPrefixTrie<Double> keyPrefixTrie;
+
+        private final long max;
+
+        private Policy(KeyPrefixTrie<Double> keyPrefixTrie, long max) {
+            this.keyPrefixTrie = keyPrefixTrie;
+            this.max = max;
+        }
+    }
+
+    /**
+     * The expiration parameter of Redis command method
+     */
+    static class ExpirationParameter {
+
+        private final int index;
+
+        private final byte type;
+
+        private ExpirationParameter(int index, byte type) {
+            this.index = index;
+            this.type = type;
+        }
+
+        Object jitter(Object arg, double ratio, long max) {
+            switch (type) {
+                case SECONDS_EXPIRATION:
+                    return jitter((Long) arg, SECONDS, ratio, max);
+                case MILLISECONDS_EXPIRATION:
+                    return jitter((Long) arg, MILLISECONDS, ratio, max);
+                case OBJECT_EXPIRATION:
+                    Expiration expiration = (Expiration) arg;
+                    // The persistent or "KEEPTTL" expiration has the non-positive time
+                    if (expiration == null || expiration.getExpirationTime() <= 0) {
+                        return arg;
+                    }
+                    TimeUnit timeUnit = expiration.getTimeUnit();
+                    long time = expiration.getExpirationTime();
+                    long jitteredTime = jitter(time, timeUnit, ratio, max);
+                    return jitteredTime == time ? arg : Expiration.from(jitteredTime, timeUnit);
+                default:
+                    return arg;
+            }
+        }
+    }
+}
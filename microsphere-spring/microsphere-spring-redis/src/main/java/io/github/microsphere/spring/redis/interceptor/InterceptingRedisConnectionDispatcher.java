@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.interceptor;
+
+import io.github.microsphere.spring.redis.config.RedisConfiguration;
+import io.github.microsphere.spring.redis.context.RedisContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.util.List;
+
+/**
+ * The immutable dispatcher of the intercepted {@link RedisConnection} per source bean, the interceptors are resolved
+ * once, as well as the constructor of the proxy class, thus the acquisition of {@link RedisConnection} only creates a
+ * thin {@link InterceptingRedisConnectionInvocationHandler} and its proxy by the resolved constructor.
+ * <p>
+ * The instances are cached by {@link RedisContext} and replaced as a whole when the interceptors are changed.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see RedisContext#getInterceptingRedisConnectionDispatcher(String)
+ * @see InterceptingRedisConnectionInvocationHandler
+ * @since 1.0.0
+ */
+public final class InterceptingRedisConnectionDispatcher {
+
+    private static final Logger logger = LoggerFactory.getLogger(InterceptingRedisConnectionDispatcher.class);
+
+    private static final Class<?>[] REDIS_CONNECTION_TYPES = new Class[]{RedisConnection.class};
+
+    private static final RedisMethodInterceptor[] EMPTY_INTERCEPTORS = new RedisMethodInterceptor[0];
+
+    /**
+     * The {@link InvocationHandler} of the prototype proxy, which is never invoked
+     */
+    private static final InvocationHandler UNSUPPORTED_INVOCATION_HANDLER = (proxy, method, args) -> {
+        throw new UnsupportedOperationException("The prototype proxy of RedisConnection can't be invoked");
+    };
+
+    private final RedisContext redisContext;
+
+    private final RedisConfiguration redisConfiguration;
+
+    private final String sourceBeanName;
+
+    private final RedisMethodInterceptor[] redisConnectionInterceptors;
+
+    private final RedisMethodInterceptor[] redisCommandInterceptors;
+
+    private final Constructor<?> proxyConstructor;
+
+    public InterceptingRedisConnectionDispatcher(RedisContext redisContext, String sourceBeanName) {
+        this(redisContext, sourceBeanName, redisContext.getRedisConnectionInterceptors(), redisContext.getRedisCommandInterceptors());
+    }
+
+    public InterceptingRedisConnectionDispatcher(RedisContext redisContext, String sourceBeanName,
+                                                 List<RedisConnectionInterceptor> redisConnectionInterceptors,
+                                                 List<RedisCommandInterceptor> redisCommandInterceptors) {
+        this.redisContext = redisContext;
+        this.redisConfiguration = redisContext.getRedisConfiguration();
+        this.sourceBeanName = sourceBeanName;
+        this.redisConnectionInterceptors = toArray(redisConnectionInterceptors);
+        this.redisCommandInterceptors = toArray(redisCommandInterceptors);
+        this.proxyConstructor = resolveProxyConstructor(resolveClassLoader(redisContext.getClassLoader()));
+    }
+
+    private static RedisMethodInterceptor[] toArray(List<? extends RedisMethodInterceptor> interceptors) {
+        if (interceptors == null || interceptors.isEmpty()) {
+            return EMPTY_INTERCEPTORS;
+        }
+        return interceptors.toArray(new RedisMethodInterceptor[0]);
+    }
+
+    private static ClassLoader resolveClassLoader(ClassLoader classLoader) {
+        return classLoader == null ? RedisConnection.class.getClassLoader() : classLoader;
+    }
+
+    /**
+     * Resolve the constructor from the class of a prototype proxy, which is generated once per {@link ClassLoader} and
+     * interfaces, rather than the deprecated {@link Proxy#getProxyClass(ClassLoader, Class[])}
+     */
+    private static Constructor<?> resolveProxyConstructor(ClassLoader classLoader) {
+        Class<?> proxyClass = Proxy.newProxyInstance(classLoader, REDIS_CONNECTION_TYPES, UNSUPPORTED_INVOCATION_HANDLER).getClass();
+        try {
+            return proxyClass.getConstructor(InvocationHandler.class);
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException("The constructor of the RedisConnection proxy class can't be resolved : " + proxyClass, e);
+        }
+    }
+
+    /**
+     * Create a new proxy of {@link RedisConnection} intercepted by this dispatcher
+     *
+     * @param connection the raw {@link RedisConnection}
+     * @return non-null
+     */
+    public RedisConnection newProxyRedisConnection(RedisConnection connection) {
+        InvocationHandler invocationHandler = new InterceptingRedisConnectionInvocationHandler(connection, this);
+        try {
+            return (RedisConnection) proxyConstructor.newInstance(invocationHandler);
+        } catch (InvocationTargetException e) {
+            throw new IllegalStateException("The RedisConnection proxy can't be created", e.getTargetException());
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("The RedisConnection proxy can't be created", e);
+        }
+    }
+
+    public RedisContext getRedisContext() {
+        return redisContext;
+    }
+
+    public String getSourceBeanName() {
+        return sourceBeanName;
+    }
+
+    public boolean isEvalShaEnabled() {
+        return redisConfiguration.isEvalShaEnabled();
+    }
+
+    void beforeExecute(RedisMethodContext<RedisConnection> redisMethodContext) {
+        beforeExecute(redisConnectionInterceptors, redisMethodContext);
+        beforeExecute(redisCommandInterceptors, redisMethodContext);
+    }
+
+    private void beforeExecute(RedisMethodInterceptor[] redisMethodInterceptors, RedisMethodContext<RedisConnection> redisMethodContext) {
+        for (int i = 0, size = redisMethodInterceptors.length; i < size; i++) {
+            RedisMethodInterceptor interceptor = redisMethodInterceptors[i];
+            try {
+                interceptor.beforeExecute(redisMethodContext);
+            } catch (Throwable e) {
+                interceptor.handleError(redisMethodContext, true, null, null, e);
+                logger.error("The execution of RedisMethodInterceptor[class : '{}'] beforeExecute method is failed, context : {}", interceptor.getClass().getName(), redisMethodContext);
+            }
+        }
+    }
+
+    void afterExecute(RedisMethodContext<RedisConnection> redisMethodContext, Object result, Throwable failure) {
+        afterExecute(redisConnectionInterceptors, redisMethodContext, result, failure);
+        afterExecute(redisCommandInterceptors, redisMethodContext, result, failure);
+    }
+
+    private void afterExecute(RedisMethodInterceptor[] redisMethodInterceptors, RedisMethodContext<RedisConnection> redisMethodContext, Object result, Throwable failure) {
+        for (int i = 0, size = redisMethodInterceptors.length; i < size; i++) {
+            RedisMethodInterceptor interceptor = redisMethodInterceptors[i];
+            try {
+                interceptor.afterExecute(redisMethodContext, result, failure);
+            } catch (Throwable e) {
+                interceptor.handleError(redisMethodContext, false, result, failure, e);
+                logger.error("The execution of RedisMethodInterceptor[class : '{}'] afterExecute method is failed, context : {}, result : {} , failure : {}", interceptor.getClass().getName(), redisMethodContext, result, failure);
+            }
+        }
+    }
+}
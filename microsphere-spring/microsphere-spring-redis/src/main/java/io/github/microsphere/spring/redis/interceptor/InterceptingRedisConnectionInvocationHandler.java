@@ -1,58 +1,39 @@
 package io.github.microsphere.spring.redis.interceptor;
 
 import io.github.microsphere.spring.redis.context.RedisContext;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.RedisConnection;
 
 import java.lang.reflect.InvocationHandler;
 import java.lang.reflect.Method;
-import java.util.List;
+
+import static io.github.microsphere.spring.redis.interceptor.EvalShaPromotingInvoker.isEvalMethod;
+import static io.github.microsphere.spring.redis.interceptor.EvalShaPromotingInvoker.isScriptingCommandsMethod;
 
 /**
- * {@link InvocationHandler} for Intercepting {@link RedisConnection}
+ * {@link InvocationHandler} for Intercepting {@link RedisConnection}, the interceptors are dispatched by
+ * the shared {@link InterceptingRedisConnectionDispatcher}
  *
  * @author <a href="mailto:mercyblitz@gmail.com">Mercy<a/>
+ * @see InterceptingRedisConnectionDispatcher
  * @since 1.0.0
  */
 public class InterceptingRedisConnectionInvocationHandler implements InvocationHandler {
 
-    private static final Logger logger = LoggerFactory.getLogger(InterceptingRedisConnectionInvocationHandler.class);
-
     private static final String HASH_CODE = "hashCode";
 
     private static final String EQUALS = "equals";
 
     private final RedisConnection rawRedisConnection;
 
-    private final RedisContext redisContext;
-
-    private final String sourceBeanName;
-
-    private final List<RedisConnectionInterceptor> redisConnectionInterceptors;
-
-    private final List<RedisCommandInterceptor> redisCommandInterceptors;
-
-    private final int redisConnectionInterceptorCount;
-
-    private final int redisCommandInterceptorCount;
-
-    private final boolean hasRedisConnectionInterceptors;
-
-    private final boolean hasRedisCommandInterceptors;
+    private final InterceptingRedisConnectionDispatcher dispatcher;
 
     public InterceptingRedisConnectionInvocationHandler(RedisConnection rawRedisConnection, RedisContext redisContext, String sourceBeanName) {
-        this.rawRedisConnection = rawRedisConnection;
-        this.redisContext = redisContext;
-        this.sourceBeanName = sourceBeanName;
-        this.redisConnectionInterceptors = redisContext.getRedisConnectionInterceptors();
-        this.redisCommandInterceptors = redisContext.getRedisCommandInterceptors();
-
-        this.redisConnectionInterceptorCount = redisConnectionInterceptors.size();
-        this.redisCommandInterceptorCount = redisCommandInterceptors.size();
+        this(rawRedisConnection, redisContext.getInterceptingRedisConnectionDispatcher(sourceBeanName));
+    }
 
-        this.hasRedisConnectionInterceptors = redisConnectionInterceptorCount > 0;
-        this.hasRedisCommandInterceptors = redisCommandInterceptorCount > 0;
+    public InterceptingRedisConnectionInvocationHandler(RedisConnection rawRedisConnection, InterceptingRedisConnectionDispatcher dispatcher) {
+        this.rawRedisConnection = rawRedisConnection;
+        this.dispatcher = dispatcher;
     }
 
     @Override
@@ -72,63 +53,40 @@ public class InterceptingRedisConnectionInvocationHandler implements InvocationH
             method.setAccessible(true);
         }
 
+        InterceptingRedisConnectionDispatcher dispatcher = this.dispatcher;
+
+        boolean evalShaEnabled = dispatcher.isEvalShaEnabled();
+
+        if (evalShaEnabled && isScriptingCommandsMethod(method)) {
+            // The proxy is returned in order to intercept the scripting commands, which are intercepted once by
+            // the later invocations on the proxy rather than the accessor itself
+            return proxy;
+        }
+
         RedisMethodContext<RedisConnection> redisMethodContext = createRedisMethodContext(method, args);
 
         Object result = null;
         Throwable failure = null;
         try {
-            beforeExecute(redisMethodContext);
-            result = method.invoke(rawRedisConnection, args);
+            dispatcher.beforeExecute(redisMethodContext);
+            result = doInvoke(method, args, evalShaEnabled);
         } catch (Throwable e) {
             failure = e;
             throw e.getCause();
         } finally {
-            afterExecute(redisMethodContext, result, failure);
+            dispatcher.afterExecute(redisMethodContext, result, failure);
         }
         return result;
     }
 
-    private RedisMethodContext<RedisConnection> createRedisMethodContext(Method method, Object[] args) {
-        RedisMethodContext<RedisConnection> redisMethodContext = new RedisMethodContext<>(rawRedisConnection, method, args, redisContext, sourceBeanName);
-        return redisMethodContext;
-    }
-
-
-    private void beforeExecute(RedisMethodContext<RedisConnection> redisMethodContext) {
-        beforeExecute(redisConnectionInterceptors, redisConnectionInterceptorCount, hasRedisConnectionInterceptors, redisMethodContext);
-        beforeExecute(redisCommandInterceptors, redisCommandInterceptorCount, hasRedisCommandInterceptors, redisMethodContext);
-    }
-
-    private void beforeExecute(List<? extends RedisMethodInterceptor> redisMethodInterceptors, int size, boolean exists, RedisMethodContext<RedisConnection> redisMethodContext) {
-        if (exists) {
-            for (int i = 0; i < size; i++) {
-                RedisMethodInterceptor interceptor = redisMethodInterceptors.get(i);
-                try {
-                    interceptor.beforeExecute(redisMethodContext);
-                } catch (Throwable e) {
-                    interceptor.handleError(redisMethodContext, true, null, null, e);
-                    logger.error("The execution of RedisMethodInterceptor[class : '{}'] afterExecute method is failed, context : {}", interceptor.getClass().getName(), redisMethodContext);
-                }
-            }
+    private Object doInvoke(Method method, Object[] args, boolean evalShaEnabled) throws Throwable {
+        if (evalShaEnabled && isEvalMethod(method)) {
+            return EvalShaPromotingInvoker.INSTANCE.invoke(rawRedisConnection, args);
         }
+        return method.invoke(rawRedisConnection, args);
     }
 
-    private void afterExecute(RedisMethodContext<RedisConnection> redisMethodContext, Object result, Throwable failure) {
-        afterExecute(redisConnectionInterceptors, redisConnectionInterceptorCount, hasRedisConnectionInterceptors, redisMethodContext, result, failure);
-        afterExecute(redisCommandInterceptors, redisCommandInterceptorCount, hasRedisCommandInterceptors, redisMethodContext, result, failure);
-    }
-
-    private void afterExecute(List<? extends RedisMethodInterceptor> redisMethodInterceptors, int size, boolean exists, RedisMethodContext<RedisConnection> redisMethodContext, Object result, Throwable failure) {
-        if (exists) {
-            for (int i = 0; i < size; i++) {
-                RedisMethodInterceptor interceptor = redisMethodInterceptors.get(i);
-                try {
-                    interceptor.afterExecute(redisMethodContext, result, failure);
-                } catch (Throwable e) {
-                    interceptor.handleError(redisMethodContext, false, result, failure, e);
-                    logger.error("The execution of RedisMethodInterceptor[class : '{}'] afterExecute method is failed, context : {}, result : {} , failure : {}", interceptor.getClass().getName(), redisMethodContext, result, failure);
-                }
-            }
-        }
+    private RedisMethodContext<RedisConnection> createRedisMethodContext(Method method, Object[] args) {
+        return new RedisMethodContext<>(rawRedisConnection, method, args, dispatcher.getRedisContext(), dispatcher.getSourceBeanName());
     }
 }
@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.serializer;
+
+import io.github.microsphere.spring.redis.beans.DelegatingWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+import org.springframework.lang.Nullable;
+
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * The {@link RedisSerializer} Wrapper compresses the serialized value if its size is above the threshold.
+ * <p>
+ * The layout of raw value :
+ * <ul>
+ *     <li>{@link #COMPRESSED_HEADER} + original length(4 bytes) + deflated bytes : the compressed value</li>
+ *     <li>{@link #ESCAPED_HEADER} + original bytes : the uncompressed value that starts with the header byte</li>
+ *     <li>original bytes : the others, passing through untouched</li>
+ * </ul>
+ * Both header bytes never appear in the UTF-8 text, thus the small text values are always kept as they are.
+ * <p>
+ * Note : the values written before the compression is enabled are not escaped, thus the existing raw values starting
+ * with the byte <code>0xFE</code> or <code>0xFF</code> (e.g. the binary values of the other serializers) are misread
+ * as the escaped or compressed ones, they have to be migrated (or the keyspace flushed) before the wrapper is applied.
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @see Deflater
+ * @see Inflater
+ * @since 1.0.0
+ */
+public class CompressingRedisSerializerWrapper<T> implements RedisSerializer<T>, DelegatingWrapper {
+
+    /**
+     * The header byte of the compressed value
+     */
+    public static final byte COMPRESSED_HEADER = (byte) 0xFF;
+
+    /**
+     * The header byte of the uncompressed value whose first byte is one of header bytes
+     */
+    public static final byte ESCAPED_HEADER = (byte) 0xFE;
+
+    /**
+     * The default threshold of the compression in bytes
+     */
+    public static final int DEFAULT_THRESHOLD = 1024;
+
+    private static final int LENGTH_BYTES = 4;
+
+    private static final int HEADER_LENGTH = 1 + LENGTH_BYTES;
+
+    private static final int BUFFER_SIZE = 4096;
+
+    /**
+     * The max size of the buffer cached per thread, the larger buffers are allocated per compression
+     */
+    static final int MAX_CACHED_BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * The max compression ratio of the deflate format
+     */
+    private static final int MAX_COMPRESSION_RATIO = 1032;
+
+    /**
+     * The max length of the array allocated by the JVM safely
+     */
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<Codec> codecThreadLocal = ThreadLocal.withInitial(Codec::new);
+
+    private final RedisSerializer<T> delegate;
+
+    private final int threshold;
+
+    public CompressingRedisSerializerWrapper(RedisSerializer<T> delegate) {
+        this(delegate, DEFAULT_THRESHOLD);
+    }
+
+    public CompressingRedisSerializerWrapper(RedisSerializer<T> delegate, int threshold) {
+        this.delegate = delegate;
+        this.threshold = threshold;
+    }
+
+    @Override
+    @Nullable
+    public byte[] serialize(T value) throws SerializationException {
+        byte[] bytes = delegate.serialize(value);
+        if (bytes == null) {
+            return null;
+        }
+        int length = bytes.length;
+        if (length >= threshold) {
+            byte[] compressed = codecThreadLocal.get().compress(bytes);
+            if (compressed != null) {
+                return compressed;
+            }
+        }
+        return escape(bytes);
+    }
+
+    @Override
+    @Nullable
+    public T deserialize(byte[] bytes) throws SerializationException {
+        if (bytes == null || bytes.length == 0) {
+            return delegate.deserialize(bytes);
+        }
+        byte header = bytes[0];
+        final byte[] rawValue;
+        if (header == COMPRESSED_HEADER) {
+            rawValue = codecThreadLocal.get().decompress(bytes);
+        } else if (header == ESCAPED_HEADER) {
+            rawValue = Arrays.copyOfRange(bytes, 1, bytes.length);
+        } else {
+            rawValue = bytes;
+        }
+        return delegate.deserialize(rawValue);
+    }
+
+    @Override
+    public boolean canSerialize(Class<?> type) {
+        return delegate.canSerialize(type);
+    }
+
+    @Override
+    public Class<?> getTargetType() {
+        return delegate.getTargetType();
+    }
+
+    @Override
+    public Object getDelegate() {
+        return delegate;
+    }
+
+    public int getThreshold() {
+        return threshold;
+    }
+
+    private static byte[] escape(byte[] bytes) {
+        int length = bytes.length;
+        if (length > 0) {
+            byte header = bytes[0];
+            if (header == COMPRESSED_HEADER || header == ESCAPED_HEADER) {
+                byte[] escaped = new byte[length + 1];
+                escaped[0] = ESCAPED_HEADER;
+                System.arraycopy(bytes, 0, escaped, 1, length);
+                return escaped;
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Wrap the specified {@link RedisSerializer} with the {@link #DEFAULT_THRESHOLD default threshold}
+     *
+     * @param redisSerializer {@link RedisSerializer}
+     * @param <T>             the type of value
+     * @return <code>null</code> if <code>redisSerializer</code> is <code>null</code>
+     */
+    public static <T> RedisSerializer<T> wrap(RedisSerializer<T> redisSerializer) {
+        return wrap(redisSerializer, DEFAULT_THRESHOLD);
+    }
+
+    /**
+     * Wrap the specified {@link RedisSerializer}
+     *
+     * @param redisSerializer {@link RedisSerializer}
+     * @param threshold       the threshold of the compression in bytes, the negative value disables the compression
+     * @param <T>             the type of value
+     * @return the original <code>redisSerializer</code> if it's <code>null</code>, already wrapped or the
+     * <code>threshold</code> is negative
+     */
+    public static <T> RedisSerializer<T> wrap(RedisSerializer<T> redisSerializer, int threshold) {
+        if (redisSerializer == null || threshold < 0 || redisSerializer instanceof CompressingRedisSerializerWrapper) {
+            return redisSerializer;
+        }
+        return new CompressingRedisSerializerWrapper<>(redisSerializer, threshold);
+    }
+
+    /**
+     * The per-thread {@link Deflater}, {@link Inflater} and buffer, the buffer is never grown above
+     * {@link #MAX_CACHED_BUFFER_SIZE}, thus the large values don't pin the memory of the pooled threads
+     */
+    static class Codec {
+
+        private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+
+        private final Inflater inflater = new Inflater();
+
+        private byte[] buffer = new byte[BUFFER_SIZE];
+
+        byte[] compress(byte[] bytes) {
+            int length = bytes.length;
+            // The compressed result is accepted only if it's smaller than the original
+            int maxLength = length - 1;
+            byte[] buffer = getBuffer(maxLength);
+            Deflater deflater = this.deflater;
+            try {
+                deflater.setInput(bytes, 0, length);
+                deflater.finish();
+                int offset = HEADER_LENGTH;
+                while (!deflater.finished()) {
+                    if (offset >= maxLength) {
+                        return null;
+                    }
+                    offset += deflater.deflate(buffer, offset, maxLength - offset);
+                }
+                buffer[0] = COMPRESSED_HEADER;
+                buffer[1] = (byte) (length >>> 24);
+                buffer[2] = (byte) (length >>> 16);
+                buffer[3] = (byte) (length >>> 8);
+                buffer[4] = (byte) length;
+                return Arrays.copyOf(buffer, offset);
+            } finally {
+                deflater.reset();
+            }
+        }
+
+        byte[] decompress(byte[] bytes) {
+            if (bytes.length < HEADER_LENGTH) {
+                throw new SerializationException("The compressed value is corrupted, length : " + bytes.length);
+            }
+            int length = (0xff & bytes[1]) << 24 |
+                    (0xff & bytes[2]) << 16 |
+                    (0xff & bytes[3]) << 8 |
+                    (0xff & bytes[4]);
+            validateLength(length, bytes.length - HEADER_LENGTH);
+            byte[] rawValue = new byte[length];
+            Inflater inflater = this.inflater;
+            try {
+                inflater.setInput(bytes, HEADER_LENGTH, bytes.length - HEADER_LENGTH);
+                int offset = 0;
+                while (offset < length) {
+                    int count = inflater.inflate(rawValue, offset, length - offset);
+                    if (count == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    offset += count;
+                }
+                if (offset != length) {
+                    throw new SerializationException("The compressed value is corrupted, expected length : " + length + " , actual : " + offset);
+                }
+            } catch (DataFormatException e) {
+                throw new SerializationException("The compressed value can't be decompressed", e);
+            } finally {
+                inflater.reset();
+            }
+            return rawValue;
+        }
+
+        /**
+         * Validate the original length in the header before the allocation, the corrupted or foreign value must not
+         * allocate the huge or negative array
+         *
+         * @param length           the original length in the header
+         * @param compressedLength the length of the deflated bytes
+         * @throws SerializationException if the length is invalid
+         */
+        static void validateLength(int length, int compressedLength) throws SerializationException {
+            long maxLength = Math.min((long) compressedLength * MAX_COMPRESSION_RATIO, MAX_ARRAY_LENGTH);
+            if (length < 0 || length > maxLength) {
+                throw new SerializationException("The compressed value is corrupted, invalid original length : " + length
+                        + " , compressed length : " + compressedLength);
+            }
+        }
+
+        /**
+         * Get the buffer of the capacity, which is cached if it's not above {@link #MAX_CACHED_BUFFER_SIZE}
+         *
+         * @param capacity the capacity
+         * @return the cached buffer, or the new one if the capacity is above {@link #MAX_CACHED_BUFFER_SIZE}
+         */
+        byte[] getBuffer(int capacity) {
+            byte[] buffer = this.buffer;
+            if (buffer.length >= capacity) {
+                return buffer;
+            }
+            if (capacity > MAX_CACHED_BUFFER_SIZE) {
+                return new byte[capacity];
+            }
+            buffer = new byte[Math.min(Math.max(capacity, buffer.length << 1), MAX_CACHED_BUFFER_SIZE)];
+            this.buffer = buffer;
+            return buffer;
+        }
+    }
+}
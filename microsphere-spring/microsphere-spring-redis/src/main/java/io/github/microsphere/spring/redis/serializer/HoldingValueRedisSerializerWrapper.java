@@ -87,10 +87,26 @@ public class HoldingValueRedisSerializerWrapper<T> implements RedisSerializer<T>
     }
 
     public static void wrap(RedisTemplate redisTemplate) {
+        wrap(redisTemplate, -1);
+    }
+
+    /**
+     * Wrap the {@link RedisSerializer RedisSerializers} of the specified {@link RedisTemplate}, the value and hash value
+     * {@link RedisSerializer RedisSerializers} will be compressed if the <code>compressionThreshold</code> is not negative.
+     *
+     * @param redisTemplate        {@link RedisTemplate}
+     * @param compressionThreshold the threshold of the compression in bytes, the negative value disables the compression
+     * @see CompressingRedisSerializerWrapper
+     */
+    public static void wrap(RedisTemplate redisTemplate, int compressionThreshold) {
         redisTemplate.setDefaultSerializer(wrap(redisTemplate.getDefaultSerializer()));
         redisTemplate.setKeySerializer(wrap(redisTemplate.getKeySerializer()));
-        redisTemplate.setValueSerializer(wrap(redisTemplate.getValueSerializer()));
+        redisTemplate.setValueSerializer(wrap(compress(redisTemplate.getValueSerializer(), compressionThreshold)));
         redisTemplate.setHashKeySerializer(wrap(redisTemplate.getHashKeySerializer()));
-        redisTemplate.setHashValueSerializer(wrap(redisTemplate.getHashValueSerializer()));
+        redisTemplate.setHashValueSerializer(wrap(compress(redisTemplate.getHashValueSerializer(), compressionThreshold)));
+    }
+
+    private static <T> RedisSerializer<T> compress(RedisSerializer<T> redisSerializer, int compressionThreshold) {
+        return CompressingRedisSerializerWrapper.wrap(redisSerializer, compressionThreshold);
     }
 }
\ No newline at end of file
@@ -0,0 +1,186 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.util;
+
+import org.springframework.lang.Nullable;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * The byte-level prefix trie of Redis keys, the lookup evaluates the raw key bytes directly,
+ * thus the cost is bound to the length of key rather than the count of prefixes.
+ * <p>
+ * The trie is not thread-safe for the modifications, it's recommended to build a new instance and then publish it.
+ *
+ * @param <V> the type of value associated with the prefix
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KeyPrefixTrie<V> {
+
+    private static final byte[] EMPTY_LABELS = new byte[0];
+
+    private static final Object[] EMPTY_CHILDREN = new Object[0];
+
+    private final Node<V> root = new Node<>();
+
+    private int size;
+
+    /**
+     * Put the prefix in UTF-8 and its value
+     *
+     * @param prefix the prefix
+     * @param value  the value
+     * @return the previous value
+     */
+    public V put(String prefix, V value) {
+        return put(prefix.getBytes(StandardCharsets.UTF_8), value);
+    }
+
+    /**
+     * Put the prefix bytes and its value
+     *
+     * @param prefix the prefix bytes
+     * @param value  the value
+     * @return the previous value
+     */
+    public V put(byte[] prefix, V value) {
+        Node<V> node = root;
+        for (byte label : prefix) {
+            node = node.getOrAddChild(label);
+        }
+        V previousValue = node.value;
+        if (!node.terminal) {
+            node.terminal = true;
+            size++;
+        }
+        node.value = value;
+        return previousValue;
+    }
+
+    /**
+     * Find the value of the longest prefix that the key starts with
+     *
+     * @param key the raw key
+     * @return <code>null</code> if not found
+     */
+    @Nullable
+    public V findLongestPrefix(byte[] key) {
+        Node<V> node = root;
+        V value = node.terminal ? node.value : null;
+        for (int i = 0, length = key.length; i < length; i++) {
+            node = node.getChild(key[i]);
+            if (node == null) {
+                break;
+            }
+            if (node.terminal) {
+                value = node.value;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Whether the key starts with any prefix or not
+     *
+     * @param key the raw key
+     * @return <code>true</code> if matched
+     */
+    public boolean matches(byte[] key) {
+        Node<V> node = root;
+        if (node.terminal) {
+            return true;
+        }
+        for (int i = 0, length = key.length; i < length; i++) {
+            node = node.getChild(key[i]);
+            if (node == null) {
+                return false;
+            }
+            if (node.terminal) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    private static class Node<V> {
+
+        /**
+         * The sorted labels of children
+         */
+        private byte[] labels = EMPTY_LABELS;
+
+        /**
+         * The children in the order of labels, which are held in {@link Object} array to avoid the generic array
+         */
+        private Object[] children = EMPTY_CHILDREN;
+
+        private boolean terminal;
+
+        private V value;
+
+        Node<V> getChild(byte label) {
+            byte[] labels = this.labels;
+            int length = labels.length;
+            if (length < 8) {
+                for (int i = 0; i < length; i++) {
+                    if (labels[i] == label) {
+                        return child(i);
+                    }
+                }
+                return null;
+            }
+            int index = Arrays.binarySearch(labels, label);
+            return index < 0 ? null : child(index);
+        }
+
+        Node<V> getOrAddChild(byte label) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return child(index);
+            }
+            int insertion = -(index + 1);
+            int length = labels.length;
+            byte[] newLabels = new byte[length + 1];
+            Object[] newChildren = new Object[length + 1];
+            System.arraycopy(labels, 0, newLabels, 0, insertion);
+            System.arraycopy(children, 0, newChildren, 0, insertion);
+            System.arraycopy(labels, insertion, newLabels, insertion + 1, length - insertion);
+            System.arraycopy(children, insertion, newChildren, insertion + 1, length - insertion);
+            Node<V> child = new Node<>();
+            newLabels[insertion] = label;
+            newChildren[insertion] = child;
+            this.labels = newLabels;
+            this.children = newChildren;
+            return child;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<V> child(int index) {
+            return (Node<V>) children[index];
+        }
+    }
+}
@@ -84,6 +84,22 @@ public interface RedisConstants {
      */
     List<String> ALL_WRAPPED_REDIS_TEMPLATE_BEAN_NAMES = unmodifiableList(asList("*"));
 
+    /**
+     * The write-behind {@link RedisTemplate} list of Bean names
+     */
+    String WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "write-behind-redis-templates";
+
+    /**
+     * The prefix of write-behind {@link RedisTemplate}' property name
+     */
+    String WRITE_BEHIND_PROPERTY_NAME_PREFIX = PROPERTY_NAME_PREFIX + "write-behind.";
+
+    String WRITE_BEHIND_CAPACITY_PROPERTY_NAME = WRITE_BEHIND_PROPERTY_NAME_PREFIX + "capacity";
+
+    String WRITE_BEHIND_FLUSH_SIZE_PROPERTY_NAME = WRITE_BEHIND_PROPERTY_NAME_PREFIX + "flush-size";
+
+    String WRITE_BEHIND_FLUSH_INTERVAL_PROPERTY_NAME = WRITE_BEHIND_PROPERTY_NAME_PREFIX + "flush-interval";
+
     /**
      * The prefix of Redis Interceptors' property name
      */
@@ -93,6 +109,49 @@ public interface RedisConstants {
 
     boolean DEFAULT_INTERCEPTOR_ENABLED = true;
 
+    /**
+     * The property name of the promotion from EVAL to EVALSHA, which is disabled by default
+     */
+    String EVAL_SHA_ENABLED_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "eval-sha.enabled";
+
+    boolean DEFAULT_EVAL_SHA_ENABLED = false;
+
+    /**
+     * The threshold in bytes of the value compression, the negative value disables the compression
+     */
+    String COMPRESSION_THRESHOLD_PROPERTY_NAME = PROPERTY_NAME_PREFIX + "compression.threshold";
+
+    int DEFAULT_COMPRESSION_THRESHOLD = -1;
+
+    /**
+     * The prefix of the expiration jitter's property name
+     */
+    String EXPIRATION_JITTER_PROPERTY_NAME_PREFIX = PROPERTY_NAME_PREFIX + "expiration-jitter.";
+
+    String EXPIRATION_JITTER_ENABLED_PROPERTY_NAME = EXPIRATION_JITTER_PROPERTY_NAME_PREFIX + "enabled";
+
+    boolean DEFAULT_EXPIRATION_JITTER_ENABLED = false;
+
+    /**
+     * The key prefixes of the expiration jitter, the element is "prefix" or "prefix=ratio",
+     * all keys will be matched if absent
+     */
+    String EXPIRATION_JITTER_KEY_PREFIXES_PROPERTY_NAME = EXPIRATION_JITTER_PROPERTY_NAME_PREFIX + "key-prefixes";
+
+    /**
+     * The max ratio of the jitter to the expiration time
+     */
+    String EXPIRATION_JITTER_RATIO_PROPERTY_NAME = EXPIRATION_JITTER_PROPERTY_NAME_PREFIX + "ratio";
+
+    double DEFAULT_EXPIRATION_JITTER_RATIO = 0.1;
+
+    /**
+     * The upper bound of the jitter in milliseconds
+     */
+    String EXPIRATION_JITTER_MAX_PROPERTY_NAME = EXPIRATION_JITTER_PROPERTY_NAME_PREFIX + "max";
+
+    long DEFAULT_EXPIRATION_JITTER_MAX = 60 * 1000;
+
     String DEFAULT_WRAP_REDIS_TEMPLATE_PLACEHOLDER = "${" + WRAPPED_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME + ":}";
 
 }
@@ -0,0 +1,333 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.beans;
+
+import io.github.microsphere.spring.redis.annotation.EnableRedisInterceptor;
+import io.github.microsphere.spring.redis.event.RedisCommandEvent;
+import org.junit.After;
+import org.junit.Test;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.StringRedisSerializer;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static io.github.microsphere.spring.redis.util.RedisConstants.ENABLED_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_FLUSH_INTERVAL_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_FLUSH_SIZE_PROPERTY_NAME;
+import static io.github.microsphere.spring.redis.util.RedisConstants.WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.concurrent.TimeUnit.HOURS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link WriteBehindRedisTemplateWrapper} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class WriteBehindRedisTemplateWrapperTest {
+
+    private static final long NEVER = HOURS.toMillis(1);
+
+    private final List<String> commands = new CopyOnWriteArrayList<>();
+
+    private final List<WriteBehindRedisTemplateWrapper<?, ?>> wrappers = new ArrayList<>();
+
+    private final List<AnnotationConfigApplicationContext> contexts = new ArrayList<>();
+
+    private volatile boolean failing;
+
+    @After
+    public void destroy() throws Exception {
+        for (WriteBehindRedisTemplateWrapper<?, ?> wrapper : wrappers) {
+            wrapper.destroy();
+        }
+        for (AnnotationConfigApplicationContext context : contexts) {
+            context.close();
+        }
+    }
+
+    @Test
+    public void testMerge() {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 100, NEVER);
+        assertTrue(wrapper.setBehind("a", "1"));
+        assertTrue(wrapper.incrementBehind("a", 2));
+        assertTrue(wrapper.incrementBehind("a", 3));
+        assertTrue(wrapper.expireBehind("a", 1, TimeUnit.SECONDS));
+        assertTrue(wrapper.expireBehind("a", 2, TimeUnit.SECONDS));
+        assertTrue(wrapper.setBehind("b", "x"));
+        assertTrue(wrapper.incrementBehind("b", 1));
+        assertTrue(wrapper.setBehind("b", "y"));
+
+        assertEquals(4, wrapper.getQueueDepth());
+        assertEquals(4, wrapper.getMergedCount());
+        assertTrue(commands.isEmpty());
+
+        wrapper.flush();
+        assertEquals(Arrays.asList("set a 1", "incrBy a 5", "pExpire a 2000", "set b y"), commands);
+        assertEquals(0, wrapper.getQueueDepth());
+        assertEquals(4, wrapper.getFlushedCount());
+
+        // Nothing to flush
+        wrapper.flush();
+        assertEquals(4, commands.size());
+    }
+
+    @Test
+    public void testSetOverwritesPendingWrites() {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 100, NEVER);
+        wrapper.incrementBehind("a", 1);
+        wrapper.expireBehind("a", 1, TimeUnit.SECONDS);
+        wrapper.setBehind("a", "1", 3, TimeUnit.SECONDS);
+        assertEquals(1, wrapper.getQueueDepth());
+
+        wrapper.flush();
+        assertEquals(Collections.singletonList("set a 1 3000"), commands);
+    }
+
+    @Test
+    public void testFlushBySize() throws InterruptedException {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 2, NEVER);
+        wrapper.setBehind("a", "1");
+        assertEquals(1, wrapper.getQueueDepth());
+        wrapper.setBehind("b", "2");
+        awaitFlushed(wrapper, 2);
+        assertEquals(Arrays.asList("set a 1", "set b 2"), commands);
+        assertEquals(0, wrapper.getQueueDepth());
+    }
+
+    @Test
+    public void testFlushByInterval() throws InterruptedException {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 100, 10);
+        wrapper.incrementBehind("a", 1);
+        awaitFlushed(wrapper, 1);
+        assertEquals(Collections.singletonList("incrBy a 1"), commands);
+    }
+
+    @Test
+    public void testDropOnFull() {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(2, 100, NEVER);
+        assertTrue(wrapper.setBehind("a", "1"));
+        assertTrue(wrapper.incrementBehind("a", 1));
+        assertFalse(wrapper.setBehind("b", "1"));
+        assertFalse(wrapper.expireBehind("a", 1, TimeUnit.SECONDS));
+        // merged without the additional capacity
+        assertTrue(wrapper.incrementBehind("a", 1));
+        assertTrue(wrapper.setBehind("a", "2"));
+        assertEquals(2, wrapper.getDroppedCount());
+
+        wrapper.flush();
+        assertEquals(Collections.singletonList("set a 2"), commands);
+    }
+
+    @Test
+    public void testFlushFailure() {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 100, NEVER);
+        wrapper.setBehind("a", "1");
+        wrapper.setBehind("b", "1");
+        failing = true;
+        wrapper.flush();
+        assertEquals(2, wrapper.getFailedCount());
+        assertEquals(0, wrapper.getFlushedCount());
+        assertEquals(0, wrapper.getQueueDepth());
+    }
+
+    @Test
+    public void testDestroy() throws Exception {
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = newWrapper(100, 100, NEVER);
+        wrapper.setBehind("a", "1");
+        wrapper.incrementBehind("b", 1);
+
+        wrapper.destroy();
+        assertEquals(Arrays.asList("set a 1", "incrBy b 1"), commands);
+        assertEquals(2, wrapper.getFlushedCount());
+
+        // The writes after destroyed are dropped
+        assertFalse(wrapper.setBehind("c", "1"));
+        assertEquals(1, wrapper.getDroppedCount());
+        wrapper.flush();
+        assertEquals(2, commands.size());
+    }
+
+    @Test
+    public void testRedisCommandEventsPublishedPerFlushedCommand() {
+        AnnotationConfigApplicationContext context = newContext();
+        List<String> events = new CopyOnWriteArrayList<>();
+        context.addApplicationListener((ApplicationListener<RedisCommandEvent>) event ->
+                events.add(event.getMethodName() + " " + string(event.getArg(0))));
+
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = context.getBean("redisTemplate", WriteBehindRedisTemplateWrapper.class);
+        assertTrue(wrapper.isEnabled());
+        wrapper.setBehind("a", "1");
+        wrapper.incrementBehind("a", 1);
+        wrapper.incrementBehind("a", 2);
+        wrapper.setBehind("b", "1");
+        wrapper.expireBehind("b", 1, TimeUnit.SECONDS);
+        assertTrue(events.isEmpty());
+
+        wrapper.flush();
+        assertEquals(Arrays.asList("set a 1", "incrBy a 3", "set b 1", "pExpire b 1000"), commands);
+        // Exactly one event per flushed command, in order
+        assertEquals(Arrays.asList("set a", "incrBy a", "set b", "pExpire b"), events);
+        assertEquals(wrapper.getFlushedCount(), events.size());
+    }
+
+    @Test
+    public void testFlushOnContextClose() {
+        AnnotationConfigApplicationContext context = newContext();
+        WriteBehindRedisTemplateWrapper<String, String> wrapper = context.getBean("redisTemplate", WriteBehindRedisTemplateWrapper.class);
+        wrapper.setBehind("a", "1");
+        wrapper.incrementBehind("b", 1);
+        assertTrue(commands.isEmpty());
+
+        context.close();
+        assertEquals(Arrays.asList("set a 1", "incrBy b 1"), commands);
+        assertEquals(2, wrapper.getFlushedCount());
+        assertFalse(wrapper.setBehind("c", "1"));
+    }
+
+    private void awaitFlushed(WriteBehindRedisTemplateWrapper<?, ?> wrapper, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (wrapper.getFlushedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, wrapper.getFlushedCount());
+    }
+
+    private WriteBehindRedisTemplateWrapper<String, String> newWrapper(int capacity, int flushSize, long flushInterval) {
+        RedisTemplate<String, String> redisTemplate = new RedisTemplate<>();
+        redisTemplate.setConnectionFactory(newRedisConnectionFactory());
+        redisTemplate.setKeySerializer(new StringRedisSerializer());
+        redisTemplate.setValueSerializer(new StringRedisSerializer());
+        WriteBehindRedisTemplateWrapper<String, String> wrapper =
+                new WriteBehindRedisTemplateWrapper<String, String>("redisTemplate", redisTemplate, null, capacity, flushSize, flushInterval) {
+                    @Override
+                    public boolean isEnabled() {
+                        // No RedisContext
+                        return false;
+                    }
+                };
+        wrapper.afterPropertiesSet();
+        wrappers.add(wrapper);
+        return wrapper;
+    }
+
+    private AnnotationConfigApplicationContext newContext() {
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+        Map<String, Object> properties = new HashMap<>();
+        properties.put(ENABLED_PROPERTY_NAME, "true");
+        properties.put(WRITE_BEHIND_REDIS_TEMPLATE_BEAN_NAMES_PROPERTY_NAME, "redisTemplate");
+        properties.put(WRITE_BEHIND_FLUSH_SIZE_PROPERTY_NAME, "100");
+        properties.put(WRITE_BEHIND_FLUSH_INTERVAL_PROPERTY_NAME, String.valueOf(NEVER));
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("write-behind", properties));
+        context.register(WriteBehindConfig.class);
+        context.registerBean("redisConnectionFactory", RedisConnectionFactory.class, this::newRedisConnectionFactory);
+        context.registerBean("redisTemplate", RedisTemplate.class, () -> {
+            RedisTemplate<String, String> redisTemplate = new RedisTemplate<>();
+            redisTemplate.setConnectionFactory(context.getBean(RedisConnectionFactory.class));
+            redisTemplate.setKeySerializer(new StringRedisSerializer());
+            redisTemplate.setValueSerializer(new StringRedisSerializer());
+            return redisTemplate;
+        });
+        context.refresh();
+        contexts.add(context);
+        return context;
+    }
+
+    private RedisConnectionFactory newRedisConnectionFactory() {
+        RedisConnection connection = newProxy(RedisConnection.class, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "set":
+                    failIfRequired();
+                    String command = "set " + string(args[0]) + " " + string(args[1]);
+                    if (args.length > 2) {
+                        command += " " + ((Expiration) args[2]).getExpirationTimeInMilliseconds();
+                    }
+                    commands.add(command);
+                    return Boolean.TRUE;
+                case "incrBy":
+                    failIfRequired();
+                    commands.add("incrBy " + string(args[0]) + " " + args[1]);
+                    return 1L;
+                case "pExpire":
+                    failIfRequired();
+                    commands.add("pExpire " + string(args[0]) + " " + args[1]);
+                    return Boolean.TRUE;
+                case "closePipeline":
+                    return new ArrayList<>();
+                default:
+                    return null;
+            }
+        });
+        return newProxy(RedisConnectionFactory.class, (proxy, method, args) -> {
+            if ("getConnection".equals(method.getName())) {
+                return connection;
+            }
+            return null;
+        });
+    }
+
+    @EnableRedisInterceptor(wrapRedisTemplates = "stringRedisTemplate")
+    static class WriteBehindConfig {
+    }
+
+    private void failIfRequired() {
+        if (failing) {
+            throw new IllegalStateException("failing");
+        }
+    }
+
+    private static String string(Object bytes) {
+        return new String((byte[]) bytes, UTF_8);
+    }
+
+    private static <T> T newProxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return type.getSimpleName() + "@" + System.identityHashCode(proxy);
+                default:
+                    Object result = handler.invoke(proxy, method, args);
+                    if (result == null && method.getReturnType() == boolean.class) {
+                        return Boolean.FALSE;
+                    }
+                    return result;
+            }
+        }));
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.context;
+
+import io.github.microsphere.spring.redis.config.RedisConfiguration;
+import io.github.microsphere.spring.redis.event.RedisConfigurationPropertyChangedEvent;
+import io.github.microsphere.spring.redis.interceptor.InterceptingRedisConnectionDispatcher;
+import io.github.microsphere.spring.redis.interceptor.RedisCommandInterceptor;
+import io.github.microsphere.spring.redis.interceptor.RedisMethodContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.data.redis.connection.RedisCommands;
+import org.springframework.data.redis.connection.RedisConnection;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static io.github.microsphere.spring.redis.util.RedisConstants.ENABLED_PROPERTY_NAME;
+import static java.util.Collections.singleton;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link RedisContext} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class RedisContextTest {
+
+    private AnnotationConfigApplicationContext context;
+
+    private RedisContext redisContext;
+
+    @Before
+    public void init() {
+        context = new AnnotationConfigApplicationContext(RedisConfiguration.class, RedisContext.class, CountingRedisCommandInterceptor.class);
+        redisContext = RedisContext.get(context);
+    }
+
+    @After
+    public void destroy() {
+        context.close();
+    }
+
+    @Test
+    public void testGetInterceptingRedisConnectionDispatcher() {
+        InterceptingRedisConnectionDispatcher dispatcher = redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate");
+        assertSame(dispatcher, redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate"));
+        assertNotSame(dispatcher, redisContext.getInterceptingRedisConnectionDispatcher("stringRedisTemplate"));
+        assertEquals("redisTemplate", dispatcher.getSourceBeanName());
+
+        CountingRedisCommandInterceptor interceptor = context.getBean(CountingRedisCommandInterceptor.class);
+        RedisConnection connection = dispatcher.newProxyRedisConnection(newRedisConnection());
+        assertTrue(Proxy.isProxyClass(connection.getClass()));
+        connection.ping();
+        assertEquals(1, interceptor.count.get());
+
+        // The proxies are created by the same proxy class
+        RedisConnection anotherConnection = dispatcher.newProxyRedisConnection(newRedisConnection());
+        assertNotSame(connection, anotherConnection);
+        assertSame(connection.getClass(), anotherConnection.getClass());
+        anotherConnection.ping();
+        assertEquals(2, interceptor.count.get());
+    }
+
+    @Test
+    public void testRefreshOnRedisConfigurationPropertyChanged() {
+        InterceptingRedisConnectionDispatcher dispatcher = redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate");
+        CountingRedisCommandInterceptor interceptor = new CountingRedisCommandInterceptor();
+        context.getBeanFactory().registerSingleton("newRedisCommandInterceptor", interceptor);
+        // Not refreshed yet
+        assertEquals(1, redisContext.getRedisCommandInterceptors().size());
+        assertSame(dispatcher, redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate"));
+
+        context.publishEvent(new RedisConfigurationPropertyChangedEvent(context, singleton(ENABLED_PROPERTY_NAME)));
+        assertEquals(2, redisContext.getRedisCommandInterceptors().size());
+        InterceptingRedisConnectionDispatcher refreshedDispatcher = redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate");
+        assertNotSame(dispatcher, refreshedDispatcher);
+
+        refreshedDispatcher.newProxyRedisConnection(newRedisConnection()).ping();
+        assertEquals(1, interceptor.count.get());
+        // The stale dispatcher still works with the previous interceptors
+        dispatcher.newProxyRedisConnection(newRedisConnection()).ping();
+        assertEquals(1, interceptor.count.get());
+    }
+
+    @Test
+    public void testConcurrentRefresh() throws InterruptedException {
+        CountDownLatch latch = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> {
+                latch.countDown();
+                for (int j = 0; j < 10000; j++) {
+                    redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate" + (j % 4));
+                }
+            });
+            threads.add(thread);
+            thread.start();
+        }
+        latch.await();
+        CountingRedisCommandInterceptor interceptor = new CountingRedisCommandInterceptor();
+        context.getBeanFactory().registerSingleton("newRedisCommandInterceptor", interceptor);
+        redisContext.refreshInterceptors();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (int i = 0; i < 4; i++) {
+            redisContext.getInterceptingRedisConnectionDispatcher("redisTemplate" + i).newProxyRedisConnection(newRedisConnection()).ping();
+        }
+        assertEquals(4, interceptor.count.get());
+    }
+
+    private static RedisConnection newRedisConnection() {
+        return (RedisConnection) Proxy.newProxyInstance(RedisConnection.class.getClassLoader(), new Class[]{RedisConnection.class},
+                (proxy, method, args) -> "ping".equals(method.getName()) ? "PONG" : null);
+    }
+
+    static class CountingRedisCommandInterceptor implements RedisCommandInterceptor {
+
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public void beforeExecute(RedisMethodContext<RedisCommands> context) {
+            count.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.interceptor;
+
+import org.junit.Test;
+import org.springframework.data.redis.RedisSystemException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.connection.RedisScriptingCommands;
+import org.springframework.data.redis.connection.ReturnType;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static io.github.microsphere.spring.redis.interceptor.EvalShaPromotingInvoker.isEvalMethod;
+import static io.github.microsphere.spring.redis.interceptor.EvalShaPromotingInvoker.isNoScriptError;
+import static io.github.microsphere.spring.redis.interceptor.EvalShaPromotingInvoker.isScriptingCommandsMethod;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+/**
+ * {@link EvalShaPromotingInvoker} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class EvalShaPromotingInvokerTest {
+
+    private final EvalShaPromotingInvoker invoker = new EvalShaPromotingInvoker();
+
+    @Test
+    public void testGetSha1() {
+        byte[] script = "return 1".getBytes(StandardCharsets.UTF_8);
+        String sha = invoker.getSha1(script);
+        assertEquals("e0e1f9fabfc9d4800c877a703b823ac0578ff8db", sha);
+        assertSame(sha, invoker.getSha1(script));
+    }
+
+    @Test
+    public void testGetSha1ByContent() {
+        String sha = invoker.getSha1("return 1".getBytes(StandardCharsets.UTF_8));
+        // The script bytes are rebuilt by the caller
+        assertSame(sha, invoker.getSha1("return 1".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testGetSha1WithModifiedScript() {
+        byte[] script = "return 1".getBytes(StandardCharsets.UTF_8);
+        String sha = invoker.getSha1(script);
+        script[7] = '2';
+        assertEquals("7f923f79fe76194c868d7e1d0820de36700eb649", invoker.getSha1(script));
+        assertSame(sha, invoker.getSha1("return 1".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEviction() {
+        EvalShaPromotingInvoker invoker = new EvalShaPromotingInvoker(2);
+        String sha1 = invoker.getSha1(script(1));
+        String sha2 = invoker.getSha1(script(2));
+        assertSame(sha1, invoker.getSha1(script(1)));
+        // The script 2 is the least recently used one
+        invoker.getSha1(script(3));
+        assertSame(sha1, invoker.getSha1(script(1)));
+        assertNotSame(sha2, invoker.getSha1(script(2)));
+        assertEquals(sha2, invoker.getSha1(script(2)));
+    }
+
+    @Test
+    public void testNoScriptFallback() throws Exception {
+        MockRedisServer server = new MockRedisServer();
+        RedisConnection connection = server.newConnection(false);
+        byte[] script = script(1);
+        Object[] args = new Object[]{script, ReturnType.INTEGER, 0, new byte[0][]};
+
+        // The script is not loaded : EVALSHA -> NOSCRIPT -> EVAL
+        assertEquals(1L, invoker.invoke(connection, args));
+        assertEquals(asList("evalSha", "eval"), server.commands);
+
+        // The script is loaded : EVALSHA only
+        server.commands.clear();
+        assertEquals(1L, invoker.invoke(connection, new Object[]{script(1), ReturnType.INTEGER, 0, new byte[0][]}));
+        assertEquals(asList("evalSha"), server.commands);
+    }
+
+    @Test
+    public void testNoPromotionInPipeline() throws Exception {
+        MockRedisServer server = new MockRedisServer();
+        RedisConnection connection = server.newConnection(true);
+        assertEquals(1L, invoker.invoke(connection, new Object[]{script(1), ReturnType.INTEGER, 0, new byte[0][]}));
+        assertEquals(asList("eval"), server.commands);
+    }
+
+    @Test(expected = InvocationTargetException.class)
+    public void testOtherError() throws Exception {
+        MockRedisServer server = new MockRedisServer();
+        server.error = "ERR Error running script";
+        invoker.invoke(server.newConnection(false), new Object[]{script(1), ReturnType.INTEGER, 0, new byte[0][]});
+    }
+
+    @Test
+    public void testMethods() {
+        assertTrue(isEvalMethod(findMethod(RedisScriptingCommands.class, "eval", byte[].class, ReturnType.class, int.class, byte[][].class)));
+        assertFalse(isEvalMethod(findMethod(RedisScriptingCommands.class, "evalSha", String.class, ReturnType.class, int.class, byte[][].class)));
+        assertTrue(isScriptingCommandsMethod(findMethod(RedisConnection.class, "scriptingCommands")));
+    }
+
+    @Test
+    public void testIsNoScriptError() {
+        assertTrue(isNoScriptError(new RedisSystemException("Error", new IllegalStateException("NOSCRIPT No matching script"))));
+        assertFalse(isNoScriptError(new RedisSystemException("Error", new IllegalStateException("ERR"))));
+    }
+
+    private static byte[] script(int value) {
+        return ("return " + value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<String> asList(String... values) {
+        List<String> list = new ArrayList<>();
+        for (String value : values) {
+            list.add(value);
+        }
+        return list;
+    }
+
+    /**
+     * The mock of Redis Server records the scripting commands and the loaded scripts
+     */
+    private static class MockRedisServer {
+
+        private final List<String> commands = new ArrayList<>();
+
+        private final Set<String> scripts = new HashSet<>();
+
+        private String error;
+
+        private RedisConnection newConnection(boolean pipelined) {
+            RedisScriptingCommands scriptingCommands = (RedisScriptingCommands) Proxy.newProxyInstance(getClass().getClassLoader(),
+                    new Class[]{RedisScriptingCommands.class}, (proxy, method, args) -> {
+                        String name = method.getName();
+                        commands.add(name);
+                        if (error != null) {
+                            throw new RedisSystemException(error, new IllegalStateException(error));
+                        }
+                        if ("evalSha".equals(name)) {
+                            if (!scripts.contains((String) args[0])) {
+                                throw new RedisSystemException("Error", new IllegalStateException("NOSCRIPT No matching script"));
+                            }
+                        } else if ("eval".equals(name)) {
+                            scripts.add(EvalShaPromotingInvoker.sha1DigestAsHex((byte[]) args[0]));
+                        }
+                        return 1L;
+                    });
+            return (RedisConnection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[]{RedisConnection.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "scriptingCommands":
+                                return scriptingCommands;
+                            case "isPipelined":
+                                return pipelined;
+                            case "isQueueing":
+                                return false;
+                            default:
+                                throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+}
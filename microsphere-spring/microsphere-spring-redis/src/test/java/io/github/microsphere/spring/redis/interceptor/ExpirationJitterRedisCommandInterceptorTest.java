@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.interceptor;
+
+import io.github.microsphere.spring.redis.interceptor.ExpirationJitterRedisCommandInterceptor.ExpirationParameter;
+import io.github.microsphere.spring.redis.util.KeyPrefixTrie;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisKeyCommands;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.types.Expiration;
+
+import java.nio.charset.StandardCharsets;
+
+import static io.github.microsphere.spring.redis.interceptor.ExpirationJitterRedisCommandInterceptor.buildKeyPrefixTrie;
+import static io.github.microsphere.spring.redis.interceptor.ExpirationJitterRedisCommandInterceptor.jitter;
+import static io.github.microsphere.spring.redis.interceptor.ExpirationJitterRedisCommandInterceptor.resolveExpirationParameter;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.springframework.util.ReflectionUtils.findMethod;
+
+/**
+ * {@link ExpirationJitterRedisCommandInterceptor} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class ExpirationJitterRedisCommandInterceptorTest {
+
+    @Test
+    public void testJitter() {
+        for (int i = 0; i < 100; i++) {
+            long time = jitter(1000, SECONDS, 0.1, 60 * 1000);
+            assertTrue(time >= 1000 && time <= 1060);
+            time = jitter(1000, MILLISECONDS, 0.5, 10);
+            assertTrue(time >= 1000 && time <= 1010);
+        }
+        assertEquals(5, jitter(5, SECONDS, 0.1, 60 * 1000));
+        assertEquals(-1, jitter(-1, SECONDS, 0.1, 60 * 1000));
+    }
+
+    @Test
+    public void testBuildKeyPrefixTrie() {
+        KeyPrefixTrie<Double> trie = buildKeyPrefixTrie("user:, session:=0.5", 0.1);
+        assertEquals(Double.valueOf(0.1), trie.findLongestPrefix(bytes("user:1")));
+        assertEquals(Double.valueOf(0.5), trie.findLongestPrefix(bytes("session:1")));
+        assertNull(trie.findLongestPrefix(bytes("order:1")));
+
+        trie = buildKeyPrefixTrie(null, 0.2);
+        assertEquals(Double.valueOf(0.2), trie.findLongestPrefix(bytes("order:1")));
+    }
+
+    @Test
+    public void testExpirationParameter() {
+        ExpirationParameter parameter = resolveExpirationParameter(findMethod(RedisStringCommands.class, "set", byte[].class, byte[].class, Expiration.class, RedisStringCommands.SetOption.class));
+        // The jitter is bounded by the max(60 seconds) rather than the ratio(100 seconds)
+        Expiration expiration = (Expiration) parameter.jitter(Expiration.seconds(1000), 0.1, 60 * 1000);
+        assertTrue(expiration.getExpirationTimeInSeconds() >= 1000 && expiration.getExpirationTimeInSeconds() <= 1060);
+        Expiration persistent = Expiration.persistent();
+        assertSame(persistent, parameter.jitter(persistent, 0.1, 60 * 1000));
+
+        parameter = resolveExpirationParameter(findMethod(RedisKeyCommands.class, "pExpire", byte[].class, long.class));
+        // The jitter is bounded by the max(60 milliseconds) rather than the ratio(100 milliseconds)
+        long time = (Long) parameter.jitter(1000L, 0.1, 60);
+        assertTrue(time >= 1000 && time <= 1060);
+        time = (Long) parameter.jitter(1000L, 0.1, 60 * 1000);
+        assertTrue(time >= 1000 && time <= 1100);
+
+        parameter = resolveExpirationParameter(findMethod(RedisStringCommands.class, "get", byte[].class));
+        assertEquals(1L, parameter.jitter(1L, 0.1, 60 * 1000));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}
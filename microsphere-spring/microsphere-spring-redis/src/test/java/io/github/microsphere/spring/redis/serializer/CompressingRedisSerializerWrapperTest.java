@@ -0,0 +1,147 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.serializer;
+
+import org.junit.Test;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static io.github.microsphere.spring.redis.serializer.CompressingRedisSerializerWrapper.COMPRESSED_HEADER;
+import static io.github.microsphere.spring.redis.serializer.CompressingRedisSerializerWrapper.ESCAPED_HEADER;
+import static io.github.microsphere.spring.redis.serializer.CompressingRedisSerializerWrapper.MAX_CACHED_BUFFER_SIZE;
+import static io.github.microsphere.spring.redis.serializer.CompressingRedisSerializerWrapper.wrap;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link CompressingRedisSerializerWrapper} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class CompressingRedisSerializerWrapperTest {
+
+    private final RedisSerializer<String> serializer = wrap(RedisSerializer.string(), 64);
+
+    private final RedisSerializer<byte[]> byteArraySerializer = wrap(RedisSerializer.byteArray(), 64);
+
+    @Test
+    public void testCompressed() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("{\"id\":").append(i % 10).append("}");
+        }
+        String value = builder.toString();
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(COMPRESSED_HEADER, bytes[0]);
+        assertTrue(bytes.length < value.length());
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testUntouched() {
+        String value = "Hello,World";
+        byte[] bytes = serializer.serialize(value);
+        assertArrayEquals(RedisSerializer.string().serialize(value), bytes);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testIncompressible() {
+        byte[] value = new byte[4096];
+        new Random(1).nextBytes(value);
+        value[0] = 1;
+        byte[] bytes = byteArraySerializer.serialize(value);
+        assertSame(value, bytes);
+        assertArrayEquals(value, byteArraySerializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testEscaped() {
+        byte[] value = new byte[]{COMPRESSED_HEADER, 1, 2};
+        byte[] bytes = byteArraySerializer.serialize(value);
+        assertEquals(ESCAPED_HEADER, bytes[0]);
+        assertEquals(value.length + 1, bytes.length);
+        assertArrayEquals(value, byteArraySerializer.deserialize(bytes));
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testNegativeLength() {
+        serializer.deserialize(new byte[]{COMPRESSED_HEADER, (byte) 0x80, 0, 0, 0, 1, 2, 3});
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testHugeLength() {
+        serializer.deserialize(new byte[]{COMPRESSED_HEADER, 0x7F, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 1, 2, 3});
+    }
+
+    @Test(expected = SerializationException.class)
+    public void testTruncated() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("{\"id\":").append(i % 10).append("}");
+        }
+        byte[] bytes = serializer.serialize(builder.toString());
+        serializer.deserialize(Arrays.copyOf(bytes, bytes.length / 2));
+    }
+
+    @Test
+    public void testLargeValue() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100000; i++) {
+            builder.append("{\"id\":").append(i % 10).append("}");
+        }
+        String value = builder.toString();
+        assertTrue(value.length() > MAX_CACHED_BUFFER_SIZE);
+        byte[] bytes = serializer.serialize(value);
+        assertEquals(COMPRESSED_HEADER, bytes[0]);
+        assertEquals(value, serializer.deserialize(bytes));
+    }
+
+    @Test
+    public void testBufferNotCachedAboveMaxSize() {
+        CompressingRedisSerializerWrapper.Codec codec = new CompressingRedisSerializerWrapper.Codec();
+        byte[] buffer = codec.getBuffer(1);
+        assertSame(buffer, codec.getBuffer(buffer.length));
+
+        // The large buffer is allocated per compression
+        byte[] largeBuffer = codec.getBuffer(MAX_CACHED_BUFFER_SIZE + 1);
+        assertEquals(MAX_CACHED_BUFFER_SIZE + 1, largeBuffer.length);
+        assertNotSame(largeBuffer, codec.getBuffer(MAX_CACHED_BUFFER_SIZE + 1));
+        assertSame(buffer, codec.getBuffer(1));
+
+        // The cached buffer grows up to the max size
+        byte[] grownBuffer = codec.getBuffer(buffer.length + 1);
+        assertTrue(grownBuffer.length <= MAX_CACHED_BUFFER_SIZE);
+        assertSame(grownBuffer, codec.getBuffer(grownBuffer.length));
+        assertEquals(MAX_CACHED_BUFFER_SIZE, codec.getBuffer(MAX_CACHED_BUFFER_SIZE).length);
+    }
+
+    @Test
+    public void testNull() {
+        assertNull(serializer.serialize(null));
+        assertNull(serializer.deserialize(null));
+        assertNull(wrap(null));
+    }
+}
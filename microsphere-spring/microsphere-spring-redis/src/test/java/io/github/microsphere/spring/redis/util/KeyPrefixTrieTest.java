@@ -0,0 +1,80 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.github.microsphere.spring.redis.util;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * {@link KeyPrefixTrie} Test
+ *
+ * @author <a href="mailto:mercyblitz@gmail.com">Mercy</a>
+ * @since 1.0.0
+ */
+public class KeyPrefixTrieTest {
+
+    @Test
+    public void testFindLongestPrefix() {
+        KeyPrefixTrie<String> trie = new KeyPrefixTrie<>();
+        assertTrue(trie.isEmpty());
+        trie.put("user:", "user");
+        trie.put("user:session:", "session");
+        trie.put("order:", "order");
+        assertEquals(3, trie.size());
+
+        assertEquals("user", trie.findLongestPrefix(bytes("user:1")));
+        assertEquals("session", trie.findLongestPrefix(bytes("user:session:1")));
+        assertEquals("order", trie.findLongestPrefix(bytes("order:")));
+        assertNull(trie.findLongestPrefix(bytes("user")));
+        assertNull(trie.findLongestPrefix(bytes("product:1")));
+
+        assertTrue(trie.matches(bytes("user:session")));
+        assertFalse(trie.matches(bytes("orde")));
+    }
+
+    @Test
+    public void testManyLabels() {
+        KeyPrefixTrie<Integer> trie = new KeyPrefixTrie<>();
+        for (int i = 0; i < 256; i++) {
+            trie.put(new byte[]{(byte) i}, i);
+        }
+        assertEquals(256, trie.size());
+        for (int i = 0; i < 256; i++) {
+            assertEquals(Integer.valueOf(i), trie.findLongestPrefix(new byte[]{(byte) i, 1}));
+        }
+    }
+
+    @Test
+    public void testEmptyPrefix() {
+        KeyPrefixTrie<String> trie = new KeyPrefixTrie<>();
+        trie.put("", "all");
+        assertEquals("all", trie.put("", "any"));
+        assertEquals(1, trie.size());
+        assertEquals("any", trie.findLongestPrefix(bytes("key")));
+        assertTrue(trie.matches(new byte[0]));
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+}